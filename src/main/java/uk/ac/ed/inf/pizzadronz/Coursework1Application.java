@@ -2,6 +2,8 @@ package uk.ac.ed.inf.pizzadronz;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.Bean;
+import uk.ac.ed.inf.pizzadronz.model.PathInfo.ReferenceDataService;
 
 /**
  * The main class of the application. Used to start the Spring Boot application.
@@ -13,4 +15,15 @@ public class Coursework1Application {
 		SpringApplication.run(Coursework1Application.class, args);
 	}
 
+	/**
+	 * Makes the reference data shared by every handler a bean, which Spring injects into the handlers. Its first snapshot is
+	 * fetched when Spring starts it, before any handler is made, it is refreshed in the background as configured and it stops
+	 * refreshing when the application closes
+	 * @return the reference data, not yet fetched
+	 */
+	@Bean(initMethod = "start")
+	public ReferenceDataService referenceDataService() {
+		return new ReferenceDataService();
+	}
+
 }
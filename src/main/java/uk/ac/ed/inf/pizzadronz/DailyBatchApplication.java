@@ -0,0 +1,33 @@
+package uk.ac.ed.inf.pizzadronz;
+
+import uk.ac.ed.inf.pizzadronz.controller.DailyBatch;
+import uk.ac.ed.inf.pizzadronz.controller.PathHandling;
+import uk.ac.ed.inf.pizzadronz.model.OrderInfo.DailyBatchSummary;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+
+import static uk.ac.ed.inf.pizzadronz.constant.SystemConstants.BATCH_OUTPUT_DIRECTORY;
+import static uk.ac.ed.inf.pizzadronz.constant.SystemConstants.ORDER_URL;
+
+/**
+ * Runs the daily batch from the command line, without starting the service.
+ * Usage: DailyBatchApplication date [orderSource] [outputDirectory], where the order source is the orders URL or a local orders file
+ */
+public class DailyBatchApplication {
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1 || args.length > 3) {
+			System.err.println("Usage: DailyBatchApplication <YYYY-MM-DD> [orderSource] [outputDirectory]");
+			System.exit(2);
+		}
+		String orderSource = args.length > 1 ? args[1] : ORDER_URL;
+		String outputDirectory = args.length > 2 ? args[2] : BATCH_OUTPUT_DIRECTORY;
+
+		DailyBatchSummary summary = new DailyBatch(new PathHandling()).run(orderSource, LocalDate.parse(args[0]), Paths.get(outputDirectory));
+		System.out.println(summary.getOrderCount() + " orders, " + summary.getValidCount() + " valid, "
+				+ summary.getDeliveredCount() + " delivered, written to " + outputDirectory);
+	}
+
+}
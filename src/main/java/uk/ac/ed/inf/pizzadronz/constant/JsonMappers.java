@@ -0,0 +1,58 @@
+package uk.ac.ed.inf.pizzadronz.constant;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import uk.ac.ed.inf.pizzadronz.model.GeoJson.GeoJson;
+import uk.ac.ed.inf.pizzadronz.model.OrderInfo.Order;
+import uk.ac.ed.inf.pizzadronz.model.PathInfo.LngLat;
+import uk.ac.ed.inf.pizzadronz.model.PathInfo.NamedRegion;
+
+/**
+ * The JSON mapper shared by the whole service, and readers and writers made from it for the types read and written most.
+ *
+ * <p>It is only used inside the service. Spring keeps its own auto-configured mapper for binding request bodies and writing
+ * responses, so the spring.jackson properties and any modules on the classpath still apply to those.</p>
+ *
+ * <p>A mapper works out how to read and write each type the first time it sees it and keeps what it worked out, so one mapper
+ * shared by everything only does that once per type. Mappers, readers and writers can all be used by many threads at once, as
+ * long as the mapper's settings are not changed after it is made.</p>
+ */
+public final class JsonMappers {
+
+    /**
+     * the mapper every helper uses, which ignores unknown properties as Spring's mapper does, so an order or position is read the
+     * same whichever endpoint it is sent to
+     */
+    public static final ObjectMapper MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    /**
+     * reads an order
+     */
+    public static final ObjectReader ORDER_READER = MAPPER.readerFor(Order.class);
+
+    /**
+     * reads a position
+     */
+    public static final ObjectReader LNGLAT_READER = MAPPER.readerFor(LngLat.class);
+
+    /**
+     * reads a named region
+     */
+    public static final ObjectReader REGION_READER = MAPPER.readerFor(NamedRegion.class);
+
+    /**
+     * writes a path as an array of positions
+     */
+    public static final ObjectWriter PATH_WRITER = MAPPER.writerFor(LngLat[].class);
+
+    /**
+     * writes a GeoJSON feature collection
+     */
+    public static final ObjectWriter GEOJSON_WRITER = MAPPER.writerFor(GeoJson.class);
+
+    private JsonMappers() {
+    }
+}
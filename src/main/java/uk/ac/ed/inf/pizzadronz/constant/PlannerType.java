@@ -0,0 +1,45 @@
+package uk.ac.ed.inf.pizzadronz.constant;
+
+
+/**
+ * the planners that can be used to find a delivery path
+ */
+public enum PlannerType {
+    /**
+     * A* over the move lattice, with large, then medium, then small drone steps
+     */
+    LATTICE,
+
+    /**
+     * the same stages as LATTICE, but each stage searches forwards from its start and backwards from AT until the two meet
+     */
+    BIDIRECTIONAL,
+
+    /**
+     * the same stages as LATTICE, but each stage skips over straight runs of moves in open sky, only adding nodes near the
+     * no-fly zones and where a run stops getting closer to AT
+     */
+    JUMP_POINT,
+
+    /**
+     * Lazy Theta* over a square grid of medium drone steps, finding legs at any angle that are then flown with legal drone moves
+     */
+    ANY_ANGLE,
+
+    /**
+     * HPA* over clusters of a square grid of medium drone steps, searching the portals between clusters and then only the
+     * clusters the route passes through, with the legs flown with legal drone moves
+     */
+    HIERARCHICAL,
+
+    /**
+     * the same stages as LATTICE, each searched by Lifelong Planning A* whose search is kept for the restaurant, so when the
+     * no-fly zones change only the part of the search near the zones added or removed is searched again
+     */
+    INCREMENTAL,
+
+    /**
+     * Dijkstra over a visibility graph of the no-fly zone corners, then flown with legal drone moves
+     */
+    VISIBILITY_GRAPH
+}
@@ -55,12 +55,117 @@ public final class SystemConstants {
 
     public static final double DRONE_MOVE_DISTANCE = 0.00015;
 
+    /**
+     * the number of cells either side of AT covered by a precomputed distance field, for each drone step size
+     */
+    public static final int GOAL_FIELD_HALF_EXTENT_CELLS = 128;
+
+    /**
+     * how far the corners of no-fly zones are pushed outwards when used as waypoints, so routes keep clear of the zones
+     */
+    public static final double VISIBILITY_CLEARANCE = 0.0003;
+
+    /**
+     * how close a straight route may pass to the edge of a no-fly zone, leaving room for the drone to zigzag along it
+     */
+    public static final double VISIBILITY_MARGIN = 0.00006;
+
+    /**
+     * how many lattice cells a single drone step spans when A* snaps positions to find nodes it has already reached
+     */
+    public static final int LATTICE_QUANTA_PER_STEP = 1024;
+
+    /**
+     * the most delivery paths kept in the route cache
+     */
+    public static final int ROUTE_CACHE_CAPACITY = 256;
+
+    /**
+     * the most places each stage of an incremental route keeps its search from
+     */
+    public static final int INCREMENTAL_STAGE_SEARCHES = 4;
+
+    /**
+     * the size of the grid cells used to index no-fly zone edges
+     */
+    public static final double ZONE_INDEX_CELL_SIZE = 0.001;
+
+    /**
+     * the size of the grid cells in the bitmap of moves that may be blocked by a no-fly zone
+     */
+    public static final double BLOCKED_MOVE_CELL_SIZE = 0.00015;
+
+    /**
+     * the most bytes the bitmap of moves that may be blocked may take, above which its cells are made larger until it fits
+     */
+    public static final long BLOCKED_MOVE_MAX_BYTES = 64L * 1024 * 1024;
+
+    /**
+     * the most moves a jump point search takes in one straight run before it adds a node
+     */
+    public static final int JUMP_POINT_MAX_RUN = 64;
+
+    /**
+     * the number of grid cells along each side of a cluster in the hierarchy used by HPA*
+     */
+    public static final int HIERARCHY_CLUSTER_CELLS = 16;
+
+    /**
+     * the number of clusters along each side of the grid used by HPA*, which is centred on AT
+     */
+    public static final int HIERARCHY_CLUSTERS_PER_SIDE = 24;
+
+    /**
+     * how much the weight of each search of the anytime planner drops by from the one before
+     */
+    public static final double ANYTIME_WEIGHT_STEP = 0.25;
+
+    /**
+     * the response header reporting how many times longer than the shortest path an anytime path may be
+     */
+    public static final String SUBOPTIMALITY_BOUND_HEADER = "X-Suboptimality-Bound";
+
+    /**
+     * the most nodes the searches for one delivery path may expand, unless configured otherwise
+     */
+    public static final long SEARCH_MAX_EXPANSIONS = 2000000;
+
+    /**
+     * the longest the searches for one delivery path may take in milliseconds, unless configured otherwise
+     */
+    public static final long SEARCH_TIMEOUT_MS = 2000;
+
+    /**
+     * the request header giving how long the client will wait for a path in milliseconds
+     */
+    public static final String DEADLINE_HEADER = "X-Deadline-Ms";
+
 
     /**
      * order data URL
      */
     public static final String ORDER_URL = "https://ilp-rest-2024.azurewebsites.net/orders";
 
+    /**
+     * the directory the daily batch writes its files to, unless another is configured
+     */
+    public static final String BATCH_OUTPUT_DIRECTORY = "batch";
+
+    /**
+     * the longest the searches for every path of the daily batch may take together in milliseconds, unless configured otherwise
+     */
+    public static final long BATCH_SEARCH_TIMEOUT_MS = 600000;
+
+    /**
+     * the directory the bitmaps of moves that may be blocked are stored in between restarts, unless another is configured
+     */
+    public static final String BLOCKED_MOVE_CACHE_DIRECTORY = "cache/blocked-moves";
+
+    /**
+     * how long in milliseconds a stored bitmap of moves that may be blocked is kept after it was last written or read
+     */
+    public static final long BLOCKED_MOVE_CACHE_MAX_AGE_MS = 7L * 24 * 60 * 60 * 1000;
+
     /**
      * Restaurant data URL
      */
@@ -76,6 +181,11 @@ public final class SystemConstants {
      */
     public static final String CENTRAL_URL = "https://ilp-rest-2024.azurewebsites.net/centralArea";
 
+    /**
+     * how often the restaurants, no-fly zones and central area are fetched again in milliseconds, unless configured otherwise
+     */
+    public static final long REFERENCE_DATA_REFRESH_MS = 300000;
+
     /**
      * the central region name
      */
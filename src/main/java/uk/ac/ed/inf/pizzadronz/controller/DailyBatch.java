@@ -0,0 +1,142 @@
+package uk.ac.ed.inf.pizzadronz.controller;
+
+import uk.ac.ed.inf.pizzadronz.constant.OrderStatus;
+import uk.ac.ed.inf.pizzadronz.constant.OrderValidationCode;
+import uk.ac.ed.inf.pizzadronz.constant.PlannerType;
+import uk.ac.ed.inf.pizzadronz.model.OrderInfo.DailyBatchSummary;
+import uk.ac.ed.inf.pizzadronz.model.OrderInfo.DeliveryPathResult;
+import uk.ac.ed.inf.pizzadronz.model.OrderInfo.Order;
+import uk.ac.ed.inf.pizzadronz.model.PathInfo.LngLat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static uk.ac.ed.inf.pizzadronz.constant.JsonMappers.MAPPER;
+import static uk.ac.ed.inf.pizzadronz.model.GeoJson.GeoJsonStrings.GeoJSONOrderPaths;
+
+/**
+ * Runs the deliveries for a whole day at once.
+ *
+ * <p>Every order for a date is read from the order source, which is either the orders URL or a local JSON file holding the same
+ * array of orders. The orders are validated and routed in parallel by calcDeliveryPaths, so each restaurant's path is only found
+ * once. With no client waiting, the searches share the configured batch timeout rather than the timeout of one request, and a
+ * valid order no path was found for is reported in the summary with the reason. The flight paths, their GeoJSON and a
+ * validation summary are written to the output directory at the same time with asynchronous file channels.</p>
+ */
+public class DailyBatch {
+    private final PathHandling pathHandling;
+
+    public DailyBatch(PathHandling pathHandling) {
+        this.pathHandling = pathHandling;
+    }
+
+    /**
+     * Validates and routes every order for a date and writes flightpath-date.json, drone-date.geojson and summary-date.json
+     * @param orderSource the URL or path of the file to read the orders from
+     * @param date the date to deliver the orders of
+     * @param outputDirectory the directory to write the files to, created if it does not exist
+     * @return the summary of the orders for the date
+     * @throws IOException if the orders cannot be read or the files cannot be written
+     */
+    public DailyBatchSummary run(String orderSource, LocalDate date, Path outputDirectory) throws IOException {
+        Order[] orders = Arrays.stream(pathHandling.getOrderHandling().loadOrders(orderSource))
+                .filter(order -> date.toString().equals(order.getOrderDate()))
+                .toArray(Order[]::new);
+        List<DeliveryPathResult> results = pathHandling.calcDeliveryPaths(orders, PlannerType.LATTICE, pathHandling.batchDeadline());
+
+        int validCount = 0;
+        Map<OrderValidationCode, Integer> validationCodes = new EnumMap<>(OrderValidationCode.class);
+        List<String> orderNos = new ArrayList<>();
+        List<LngLat[]> paths = new ArrayList<>();
+        Map<String, String> routingErrors = new LinkedHashMap<>();
+        for (DeliveryPathResult result : results) {
+            validationCodes.merge(result.getOrderValidationCode(), 1, Integer::sum);
+            if (result.getOrderStatus() == OrderStatus.VALID) {
+                validCount++;
+            }
+            if (result.getPath() != null) {
+                orderNos.add(result.getOrderNo());
+                paths.add(result.getPath());
+            } else if (result.getError() != null) {
+                routingErrors.put(result.getOrderNo(), result.getError());
+            }
+        }
+        DailyBatchSummary summary = new DailyBatchSummary(date.toString(), orders.length, validCount, paths.size(), validationCodes,
+                routingErrors);
+
+        Files.createDirectories(outputDirectory);
+        CompletableFuture<?>[] writes = {
+                writeFile(outputDirectory.resolve("flightpath-" + date + ".json"), MAPPER.writeValueAsBytes(results)),
+                writeFile(outputDirectory.resolve("drone-" + date + ".geojson"),
+                        GeoJSONOrderPaths(orderNos.toArray(new String[0]), paths.toArray(new LngLat[0][])).getBytes(StandardCharsets.UTF_8)),
+                writeFile(outputDirectory.resolve("summary-" + date + ".json"), MAPPER.writeValueAsBytes(summary))
+        };
+        try {
+            CompletableFuture.allOf(writes).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        }
+        return summary;
+    }
+
+    /**
+     * Starts writing a file without waiting for it, writing again from where the last write stopped until every byte is written
+     * @param file the file to write, replaced if it exists
+     * @param bytes the contents of the file
+     * @return completes once the file is written and closed
+     */
+    private static CompletableFuture<Void> writeFile(Path file, byte[] bytes) {
+        CompletableFuture<Void> written = new CompletableFuture<>();
+        AsynchronousFileChannel channel;
+        try {
+            channel = AsynchronousFileChannel.open(file, WRITE, CREATE, TRUNCATE_EXISTING);
+        } catch (IOException e) {
+            written.completeExceptionally(e);
+            return written;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        channel.write(buffer, 0, null, new CompletionHandler<Integer, Void>() {
+            @Override
+            public void completed(Integer count, Void attachment) {
+                if (buffer.hasRemaining()) {
+                    channel.write(buffer, buffer.position(), null, this);
+                    return;
+                }
+                try {
+                    channel.close();
+                    written.complete(null);
+                } catch (IOException e) {
+                    written.completeExceptionally(e);
+                }
+            }
+
+            @Override
+            public void failed(Throwable e, Void attachment) {
+                try {
+                    channel.close();
+                } catch (IOException closeFailure) {
+                    e.addSuppressed(closeFailure);
+                }
+                written.completeExceptionally(e);
+            }
+        });
+        return written;
+    }
+}
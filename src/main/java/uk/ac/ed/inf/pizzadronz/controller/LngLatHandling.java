@@ -1,13 +1,16 @@
 package uk.ac.ed.inf.pizzadronz.controller;
 
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
 import uk.ac.ed.inf.pizzadronz.exception.InvalidBodyException;
 import uk.ac.ed.inf.pizzadronz.model.PathInfo.*;
 
-import java.awt.geom.Path2D;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.BitSet;
 
+import static uk.ac.ed.inf.pizzadronz.constant.JsonMappers.MAPPER;
 import static uk.ac.ed.inf.pizzadronz.constant.SystemConstants.DRONE_IS_CLOSE_DISTANCE_SMALL;
 import static uk.ac.ed.inf.pizzadronz.constant.SystemConstants.DRONE_MOVE_DISTANCE_SMALL;
 
@@ -22,13 +25,31 @@ import static uk.ac.ed.inf.pizzadronz.constant.SystemConstants.DRONE_MOVE_DISTAN
  */
 public class LngLatHandling {
 
+    /**
+     * Gets the distance between two points, reading the body straight from its tokens
+     * @param pairRequest the two points to calculate the distance between, as json
+     * @return the distance between the two points
+     */
+    @PostMapping(value = "/distanceTo", consumes = {MediaType.APPLICATION_JSON_VALUE, "application/*+json"})
+    public double getDistanceTo(@RequestBody byte[] pairRequest) {
+        PositionRequestReader request = PositionRequestReader.readPair(pairRequest);
+        PositionRequestReader.Position position1 = request.getFirst();
+        PositionRequestReader.Position position2 = request.getSecond();
+        // Checks the positions in the same order as validateAndExtractPair and validDistancePair, where the LngLatPair
+        // constructor takes position2 first so the range of position2 is checked before position1
+        position1.check();
+        position2.check();
+        validPosition(position2.getLng(), position2.getLat());
+        validPosition(position1.getLng(), position1.getLat());
+        return pythag(position1.getLng(), position1.getLat(), position2.getLng(), position2.getLat());
+    }
+
     /**
      * Gets the distance between two points
      * @param pairRequest the two points to calculate the distance between
      * @return the distance between the two points
      */
-    @PostMapping("/distanceTo")
-    public double getDistanceTo(@RequestBody JsonNode pairRequest) {
+    public double getDistanceTo(JsonNode pairRequest) {
         // Checks that the LngLatPair properties are valid and converts them to LngLatPair object
         LngLatPair lngLatPair = validateAndExtractPair(pairRequest);
         // Checks that each LngLat object is valid
@@ -36,36 +57,70 @@ public class LngLatHandling {
         return pythag(lngLatPair);
     }
 
+    /**
+     * Checks if the distance between two points is less than a certain value, reading the body straight from its tokens
+     * @param pairRequest the two points to check if they are close, as json
+     * @return true if the distance between the two points is less than the DRONE_IS_CLOSE_DISTANCE_SMALL constant
+     */
+    @PostMapping(value = "/isCloseTo", consumes = {MediaType.APPLICATION_JSON_VALUE, "application/*+json"})
+    public boolean isCloseTo(@RequestBody byte[] pairRequest) {
+        return getDistanceTo(pairRequest) < DRONE_IS_CLOSE_DISTANCE_SMALL;
+    }
+
     /**
      * Checks if the distance between two points is less than a certain value
      * @param pairRequest the two points to check if they are close
      * @return true if the distance between the two points is less than the DRONE_IS_CLOSE_DISTANCE_SMALL constant
      */
-    @PostMapping("/isCloseTo")
-    public boolean isCloseTo(@RequestBody JsonNode pairRequest) {
+    public boolean isCloseTo(JsonNode pairRequest) {
 
         return getDistanceTo(pairRequest) < DRONE_IS_CLOSE_DISTANCE_SMALL;
     }
 
+    /**
+     * Calculates the next position of the drone given a starting position and an angle, reading the body straight from its tokens
+     * @param positionRequest the starting position and angle to calculate the next position, as json
+     * @return the next position of the drone
+     */
+    @PostMapping(value = "/nextPosition", consumes = {MediaType.APPLICATION_JSON_VALUE, "application/*+json"})
+    public LngLat nextPosition(@RequestBody byte[] positionRequest) {
+        PositionRequestReader request = PositionRequestReader.readNextPosition(positionRequest);
+        PositionRequestReader.Position start = request.getFirst();
+        // Checks the position and angle in the same order as validateAndExtractNextPosition, validPosition and validAngle
+        start.check();
+        double angle = request.checkAngle();
+        validPosition(start.getLng(), start.getLat());
+        validAngle(angle);
+        return nextPosition(start.getLng(), start.getLat(), angle);
+    }
+
     /**
      * Calculates the next position of the drone given a starting position and an angle
      * @param positionRequest the starting position and angle to calculate the next position
      * @return the next position of the drone
      */
-    @PostMapping("/nextPosition")
-    public LngLat nextPosition(@RequestBody JsonNode positionRequest){
+    public LngLat nextPosition(JsonNode positionRequest){
         //Validates input as a request object and converts to NextPositionRequest object
         NextPositionRequest nextPositionRequest = validateAndExtractNextPosition(positionRequest);
         //Checks that the position is valid
         validPosition(nextPositionRequest.getStart());
         //Checks that the angle is valid
         validAngle(nextPositionRequest.getAngle());
+        return nextPosition(nextPositionRequest.getStart().getLng(), nextPositionRequest.getStart().getLat(), nextPositionRequest.getAngle());
+    }
+
+    /**
+     * Moves one step from a valid position at a valid angle
+     * @param lng the longitude of the starting position
+     * @param lat the latitude of the starting position
+     * @param angle the angle to move at, in degrees
+     * @return the next position of the drone
+     */
+    private static LngLat nextPosition(double lng, double lat, double angle) {
         //Calculates the new position by converting to radians and using trigonometry
-        double angleRadians = Math.toRadians(nextPositionRequest.getAngle());
-        double newLong = nextPositionRequest.getStart().getLng()
-                + DRONE_MOVE_DISTANCE_SMALL * Math.sin(angleRadians);
-        double newLat = nextPositionRequest.getStart().getLat()
-                + DRONE_MOVE_DISTANCE_SMALL * Math.cos(angleRadians);
+        double angleRadians = Math.toRadians(angle);
+        double newLong = lng + DRONE_MOVE_DISTANCE_SMALL * Math.sin(angleRadians);
+        double newLat = lat + DRONE_MOVE_DISTANCE_SMALL * Math.cos(angleRadians);
 
         return new LngLat(newLong, newLat);
     }
@@ -83,43 +138,91 @@ public class LngLatHandling {
     }
 
     /**
-     * Checks if a point is within a region
-     * @param regionRequest
-     * @return true if the point is within the region
+     * Checks which of a batch of points are within one region, reading the points straight from their tokens into doubles
+     * @param batchRequest the region, and the longitudes and latitudes of the points as two arrays of the same length, as json
+     * @return the number of points, the number within the region and a bitset of which points are within it
      */
-    public static boolean IsInRegionHelper(IsInRegionRequest regionRequest){
-        //Checks that the position is valid
-        validPosition(regionRequest.getPosition());
-        LngLat[] vertexes = regionRequest.getRegion().getVertices();
-        //checks if the region is closed
-        if (vertexes[0].getLng() != vertexes[vertexes.length-1].getLng() || vertexes[0].getLat() != vertexes[vertexes.length-1].getLat()) {
-            throw new InvalidBodyException("Region is not closed");
-        }
+    @PostMapping(value = "/isInRegionBatch", consumes = {MediaType.APPLICATION_JSON_VALUE, "application/*+json"})
+    public IsInRegionBatchResponse isInRegionBatch(@RequestBody byte[] batchRequest) {
+        RegionBatchRequestReader request = RegionBatchRequestReader.read(batchRequest);
+        // Checks the region first and then the points, in the same order as reading the tree
+        NamedRegion region = extractRegion(request.getRegion());
+        return isInRegionBatch(region, request.checkLngs(), request.checkLats());
+    }
+
+    /**
+     * Checks which of a batch of points are within one region
+     * @param JsonBatchRequest the region, and the longitudes and latitudes of the points as two arrays of the same length
+     * @return the number of points, the number within the region and a bitset of which points are within it
+     */
+    public IsInRegionBatchResponse isInRegionBatch(JsonNode JsonBatchRequest) {
+        // Validate and extract region
+        NamedRegion region = extractRegion(JsonBatchRequest.get("region"));
+
+        // Validate and extract the points
+        double[] lngs = extractCoordinates(JsonBatchRequest.get("lng"));
+        double[] lats = extractCoordinates(JsonBatchRequest.get("lat"));
+        return isInRegionBatch(region, lngs, lats);
+    }
 
-        //Counts the number of vertexes
-        int counter = 0;
-        for (LngLat vertex : vertexes){
-            validPosition(vertex);
-            counter++;
+    /**
+     * Checks which of a batch of points are within one region, once the region and points have been read
+     * @param region the region
+     * @param lngs the longitudes of the points
+     * @param lats the latitudes of the points
+     * @return the number of points, the number within the region and a bitset of which points are within it
+     */
+    private static IsInRegionBatchResponse isInRegionBatch(NamedRegion region, double[] lngs, double[] lats) {
+        if (lngs.length != lats.length) {
+            throw new InvalidBodyException("lng and lat must be the same length");
         }
-        //checks if the polygon has less than three vertexes. -1 because one of those vertexes is a repeat, back to the start
-        if (counter-1 < 3){
-            throw new InvalidBodyException("Two few points");
+
+        //Validates the region once and checks every point against it
+        BitSet inside = new PreparedRegion(region).containsAll(lngs, lats);
+        byte[] bits = Arrays.copyOf(inside.toByteArray(), (lngs.length + 7) / 8);
+        return new IsInRegionBatchResponse(lngs.length, inside.cardinality(), Base64.getEncoder().encodeToString(bits));
+    }
+
+    /**
+     * Checks a region read as a tree and converts it to a NamedRegion
+     * @param regionNode the region
+     * @return the region
+     */
+    private NamedRegion extractRegion(JsonNode regionNode) {
+        validateRegion(regionNode);
+        return MAPPER.convertValue(regionNode, NamedRegion.class);
+    }
+
+    /**
+     * Converts an array of numbers to primitive coordinates
+     * @param coordinatesNode the array of longitudes or latitudes
+     * @return the coordinates
+     */
+    private double[] extractCoordinates(JsonNode coordinatesNode) {
+        if (coordinatesNode == null || !coordinatesNode.isArray()) {
+            throw new InvalidBodyException("Missing lng or lat");
         }
-        //checks if the points are collinear
-        for (int i = 0; i < vertexes.length - 2; i++) {
-            if (areCollinear(vertexes[i], vertexes[i+1], vertexes[i+2])) {
-                throw new InvalidBodyException("Collinear region");
+        double[] coordinates = new double[coordinatesNode.size()];
+        for (int i = 0; i < coordinates.length; i++) {
+            JsonNode coordinate = coordinatesNode.get(i);
+            if (!coordinate.isNumber()) {
+                throw new InvalidBodyException("lng and lat must be numbers");
             }
+            coordinates[i] = coordinate.doubleValue();
         }
+        return coordinates;
+    }
 
-        //Creates a region object and uses the contains method to check if the point is within the region
-        Path2D region = new Path2D.Double();
-        region.moveTo(regionRequest.getRegion().getVertices()[0].getLng(), regionRequest.getRegion().getVertices()[0].getLat());
-        for (LngLat vertex : regionRequest.getRegion().getVertices()) {
-            region.lineTo(vertex.getLng(), vertex.getLat());
-        }
-        region.closePath();
+    /**
+     * Checks if a point is within a region
+     * @param regionRequest
+     * @return true if the point is within the region
+     */
+    public static boolean IsInRegionHelper(IsInRegionRequest regionRequest){
+        //Checks that the position is valid
+        validPosition(regionRequest.getPosition());
+        //Validates the region and checks if the point is within it
+        PreparedRegion region = new PreparedRegion(regionRequest.getRegion());
         return region.contains(regionRequest.getPosition().getLng(), regionRequest.getPosition().getLat());
     }
 
@@ -130,17 +233,15 @@ public class LngLatHandling {
      * @return IsInRegionRequest object from the input
      */
     private IsInRegionRequest validateAndExtractRegion(JsonNode JsonRegionRequest) {
-        ObjectMapper objectMapper = new ObjectMapper();
-
         // Validate and extract position
         JsonNode positionNode = JsonRegionRequest.get("position");
         validateLngLat(positionNode);
-        LngLat position = objectMapper.convertValue(positionNode, LngLat.class);
+        LngLat position = MAPPER.convertValue(positionNode, LngLat.class);
 
         // Validate and extract region
         JsonNode regionNode = JsonRegionRequest.get("region");
         validateRegion(regionNode);
-        NamedRegion region = objectMapper.convertValue(regionNode, NamedRegion.class);
+        NamedRegion region = MAPPER.convertValue(regionNode, NamedRegion.class);
 
         return new IsInRegionRequest(position, region);
     }
@@ -168,17 +269,15 @@ public class LngLatHandling {
      * @return LngLatPair object from the input
      */
     private LngLatPair validateAndExtractPair(JsonNode pairRequest) {
-        ObjectMapper objectMapper = new ObjectMapper();
-
         // Validate and extract position1
         JsonNode position1Node = pairRequest.get("position1");
         validateLngLat(position1Node);
-        LngLat position1 = objectMapper.convertValue(position1Node, LngLat.class);
+        LngLat position1 = MAPPER.convertValue(position1Node, LngLat.class);
 
         // Validate and extract position2
         JsonNode position2Node = pairRequest.get("position2");
         validateLngLat(position2Node);
-        LngLat position2 = objectMapper.convertValue(position2Node, LngLat.class);
+        LngLat position2 = MAPPER.convertValue(position2Node, LngLat.class);
 
         return new LngLatPair(position1, position2);
     }
@@ -189,10 +288,9 @@ public class LngLatHandling {
      * @return NextPositionRequest object from the input
      */
     private NextPositionRequest validateAndExtractNextPosition(JsonNode positionRequest) {
-        ObjectMapper objectMapper = new ObjectMapper();
         JsonNode positionNode = positionRequest.get("start");
         validateLngLat(positionNode);
-        LngLat position = objectMapper.convertValue(positionNode, LngLat.class);
+        LngLat position = MAPPER.convertValue(positionNode, LngLat.class);
 
         JsonNode angleNode = positionRequest.get("angle");
         if (angleNode == null) {
@@ -203,7 +301,7 @@ public class LngLatHandling {
         if (!angleNode.isNumber()) {
             throw new InvalidBodyException("angle must be numbers");
         }
-        double angle = objectMapper.convertValue(angleNode, double.class);
+        double angle = angleNode.doubleValue();
 
         return new NextPositionRequest(position, angle);
     }
@@ -240,8 +338,20 @@ public class LngLatHandling {
      * @return the distance between the two points
      */
     public static Double pythag(LngLatPair lngLatPair) {
-        return Math.sqrt(Math.pow(lngLatPair.getPosition1().getLat()-lngLatPair.getPosition2().getLat(),2)
-                +Math.pow(lngLatPair.getPosition1().getLng()-lngLatPair.getPosition2().getLng(),2));
+        return pythag(lngLatPair.getPosition1().getLng(), lngLatPair.getPosition1().getLat(),
+                lngLatPair.getPosition2().getLng(), lngLatPair.getPosition2().getLat());
+    }
+
+    /**
+     * Calculates the distance between two points given as longitudes and latitudes
+     * @param lng1 the longitude of the first point
+     * @param lat1 the latitude of the first point
+     * @param lng2 the longitude of the second point
+     * @param lat2 the latitude of the second point
+     * @return the distance between the two points
+     */
+    public static double pythag(double lng1, double lat1, double lng2, double lat2) {
+        return Math.sqrt(Math.pow(lat1-lat2,2)+Math.pow(lng1-lng2,2));
     }
 
     /**
@@ -261,10 +371,19 @@ public class LngLatHandling {
         if (position == null){
             throw new InvalidBodyException("Position is null");
         }
-        if (position.getLng() >= 180 || position.getLng() <= -180){
+        validPosition(position.getLng(), position.getLat());
+    }
+
+    /**
+     * Validates a position given as a longitude and latitude
+     * @param lng the longitude of the position
+     * @param lat the latitude of the position
+     */
+    public static void validPosition(double lng, double lat){
+        if (lng >= 180 || lng <= -180){
             throw new InvalidBodyException("Longitudinal position rejected");
         }
-        if (position.getLat() <= -90 || position.getLat() >= 90){
+        if (lat <= -90 || lat >= 90){
             throw new InvalidBodyException("latitudinal position rejected");
         }
     }
@@ -1,22 +1,44 @@
 package uk.ac.ed.inf.pizzadronz.controller;
 
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import uk.ac.ed.inf.pizzadronz.constant.OrderStatus;
 import uk.ac.ed.inf.pizzadronz.constant.OrderValidationCode;
+import uk.ac.ed.inf.pizzadronz.exception.InvalidBodyException;
 import uk.ac.ed.inf.pizzadronz.model.OrderInfo.*;
+import uk.ac.ed.inf.pizzadronz.model.PathInfo.ReferenceDataService;
 import uk.ac.ed.inf.pizzadronz.model.PathInfo.Restaurant;
+import uk.ac.ed.inf.pizzadronz.model.PathInfo.RestaurantCatalogue;
 import uk.ac.ed.inf.pizzadronz.model.PathInfo.Restaurants;
 
-import java.time.DayOfWeek;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import java.time.LocalDate;
-import java.time.temporal.TemporalAdjusters;
-
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static uk.ac.ed.inf.pizzadronz.constant.JsonMappers.MAPPER;
 import static uk.ac.ed.inf.pizzadronz.constant.SystemConstants.MAX_PIZZAS_PER_ORDER;
 import static uk.ac.ed.inf.pizzadronz.constant.SystemConstants.ORDER_CHARGE_IN_PENCE;
+import static uk.ac.ed.inf.pizzadronz.constant.SystemConstants.ORDER_URL;
+import static uk.ac.ed.inf.pizzadronz.model.OrderInfo.OrderFieldValidator.*;
 
 @RestController
 
@@ -27,20 +49,155 @@ import static uk.ac.ed.inf.pizzadronz.constant.SystemConstants.ORDER_CHARGE_IN_P
 
  */
 public class OrderHandling {
-    Restaurants restaurants = new Restaurants();
+    final Restaurants restaurants;
+    // whether card numbers must also pass the Luhn checksum
+    private boolean luhnCheck = false;
+    // where the orders for a date are read from when validating a whole day
+    @Value("${pizzadronz.batch.order-source:" + ORDER_URL + "}")
+    private String orderSource = ORDER_URL;
+
+    /**
+     * Makes a handler outside Spring, taking the restaurants from the default reference data, which is fetched the first time
+     * it is needed
+     */
+    public OrderHandling() {
+        this(ReferenceDataService.startDefault());
+    }
+
+    /**
+     * Makes a handler taking the restaurants from a reference data service
+     * @param referenceData the service to follow
+     */
+    @Autowired
+    public OrderHandling(ReferenceDataService referenceData) {
+        restaurants = new Restaurants(referenceData);
+    }
 
     /**
-     * validate the order
+     * validate the order given as json
      * @param JsonOrder the order to be validated
      * @return OrderValidationResult of the validation code and status
      */
-    @PostMapping("/validateOrder")
-    public OrderValidationResult validateOrder(@RequestBody JsonNode JsonOrder) {
+    public OrderValidationResult validateOrder(JsonNode JsonOrder) {
         // Convert to order object from json input
-        Order order = extractOrder(JsonOrder);
+        return validateOrder(extractOrder(JsonOrder));
+    }
+
+    /**
+     * validate a stream of newline-delimited orders, writing the result for each as newline-delimited json as soon as it is read,
+     * so a client can send any number of orders without either side holding them all
+     * @param orders the newline-delimited orders to be validated
+     * @return the OrderValidationResult for each order, one per line in the order the orders were sent
+     */
+    @PostMapping("/validateOrderStream")
+    public ResponseEntity<StreamingResponseBody> validateOrderStream(InputStream orders) {
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON)
+                .body(OrderStream.stream(orders, this::validateOrder));
+    }
+
+    /**
+     * validate many orders at once, either an array of orders in the body or, when there is no body, every order for a date from
+     * the configured order source. The orders are validated in parallel against one snapshot of the restaurants, so they are all
+     * checked against the same menus even if the restaurants are replaced part way through
+     * @param JsonOrders the orders to be validated, or null to fetch the orders for the date
+     * @param date the date to fetch the orders of, as YYYY-MM-DD, used when there is no body
+     * @return the order number and OrderValidationResult of each order, in the same order as the orders, and the number of
+     * orders given each validation code
+     * @throws IOException if the orders for the date cannot be read
+     */
+    @PostMapping("/validateOrders")
+    public BulkValidationResult validateOrders(@RequestBody(required = false) JsonNode JsonOrders,
+                                               @RequestParam(value = "date", required = false) String date) throws IOException {
+        Order[] orders;
+        if (JsonOrders != null) {
+            if (!JsonOrders.isArray()) {
+                throw new InvalidBodyException("Expected an array of orders");
+            }
+            orders = new Order[JsonOrders.size()];
+            IntStream.range(0, orders.length).parallel().forEach(i -> {
+                try {
+                    orders[i] = MAPPER.convertValue(JsonOrders.get(i), Order.class);
+                } catch (IllegalArgumentException e) {
+                    throw new InvalidBodyException("Invalid order at index " + i);
+                }
+            });
+        } else if (date != null) {
+            LocalDate ordersDate;
+            try {
+                ordersDate = LocalDate.parse(date);
+            } catch (DateTimeParseException e) {
+                throw new InvalidBodyException("Invalid date");
+            }
+            orders = Arrays.stream(loadOrders(orderSource))
+                    .filter(order -> ordersDate.toString().equals(order.getOrderDate()))
+                    .toArray(Order[]::new);
+        } else {
+            throw new InvalidBodyException("Expected an array of orders or a date");
+        }
+        return validateOrders(orders);
+    }
+
+    /**
+     * validate many orders in parallel against one snapshot of the restaurants
+     * @param orders the orders to be validated
+     * @return the order number and OrderValidationResult of each order, and the number of orders given each validation code
+     */
+    public BulkValidationResult validateOrders(Order[] orders) {
+        RestaurantCatalogue catalogue = restaurants.getCatalogue();
+        OrderValidationResult[] results = new OrderValidationResult[orders.length];
+        IntStream.range(0, orders.length).parallel().forEach(i -> results[i] = validateOrder(orders[i], catalogue));
+
+        Map<OrderValidationCode, Integer> validationCodes = Arrays.stream(results).parallel()
+                .collect(Collectors.groupingBy(OrderValidationResult::getOrderValidationCode,
+                        () -> new EnumMap<>(OrderValidationCode.class), Collectors.summingInt(result -> 1)));
+        List<String> orderNos = Arrays.stream(orders).map(Order::getOrderNo).collect(Collectors.toList());
+        return new BulkValidationResult(orderNos, Arrays.asList(results), validationCodes);
+    }
+
+    /**
+     * Reads every order from an order source
+     * @param orderSource an http or https URL to fetch the orders from, otherwise the path of a file to read them from
+     * @return the orders
+     * @throws IOException if the orders cannot be read
+     */
+    public Order[] loadOrders(String orderSource) throws IOException {
+        if (orderSource.startsWith("http://") || orderSource.startsWith("https://")) {
+            RestTemplate restTemplate = new RestTemplate();
+            ResponseEntity<Order[]> response = restTemplate.exchange(
+                    orderSource,
+                    HttpMethod.GET,
+                    null,
+                    new ParameterizedTypeReference<Order[]>() {
+                    }
+            );
+            Order[] orders = response.getBody();
+            if (orders == null) {
+                throw new IOException("No orders returned from " + orderSource);
+            }
+            return orders;
+        }
+        return MAPPER.readValue(new File(orderSource), Order[].class);
+    }
+
+    /**
+     * validate the order, which is bound straight from the request body, recording the validation code on the order
+     * @param order the order to be validated
+     * @return OrderValidationResult of the validation code and status
+     */
+    @PostMapping("/validateOrder")
+    public OrderValidationResult validateOrder(@RequestBody Order order) {
+        return validateOrder(order, restaurants.getCatalogue());
+    }
 
+    /**
+     * validate an order against a snapshot of the restaurants, recording the validation code on the order
+     * @param order the order to be validated
+     * @param catalogue the snapshot of the restaurants the order will be checked against
+     * @return OrderValidationResult of the validation code and status
+     */
+    public OrderValidationResult validateOrder(Order order, RestaurantCatalogue catalogue) {
         // Get the validation code for the order by inspecting contents
-        OrderValidationCode orderValidationCode = getOrderValidationCode(order, restaurants);
+        OrderValidationCode orderValidationCode = getOrderValidationCode(order, catalogue);
         order.setOrderValidationCode(orderValidationCode);
 
         //Choose the appropriate status based on the validation code
@@ -55,8 +212,7 @@ public class OrderHandling {
      * @return the input as an order object
      */
     public static Order extractOrder(JsonNode JsonOrder) {
-        ObjectMapper objectMapper = new ObjectMapper();
-        return objectMapper.convertValue(JsonOrder, Order.class);
+        return MAPPER.convertValue(JsonOrder, Order.class);
     }
 
     /**
@@ -76,6 +232,15 @@ public class OrderHandling {
         }
     }
 
+    /**
+     * set whether card numbers must pass the Luhn checksum as well as being sixteen digits
+     * @param luhnCheck true to check the checksum
+     */
+    @Value("${pizzadronz.validation.luhn-check:false}")
+    public void setLuhnCheck(boolean luhnCheck) {
+        this.luhnCheck = luhnCheck;
+    }
+
     /**
      * get the restaurants
      * @return the restaurants
@@ -91,70 +256,55 @@ public class OrderHandling {
      * @return the validation code for the order
      */
     public OrderValidationCode getOrderValidationCode(Order order, Restaurants restaurants) {
+        return getOrderValidationCode(order, restaurants.getCatalogue());
+    }
+
+    /**
+     *  get the validation code for the order
+     * @param order the order to be validated
+     * @param catalogue the snapshot of the restaurants the order will be checked against
+     * @return the validation code for the order
+     */
+    public OrderValidationCode getOrderValidationCode(Order order, RestaurantCatalogue catalogue) {
         // check that the order is not empty
         if (order.getPizzasInOrder().length == 0) {
             return OrderValidationCode.EMPTY_ORDER;
         }
+        CreditCardInformation card = order.getCreditCardInformation();
         // check that the credit card number is valid
-        if (order.getCreditCardInformation().getCreditCardNumber() == null || !(order.getCreditCardInformation().getCreditCardNumber().matches("\\d{16}")) || order.getCreditCardInformation().getCreditCardNumber().length() != 16) {
+        if (!isCardNumberValid(card.getCreditCardNumber(), luhnCheck)) {
             return OrderValidationCode.CARD_NUMBER_INVALID;
         }
 
         // check that the expiry date is valid
-        String expiryDate = order.getCreditCardInformation().getCreditCardExpiry();
-        if (expiryDate == null || !(expiryDate.matches("\\d{2}/\\d{2}")|| expiryDate.matches("\\d{1}/\\d{2}") || expiryDate.matches("\\d{2}/\\d{1}"))) {
+        String expiryDate = card.getCreditCardExpiry();
+        if (!isExpiryFormatValid(expiryDate)) {
             return OrderValidationCode.EXPIRY_DATE_INVALID;
         }
 
-        //Convert the order date string to a LocalDate object
-        String[] orderDateParts = order.getOrderDate().split("-");
-        int orderYear = Integer.parseInt(orderDateParts[0]);
-        int orderMonth = Integer.parseInt(orderDateParts[1]);
-        int orderDay = Integer.parseInt(orderDateParts[2]);
-        LocalDate orderDate = LocalDate.of(orderYear, orderMonth, orderDay);
-
-        //Convert the expiry date string to a LocalDate object and check if it is valid
-        String[] parts = expiryDate.split("/");
-        int month = Integer.parseInt(parts[0]);
-        int year = Integer.parseInt(parts[1]);
-        //if date is not possible because it is not a valid month or year
-        if (month < 1 || month > 12 || year < 0 || year > 99){
+        // read the order date as yyyymmdd
+        long orderDate = parseOrderDate(order.getOrderDate());
+
+        //if date is not possible because it is not a valid month
+        int expiryMonth = expiryMonthIndex(expiryDate);
+        if (expiryMonth < 0) {
             return OrderValidationCode.EXPIRY_DATE_INVALID;
         }
-
-        LocalDate expiryDateLocal;
-        // the year is in the 21st century
-        expiryDateLocal = LocalDate.of(year + 2000, month, 1);
-
-
-        expiryDateLocal = expiryDateLocal.with(TemporalAdjusters.lastDayOfMonth());
-        // if the card expired before the order was placed then it is invalid
-        if (expiryDateLocal.isBefore(orderDate)) {
+        // the card is valid until the last day of its expiry month, so it expired before the order was placed if that month is
+        // before the month of the order
+        if (expiryMonth < monthIndex(orderDate)) {
             return OrderValidationCode.EXPIRY_DATE_INVALID;
         }
 
 
         // check that the CVV is valid
-        if (order.getCreditCardInformation().getCvv() == null || !(order.getCreditCardInformation().getCvv().matches("\\d{3}")) || order.getCreditCardInformation().getCvv().length() != 3) {
+        if (!isCvvValid(card.getCvv())) {
             return OrderValidationCode.CVV_INVALID;
         }
 
-        boolean PizzaDefined;
-
         //check that pizzas are defined
         for (Pizza pizza : order.getPizzasInOrder()) {
-            PizzaDefined = false;
-            // Search through the restaurants to find the pizza
-            for (Restaurant restaurant : restaurants.getRestaurants()) {
-                // Search through the menu of the restaurant to see if the pizza exists
-                for (Pizza pizza1 : restaurant.getMenu()) {
-                    if (pizza1.getName().equals(pizza.getName())) {
-                        PizzaDefined = true;
-                        break;
-                    }
-                }
-            }
-            if (!PizzaDefined) {
+            if (catalogue.getMenuItem(pizza.getName()) == null) {
                 return OrderValidationCode.PIZZA_NOT_DEFINED;
             }
         }
@@ -165,66 +315,17 @@ public class OrderHandling {
             return OrderValidationCode.MAX_PIZZA_COUNT_EXCEEDED;
         }
 
-        // check for pizzas being ordered from different restaurants
-        String[] restaurantName = {};
-
-        //for each pizza, check where the pizza came from and compare to past pizzas
+        // check for pizzas being ordered from different restaurants, including a pizza on the menus of different restaurants
+        String restaurantName = catalogue.getMenuItem(order.getPizzasInOrder()[0].getName()).getRestaurant().getName();
         for (Pizza pizza : order.getPizzasInOrder()) {
-            for (Restaurant restaurant : restaurants.getRestaurants()) {
-                for (Pizza pizza1 : restaurant.getMenu()) {
-                    if (pizza1.getName().equals(pizza.getName())) {
-                        // Create a new array with one additional element
-                        String[] newArray = new String[restaurantName.length + 1];
-                        System.arraycopy(restaurantName, 0, newArray, 0, restaurantName.length);
-                        newArray[newArray.length - 1] = restaurant.getName();
-                        restaurantName = newArray;
-                        break;
-                    }
-                }
+            RestaurantCatalogue.MenuItem item = catalogue.getMenuItem(pizza.getName());
+            if (item.isOnSeveralRestaurants() || !item.getRestaurant().getName().equals(restaurantName)) {
+                return OrderValidationCode.PIZZA_FROM_MULTIPLE_RESTAURANTS;
             }
         }
-        //compares each restaurant to see if they are all the same
-        if (!allRestaurantsSame(restaurantName)) {
-            return OrderValidationCode.PIZZA_FROM_MULTIPLE_RESTAURANTS;
-        }
 
-        // check for the restaurant being closed
-        //check what day of the week the order was placed on
-        DayOfWeek orderDayOfWeek = orderDate.getDayOfWeek();
-        //get the days of the week that the restaurant is open
-        int restaurantIndex = 0;
-        for (int i = 0; i < restaurants.getRestaurants().length; i++) {
-            if (restaurants.getRestaurants()[i].getName().equals(restaurantName[0])) {
-                restaurantIndex = i; // Return the index if the name matches
-            }
-        }
-        // check that the restaurant is open
-        if (orderDayOfWeek == DayOfWeek.MONDAY && !restaurants.getRestaurants()[restaurantIndex].isOpen("MONDAY"))
-        {
-            return OrderValidationCode.RESTAURANT_CLOSED;
-        }
-        if (orderDayOfWeek == DayOfWeek.TUESDAY && !restaurants.getRestaurants()[restaurantIndex].isOpen("TUESDAY"))
-        {
-            return OrderValidationCode.RESTAURANT_CLOSED;
-        }
-        if (orderDayOfWeek == DayOfWeek.WEDNESDAY && !restaurants.getRestaurants()[restaurantIndex].isOpen("WEDNESDAY"))
-        {
-            return OrderValidationCode.RESTAURANT_CLOSED;
-        }
-        if (orderDayOfWeek == DayOfWeek.THURSDAY && !restaurants.getRestaurants()[restaurantIndex].isOpen("THURSDAY"))
-        {
-            return OrderValidationCode.RESTAURANT_CLOSED;
-        }
-        if (orderDayOfWeek == DayOfWeek.FRIDAY && !restaurants.getRestaurants()[restaurantIndex].isOpen("FRIDAY"))
-        {
-            return OrderValidationCode.RESTAURANT_CLOSED;
-        }
-        if (orderDayOfWeek == DayOfWeek.SATURDAY && !restaurants.getRestaurants()[restaurantIndex].isOpen("SATURDAY"))
-        {
-            return OrderValidationCode.RESTAURANT_CLOSED;
-        }
-        if (orderDayOfWeek == DayOfWeek.SUNDAY && !restaurants.getRestaurants()[restaurantIndex].isOpen("SUNDAY"))
-        {
+        // check that the restaurant is open on the day of the week the order was placed on
+        if (!catalogue.isOpen(restaurantName, dayOfWeek(orderDate))) {
             return OrderValidationCode.RESTAURANT_CLOSED;
         }
 
@@ -247,7 +348,7 @@ public class OrderHandling {
 
         // check that the price for each pizza is correct
         for (Pizza pizza : order.getPizzasInOrder()) {
-            int actualCost = restaurants.getRestaurants()[restaurantIndex].getPizzaPrice(pizza.getName());
+            int actualCost = catalogue.getPizzaPrice(restaurantName, pizza.getName());
             if (actualCost != pizza.getPriceInPence()) {
                 return OrderValidationCode.PRICE_FOR_PIZZA_INVALID;
             }
@@ -258,42 +359,14 @@ public class OrderHandling {
     }
 
 
-    /**
-     * checks all restaurant names in an array are the same
-     * @param array the array of restaurants to be checked
-     * @return true if all the restaurants are the same, false otherwise
-     */
-    private static boolean allRestaurantsSame(String[] array) {
-        if (array == null || array.length == 0) {
-            return true;
-        }
-
-        String firstElement = array[0];
-
-        for (String str : array) {
-            if (!str.equals(firstElement)) {
-                return false;
-            }
-        }
-
-        return true;
-    }
-
     /**
      * find the restaurant that the order is from
      * @param pizza the pizza to be checked
      * @return the restaurant that the pizza is from
      */
     public Restaurant findOrderRestaurant(Pizza pizza){
-            for (Restaurant restaurant : restaurants.getRestaurants()) {
-                for (Pizza pizza1 : restaurant.getMenu()) {
-                    if (pizza1.getName().equals(pizza.getName())) {
-                        // set the restaurant for the pizza. If it passes the check for multiple restaurants then it can be used later to identify the restaurant of the delivery
-                        return restaurant;
-                    }
-                }
-            }
-        return null;
+        // if the order passes the check for multiple restaurants then this is the restaurant of the delivery
+        return restaurants.getCatalogue().findRestaurant(pizza.getName());
     }
 
     /**
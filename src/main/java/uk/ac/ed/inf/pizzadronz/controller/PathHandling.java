@@ -3,20 +3,50 @@ package uk.ac.ed.inf.pizzadronz.controller;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import uk.ac.ed.inf.pizzadronz.constant.OrderStatus;
+import uk.ac.ed.inf.pizzadronz.constant.PlannerType;
 import uk.ac.ed.inf.pizzadronz.exception.InvalidBodyException;
+import uk.ac.ed.inf.pizzadronz.exception.PathNotFoundException;
+import uk.ac.ed.inf.pizzadronz.exception.SearchBudgetExceededException;
+import uk.ac.ed.inf.pizzadronz.model.OrderInfo.DailyBatchSummary;
+import uk.ac.ed.inf.pizzadronz.model.OrderInfo.DeliveryPathResult;
 import uk.ac.ed.inf.pizzadronz.model.OrderInfo.Order;
+import uk.ac.ed.inf.pizzadronz.model.OrderInfo.OrderStream;
+import uk.ac.ed.inf.pizzadronz.model.OrderInfo.OrderValidationResult;
 import uk.ac.ed.inf.pizzadronz.model.PathInfo.Restaurant;
 import uk.ac.ed.inf.pizzadronz.model.PathInfo.Restaurants;
 import uk.ac.ed.inf.pizzadronz.model.PathInfo.*;
 
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
 
+import static uk.ac.ed.inf.pizzadronz.constant.JsonMappers.PATH_WRITER;
 import static uk.ac.ed.inf.pizzadronz.constant.SystemConstants.*;
 import static uk.ac.ed.inf.pizzadronz.controller.OrderHandling.extractOrder;
 import static uk.ac.ed.inf.pizzadronz.model.GeoJson.GeoJsonStrings.*;
@@ -32,10 +62,78 @@ import static uk.ac.ed.inf.pizzadronz.model.PathInfo.AStar.*;
  */
 
 public class PathHandling {
-    private final OrderHandling orderHandling = new OrderHandling();
-    private final NoFlyZones noFlyZones = new NoFlyZones();
+    private final OrderHandling orderHandling;
+    private final NoFlyZones noFlyZones;
+    // one planner per resolution, these hold no state between searches so are shared by every request
+    private final PathPlanner largePlanner = new PathPlanner(DRONE_MOVE_DISTANCE_LARGE, DRONE_IS_CLOSE_DISTANCE_LARGE);
+    private final PathPlanner mediumPlanner = new PathPlanner(DRONE_MOVE_DISTANCE_MEDIUM, DRONE_IS_CLOSE_DISTANCE_MEDIUM);
+    private final PathPlanner smallPlanner = new PathPlanner(DRONE_MOVE_DISTANCE_SMALL, DRONE_IS_CLOSE_DISTANCE_SMALL);
+    private final RouteCache routeCache = new RouteCache(ROUTE_CACHE_CAPACITY);
+    // the searches kept for each location found with the incremental planner, the least recently used are dropped first
+    private final Map<LngLat, IncrementalRoute> incrementalRoutes = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<LngLat, IncrementalRoute> eldest) {
+            return size() > ROUTE_CACHE_CAPACITY;
+        }
+    };
+    // the budgets of searches currently running for requests, so they can all be stopped when the service shuts down
+    private final Set<SearchBudget> activeBudgets = ConcurrentHashMap.newKeySet();
+    // the most nodes and the longest time the searches for one path may take, unless the request asks for less time
+    @Value("${pizzadronz.search.max-expansions:" + SEARCH_MAX_EXPANSIONS + "}")
+    private long maxExpansions = SEARCH_MAX_EXPANSIONS;
+    @Value("${pizzadronz.search.timeout-ms:" + SEARCH_TIMEOUT_MS + "}")
+    private long timeoutMs = SEARCH_TIMEOUT_MS;
+    // where the daily batch reads its orders from and writes its files to
+    @Value("${pizzadronz.batch.order-source:" + ORDER_URL + "}")
+    private String batchOrderSource = ORDER_URL;
+    @Value("${pizzadronz.batch.output-dir:" + BATCH_OUTPUT_DIRECTORY + "}")
+    private String batchOutputDirectory = BATCH_OUTPUT_DIRECTORY;
+    // the daily batch has no client waiting on it, so its searches get their own time rather than one request's
+    private long batchTimeoutMs = BATCH_SEARCH_TIMEOUT_MS;
 
+    /**
+     * Makes a handler outside Spring, taking the restaurants and no-fly zones from the default reference data, which is fetched
+     * the first time it is needed
+     */
     public PathHandling() {
+        this(ReferenceDataService.startDefault());
+    }
+
+    /**
+     * Makes a handler taking the restaurants and no-fly zones from a reference data service
+     * @param referenceData the service to follow
+     */
+    @Autowired
+    public PathHandling(ReferenceDataService referenceData) {
+        orderHandling = new OrderHandling(referenceData);
+        noFlyZones = new NoFlyZones(referenceData);
+    }
+
+    /**
+     * set whether the orders validated before finding their paths must have card numbers passing the Luhn checksum
+     * @param luhnCheck true to check the checksum
+     */
+    @Value("${pizzadronz.validation.luhn-check:false}")
+    public void setLuhnCheck(boolean luhnCheck) {
+        orderHandling.setLuhnCheck(luhnCheck);
+    }
+
+    /**
+     * set where the bitmaps of moves that may be blocked are stored between restarts
+     * @param directory the directory to keep them in, or empty to only keep them in memory
+     */
+    @Value("${pizzadronz.blocked-moves.cache-dir:" + BLOCKED_MOVE_CACHE_DIRECTORY + "}")
+    public void setBlockedMoveCacheDirectory(String directory) {
+        noFlyZones.setBlockedMoveDirectory(directory.isEmpty() ? null : Paths.get(directory));
+    }
+
+    /**
+     * set how long the searches for every path of the daily batch may take together
+     * @param batchTimeoutMs the time in milliseconds
+     */
+    @Value("${pizzadronz.batch.timeout-ms:" + BATCH_SEARCH_TIMEOUT_MS + "}")
+    public void setBatchTimeoutMs(long batchTimeoutMs) {
+        this.batchTimeoutMs = batchTimeoutMs;
     }
 
     /**
@@ -44,23 +142,274 @@ public class PathHandling {
      * @return LngLat[] the path from the restaurant to AT in the form of the points making up the path
      * @throws JsonProcessingException
      */
+    public LngLat[] calcDeliveryPath(JsonNode JsonOrder) throws JsonProcessingException {
+        return calcDeliveryPath(JsonOrder, PlannerType.LATTICE);
+    }
+
+    /**
+     * Given an order, this method calculates the path from the restaurant to AT using the chosen planner.
+     * When epsilon is given the lattice search runs in anytime mode instead, returning a path found with the estimate inflated by
+     * epsilon and improving it until the budget runs out, and the bound it reached is reported in the X-Suboptimality-Bound header
+     * @param order the order to calculate the path for, bound straight from the request body
+     * @param planner the planner to find the path with
+     * @param epsilon how much the anytime search inflates its estimate by for the first path, at least 1, or null for a normal search
+     * @param budgetMs how long the anytime search may spend improving the path, in milliseconds
+     * @param deadlineMs how long the client will wait for the path, in milliseconds, or null to use the configured timeout
+     * @return the path from the restaurant to AT in the form of the points making up the path, already encoded as JSON
+     * @throws JsonProcessingException
+     */
     @PostMapping("/calcDeliveryPath")
-    public LngLat[] calcDeliveryPath(@RequestBody JsonNode JsonOrder) throws JsonProcessingException {
-        // Extract the order from the JsonNode input
-        Order order = extractOrder(JsonOrder);
+    public ResponseEntity<byte[]> calcDeliveryPathResponse(@RequestBody Order order,
+                                                           @RequestParam(value = "planner", defaultValue = "LATTICE") PlannerType planner,
+                                                           @RequestParam(value = "epsilon", required = false) Double epsilon,
+                                                           @RequestParam(value = "budgetMs", defaultValue = "50") long budgetMs,
+                                                           @RequestHeader(value = DEADLINE_HEADER, required = false) Long deadlineMs) throws JsonProcessingException {
+        SearchBudget budget = startBudget(deadlineMs);
+        try {
+            return calcDeliveryPathResponse(order, planner, epsilon, budgetMs, budget);
+        } finally {
+            activeBudgets.remove(budget);
+        }
+    }
 
-        //check that the input order is valid
-        if (orderHandling.validateOrder(JsonOrder).getOrderStatus().equals(OrderStatus.INVALID)) {
-            throw new InvalidBodyException("Invalid order");
+    /**
+     * Finds the path for an order as calcDeliveryPathResponse does, with every search spending from a budget
+     */
+    private ResponseEntity<byte[]> calcDeliveryPathResponse(Order order, PlannerType planner, Double epsilon, long budgetMs,
+                                                            SearchBudget budget) throws JsonProcessingException {
+        if (epsilon != null) {
+            if (!(epsilon >= 1)) {
+                throw new InvalidBodyException("epsilon must be at least 1");
+            }
+            if (budgetMs < 0) {
+                throw new InvalidBodyException("budgetMs must not be negative");
+            }
+            LngLat start = findOrderStart(order);
+            // a path already found by the full search is the shortest, so it beats anything the anytime search could return
+            CachedRoute cached = routeCache.getIfCurrent(start, PlannerType.LATTICE, noFlyZones);
+            if (cached != null) {
+                return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON)
+                        .header(SUBOPTIMALITY_BOUND_HEADER, formatBound(1)).body(cached.getPathJson());
+            }
+            AnytimePath path = getAnytimePath(start, epsilon, System.nanoTime() + budgetMs * 1_000_000, budget);
+            return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON)
+                    .header(SUBOPTIMALITY_BOUND_HEADER, formatBound(path.getBound()))
+                    .body(PATH_WRITER.writeValueAsBytes(path.getPath()));
         }
+        //get the path from the restaurant to AT, which is encoded when it is first found
+        CachedRoute route = getRoute(findOrderStart(order), planner, budget);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(route.getPathJson());
+    }
 
-        //establish the restaurant that the order is from
-        Restaurant orderRestaurant = orderHandling.findOrderRestaurant(order.getPizzasInOrder()[0]);
-        LngLat start = orderRestaurant.getLocation();
+    /**
+     * Given an array of orders, validates each of them and finds the path from the restaurant of every valid order to AT.
+     * The orders are validated in parallel and the valid ones grouped by restaurant, so the path from a restaurant is only found
+     * once however many orders share it, and the paths from different restaurants are found in parallel on the common fork-join pool
+     * @param JsonOrders the orders to calculate the paths for
+     * @param planner the planner to find the paths with
+     * @param deadlineMs how long the client will wait for every path, in milliseconds, or null to use the configured timeout
+     * @return the result for each order, in the same order as the orders were given
+     */
+    @PostMapping("/calcDeliveryPaths")
+    public List<DeliveryPathResult> calcDeliveryPaths(@RequestBody JsonNode JsonOrders,
+                                                      @RequestParam(value = "planner", defaultValue = "LATTICE") PlannerType planner,
+                                                      @RequestHeader(value = DEADLINE_HEADER, required = false) Long deadlineMs) {
+        if (JsonOrders == null || !JsonOrders.isArray()) {
+            throw new InvalidBodyException("Expected an array of orders");
+        }
+        long deadline = searchDeadline(deadlineMs);
+
+        // a malformed order fails the whole batch just as it would fail a single order
+        Order[] orders = new Order[JsonOrders.size()];
+        IntStream.range(0, orders.length).parallel().forEach(i -> {
+            try {
+                orders[i] = extractOrder(JsonOrders.get(i));
+            } catch (IllegalArgumentException e) {
+                throw new InvalidBodyException("Invalid order at index " + i);
+            }
+        });
+        return calcDeliveryPaths(orders, planner, deadline);
+    }
+
+    /**
+     * Given an array of orders, validates each of them and finds the path from the restaurant of every valid order to AT,
+     * as the calcDeliveryPaths endpoint does
+     * @param orders the orders to calculate the paths for
+     * @param planner the planner to find the paths with
+     * @param deadline the System.nanoTime after which the searches must stop
+     * @return the result for each order, in the same order as the orders were given
+     */
+    public List<DeliveryPathResult> calcDeliveryPaths(Order[] orders, PlannerType planner, long deadline) {
+        OrderValidationResult[] validations = new OrderValidationResult[orders.length];
+        IntStream.range(0, orders.length).parallel().forEach(i -> validations[i] = orderHandling.validateOrder(orders[i]));
+
+        // group the valid orders by the restaurant they are delivered from, keeping the restaurants in the order they were first seen
+        Map<LngLat, List<Integer>> ordersByStart = new LinkedHashMap<>();
+        for (int i = 0; i < orders.length; i++) {
+            if (validations[i].getOrderStatus() == OrderStatus.VALID) {
+                LngLat start = orderHandling.findOrderRestaurant(orders[i].getPizzasInOrder()[0]).getLocation();
+                ordersByStart.computeIfAbsent(start, orderStart -> new ArrayList<>()).add(i);
+            }
+        }
 
-        //get the path from the restaurant to AT
-        LngLat[] totalPath = getPath(start);
-        return totalPath;
+        // find each restaurant's path once, each search with its own budget as a budget is only spent from by one thread
+        List<LngLat> starts = new ArrayList<>(ordersByStart.keySet());
+        LngLat[][] paths = new LngLat[starts.size()][];
+        String[] errors = new String[starts.size()];
+        IntStream.range(0, starts.size()).parallel().forEach(i -> {
+            SearchBudget budget = startBudget(deadline);
+            try {
+                paths[i] = getRoute(starts.get(i), planner, budget).getPath();
+            } catch (JsonProcessingException | SearchBudgetExceededException | PathNotFoundException e) {
+                errors[i] = e.getMessage();
+            } finally {
+                activeBudgets.remove(budget);
+            }
+        });
+
+        DeliveryPathResult[] results = new DeliveryPathResult[orders.length];
+        for (int i = 0; i < starts.size(); i++) {
+            for (int orderIndex : ordersByStart.get(starts.get(i))) {
+                results[orderIndex] = new DeliveryPathResult(orders[orderIndex].getOrderNo(), validations[orderIndex].getOrderStatus(),
+                        validations[orderIndex].getOrderValidationCode(), paths[i], errors[i]);
+            }
+        }
+        for (int i = 0; i < orders.length; i++) {
+            if (results[i] == null) {
+                results[i] = new DeliveryPathResult(orders[i].getOrderNo(), validations[i].getOrderStatus(),
+                        validations[i].getOrderValidationCode(), null, null);
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Given a stream of newline-delimited orders, validates each one and finds the path from its restaurant to AT, writing the
+     * result for each as newline-delimited json as soon as it is ready, so a client can send any number of orders without either
+     * side holding them all. Paths come from the route cache, so orders from the same restaurant only search once, and each
+     * order's searches get the configured timeout from when the order is read
+     * @param orders the newline-delimited orders to calculate the paths for
+     * @param planner the planner to find the paths with
+     * @return the DeliveryPathResult for each order, one per line in the order the orders were sent
+     */
+    @PostMapping("/calcDeliveryPathStream")
+    public ResponseEntity<StreamingResponseBody> calcDeliveryPathStream(InputStream orders,
+                                                                        @RequestParam(value = "planner", defaultValue = "LATTICE") PlannerType planner) {
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON)
+                .body(OrderStream.stream(orders, order -> findDeliveryPath(order, planner)));
+    }
+
+    /**
+     * Runs the daily batch for a date, reading the orders from the configured order source and writing the flight paths, GeoJSON
+     * and validation summary to the configured output directory
+     * @param date the date to deliver the orders of, as YYYY-MM-DD
+     * @return the summary of the orders for the date
+     * @throws IOException if the orders cannot be read or the files cannot be written
+     */
+    @PostMapping("/admin/dailyBatch")
+    public DailyBatchSummary runDailyBatch(@RequestParam("date") String date) throws IOException {
+        LocalDate batchDate;
+        try {
+            batchDate = LocalDate.parse(date);
+        } catch (DateTimeParseException e) {
+            throw new InvalidBodyException("Invalid date");
+        }
+        return new DailyBatch(this).run(batchOrderSource, batchDate, Paths.get(batchOutputDirectory));
+    }
+
+    /**
+     * Validates an order and finds the path from its restaurant to AT if it is valid
+     * @param order the order to find the path for
+     * @param planner the planner to find the path with
+     * @return the result for the order, with the path only if the order is valid and a path was found
+     * @throws JsonProcessingException
+     */
+    private DeliveryPathResult findDeliveryPath(Order order, PlannerType planner) throws JsonProcessingException {
+        OrderValidationResult validation = orderHandling.validateOrder(order);
+        LngLat[] path = null;
+        String error = null;
+        if (validation.getOrderStatus() == OrderStatus.VALID) {
+            SearchBudget budget = startBudget(searchDeadline(null));
+            try {
+                path = getRoute(orderHandling.findOrderRestaurant(order.getPizzasInOrder()[0]).getLocation(), planner, budget).getPath();
+            } catch (SearchBudgetExceededException | PathNotFoundException e) {
+                error = e.getMessage();
+            } finally {
+                activeBudgets.remove(budget);
+            }
+        }
+        return new DeliveryPathResult(order.getOrderNo(), validation.getOrderStatus(), validation.getOrderValidationCode(), path, error);
+    }
+
+    /**
+     * Makes the budget for the searches of one request and records it as running
+     * @param deadlineMs how long the client will wait for the path, in milliseconds, or null to use the configured timeout
+     * @return the budget, which must be removed from the running budgets once the request is finished
+     */
+    private SearchBudget startBudget(Long deadlineMs) {
+        return startBudget(searchDeadline(deadlineMs));
+    }
+
+    /**
+     * Makes a budget for searches that must finish by a deadline and records it as running
+     * @param deadline the System.nanoTime after which the searches must stop
+     * @return the budget, which must be removed from the running budgets once the searches are finished
+     */
+    private SearchBudget startBudget(long deadline) {
+        SearchBudget budget = new SearchBudget(maxExpansions, deadline);
+        activeBudgets.add(budget);
+        return budget;
+    }
+
+    /**
+     * Works out when the searches for a request must stop
+     * @param deadlineMs how long the client will wait, in milliseconds, or null to use the configured timeout
+     * @return the System.nanoTime after which the searches must stop
+     */
+    long searchDeadline(Long deadlineMs) {
+        if (deadlineMs != null && deadlineMs < 0) {
+            throw new InvalidBodyException(DEADLINE_HEADER + " must not be negative");
+        }
+        long allowedMs = deadlineMs == null ? timeoutMs : Math.min(timeoutMs, deadlineMs);
+        return System.nanoTime() + allowedMs * 1_000_000;
+    }
+
+    /**
+     * Works out when the searches of the daily batch must stop
+     * @return the System.nanoTime after which the searches must stop
+     */
+    long batchDeadline() {
+        return System.nanoTime() + batchTimeoutMs * 1_000_000;
+    }
+
+    /**
+     * Stops every search still running for a request when the service shuts down, rather than waiting for them to finish
+     */
+    @PreDestroy
+    public void cancelSearches() {
+        for (SearchBudget budget : activeBudgets) {
+            budget.cancel();
+        }
+    }
+
+    /**
+     * Writes a suboptimality bound for the response header
+     * @param bound the bound
+     * @return the bound to three decimal places
+     */
+    private static String formatBound(double bound) {
+        return String.format(Locale.ROOT, "%.3f", bound);
+    }
+
+    /**
+     * Given an order, this method calculates the path from the restaurant to AT using the chosen planner.
+     * @param JsonOrder the order to calculate the path for
+     * @param planner the planner to find the path with
+     * @return LngLat[] the path from the restaurant to AT in the form of the points making up the path
+     * @throws JsonProcessingException
+     */
+    public LngLat[] calcDeliveryPath(JsonNode JsonOrder, PlannerType planner) throws JsonProcessingException {
+        return getRoute(findOrderStart(extractOrder(JsonOrder)), planner).getPath();
     }
 
     /**
@@ -69,25 +418,261 @@ public class PathHandling {
      * @return String the path from the restaurant to AT in the form of a GeoJson string
      * @throws IOException
      */
+    public String calcDeliveryPathAsGeoJson(JsonNode JsonOrder) throws IOException {
+        return calcDeliveryPathAsGeoJson(JsonOrder, PlannerType.LATTICE);
+    }
+
+    /**
+     * Given an order, this method calculates the path from the restaurant to AT using the chosen planner and returns it as a GeoJson string.
+     * @param JsonOrder the order to calculate the path for
+     * @param planner the planner to find the path with
+     * @return String the path from the restaurant to AT in the form of a GeoJson string
+     * @throws IOException
+     */
+    public String calcDeliveryPathAsGeoJson(JsonNode JsonOrder, PlannerType planner) throws IOException {
+        return calcDeliveryPathAsGeoJson(extractOrder(JsonOrder), planner, null);
+    }
+
+    /**
+     * Given an order, this method calculates the path from the restaurant to AT using the chosen planner and returns it as a GeoJson string.
+     * @param order the order to calculate the path for, bound straight from the request body
+     * @param planner the planner to find the path with
+     * @param deadlineMs how long the client will wait for the path, in milliseconds, or null to use the configured timeout
+     * @return String the path from the restaurant to AT in the form of a GeoJson string
+     * @throws IOException
+     */
     @PostMapping("/calcDeliveryPathAsGeoJson")
-    public String calcDeliveryPathAsGeoJson(@RequestBody JsonNode JsonOrder) throws IOException {
-        // Extract the order from the JsonNode input
-        Order order = extractOrder(JsonOrder);
+    public String calcDeliveryPathAsGeoJson(@RequestBody Order order,
+                                            @RequestParam(value = "planner", defaultValue = "LATTICE") PlannerType planner,
+                                            @RequestHeader(value = DEADLINE_HEADER, required = false) Long deadlineMs) throws IOException {
+        SearchBudget budget = startBudget(deadlineMs);
+        try {
+            //get the path from the restaurant to AT, which is converted to GeoJson when it is first found
+            return getRoute(findOrderStart(order), planner, budget).getGeoJson();
+        } finally {
+            activeBudgets.remove(budget);
+        }
+    }
 
+    /**
+     * Validates an order and finds the restaurant it is delivered from
+     * @param order the order to find the start of the path for
+     * @return the location of the restaurant the order is from
+     */
+    private LngLat findOrderStart(Order order) {
         //check that the input order is valid
-        if (orderHandling.validateOrder(JsonOrder).getOrderStatus().equals(OrderStatus.INVALID)) {
+        if (orderHandling.validateOrder(order).getOrderStatus().equals(OrderStatus.INVALID)) {
             throw new InvalidBodyException("Invalid order");
         }
 
         //establish the restaurant that the order is from
         Restaurant orderRestaurant = orderHandling.findOrderRestaurant(order.getPizzasInOrder()[0]);
-        LngLat start = orderRestaurant.getLocation();
+        return orderRestaurant.getLocation();
+    }
+
+    /**
+     * get the path from a restaurant to AT, from the route cache when it has an up to date path
+     * @param start the starting point of the path
+     * @param planner the planner to find the path with
+     * @return the cached path from the restaurant to AT
+     * @throws JsonProcessingException
+     */
+    public CachedRoute getRoute(LngLat start, PlannerType planner) throws JsonProcessingException {
+        return getRoute(start, planner, SearchBudget.unlimited());
+    }
+
+    /**
+     * get the path from a restaurant to AT, from the route cache when it has an up to date path
+     * @param start the starting point of the path
+     * @param planner the planner to find the path with
+     * @param budget the budget the searches spend from if the path has to be found
+     * @return the cached path from the restaurant to AT
+     * @throws JsonProcessingException
+     */
+    public CachedRoute getRoute(LngLat start, PlannerType planner, SearchBudget budget) throws JsonProcessingException {
+        return routeCache.get(start, planner, noFlyZones, (routeStart, routePlanner) -> getPath(routeStart, routePlanner, budget));
+    }
+
+    /**
+     * Once the service has started, find the path from every restaurant in parallel so the first orders are already cached
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void precomputeRoutes() {
+        Arrays.stream(orderHandling.getRestaurants().getRestaurants()).parallel().forEach(restaurant -> {
+            try {
+                getRoute(restaurant.getLocation(), PlannerType.LATTICE, new SearchBudget(maxExpansions, System.nanoTime() + timeoutMs * 1_000_000));
+            } catch (JsonProcessingException | SearchBudgetExceededException | PathNotFoundException e) {
+                // the path will be found again when an order from the restaurant asks for it
+            }
+        });
+    }
+
+    /**
+     * get the path from the restaurant to AT with the chosen planner
+     * @param start the starting point of the path
+     * @param planner the planner to find the path with
+     * @return the path from the restaurant to AT in the form of the points making up the path
+     * @throws JsonProcessingException
+     */
+    public LngLat[] getPath(LngLat start, PlannerType planner) throws JsonProcessingException {
+        return getPath(start, planner, SearchBudget.unlimited());
+    }
+
+    /**
+     * get the path from the restaurant to AT with the chosen planner, with every search spending from a budget
+     * @param start the starting point of the path
+     * @param planner the planner to find the path with
+     * @param budget the budget the searches spend from
+     * @return the path from the restaurant to AT in the form of the points making up the path
+     * @throws JsonProcessingException
+     * @throws SearchBudgetExceededException if the budget runs out before the path is found
+     * @throws PathNotFoundException if there is no path to AT
+     */
+    public LngLat[] getPath(LngLat start, PlannerType planner, SearchBudget budget) throws JsonProcessingException {
+        if (planner == PlannerType.VISIBILITY_GRAPH) {
+            LngLat[] path = getVisibilityGraphPath(start, budget);
+            if (path != null) {
+                return path;
+            }
+            // the graph could not produce a path that reaches AT, so fall back to the lattice search
+            return getLatticePath(start, PlannerType.LATTICE, budget);
+        }
+        if (planner == PlannerType.ANY_ANGLE) {
+            LngLat[] path = getAnyAnglePath(start, budget);
+            if (path != null) {
+                return path;
+            }
+            // the legs could not be flown to AT, so fall back to the lattice search
+            return getLatticePath(start, PlannerType.LATTICE, budget);
+        }
+        if (planner == PlannerType.HIERARCHICAL) {
+            LngLat[] path = getHierarchicalPath(start, budget);
+            if (path != null) {
+                return path;
+            }
+            // the start is outside the hierarchy or the route could not be flown to AT, so fall back to the lattice search
+            return getLatticePath(start, PlannerType.LATTICE, budget);
+        }
+        if (planner == PlannerType.INCREMENTAL) {
+            return getIncrementalPath(start, budget);
+        }
+        return getLatticePath(start, planner, budget);
+    }
 
-        //get the path from the restaurant to AT and convert it to GeoJson
-        LngLat[] totalPath = getPath(start);
-        return GeoJSONPath(totalPath);
+    /**
+     * get the path from the restaurant to AT through the lattice stages, keeping the searches for the restaurant so that when the
+     * no-fly zones change they only have to repair the part of the search the change affected
+     * @param start the starting point of the path
+     * @param budget the budget every stage spends from
+     * @return the path from the restaurant to AT in the form of the points making up the path
+     * @throws SearchBudgetExceededException if the budget runs out before the path is found
+     * @throws PathNotFoundException if a stage cannot reach close to AT
+     */
+    public LngLat[] getIncrementalPath(LngLat start, SearchBudget budget) {
+        IncrementalRoute route;
+        synchronized (incrementalRoutes) {
+            route = incrementalRoutes.computeIfAbsent(start,
+                    routeStart -> new IncrementalRoute(routeStart, APPLETON_TOWER, largePlanner, mediumPlanner, smallPlanner));
+        }
+        List<LngLat> path = route.plan(noFlyZones, budget);
+        if (path == null) {
+            throw new PathNotFoundException("No path to AT");
+        }
+        // split the path up into smaller segments to match the drones movement
+        return formatPath(path.toArray(new LngLat[0]));
     }
 
+    /**
+     * get the path from the restaurant to AT by following the shortest route through the visibility graph of the no-fly zones
+     * and flying each leg of it with legal drone moves
+     * @param start the starting point of the path
+     * @return the path from the restaurant to AT, or null if the route could not be flown to AT
+     * @throws JsonProcessingException
+     */
+    public LngLat[] getVisibilityGraphPath(LngLat start) throws JsonProcessingException {
+        return getVisibilityGraphPath(start, SearchBudget.unlimited());
+    }
+
+    /**
+     * get the path from the restaurant to AT through the visibility graph of the no-fly zones, with the route search and the
+     * flying of its legs spending from a budget
+     * @param start the starting point of the path
+     * @param budget the budget the route search and the flying of its legs spend from
+     * @return the path from the restaurant to AT, or null if the route could not be flown to AT
+     * @throws JsonProcessingException
+     * @throws SearchBudgetExceededException if the budget runs out before the path is found
+     */
+    public LngLat[] getVisibilityGraphPath(LngLat start, SearchBudget budget) throws JsonProcessingException {
+        List<LngLat> route = noFlyZones.getVisibilityGraph().route(start, budget);
+        if (route == null) {
+            return null;
+        }
+        List<LngLat> moves = PathRealiser.realise(route, noFlyZones, budget);
+        if (euclideanDistance(moves.get(moves.size() - 1), APPLETON_TOWER) >= DRONE_IS_CLOSE_DISTANCE_SMALL) {
+            return null;
+        }
+        return formatPath(moves.toArray(new LngLat[0]));
+    }
+
+    /**
+     * get the path from the restaurant to AT with one any-angle search over the medium lattice, flying each leg of it with legal drone moves
+     * @param start the starting point of the path
+     * @return the path from the restaurant to AT, or null if the route could not be flown to AT
+     * @throws JsonProcessingException
+     */
+    public LngLat[] getAnyAnglePath(LngLat start) throws JsonProcessingException {
+        return getAnyAnglePath(start, SearchBudget.unlimited());
+    }
+
+    /**
+     * get the path from the restaurant to AT with one any-angle search over the medium lattice, spending from a budget
+     * @param start the starting point of the path
+     * @param budget the budget the search and the flying of its legs spend from
+     * @return the path from the restaurant to AT, or null if the route could not be flown to AT
+     * @throws JsonProcessingException
+     */
+    public LngLat[] getAnyAnglePath(LngLat start, SearchBudget budget) throws JsonProcessingException {
+        List<LngLat> route = mediumPlanner.planAnyAngle(start, APPLETON_TOWER, noFlyZones, budget);
+        if (route == null) {
+            return null;
+        }
+        List<LngLat> moves = PathRealiser.realise(route, noFlyZones, budget);
+        if (euclideanDistance(moves.get(moves.size() - 1), APPLETON_TOWER) >= DRONE_IS_CLOSE_DISTANCE_SMALL) {
+            return null;
+        }
+        return formatPath(moves.toArray(new LngLat[0]));
+    }
+
+    /**
+     * get the path from the restaurant to AT through the cluster hierarchy of the no-fly zones, flying each leg of it with legal drone moves
+     * @param start the starting point of the path
+     * @return the path from the restaurant to AT, or null if the start is outside the hierarchy or the route could not be flown to AT
+     * @throws JsonProcessingException
+     */
+    public LngLat[] getHierarchicalPath(LngLat start) throws JsonProcessingException {
+        return getHierarchicalPath(start, SearchBudget.unlimited());
+    }
+
+    /**
+     * get the path from the restaurant to AT through the cluster hierarchy of the no-fly zones, with the route search and the
+     * flying of its legs spending from a budget
+     * @param start the starting point of the path
+     * @param budget the budget the route search and the flying of its legs spend from
+     * @return the path from the restaurant to AT, or null if the start is outside the hierarchy or the route could not be flown to AT
+     * @throws JsonProcessingException
+     * @throws SearchBudgetExceededException if the budget runs out before the path is found
+     */
+    public LngLat[] getHierarchicalPath(LngLat start, SearchBudget budget) throws JsonProcessingException {
+        List<LngLat> route = noFlyZones.getClusterHierarchy().route(start, budget);
+        if (route == null) {
+            return null;
+        }
+        List<LngLat> moves = PathRealiser.realise(route, noFlyZones, budget);
+        if (euclideanDistance(moves.get(moves.size() - 1), APPLETON_TOWER) >= DRONE_IS_CLOSE_DISTANCE_SMALL) {
+            return null;
+        }
+        return formatPath(moves.toArray(new LngLat[0]));
+    }
 
     /**
      * get the path from the restaurant to AT by combining the lower resolution path to a point close to AT and the high resolution path from that point to AT
@@ -97,10 +682,24 @@ public class PathHandling {
      * @throws JsonProcessingException
      */
     public LngLat[] getPath(LngLat start) throws JsonProcessingException {
+        return getLatticePath(start, PlannerType.LATTICE, SearchBudget.unlimited());
+    }
+
+    /**
+     * get the path from the restaurant to AT through the large, medium and small lattice stages, searching each stage the way
+     * the chosen planner does
+     * @param start the starting point of the path
+     * @param planner the planner choosing how each stage is searched
+     * @param budget the budget every stage spends from
+     * @return the path from the restaurant to AT in the form of the points making up the path
+     * @throws JsonProcessingException
+     * @throws PathNotFoundException if a stage cannot reach close to AT
+     */
+    private LngLat[] getLatticePath(LngLat start, PlannerType planner, SearchBudget budget) throws JsonProcessingException {
 
 
         //get the path from the restaurant to AT, starting with large drone steps until close to AT
-        List<LngLat> pathStart = astar(start, APPLETON_TOWER, noFlyZones, DRONE_MOVE_DISTANCE_LARGE, DRONE_IS_CLOSE_DISTANCE_LARGE);
+        List<LngLat> pathStart = planStage(largePlanner, start, planner, budget);
         //Convert to an array
         LngLat[] pathLngLatStart = new LngLat[pathStart.size()];
         for (int i = 0; i < pathStart.size(); i++) {
@@ -110,7 +709,7 @@ public class PathHandling {
 
         //get the path from the last large movement to AT, with medium drone steps until close to AT
         LngLat middle = new LngLat(pathLngLatStart[pathLngLatStart.length - 1].getLng(), pathLngLatStart[pathLngLatStart.length - 1].getLat());
-        List<LngLat> pathMiddle = astar(middle, APPLETON_TOWER,  noFlyZones, DRONE_MOVE_DISTANCE_MEDIUM,DRONE_IS_CLOSE_DISTANCE_MEDIUM);
+        List<LngLat> pathMiddle = planStage(mediumPlanner, middle, planner, budget);
         // convert pathMiddle to an array
         LngLat[] pathLngLatMiddle = new LngLat[pathMiddle.size()];
         for (int i = 0; i < pathMiddle.size(); i++) {
@@ -120,7 +719,7 @@ public class PathHandling {
 
         //get the path from the last large movement to AT, with medium drone steps until close to AT
         LngLat end = new LngLat(pathLngLatMiddle[pathLngLatMiddle.length - 1].getLng(), pathLngLatMiddle[pathLngLatMiddle.length - 1].getLat());
-        List<LngLat> pathEnd = astar(end, APPLETON_TOWER,  noFlyZones, DRONE_MOVE_DISTANCE_SMALL,DRONE_IS_CLOSE_DISTANCE_SMALL);
+        List<LngLat> pathEnd = planStage(smallPlanner, end, planner, budget);
         // convert pathEnd to an array
         LngLat[] pathLngLatEnd = new LngLat[pathEnd.size()];
         for (int i = 0; i < pathEnd.size(); i++) {
@@ -146,6 +745,77 @@ public class PathHandling {
     }
 
 
+    /**
+     * get the path from the restaurant to AT through the large, medium and small lattice stages, with each stage searched by the
+     * anytime planner. What is left of the time is shared equally between the stages still to be searched
+     * @param start the starting point of the path
+     * @param epsilon how much each stage inflates its estimate by for its first path, at least 1
+     * @param deadline the System.nanoTime after which the stages stop improving their paths
+     * @return the path from the restaurant to AT, with the largest bound of any stage
+     * @throws JsonProcessingException
+     */
+    public AnytimePath getAnytimePath(LngLat start, double epsilon, long deadline) throws JsonProcessingException {
+        return getAnytimePath(start, epsilon, deadline, SearchBudget.unlimited());
+    }
+
+    /**
+     * get the path from the restaurant to AT through the lattice stages searched by the anytime planner, spending from a budget.
+     * The first path of every stage has to be found within the budget, only improving it stops at the deadline
+     * @param start the starting point of the path
+     * @param epsilon how much each stage inflates its estimate by for its first path, at least 1
+     * @param deadline the System.nanoTime after which the stages stop improving their paths
+     * @param budget the budget every stage spends from
+     * @return the path from the restaurant to AT, with the largest bound of any stage
+     * @throws JsonProcessingException
+     * @throws PathNotFoundException if a stage cannot reach close to AT
+     */
+    public AnytimePath getAnytimePath(LngLat start, double epsilon, long deadline, SearchBudget budget) throws JsonProcessingException {
+        PathPlanner[] stagePlanners = {largePlanner, mediumPlanner, smallPlanner};
+        List<LngLat> totalPath = new ArrayList<>();
+        LngLat stageStart = start;
+        double bound = 1;
+        for (int i = 0; i < stagePlanners.length; i++) {
+            long now = System.nanoTime();
+            long stageDeadline = now + Math.max(0, deadline - now) / (stagePlanners.length - i);
+            AnytimePath stage = stagePlanners[i].planAnytime(stageStart, APPLETON_TOWER, noFlyZones, epsilon, stageDeadline, budget);
+            if (stage == null) {
+                throw new PathNotFoundException("No path to AT");
+            }
+            totalPath.addAll(stage.getPath());
+            bound = Math.max(bound, stage.getBound());
+            stageStart = stage.getPath().get(stage.getPath().size() - 1);
+        }
+        // split the path up into smaller segments to match the drones movement
+        return new AnytimePath(Arrays.asList(formatPath(totalPath.toArray(new LngLat[0]))), bound);
+    }
+
+
+    /**
+     * search one stage of the lattice path towards AT
+     * @param stagePlanner the planner for the step size of the stage
+     * @param start the start of the stage
+     * @param planner the planner choosing how the stage is searched
+     * @param budget the budget the stage spends from
+     * @return the path from the start of the stage to close to AT
+     * @throws JsonProcessingException
+     * @throws PathNotFoundException if the stage cannot reach close to AT
+     */
+    private List<LngLat> planStage(PathPlanner stagePlanner, LngLat start, PlannerType planner, SearchBudget budget) throws JsonProcessingException {
+        List<LngLat> path;
+        if (planner == PlannerType.BIDIRECTIONAL) {
+            path = stagePlanner.planBidirectional(start, APPLETON_TOWER, noFlyZones, budget);
+        } else if (planner == PlannerType.JUMP_POINT) {
+            path = stagePlanner.planJumping(start, APPLETON_TOWER, noFlyZones, budget);
+        } else {
+            path = stagePlanner.plan(start, APPLETON_TOWER, noFlyZones, budget);
+        }
+        if (path == null) {
+            throw new PathNotFoundException("No path to AT");
+        }
+        return path;
+    }
+
+
     /**
      * Get the no fly zones
      * @return the no fly zones
@@ -162,41 +832,30 @@ public class PathHandling {
      * @throws IOException
      */
     public boolean isInAnyRegion(LngLat location) throws IOException {
+        LngLatHandling.validPosition(location);
+        // the zones were prepared when they last changed, and each checks its own bounding box before its edges
+        return noFlyZones.isInAnyZone(location.getLng(), location.getLat());
+    }
 
-        //check for each noFLyZone
-        for (NamedRegion noFlyZone : noFlyZones.getNoFlyZones()) {
-            //For speed, check plausibility by checking if point is within the bounds of the region
-            if (location.getLng() >= noFlyZone.getMinLng() &&
-                    location.getLng() <= noFlyZone.getMaxLng() &&
-                    location.getLat() >= noFlyZone.getMinLat() &&
-                    location.getLat() <= noFlyZone.getMaxLat()) {
-
-                //check if the point is in the region
-                boolean inRegion = isInRegion(location, noFlyZone);
-
-                if (inRegion) {
-                    return true;
-                }
-            }
-
-        }
-        return false;
+    /**
+     * check if a point is in a region that has already been prepared, such as central or a no fly zone
+     * @param location the point to check
+     * @param region the prepared region to check for the point in
+     * @return true if the point is in the region, false otherwise
+     */
+    public static boolean isInRegion(LngLat location, PreparedRegion region) {
+        return region.contains(location);
     }
 
     /**
-     * check if a point is in a given region
+     * check if a point is in a given region, preparing the region for this one check
      * @param location the point to check
      * @param region the region to check for the point in
      * @return true if the point is in the region, false otherwise
      * @throws IOException
      */
     public static boolean isInRegion(LngLat location, NamedRegion region) throws IOException {
-        IsInRegionRequest request = new IsInRegionRequest(location, region);
-
-        LngLatHandling lngLatHandling = new LngLatHandling();
-
-        //check if the point is in the region using existing method
-        return lngLatHandling.isInRegion(request.toJson());
+        return isInRegion(location, new PreparedRegion(region));
     }
 
 
@@ -0,0 +1,191 @@
+package uk.ac.ed.inf.pizzadronz.controller;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import uk.ac.ed.inf.pizzadronz.exception.InvalidBodyException;
+
+import java.io.IOException;
+
+import static uk.ac.ed.inf.pizzadronz.constant.JsonMappers.MAPPER;
+
+/**
+ * Reads the bodies of the position endpoints straight from their json tokens into doubles, without building a tree or any LngLat.
+ *
+ * <p>The whole body is read before anything is checked, and the checks are made in the same order and with the same messages as
+ * checking the tree: a position that is missing, is not an object or lacks lng or lat is "Missing lng or lat", one whose lng or
+ * lat is not a number is "lng and lat must be numbers", and any other field of a position is ignored as converting it to a
+ * LngLat would. When a field appears more than once the last one counts, as it does in a tree, and other top level fields are
+ * ignored.</p>
+ */
+final class PositionRequestReader {
+
+    /**
+     * What was read for one position
+     */
+    static final class Position {
+        private boolean hasLng;
+        private boolean hasLat;
+        private boolean lngIsNumber;
+        private boolean latIsNumber;
+        private double lng;
+        private double lat;
+
+        /**
+         * Checks the position has a numeric lng and lat
+         * @throws InvalidBodyException if lng or lat is missing or not a number
+         */
+        void check() {
+            if (!hasLng || !hasLat) {
+                throw new InvalidBodyException("Missing lng or lat");
+            }
+            if (!lngIsNumber || !latIsNumber) {
+                throw new InvalidBodyException("lng and lat must be numbers");
+            }
+        }
+
+        double getLng() {
+            return lng;
+        }
+
+        double getLat() {
+            return lat;
+        }
+    }
+
+    // an empty position, standing in for one that is missing or is not an object
+    private static final Position MISSING = new Position();
+
+    private final String firstName;
+    private final String secondName;
+    private Position first = MISSING;
+    private Position second = MISSING;
+    private boolean hasAngle;
+    private boolean angleIsNumber;
+    private double angle;
+
+    /**
+     * Reads a body of two positions, as sent to /distanceTo and /isCloseTo
+     * @param body the request body
+     * @return the positions read from the body
+     */
+    static PositionRequestReader readPair(byte[] body) {
+        return new PositionRequestReader("position1", "position2").read(body);
+    }
+
+    /**
+     * Reads a body of a start position and an angle, as sent to /nextPosition
+     * @param body the request body
+     * @return the position and angle read from the body
+     */
+    static PositionRequestReader readNextPosition(byte[] body) {
+        return new PositionRequestReader("start", null).read(body);
+    }
+
+    private PositionRequestReader(String firstName, String secondName) {
+        this.firstName = firstName;
+        this.secondName = secondName;
+    }
+
+    /**
+     * Reads the first json value in the body, ignoring anything after it as reading it into a tree would
+     * @param body the request body
+     * @return this reader
+     * @throws InvalidBodyException if the body is not json
+     */
+    private PositionRequestReader read(byte[] body) {
+        try (JsonParser parser = MAPPER.getFactory().createParser(body)) {
+            JsonToken root = parser.nextToken();
+            if (root == null) {
+                throw new InvalidBodyException("Missing request body");
+            }
+            if (root != JsonToken.START_OBJECT) {
+                // a body that is not an object has none of the fields
+                parser.skipChildren();
+                return this;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if (name.equals(firstName)) {
+                    first = readPosition(parser, value);
+                } else if (name.equals(secondName)) {
+                    second = readPosition(parser, value);
+                } else if (secondName == null && name.equals("angle")) {
+                    hasAngle = true;
+                    angleIsNumber = value.isNumeric();
+                    if (angleIsNumber) {
+                        angle = parser.getDoubleValue();
+                    } else {
+                        parser.skipChildren();
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            return this;
+        } catch (JsonProcessingException e) {
+            throw new InvalidBodyException("Malformed JSON");
+        } catch (IOException e) {
+            // the body is already in memory, so reading it cannot fail other than by being malformed
+            throw new InvalidBodyException("Malformed JSON");
+        }
+    }
+
+    /**
+     * Reads one position, whose first token has just been read
+     * @param parser the parser, on the first token of the position
+     * @param value the first token of the position
+     * @return what was read for the position
+     * @throws IOException if the position is not json
+     */
+    private static Position readPosition(JsonParser parser, JsonToken value) throws IOException {
+        if (value != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return MISSING;
+        }
+        Position position = new Position();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken token = parser.nextToken();
+            if (field.equals("lng")) {
+                position.hasLng = true;
+                position.lngIsNumber = token.isNumeric();
+                if (position.lngIsNumber) {
+                    position.lng = parser.getDoubleValue();
+                }
+            } else if (field.equals("lat")) {
+                position.hasLat = true;
+                position.latIsNumber = token.isNumeric();
+                if (position.latIsNumber) {
+                    position.lat = parser.getDoubleValue();
+                }
+            }
+            parser.skipChildren();
+        }
+        return position;
+    }
+
+    Position getFirst() {
+        return first;
+    }
+
+    Position getSecond() {
+        return second;
+    }
+
+    /**
+     * Checks the angle is there and is a number
+     * @return the angle
+     * @throws InvalidBodyException if the angle is missing or not a number
+     */
+    double checkAngle() {
+        if (!hasAngle) {
+            throw new InvalidBodyException("Missing angle");
+        }
+        if (!angleIsNumber) {
+            throw new InvalidBodyException("angle must be numbers");
+        }
+        return angle;
+    }
+}
@@ -0,0 +1,155 @@
+package uk.ac.ed.inf.pizzadronz.controller;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.NullNode;
+import uk.ac.ed.inf.pizzadronz.exception.InvalidBodyException;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static uk.ac.ed.inf.pizzadronz.constant.JsonMappers.MAPPER;
+
+/**
+ * Reads the body of /isInRegionBatch, reading the arrays of longitudes and latitudes straight from their json tokens into doubles.
+ *
+ * <p>Only the region is read into a tree, as it is small and is checked the same way as for /isInRegion. The arrays of points,
+ * which can be thousands long, never become a node per coordinate. The whole body is read before anything is checked, and the
+ * checks are made with the same messages as checking the tree: an array that is missing or is not an array is "Missing lng or
+ * lat", and one with anything other than a number in it is "lng and lat must be numbers". When a field appears more than once
+ * the last one counts, as it does in a tree, and other top level fields are ignored.</p>
+ */
+final class RegionBatchRequestReader {
+
+    /**
+     * What was read for one array of coordinates
+     */
+    private static final class Coordinates {
+        private boolean isArray;
+        private boolean allNumbers = true;
+        private double[] values = new double[0];
+
+        /**
+         * Checks the coordinates were an array of numbers
+         * @return the coordinates
+         * @throws InvalidBodyException if they were missing, not an array or not all numbers
+         */
+        private double[] check() {
+            if (!isArray) {
+                throw new InvalidBodyException("Missing lng or lat");
+            }
+            if (!allNumbers) {
+                throw new InvalidBodyException("lng and lat must be numbers");
+            }
+            return values;
+        }
+    }
+
+    private JsonNode region;
+    private Coordinates lngs = new Coordinates();
+    private Coordinates lats = new Coordinates();
+
+    private RegionBatchRequestReader() {
+    }
+
+    /**
+     * Reads the first json value in the body, ignoring anything after it as reading it into a tree would
+     * @param body the request body
+     * @return the region and points read from the body
+     * @throws InvalidBodyException if the body is not json
+     */
+    static RegionBatchRequestReader read(byte[] body) {
+        RegionBatchRequestReader request = new RegionBatchRequestReader();
+        try (JsonParser parser = MAPPER.getFactory().createParser(body)) {
+            JsonToken root = parser.nextToken();
+            if (root == null) {
+                throw new InvalidBodyException("Missing request body");
+            }
+            if (root != JsonToken.START_OBJECT) {
+                // a body that is not an object has none of the fields
+                parser.skipChildren();
+                return request;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if (name.equals("region")) {
+                    JsonNode tree = parser.readValueAsTree();
+                    request.region = tree != null ? tree : NullNode.getInstance();
+                } else if (name.equals("lng")) {
+                    request.lngs = readCoordinates(parser, value);
+                } else if (name.equals("lat")) {
+                    request.lats = readCoordinates(parser, value);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            return request;
+        } catch (JsonProcessingException e) {
+            throw new InvalidBodyException("Malformed JSON");
+        } catch (IOException e) {
+            // the body is already in memory, so reading it cannot fail other than by being malformed
+            throw new InvalidBodyException("Malformed JSON");
+        }
+    }
+
+    /**
+     * Reads one array of coordinates, whose first token has just been read
+     * @param parser the parser, on the first token of the array
+     * @param value the first token of the array
+     * @return what was read for the array
+     * @throws IOException if the array is not json
+     */
+    private static Coordinates readCoordinates(JsonParser parser, JsonToken value) throws IOException {
+        Coordinates coordinates = new Coordinates();
+        if (value != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return coordinates;
+        }
+        coordinates.isArray = true;
+        double[] values = new double[64];
+        int count = 0;
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (token.isNumeric()) {
+                if (count == values.length) {
+                    values = Arrays.copyOf(values, count * 2);
+                }
+                values[count++] = parser.getDoubleValue();
+            } else {
+                coordinates.allNumbers = false;
+                parser.skipChildren();
+            }
+        }
+        coordinates.values = Arrays.copyOf(values, count);
+        return coordinates;
+    }
+
+    /**
+     * get the region as a tree, to be checked as it is for /isInRegion
+     * @return the region, or null if the body has none
+     */
+    JsonNode getRegion() {
+        return region;
+    }
+
+    /**
+     * Checks the longitudes are an array of numbers
+     * @return the longitudes
+     * @throws InvalidBodyException if they are missing, not an array or not all numbers
+     */
+    double[] checkLngs() {
+        return lngs.check();
+    }
+
+    /**
+     * Checks the latitudes are an array of numbers
+     * @return the latitudes
+     * @throws InvalidBodyException if they are missing, not an array or not all numbers
+     */
+    double[] checkLats() {
+        return lats.check();
+    }
+}
@@ -0,0 +1,8 @@
+package uk.ac.ed.inf.pizzadronz.exception;
+
+
+public class PathNotFoundException extends RuntimeException{
+    public PathNotFoundException(String message) {
+        super(message);
+    }
+}
@@ -22,4 +22,32 @@ public class PizzaDronzExceptionHandler {
 
         return new ResponseEntity<>(pizzaDronzException, HttpStatus.BAD_REQUEST);
     }
+
+    //a search that ran out of time or expansions may succeed later, so the service is only unavailable for now
+    @ExceptionHandler(value = {SearchBudgetExceededException.class})
+
+    public ResponseEntity<Object> handleSearchBudgetExceededException
+            (SearchBudgetExceededException ex) {
+        PizzaDronzException pizzaDronzException = new PizzaDronzException(
+                ex.getMessage(),
+                ex.getCause(),
+                HttpStatus.SERVICE_UNAVAILABLE
+        );
+
+        return new ResponseEntity<>(pizzaDronzException, HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    //the order is valid but no path reaches AT from its restaurant
+    @ExceptionHandler(value = {PathNotFoundException.class})
+
+    public ResponseEntity<Object> handlePathNotFoundException
+            (PathNotFoundException ex) {
+        PizzaDronzException pizzaDronzException = new PizzaDronzException(
+                ex.getMessage(),
+                ex.getCause(),
+                HttpStatus.UNPROCESSABLE_ENTITY
+        );
+
+        return new ResponseEntity<>(pizzaDronzException, HttpStatus.UNPROCESSABLE_ENTITY);
+    }
 }
@@ -0,0 +1,8 @@
+package uk.ac.ed.inf.pizzadronz.exception;
+
+
+public class SearchBudgetExceededException extends RuntimeException{
+    public SearchBudgetExceededException(String message) {
+        super(message);
+    }
+}
@@ -1,13 +1,15 @@
 package uk.ac.ed.inf.pizzadronz.model.GeoJson;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import uk.ac.ed.inf.pizzadronz.model.PathInfo.LngLat;
 import uk.ac.ed.inf.pizzadronz.model.PathInfo.NamedRegion;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+
+import static uk.ac.ed.inf.pizzadronz.constant.JsonMappers.GEOJSON_WRITER;
 
 
 /**
@@ -41,8 +43,39 @@ public class GeoJsonStrings {
 
         GeoJson geoJson = new GeoJson("FeatureCollection", List.of(feature));
 
-        ObjectMapper objectMapper = new ObjectMapper();
-        return objectMapper.writeValueAsString(geoJson);
+        return GEOJSON_WRITER.writeValueAsString(geoJson);
+    }
+
+
+
+    /**
+     * Convert paths to a GeoJSON string, with one feature per path named by its orderNo property
+     * @param orderNos the order each path delivers
+     * @param paths to convert to GeoJSON
+     * @return the GeoJSON string of the paths
+     * @throws JsonProcessingException
+     */
+    public static String GeoJSONOrderPaths(String[] orderNos, LngLat[][] paths) throws JsonProcessingException {
+        List<Feature> features = new ArrayList<>();
+
+        for (int i = 0; i < paths.length; i++) {
+            List<List<Double>> lineCoordinates = new ArrayList<>();
+
+            for (LngLat lngLat : paths[i]) {
+                List<Double> coordinatePair = new ArrayList<>();
+                coordinatePair.add(lngLat.getLng());
+                coordinatePair.add(lngLat.getLat());
+                lineCoordinates.add(coordinatePair);
+            }
+
+            Line geometry = new Line("LineString", lineCoordinates);
+
+            features.add(new Feature("Feature", geometry, Map.of("orderNo", orderNos[i])));
+        }
+
+        GeoJson geoJson = new GeoJson("FeatureCollection", features);
+
+        return GEOJSON_WRITER.writeValueAsString(geoJson);
     }
 
 
@@ -95,8 +128,7 @@ public class GeoJsonStrings {
 
         GeoJson geoJson = new GeoJson("FeatureCollection", features);
 
-        ObjectMapper objectMapper = new ObjectMapper();
-        return objectMapper.writeValueAsString(geoJson);
+        return GEOJSON_WRITER.writeValueAsString(geoJson);
     }
 
 
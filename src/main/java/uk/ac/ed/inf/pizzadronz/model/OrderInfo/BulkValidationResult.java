@@ -0,0 +1,36 @@
+package uk.ac.ed.inf.pizzadronz.model.OrderInfo;
+
+import uk.ac.ed.inf.pizzadronz.constant.OrderValidationCode;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Represents the validation of many orders at once.
+ * <p>The order numbers and results are in the same order as the orders were validated, and the validation codes count how many
+ * orders got each code.</p>
+ */
+public class BulkValidationResult {
+    private final List<String> orderNos;
+    private final List<OrderValidationResult> results;
+    private final Map<OrderValidationCode, Integer> validationCodes;
+
+
+    public BulkValidationResult(List<String> orderNos, List<OrderValidationResult> results, Map<OrderValidationCode, Integer> validationCodes) {
+        this.orderNos = orderNos;
+        this.results = results;
+        this.validationCodes = validationCodes;
+    }
+
+    public List<String> getOrderNos() {
+        return orderNos;
+    }
+
+    public List<OrderValidationResult> getResults() {
+        return results;
+    }
+
+    public Map<OrderValidationCode, Integer> getValidationCodes() {
+        return validationCodes;
+    }
+}
@@ -0,0 +1,55 @@
+package uk.ac.ed.inf.pizzadronz.model.OrderInfo;
+
+import uk.ac.ed.inf.pizzadronz.constant.OrderValidationCode;
+
+import java.util.Map;
+
+/**
+ * Represents the outcome of running the daily batch for one date.
+ * <p>Counts the orders for the date, how many were valid and how many of those got a path, and how many orders got each
+ * validation code. Each valid order that no path was found for is listed by its order number with the reason, so a search that
+ * ran out of time or could not reach AT is seen rather than only lowering the number delivered.</p>
+ */
+public class DailyBatchSummary {
+    private final String date;
+    private final int orderCount;
+    private final int validCount;
+    private final int deliveredCount;
+    private final Map<OrderValidationCode, Integer> validationCodes;
+    private final Map<String, String> routingErrors;
+
+
+    public DailyBatchSummary(String date, int orderCount, int validCount, int deliveredCount, Map<OrderValidationCode, Integer> validationCodes,
+                             Map<String, String> routingErrors) {
+        this.date = date;
+        this.orderCount = orderCount;
+        this.validCount = validCount;
+        this.deliveredCount = deliveredCount;
+        this.validationCodes = validationCodes;
+        this.routingErrors = routingErrors;
+    }
+
+    public String getDate() {
+        return date;
+    }
+
+    public int getOrderCount() {
+        return orderCount;
+    }
+
+    public int getValidCount() {
+        return validCount;
+    }
+
+    public int getDeliveredCount() {
+        return deliveredCount;
+    }
+
+    public Map<OrderValidationCode, Integer> getValidationCodes() {
+        return validationCodes;
+    }
+
+    public Map<String, String> getRoutingErrors() {
+        return routingErrors;
+    }
+}
@@ -0,0 +1,48 @@
+package uk.ac.ed.inf.pizzadronz.model.OrderInfo;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import uk.ac.ed.inf.pizzadronz.constant.OrderStatus;
+import uk.ac.ed.inf.pizzadronz.constant.OrderValidationCode;
+import uk.ac.ed.inf.pizzadronz.model.PathInfo.LngLat;
+
+/**
+ * Represents the result for one order of a batch of delivery paths.
+ * <p>The path is only given for valid orders. If no path could be found for a valid order the error says why instead.</p>
+ */
+public class DeliveryPathResult {
+    private final String orderNo;
+    private final OrderStatus orderStatus;
+    private final OrderValidationCode orderValidationCode;
+    private final LngLat[] path;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private final String error;
+
+
+    public DeliveryPathResult(String orderNo, OrderStatus orderStatus, OrderValidationCode orderValidationCode, LngLat[] path, String error) {
+        this.orderNo = orderNo;
+        this.orderStatus = orderStatus;
+        this.orderValidationCode = orderValidationCode;
+        this.path = path;
+        this.error = error;
+    }
+
+    public String getOrderNo() {
+        return orderNo;
+    }
+
+    public OrderStatus getOrderStatus() {
+        return orderStatus;
+    }
+
+    public OrderValidationCode getOrderValidationCode() {
+        return orderValidationCode;
+    }
+
+    public LngLat[] getPath() {
+        return path;
+    }
+
+    public String getError() {
+        return error;
+    }
+}
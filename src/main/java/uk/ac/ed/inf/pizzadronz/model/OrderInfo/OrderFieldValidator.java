@@ -0,0 +1,172 @@
+package uk.ac.ed.inf.pizzadronz.model.OrderInfo;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.Year;
+
+
+/**
+ * Checks the card details and date of an order by reading their characters directly.
+ * <p>Each check looks at every character once and allocates nothing, where matching regular expressions, splitting the strings
+ * and building dates would allocate on every order. The answers are the same as those checks gave. An order date is held as a
+ * long of the form yyyymmdd once it has been read, so the expiry and day of the week can be worked out from it without a
+ * LocalDate.</p>
+ */
+public final class OrderFieldValidator {
+    // Sakamoto's offsets for the first day of each month, used to find the day of the week
+    private static final int[] MONTH_OFFSETS = {0, 3, 2, 5, 0, 3, 5, 1, 4, 6, 2, 4};
+
+    private OrderFieldValidator() {
+    }
+
+    /**
+     * Checks a credit card number is sixteen digits, and optionally that it passes the Luhn checksum
+     * @param cardNumber the card number
+     * @param luhnCheck whether the number must also pass the Luhn checksum
+     * @return true if the card number is valid
+     */
+    public static boolean isCardNumberValid(String cardNumber, boolean luhnCheck) {
+        if (cardNumber == null || cardNumber.length() != 16) {
+            return false;
+        }
+        int sum = 0;
+        for (int i = 0; i < 16; i++) {
+            int digit = cardNumber.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return false;
+            }
+            // counting from the right, every second digit is doubled, which for sixteen digits is every even index
+            if (i % 2 == 0) {
+                digit *= 2;
+                if (digit > 9) {
+                    digit -= 9;
+                }
+            }
+            sum += digit;
+        }
+        return !luhnCheck || sum % 10 == 0;
+    }
+
+    /**
+     * Checks a CVV is three digits
+     * @param cvv the CVV
+     * @return true if the CVV is valid
+     */
+    public static boolean isCvvValid(String cvv) {
+        return cvv != null && cvv.length() == 3 && isDigit(cvv, 0) && isDigit(cvv, 1) && isDigit(cvv, 2);
+    }
+
+    /**
+     * Checks an expiry date is a month and year of one or two digits each, separated by a slash, and not both one digit
+     * @param expiry the expiry date
+     * @return true if the expiry date has the right form
+     */
+    public static boolean isExpiryFormatValid(String expiry) {
+        if (expiry == null) {
+            return false;
+        }
+        if (expiry.length() == 5) {
+            return isDigit(expiry, 0) && isDigit(expiry, 1) && expiry.charAt(2) == '/' && isDigit(expiry, 3) && isDigit(expiry, 4);
+        }
+        if (expiry.length() == 4) {
+            int slash = expiry.indexOf('/');
+            return (slash == 1 || slash == 2) && isDigit(expiry, 0) && isDigit(expiry, 3) && isDigit(expiry, slash == 1 ? 2 : 1);
+        }
+        return false;
+    }
+
+    /**
+     * Finds the month a card expires at the end of, counted from January 2000.
+     * The expiry date must already have the right form
+     * @param expiry the expiry date
+     * @return the number of months from January 2000 to the expiry month, or -1 if the month is not from 1 to 12
+     */
+    public static int expiryMonthIndex(String expiry) {
+        int slash = expiry.indexOf('/');
+        int month = readNumber(expiry, 0, slash);
+        int year = readNumber(expiry, slash + 1, expiry.length());
+        if (month < 1 || month > 12) {
+            return -1;
+        }
+        return year * 12 + month - 1;
+    }
+
+    /**
+     * Reads an order date of the form yyyy-mm-dd. Any other form is read by splitting it on dashes, so it is accepted or rejected
+     * just as before
+     * @param orderDate the order date
+     * @return the date as a long of the form yyyymmdd
+     * @throws java.time.DateTimeException if the date does not exist
+     * @throws NumberFormatException if a part of the date is not a number
+     */
+    public static long parseOrderDate(String orderDate) {
+        if (orderDate.length() == 10 && orderDate.charAt(4) == '-' && orderDate.charAt(7) == '-'
+                && isDigit(orderDate, 0) && isDigit(orderDate, 1) && isDigit(orderDate, 2) && isDigit(orderDate, 3)
+                && isDigit(orderDate, 5) && isDigit(orderDate, 6) && isDigit(orderDate, 8) && isDigit(orderDate, 9)) {
+            int year = readNumber(orderDate, 0, 4);
+            int month = readNumber(orderDate, 5, 7);
+            int day = readNumber(orderDate, 8, 10);
+            if (month >= 1 && month <= 12 && day >= 1 && day <= Month.of(month).length(Year.isLeap(year))) {
+                return packDate(year, month, day);
+            }
+        }
+        // not a simple date, or not a real one, so fall back to the full parse and its exceptions
+        String[] orderDateParts = orderDate.split("-");
+        LocalDate date = LocalDate.of(Integer.parseInt(orderDateParts[0]), Integer.parseInt(orderDateParts[1]), Integer.parseInt(orderDateParts[2]));
+        return packDate(date.getYear(), date.getMonthValue(), date.getDayOfMonth());
+    }
+
+    /**
+     * Finds the month of an order date, counted from January 2000
+     * @param orderDate the date as a long of the form yyyymmdd
+     * @return the number of months from January 2000 to the month of the date, negative before 2000
+     */
+    public static long monthIndex(long orderDate) {
+        return (orderDate / 10000 - 2000) * 12 + (orderDate / 100 % 100) - 1;
+    }
+
+    /**
+     * Finds the day of the week of an order date
+     * @param orderDate the date as a long of the form yyyymmdd
+     * @return the day of the week
+     */
+    public static DayOfWeek dayOfWeek(long orderDate) {
+        long year = orderDate / 10000;
+        int month = (int) (orderDate / 100 % 100);
+        int day = (int) (orderDate % 100);
+        if (month < 3) {
+            year--;
+        }
+        // 0 is Sunday
+        long sundayBased = Math.floorMod(year + Math.floorDiv(year, 4) - Math.floorDiv(year, 100) + Math.floorDiv(year, 400)
+                + MONTH_OFFSETS[month - 1] + day, 7);
+        return DayOfWeek.of((int) ((sundayBased + 6) % 7) + 1);
+    }
+
+    /**
+     * Checks the character at an index is an ASCII digit
+     */
+    private static boolean isDigit(String text, int index) {
+        char c = text.charAt(index);
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * Reads the digits between two indexes as a number
+     */
+    private static int readNumber(String text, int start, int end) {
+        int number = 0;
+        for (int i = start; i < end; i++) {
+            number = number * 10 + text.charAt(i) - '0';
+        }
+        return number;
+    }
+
+    /**
+     * Packs a date into a long of the form yyyymmdd
+     */
+    private static long packDate(long year, int month, int day) {
+        return year * 10000 + month * 100 + day;
+    }
+}
@@ -0,0 +1,55 @@
+package uk.ac.ed.inf.pizzadronz.model.OrderInfo;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import static uk.ac.ed.inf.pizzadronz.constant.JsonMappers.MAPPER;
+import static uk.ac.ed.inf.pizzadronz.constant.JsonMappers.ORDER_READER;
+
+
+/**
+ * Turns a stream of newline-delimited JSON orders into a stream of newline-delimited JSON results.
+ * <p>Orders are read one at a time as they arrive and each result is written as soon as it is ready, so only one order is held in
+ * memory however many are sent. Reading and writing both block, so a client that stops reading its results stops the service
+ * reading any more of its orders. The output is flushed whenever the orders received so far have all been answered, so the client
+ * sees its results while it is still sending.</p>
+ */
+public final class OrderStream {
+
+    /**
+     * Works out the result for one order
+     */
+    @FunctionalInterface
+    public interface OrderProcessor {
+        Object process(Order order) throws IOException;
+    }
+
+    private OrderStream() {
+    }
+
+    /**
+     * Makes the response body that answers each order in a request body as it is read.
+     * An order that is not valid JSON, or cannot be read as an order, ends the stream, as the orders after it cannot be found reliably
+     * @param orders the request body of newline-delimited orders
+     * @param processor works out the result for each order
+     * @return the response body writing one result per line, in the order the orders were sent
+     */
+    public static StreamingResponseBody stream(InputStream orders, OrderProcessor processor) {
+        return output -> {
+            try (MappingIterator<Order> iterator = ORDER_READER.readValues(orders)) {
+                while (iterator.hasNextValue()) {
+                    output.write(MAPPER.writeValueAsBytes(processor.process(iterator.nextValue())));
+                    output.write('\n');
+                    // nothing more has arrived yet, so send what has been answered rather than wait for more orders
+                    if (orders.available() == 0) {
+                        output.flush();
+                    }
+                }
+            }
+            output.flush();
+        };
+    }
+}
@@ -6,7 +6,6 @@ import uk.ac.ed.inf.pizzadronz.controller.LngLatHandling;
 import java.util.*;
 
 import static uk.ac.ed.inf.pizzadronz.constant.SystemConstants.DRONE_MOVE_DISTANCE;
-import static uk.ac.ed.inf.pizzadronz.controller.LngLatHandling.IsInRegionHelper;
 
 
 /**
@@ -15,37 +14,10 @@ import static uk.ac.ed.inf.pizzadronz.controller.LngLatHandling.IsInRegionHelper
  */
 public class AStar {
 
-    private static double[][] directions;
-
     public AStar() {
 
     }
 
-    /** Changes the size of the segments of the path generated. This is for efficiency,
-     * the drone only becomes more accurate in its path as it gets closer to the destination
-     * @param size the size of the path segments
-     */
-    public static void setSegmentSize(double size) {
-        directions = new double[][]{
-                {0, size},      // N
-                {Math.toRadians(22.5), size},  // NNE
-                {Math.toRadians(45), size},    // NE
-                {Math.toRadians(67.5), size},  // ENE
-                {Math.toRadians(90), size},    // E
-                {Math.toRadians(112.5), size}, // ESE
-                {Math.toRadians(135), size},   // SE
-                {Math.toRadians(157.5), size}, // SSE
-                {Math.toRadians(180), size},   // S
-                {Math.toRadians(202.5), size}, // SSW
-                {Math.toRadians(225), size},   // SW
-                {Math.toRadians(247.5), size}, // WSW
-                {Math.toRadians(270), size},   // W
-                {Math.toRadians(292.5), size}, // WNW
-                {Math.toRadians(315), size},   // NW
-                {Math.toRadians(337.5), size}
-        };
-    }
-
     /**
      * Euclidean distance estimates the cost of the cheapest path to the goal, aka heuristic
      * @param a the first location
@@ -56,6 +28,40 @@ public class AStar {
         return Math.sqrt(Math.pow(a.getLng() - b.getLng(), 2) + Math.pow(a.getLat() - b.getLat(), 2));
     }
 
+    /**
+     * Estimates the cost of the cheapest path to the goal, using the precomputed distance field when there is one
+     * @param location the location to estimate from
+     * @param goal the goal location
+     * @param field the distance field towards the goal, or null to use the euclidean distance
+     * @return the estimated cost to the goal
+     */
+    public static double heuristic(LngLat location, LngLat goal, GoalDistanceField field) {
+        if (field == null) {
+            return euclideanDistance(location, goal);
+        }
+        return field.estimate(location);
+    }
+
+    /**
+     * Checks if a compass move is obstructed by any no-fly zones, looking the move up in the bitmap of moves that may be blocked
+     * and only testing it exactly when it starts close to a zone
+     * @param current the start of the move
+     * @param neighbour the node that the algorithm is considering moving to
+     * @param direction the index of the compass move taken to the neighbour
+     * @param blockedMoves the bitmap of moves that may be blocked for this step size
+     * @param noFlyZones the no-fly zones
+     * @param pathSize  the size of the path segment
+     * @return true if the move is obstructed, false otherwise
+     * @throws JsonProcessingException
+     */
+    public static boolean isObstacle(LngLat current, LngLat neighbour, int direction, BlockedMoveMap blockedMoves,
+                                     NoFlyZones noFlyZones, double pathSize) throws JsonProcessingException {
+        if (!blockedMoves.mayBeBlocked(current.getLng(), current.getLat(), direction)) {
+            return false;
+        }
+        return isObstacle(current, neighbour, noFlyZones, pathSize);
+    }
+
     /**
      * Checks if a path is obstructed by any no-fly zones
      * @param current the start of the path segment
@@ -66,14 +72,15 @@ public class AStar {
      * @throws JsonProcessingException
      */
     public static boolean isObstacle(LngLat current, LngLat neighbour, NoFlyZones noFlyZones, double pathSize) throws JsonProcessingException {
-        // Creates a segment between the two locations and checks if it intersects with any no-fly zone
-        LngLat[] pathSegment = {current, neighbour};
-        if (doesPathIntersectWithAnyRegion(pathSegment, noFlyZones.getNoFlyZones(), pathSize)){
+        // checks if the segment between the two locations intersects with any no-fly zone, only looking at the edges near it
+        if (noFlyZones.getEdgeIndex().intersects(current, neighbour)){
             return true;
         }
 
+        LngLat[] pathSegment = {current, neighbour};
+
         // check if the path is leaving central
-        if (isPathLeavingCentralRegion(pathSegment, noFlyZones.getCentral(), pathSize)) {
+        if (isPathLeavingCentralRegion(pathSegment, noFlyZones.getPreparedCentral(), pathSize)) {
             return false;
         }
 
@@ -84,28 +91,25 @@ public class AStar {
     /**
      * Check if the path will leave central if it goes to this neighbour
      * @param pathSegment the segment of the path to check
-     * @param centralRegion the central region
+     * @param centralRegion the central region, prepared once so each check does not have to rebuild it
      * @param pathSize      the size of the path segment
      * @return true if the path is leaving central, false otherwise
-     * @throws JsonProcessingException
      */
-    private static boolean isPathLeavingCentralRegion(LngLat[] pathSegment, NamedRegion centralRegion, double pathSize) throws JsonProcessingException {
+    private static boolean isPathLeavingCentralRegion(LngLat[] pathSegment, PreparedRegion centralRegion, double pathSize) {
 
         if (!pointCloseToRegion(pathSegment[0], centralRegion, pathSize)) {
             return false; // Start point is not close enough to the central region for it to be possible for  the start point to be in central
         }
 
         else{
-            IsInRegionRequest request = new IsInRegionRequest(pathSegment[0], centralRegion);
-            boolean inRegion = IsInRegionHelper(request);
+            boolean inRegion = centralRegion.contains(pathSegment[0]);
 
             if (!inRegion) { // if the start point is not in the central region, there is no risk that the drone can move out of central
                 return false;
             }
 
             // check if end of the path is outside central
-            request = new IsInRegionRequest(pathSegment[1], centralRegion);
-            inRegion = IsInRegionHelper(request);
+            inRegion = centralRegion.contains(pathSegment[1]);
             if (inRegion) { // the end point is in central, so the drone is not leaving central
                 return false;
             }
@@ -115,7 +119,7 @@ public class AStar {
     }
 
     /**
-     * A* algorithm
+     * A* algorithm, using a planner made for this one search
      * @param start the start location
      * @param goal the goal location
      * @param noFlyZones the no-fly zones
@@ -124,73 +128,37 @@ public class AStar {
      * @return the path from start to goal
       */
     public static List<LngLat> astar(LngLat start, LngLat goal, NoFlyZones noFlyZones, double movement_size, double close_to_AT) throws JsonProcessingException {
-        // sets the size of each segment of the path
-        setSegmentSize(movement_size);
-
-        // Priority queue for open list to select nodes for exploration
-        PriorityQueue<AStarNode> openList = new PriorityQueue<>(Comparator.comparingDouble(n -> n.f));
-
-        // for closed list to keep track of explored nodes
-        Set<String> closedList = new HashSet<>();
-
-        // Add initial node to the open list
-        openList.add(new AStarNode(start, 0, euclideanDistance(start, goal)));
-
-        // Map to reconstruct the path
-        Map<String, LngLat> cameFrom = new HashMap<>();
-        Map<String, Double> gCost = new HashMap<>();
-        gCost.put(start.toString(), 0.0);
-
-        while (!openList.isEmpty()) {
-            // pops the node with the lowest f
-            AStarNode currentNode = openList.poll();
-            LngLat current = currentNode.position;
-
-            // If path gets close to AT, reconstruct the path
-            if (euclideanDistance(current, goal) <= close_to_AT) {
-                List<LngLat> path = new ArrayList<>();
-                while (cameFrom.containsKey(current.toString())) {
-                    path.add(current);
-                    current = cameFrom.get(current.toString());
-                }
-                path.add(start);
-                Collections.reverse(path);
-                return path;
-            }
-
-            closedList.add(current.toString());
-
-            // Explore neighbors
-            for (double[] direction : directions) {
-                double angle = direction[0];
-                double stepSize = direction[1];
-
-                // Calculate the neighbor coords
-                double dx = stepSize * Math.cos(angle);
-                double dy = stepSize * Math.sin(angle);
-                LngLat neighbour = new LngLat(current.getLng() + dx, current.getLat() + dy );
-
-                // Skip neighbors that are obstacles or already in closed list
-                if (isObstacle(current, neighbour, noFlyZones, movement_size) || closedList.contains(neighbour.toString())) {
-                    continue;
-                }
-
-                // update g, the cost of the cheapest path from start to the neighbour, by finding a tentative cost to the neighbour through the current node
-                double tentativeG = gCost.get(current.toString()) + stepSize;
+        return new PathPlanner(movement_size, close_to_AT).plan(start, goal, noFlyZones);
+    }
 
-                // If tentative g is lower than g was for the node, update g and add it to the open list
-                if (!gCost.containsKey(neighbour.toString()) || tentativeG < gCost.get(neighbour.toString())) {
-                    gCost.put(neighbour.toString(), tentativeG);
-                    double f = tentativeG + euclideanDistance(neighbour, goal);
-                    openList.add(new AStarNode(neighbour, tentativeG, f));
-                    // update the path to the neighbour
-                    cameFrom.put(neighbour.toString(), current);
-                }
-            }
-        }
+    /**
+     * Bidirectional A* algorithm, searching from both the start and the goal, using a planner made for this one search
+     * @param start the start location
+     * @param goal the goal location
+     * @param noFlyZones the no-fly zones
+     * @param movement_size the size of the path segments
+     * @param close_to_AT the distance to the goal at which the path is considered close enough for the path to be finished
+     * @return the path from start to goal
+     */
+    public static List<LngLat> astarBidirectional(LngLat start, LngLat goal, NoFlyZones noFlyZones, double movement_size, double close_to_AT) throws JsonProcessingException {
+        return new PathPlanner(movement_size, close_to_AT).planBidirectional(start, goal, noFlyZones);
+    }
 
-        // No path found
-        return null;
+    /**
+     * Anytime weighted A* algorithm, returning a path found with an inflated estimate and improving it until a deadline, using a
+     * planner made for this one search
+     * @param start the start location
+     * @param goal the goal location
+     * @param noFlyZones the no-fly zones
+     * @param movement_size the size of the path segments
+     * @param close_to_AT the distance to the goal at which the path is considered close enough for the path to be finished
+     * @param epsilon how much the estimate is inflated by for the first path, at least 1
+     * @param deadline the System.nanoTime after which the path stops being improved
+     * @return the best path from start to goal found by the deadline and its bound
+     */
+    public static AnytimePath astarAnytime(LngLat start, LngLat goal, NoFlyZones noFlyZones, double movement_size, double close_to_AT,
+                                           double epsilon, long deadline) throws JsonProcessingException {
+        return new PathPlanner(movement_size, close_to_AT).planAnytime(start, goal, noFlyZones, epsilon, deadline, SearchBudget.unlimited());
     }
 
 
@@ -301,6 +269,18 @@ public class AStar {
         return false; // No intersection found
     }
 
+    /**
+     * If the end point of the path is not close to the region, there is no possibility of an intersection
+     * @param point the point to check
+     * @param region the region to check against, whose bounding box was worked out once when it was prepared
+     * @param pathSize the size of the path segment
+     * @return true if the point is close to the region, false otherwise
+     */
+    public static boolean pointCloseToRegion(LngLat point, PreparedRegion region, double pathSize) {
+        return point.getLat() <= region.getMaxLat() + pathSize && point.getLat() >= region.getMinLat() - pathSize
+                && point.getLng() <= region.getMaxLng() + pathSize && point.getLng() >= region.getMinLng() - pathSize;
+    }
+
     /**
      * If the end point of the path is not close to the region, there is no possibility of an intersection
      * @param point the point to check
@@ -0,0 +1,26 @@
+package uk.ac.ed.inf.pizzadronz.model.PathInfo;
+
+import java.util.List;
+
+
+/**
+ * Represents a path found by the anytime planner, along with how far from the shortest path it may be.
+ * <p>The bound is the most times longer than the shortest path the path could be, so a bound of 1 means the path is the shortest.</p>
+ */
+public class AnytimePath {
+    private final List<LngLat> path;
+    private final double bound;
+
+    public AnytimePath(List<LngLat> path, double bound) {
+        this.path = path;
+        this.bound = bound;
+    }
+
+    public List<LngLat> getPath() {
+        return path;
+    }
+
+    public double getBound() {
+        return bound;
+    }
+}
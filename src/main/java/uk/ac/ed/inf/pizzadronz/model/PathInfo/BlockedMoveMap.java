@@ -0,0 +1,434 @@
+package uk.ac.ed.inf.pizzadronz.model.PathInfo;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.zip.CRC32C;
+
+import static uk.ac.ed.inf.pizzadronz.constant.SystemConstants.BLOCKED_MOVE_CACHE_MAX_AGE_MS;
+import static uk.ac.ed.inf.pizzadronz.constant.SystemConstants.BLOCKED_MOVE_CELL_SIZE;
+import static uk.ac.ed.inf.pizzadronz.constant.SystemConstants.BLOCKED_MOVE_MAX_BYTES;
+
+
+/**
+ * Represents the no-fly zones rasterised into a bitmap of moves that may be blocked, for one drone step size.
+ * <p>The area around the zones is split into a grid, and for each cell and each of the 16 compass moves one bit records whether
+ * a move in that direction starting anywhere in the cell could touch a zone edge. A clear bit means the move is certainly free,
+ * so A* only has to run the exact intersection test for moves starting close to a zone. The lattice A* searches is anchored at
+ * the start of each search, so the bitmap covers cells rather than lattice nodes.</p>
+ * <p>The bitmap is stored in a file named after the step size and a hash of the zones, so a restart with the same zones does
+ * not have to build it again. The file is only used if the full hash and a checksum of the bits in its header match. Reading a
+ * file marks it as used, and once a new one is written the files at the same step size that have not been used for a set time
+ * are deleted, so the files of other services sharing the directory with other zones are kept while they are still in use. The
+ * bits are read into memory rather than mapped, as checking the checksum reads every byte anyway and nothing then holds the file
+ * open.</p>
+ * <p>Zones spread over a large area would need more bits than fit in memory, so the cells are made larger until the bitmap fits
+ * within a fixed size. Larger cells only set more bits, as a bit covers moves from anywhere in its cell, so more moves are checked
+ * exactly but none is wrongly cleared.</p>
+ */
+public class BlockedMoveMap {
+    private static final int MAGIC = 0x50444D42;
+    private static final int FORMAT_VERSION = 2;
+    private static final int KEY_BYTES = 32;
+    // magic, format version, columns, rows, the hash of the zones and the checksum of the bits
+    private static final int HEADER_BYTES = 4 * Integer.BYTES + KEY_BYTES + Integer.BYTES;
+    private static final String FILE_PREFIX = "blocked-moves-";
+    private static final int DIRECTIONS = 16;
+    // widens each cell slightly so rounding in the move offsets can never clear a move that touches an edge
+    private static final double SLACK = 1e-12;
+
+    private final double cellSize;
+    private final double minLng;
+    private final double minLat;
+    private final int columns;
+    private final int rows;
+    private final ByteBuffer bits;
+    private final boolean loaded;
+
+    private BlockedMoveMap(double cellSize, double minLng, double minLat, int columns, int rows, ByteBuffer bits, boolean loaded) {
+        this.cellSize = cellSize;
+        this.minLng = minLng;
+        this.minLat = minLat;
+        this.columns = columns;
+        this.rows = rows;
+        this.bits = bits;
+        this.loaded = loaded;
+    }
+
+    /**
+     * Gets the bitmap for a set of zones and step size from a directory, building and storing it if it is not there
+     * @param noFlyZones the no-fly zones
+     * @param stepSize the size of each move of the drone
+     * @param directory the directory the bitmap files are kept in, made readable only by this user if it does not exist,
+     *                  or null to only keep the bitmap in memory
+     * @return the bitmap of moves that may be blocked
+     */
+    public static BlockedMoveMap forZones(NamedRegion[] noFlyZones, double stepSize, Path directory) {
+        double[] edges = edgeCoordinates(noFlyZones);
+
+        // the grid covers every cell a move could start from and still reach an edge, anything outside it is clear
+        double lowLng = Double.POSITIVE_INFINITY;
+        double lowLat = Double.POSITIVE_INFINITY;
+        double highLng = Double.NEGATIVE_INFINITY;
+        double highLat = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < edges.length; i += 2) {
+            lowLng = Math.min(lowLng, edges[i]);
+            highLng = Math.max(highLng, edges[i]);
+            lowLat = Math.min(lowLat, edges[i + 1]);
+            highLat = Math.max(highLat, edges[i + 1]);
+        }
+        if (edges.length == 0) {
+            return new BlockedMoveMap(BLOCKED_MOVE_CELL_SIZE, 0, 0, 0, 0, ByteBuffer.allocate(0), false);
+        }
+        double cellSize = BLOCKED_MOVE_CELL_SIZE;
+        while (bitmapBytes(lowLng, lowLat, highLng, highLat, stepSize, cellSize) > BLOCKED_MOVE_MAX_BYTES) {
+            cellSize *= 2;
+        }
+        double minLng = lowLng - stepSize - cellSize;
+        double minLat = lowLat - stepSize - cellSize;
+        int columns = (int) Math.ceil((highLng + stepSize + cellSize - minLng) / cellSize);
+        int rows = (int) Math.ceil((highLat + stepSize + cellSize - minLat) / cellSize);
+        int dataBytes = (int) bitmapBytes(lowLng, lowLat, highLng, highLat, stepSize, cellSize);
+
+        if (directory == null) {
+            byte[] data = rasterise(edges, stepSize, cellSize, minLng, minLat, columns, rows, dataBytes);
+            return new BlockedMoveMap(cellSize, minLng, minLat, columns, rows, ByteBuffer.wrap(data), false);
+        }
+        byte[] key = hash(edges, stepSize, cellSize);
+        String stepPrefix = FILE_PREFIX + Long.toHexString(Double.doubleToLongBits(stepSize)) + "-";
+        Path file = directory.resolve(stepPrefix + HexFormat.of().formatHex(key) + ".bin");
+        ByteBuffer loaded = load(file, key, columns, rows, dataBytes);
+        if (loaded != null) {
+            return new BlockedMoveMap(cellSize, minLng, minLat, columns, rows, loaded, true);
+        }
+
+        byte[] data = rasterise(edges, stepSize, cellSize, minLng, minLat, columns, rows, dataBytes);
+        if (store(file, key, columns, rows, data)) {
+            deleteOutOfDate(directory, stepPrefix, file);
+        }
+        return new BlockedMoveMap(cellSize, minLng, minLat, columns, rows, ByteBuffer.wrap(data), false);
+    }
+
+    /**
+     * Works out how many bytes the bitmap takes for the area around the zones and a cell size, in a long so a large area cannot
+     * overflow it
+     * @return the number of bytes of bits, or Long.MAX_VALUE if there are more than a long can count
+     */
+    private static long bitmapBytes(double lowLng, double lowLat, double highLng, double highLat, double stepSize, double cellSize) {
+        // worked out the same way as the grid itself, so the count matches it exactly
+        double columns = Math.ceil((highLng + stepSize + cellSize - (lowLng - stepSize - cellSize)) / cellSize);
+        double rows = Math.ceil((highLat + stepSize + cellSize - (lowLat - stepSize - cellSize)) / cellSize);
+        double bits = columns * rows * DIRECTIONS;
+        if (bits >= Long.MAX_VALUE) {
+            return Long.MAX_VALUE;
+        }
+        return ((long) bits + 7) / 8;
+    }
+
+    /**
+     * Checks if a move might touch a zone edge
+     * @param lng the longitude the move starts from
+     * @param lat the latitude the move starts from
+     * @param direction the index of the compass move, each a multiple of 22.5 degrees anticlockwise from east
+     * @return false if the move is certainly clear of every zone, true if it has to be checked exactly
+     */
+    public boolean mayBeBlocked(double lng, double lat, int direction) {
+        int column = (int) Math.floor((lng - minLng) / cellSize);
+        int row = (int) Math.floor((lat - minLat) / cellSize);
+        if (column < 0 || row < 0 || column >= columns || row >= rows) {
+            return false;
+        }
+        int bit = (row * columns + column) * DIRECTIONS + direction;
+        return (bits.get(bit >>> 3) & (1 << (bit & 7))) != 0;
+    }
+
+    /**
+     * Checks if any move from a position might touch a zone edge
+     * @param lng the longitude of the position
+     * @param lat the latitude of the position
+     * @return false if every move from the position is certainly clear of every zone
+     */
+    public boolean isNearZone(double lng, double lat) {
+        int column = (int) Math.floor((lng - minLng) / cellSize);
+        int row = (int) Math.floor((lat - minLat) / cellSize);
+        if (column < 0 || row < 0 || column >= columns || row >= rows) {
+            return false;
+        }
+        // the 16 directions of a cell fill exactly two bytes
+        int cell = row * columns + column;
+        return (bits.get(2 * cell) | bits.get(2 * cell + 1)) != 0;
+    }
+
+    /**
+     * Whether the bitmap was read from a file written before rather than built
+     * @return true if the bitmap was read from a file
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Lists the start and end of every zone edge, including the one wrapping back to the first vertex
+     * @param noFlyZones the no-fly zones
+     * @return the longitude and latitude of the start and end of each edge in turn
+     */
+    private static double[] edgeCoordinates(NamedRegion[] noFlyZones) {
+        int edgeCount = 0;
+        for (NamedRegion zone : noFlyZones) {
+            edgeCount += zone.getVertices().length;
+        }
+        double[] edges = new double[edgeCount * 4];
+        int i = 0;
+        for (NamedRegion zone : noFlyZones) {
+            LngLat[] vertices = zone.getVertices();
+            for (int j = 0; j < vertices.length; j++) {
+                LngLat end = vertices[(j + 1) % vertices.length];
+                edges[i++] = vertices[j].getLng();
+                edges[i++] = vertices[j].getLat();
+                edges[i++] = end.getLng();
+                edges[i++] = end.getLat();
+            }
+        }
+        return edges;
+    }
+
+    /**
+     * Sets the bit of every cell and direction whose moves could touch an edge
+     */
+    private static byte[] rasterise(double[] edges, double stepSize, double cellSize, double minLng, double minLat,
+                                    int columns, int rows, int dataBytes) {
+        byte[] data = new byte[dataBytes];
+        for (int direction = 0; direction < DIRECTIONS; direction++) {
+            double angle = Math.toRadians(direction * 22.5);
+            double moveLng = stepSize * Math.cos(angle);
+            double moveLat = stepSize * Math.sin(angle);
+            for (int e = 0; e < edges.length; e += 4) {
+                // a move from the cell touches the edge exactly when the cell meets the edge swept backwards along the move
+                double[] swept = {
+                        edges[e], edges[e + 1], edges[e + 2], edges[e + 3],
+                        edges[e + 2] - moveLng, edges[e + 3] - moveLat, edges[e] - moveLng, edges[e + 1] - moveLat};
+                int firstColumn = Math.max(0, (int) Math.floor((min(swept, 0) - minLng) / cellSize) - 1);
+                int lastColumn = Math.min(columns - 1, (int) Math.floor((max(swept, 0) - minLng) / cellSize) + 1);
+                int firstRow = Math.max(0, (int) Math.floor((min(swept, 1) - minLat) / cellSize) - 1);
+                int lastRow = Math.min(rows - 1, (int) Math.floor((max(swept, 1) - minLat) / cellSize) + 1);
+                for (int row = firstRow; row <= lastRow; row++) {
+                    for (int column = firstColumn; column <= lastColumn; column++) {
+                        double cellLng = minLng + column * cellSize;
+                        double cellLat = minLat + row * cellSize;
+                        if (overlaps(swept, cellLng - SLACK, cellLat - SLACK, cellLng + cellSize + SLACK, cellLat + cellSize + SLACK)) {
+                            int bit = (row * columns + column) * DIRECTIONS + direction;
+                            data[bit >>> 3] |= (byte) (1 << (bit & 7));
+                        }
+                    }
+                }
+            }
+        }
+        return data;
+    }
+
+    /**
+     * Separating axis test between a parallelogram and a cell, touching counts as overlapping
+     * @param corners the corners of the parallelogram in order, as longitude and latitude pairs
+     */
+    private static boolean overlaps(double[] corners, double lowLng, double lowLat, double highLng, double highLat) {
+        if (max(corners, 0) < lowLng || min(corners, 0) > highLng || max(corners, 1) < lowLat || min(corners, 1) > highLat) {
+            return false;
+        }
+        // the remaining axes are the normals of the two sides of the parallelogram
+        for (int side = 0; side < 2; side++) {
+            double normalLng = -(corners[2 * side + 3] - corners[2 * side + 1]);
+            double normalLat = corners[2 * side + 2] - corners[2 * side];
+            double shapeLow = Double.POSITIVE_INFINITY;
+            double shapeHigh = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < corners.length; i += 2) {
+                double projection = corners[i] * normalLng + corners[i + 1] * normalLat;
+                shapeLow = Math.min(shapeLow, projection);
+                shapeHigh = Math.max(shapeHigh, projection);
+            }
+            double cellLow = Math.min(lowLng * normalLng, highLng * normalLng) + Math.min(lowLat * normalLat, highLat * normalLat);
+            double cellHigh = Math.max(lowLng * normalLng, highLng * normalLng) + Math.max(lowLat * normalLat, highLat * normalLat);
+            if (shapeHigh < cellLow || shapeLow > cellHigh) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static double min(double[] corners, int offset) {
+        double low = Double.POSITIVE_INFINITY;
+        for (int i = offset; i < corners.length; i += 2) {
+            low = Math.min(low, corners[i]);
+        }
+        return low;
+    }
+
+    private static double max(double[] corners, int offset) {
+        double high = Double.NEGATIVE_INFINITY;
+        for (int i = offset; i < corners.length; i += 2) {
+            high = Math.max(high, corners[i]);
+        }
+        return high;
+    }
+
+    /**
+     * Hashes everything the bitmap depends on, so a file is only reused for exactly the same zones and step size
+     * @return the SHA-256 hash
+     */
+    private static byte[] hash(double[] edges, double stepSize, double cellSize) {
+        ByteBuffer buffer = ByteBuffer.allocate((edges.length + 2) * Double.BYTES + Integer.BYTES);
+        buffer.putInt(FORMAT_VERSION).putDouble(stepSize).putDouble(cellSize);
+        for (double coordinate : edges) {
+            buffer.putDouble(coordinate);
+        }
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(buffer.array());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Checksums the bits of a bitmap
+     * @return the CRC-32C of the bits
+     */
+    private static int checksum(byte[] data, int offset, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(data, offset, length);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Reads a bitmap file written before, deleting it if it is not the bitmap it is named after
+     * @param key the hash of the zones and step size the file must have been written for
+     * @return the bits from the file, or null if there is no usable file
+     */
+    private static ByteBuffer load(Path file, byte[] key, int columns, int rows, int dataBytes) {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try {
+            if (Files.size(file) != HEADER_BYTES + dataBytes) {
+                deleteQuietly(file);
+                return null;
+            }
+            byte[] contents = Files.readAllBytes(file);
+            if (contents.length != HEADER_BYTES + dataBytes) {
+                deleteQuietly(file);
+                return null;
+            }
+            ByteBuffer header = ByteBuffer.wrap(contents, 0, HEADER_BYTES);
+            boolean valid = header.getInt() == MAGIC && header.getInt() == FORMAT_VERSION
+                    && header.getInt() == columns && header.getInt() == rows;
+            byte[] storedKey = new byte[KEY_BYTES];
+            header.get(storedKey);
+            valid = valid && MessageDigest.isEqual(storedKey, key) && header.getInt() == checksum(contents, HEADER_BYTES, dataBytes);
+            if (!valid) {
+                // written for other zones, by an older version or damaged since, so it is built again and replaced
+                deleteQuietly(file);
+                return null;
+            }
+            markUsed(file);
+            return ByteBuffer.wrap(contents, HEADER_BYTES, dataBytes).slice();
+        } catch (IOException e) {
+            // an unreadable file is treated as missing and the bitmap is built again
+            return null;
+        }
+    }
+
+    /**
+     * Writes a bitmap to its file, moving it into place only once it is complete so other processes never read half a file
+     * @param key the hash of the zones and step size the bitmap was built for
+     * @return true if the file was written
+     */
+    private static boolean store(Path file, byte[] key, int columns, int rows, byte[] data) {
+        Path temporary = null;
+        try {
+            createDirectory(file.getParent());
+            temporary = Files.createTempFile(file.getParent(), FILE_PREFIX, ".tmp");
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(FORMAT_VERSION).putInt(columns).putInt(rows)
+                        .put(key).putInt(checksum(data, 0, data.length)).flip();
+                while (header.hasRemaining()) {
+                    channel.write(header);
+                }
+                ByteBuffer body = ByteBuffer.wrap(data);
+                while (body.hasRemaining()) {
+                    channel.write(body);
+                }
+            }
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            return true;
+        } catch (IOException | UnsupportedOperationException e) {
+            // the service still works without the file, the bitmap is just kept in memory and built again on restart
+            deleteQuietly(temporary);
+            return false;
+        }
+    }
+
+    /**
+     * Makes the directory the bitmaps are kept in if it is not there, readable and writable only by this user where the file
+     * system has permissions
+     */
+    private static void createDirectory(Path directory) throws IOException {
+        if (Files.isDirectory(directory)) {
+            return;
+        }
+        if (directory.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+            Files.createDirectories(directory, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+        } else {
+            Files.createDirectories(directory);
+        }
+    }
+
+    /**
+     * Sets when a bitmap file was last used to now, so it is not deleted while a service is still reading it
+     */
+    private static void markUsed(Path file) {
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException ignored) {
+            // the file is still used, it may just be deleted and built again sooner than it needs to be
+        }
+    }
+
+    /**
+     * Deletes the bitmaps for the same step size that have not been written or read for longer than the maximum age. A bitmap
+     * for other zones may still be used by another service sharing the directory, so it is only deleted once none has used it
+     * for that long
+     * @param stepPrefix the start of the name of every bitmap file for the step size
+     * @param current the file just written, which is kept
+     */
+    private static void deleteOutOfDate(Path directory, String stepPrefix, Path current) {
+        long oldest = System.currentTimeMillis() - BLOCKED_MOVE_CACHE_MAX_AGE_MS;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, stepPrefix + "*.bin")) {
+            for (Path file : files) {
+                if (!file.equals(current) && Files.getLastModifiedTime(file).toMillis() < oldest) {
+                    deleteQuietly(file);
+                }
+            }
+        } catch (IOException e) {
+            // left for the next bitmap written to delete
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ignored) {
+            // nothing more can be done, a file left behind is deleted or replaced the next time a bitmap is written
+        }
+    }
+}
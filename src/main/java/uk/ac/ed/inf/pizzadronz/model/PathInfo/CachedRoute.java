@@ -0,0 +1,85 @@
+package uk.ac.ed.inf.pizzadronz.model.PathInfo;
+
+import java.util.Arrays;
+
+import static uk.ac.ed.inf.pizzadronz.model.PathInfo.AStar.doesPathIntersectWithAnyRegion;
+import static uk.ac.ed.inf.pizzadronz.model.PathInfo.AStar.euclideanDistance;
+
+/**
+ * Represents a delivery path held in the route cache.
+ * <p>The path is stored alongside its JSON and GeoJSON encodings, so a cache hit can be sent back without encoding it again.
+ * The version and zone count record the no-fly zones the path was checked against.</p>
+ */
+public class CachedRoute {
+    private final LngLat[] path;
+    private final byte[] pathJson;
+    private final String geoJson;
+    private final long zoneVersion;
+    private final int zoneCount;
+
+    public CachedRoute(LngLat[] path, byte[] pathJson, String geoJson, long zoneVersion, int zoneCount) {
+        this.path = path;
+        this.pathJson = pathJson;
+        this.geoJson = geoJson;
+        this.zoneVersion = zoneVersion;
+        this.zoneCount = zoneCount;
+    }
+
+    /**
+     * Get a copy of the path, so callers cannot change the cached one
+     * @return the points making up the path
+     */
+    public LngLat[] getPath() {
+        LngLat[] copy = new LngLat[path.length];
+        for (int i = 0; i < path.length; i++) {
+            copy[i] = new LngLat(path[i].getLng(), path[i].getLat());
+        }
+        return copy;
+    }
+
+    public byte[] getPathJson() {
+        return pathJson.clone();
+    }
+
+    public String getGeoJson() {
+        return geoJson;
+    }
+
+    public long getZoneVersion() {
+        return zoneVersion;
+    }
+
+    public int getZoneCount() {
+        return zoneCount;
+    }
+
+    /**
+     * Makes a copy of this route marked as checked against a newer version of the no-fly zones
+     * @param zoneVersion the newer version of the no-fly zones
+     * @param zoneCount the number of no-fly zones in that version
+     * @return the same route with the newer version
+     */
+    CachedRoute restamp(long zoneVersion, int zoneCount) {
+        return new CachedRoute(path, pathJson, geoJson, zoneVersion, zoneCount);
+    }
+
+    /**
+     * Checks every point and move of the path against some no-fly zones
+     * @param zones the no-fly zones to check against, already prepared for containment checks
+     * @return true if the path enters or crosses any of the zones
+     */
+    boolean crossesAny(PreparedRegion[] zones) {
+        NamedRegion[] regions = Arrays.stream(zones).map(PreparedRegion::getRegion).toArray(NamedRegion[]::new);
+        for (int i = 0; i < path.length; i++) {
+            for (PreparedRegion zone : zones) {
+                if (zone.contains(path[i].getLng(), path[i].getLat())) {
+                    return true;
+                }
+            }
+            if (i + 1 < path.length && doesPathIntersectWithAnyRegion(new LngLat[]{path[i], path[i + 1]}, regions, euclideanDistance(path[i], path[i + 1]))) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,505 @@
+package uk.ac.ed.inf.pizzadronz.model.PathInfo;
+
+import uk.ac.ed.inf.pizzadronz.exception.SearchBudgetExceededException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static uk.ac.ed.inf.pizzadronz.constant.SystemConstants.HIERARCHY_CLUSTERS_PER_SIDE;
+import static uk.ac.ed.inf.pizzadronz.constant.SystemConstants.HIERARCHY_CLUSTER_CELLS;
+import static uk.ac.ed.inf.pizzadronz.constant.SystemConstants.VISIBILITY_MARGIN;
+import static uk.ac.ed.inf.pizzadronz.model.PathInfo.PathPlanner.isLineClear;
+
+
+/**
+ * Hierarchy of clusters over a square grid around the goal, for finding routes with HPA*.
+ * <p>The grid is centred on the goal and split into square clusters. Wherever two neighbouring clusters can be crossed between,
+ * portals are placed on either side of their shared border, and the cost of crossing each cluster between its portals is found
+ * once when the hierarchy is built, so it is only valid for the zones it was built with. A route is found by searching the small
+ * graph of portals, then searching the grid again only inside the clusters the portals passed through, and finally pulling the
+ * grid path tight into straight legs. Every grid move and leg keeps clear of the zones and never leaves central, so the legs can
+ * be flown with PathRealiser.</p>
+ */
+public class ClusterHierarchy {
+    // the eight moves of the grid, in cells, with opposite moves four apart
+    private static final int[][] MOVES = {{1, 0}, {1, 1}, {0, 1}, {-1, 1}, {-1, 0}, {-1, -1}, {0, -1}, {1, -1}};
+    // crossings along a border at least this long get a portal at each end rather than one in the middle
+    private static final int LONG_ENTRANCE = 6;
+
+    private final LngLat goal;
+    private final NoFlyZones noFlyZones;
+    private final double cellSize;
+    private final int clusterCells;
+    private final int clustersPerSide;
+    private final int side;
+    // bit d is set when grid move d can be flown from the point
+    private final byte[] openMoves;
+    // the portal node at each grid point, or -1 if there is none
+    private final int[] nodeAt;
+    private final int[] nodePoint;
+    // the portal nodes in each cluster
+    private final int[][] clusterNodes;
+    // edges leaving node n are edgeTarget[edgeStart[n]] up to edgeTarget[edgeStart[n + 1]]
+    private final int[] edgeStart;
+    private final int[] edgeTarget;
+    private final double[] edgeCost;
+
+    /**
+     * Builds the hierarchy for the current no-fly zones
+     * @param goal the location every route is heading towards, which becomes the centre of the grid
+     * @param noFlyZones the no-fly zones to route around
+     * @param cellSize the distance between neighbouring grid points
+     */
+    public ClusterHierarchy(LngLat goal, NoFlyZones noFlyZones, double cellSize) {
+        this.goal = goal;
+        this.noFlyZones = noFlyZones;
+        this.cellSize = cellSize;
+        this.clusterCells = HIERARCHY_CLUSTER_CELLS;
+        this.clustersPerSide = HIERARCHY_CLUSTERS_PER_SIDE;
+        this.side = clusterCells * clustersPerSide;
+
+        // find every grid move that can be flown, checking each pair of points against the zones once and then only allowing
+        // moves from inside central to outside it the other way, the same as isLineClear
+        PreparedRegion central = noFlyZones.getPreparedCentral();
+        ZoneEdgeIndex edgeIndex = noFlyZones.getEdgeIndex();
+        boolean[] inCentral = new boolean[side * side];
+        for (int point = 0; point < inCentral.length; point++) {
+            inCentral[point] = central.contains(lng(point % side), lat(point / side));
+        }
+        openMoves = new byte[side * side];
+        for (int y = 0; y < side; y++) {
+            for (int x = 0; x < side; x++) {
+                for (int direction = 0; direction < MOVES.length / 2; direction++) {
+                    int toX = x + MOVES[direction][0];
+                    int toY = y + MOVES[direction][1];
+                    if (toX < 0 || toX >= side || toY < 0 || toY >= side
+                            || !edgeIndex.isClear(lng(x), lat(y), lng(toX), lat(toY), VISIBILITY_MARGIN)) {
+                        continue;
+                    }
+                    int from = y * side + x;
+                    int to = toY * side + toX;
+                    if (!inCentral[from] || inCentral[to]) {
+                        openMoves[from] |= (byte) (1 << direction);
+                    }
+                    if (!inCentral[to] || inCentral[from]) {
+                        openMoves[to] |= (byte) (1 << (direction + MOVES.length / 2));
+                    }
+                }
+            }
+        }
+
+        // place portals along every border between neighbouring clusters, joining each pair the way it can be crossed
+        nodeAt = new int[side * side];
+        Arrays.fill(nodeAt, -1);
+        List<Integer> points = new ArrayList<>();
+        List<int[]> crossings = new ArrayList<>();
+        for (int clusterY = 0; clusterY < clustersPerSide; clusterY++) {
+            for (int clusterX = 0; clusterX < clustersPerSide; clusterX++) {
+                if (clusterX + 1 < clustersPerSide) {
+                    // the border with the cluster to the east, crossed by move 0 and back by move 4
+                    int x = (clusterX + 1) * clusterCells - 1;
+                    addPortals(x, clusterY * clusterCells, 0, 1, 0, points, crossings);
+                }
+                if (clusterY + 1 < clustersPerSide) {
+                    // the border with the cluster to the north, crossed by move 2 and back by move 6
+                    int y = (clusterY + 1) * clusterCells - 1;
+                    addPortals(clusterX * clusterCells, y, 1, 0, 2, points, crossings);
+                }
+            }
+        }
+        nodePoint = new int[points.size()];
+        for (int i = 0; i < nodePoint.length; i++) {
+            nodePoint[i] = points.get(i);
+        }
+
+        List<List<Integer>> nodesByCluster = new ArrayList<>();
+        for (int cluster = 0; cluster < clustersPerSide * clustersPerSide; cluster++) {
+            nodesByCluster.add(new ArrayList<>());
+        }
+        for (int node = 0; node < nodePoint.length; node++) {
+            nodesByCluster.get(clusterOf(nodePoint[node])).add(node);
+        }
+        clusterNodes = new int[nodesByCluster.size()][];
+        for (int cluster = 0; cluster < clusterNodes.length; cluster++) {
+            clusterNodes[cluster] = nodesByCluster.get(cluster).stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        // join the portals of each cluster by the cheapest path between them that stays inside the cluster
+        List<List<double[]>> edges = new ArrayList<>();
+        for (int node = 0; node < nodePoint.length; node++) {
+            edges.add(new ArrayList<>());
+        }
+        for (int[] crossing : crossings) {
+            edges.get(crossing[0]).add(new double[]{crossing[1], cellSize});
+        }
+        for (int cluster = 0; cluster < clusterNodes.length; cluster++) {
+            for (int from : clusterNodes[cluster]) {
+                double[] distance = searchCluster(nodePoint[from], false, SearchBudget.unlimited());
+                for (int to : clusterNodes[cluster]) {
+                    double cost = distance[localIndex(nodePoint[to])];
+                    if (to != from && cost < Double.POSITIVE_INFINITY) {
+                        edges.get(from).add(new double[]{to, cost});
+                    }
+                }
+            }
+        }
+        edgeStart = new int[nodePoint.length + 1];
+        for (int node = 0; node < nodePoint.length; node++) {
+            edgeStart[node + 1] = edgeStart[node] + edges.get(node).size();
+        }
+        edgeTarget = new int[edgeStart[nodePoint.length]];
+        edgeCost = new double[edgeStart[nodePoint.length]];
+        for (int node = 0; node < nodePoint.length; node++) {
+            int i = edgeStart[node];
+            for (double[] edge : edges.get(node)) {
+                edgeTarget[i] = (int) edge[0];
+                edgeCost[i] = edge[1];
+                i++;
+            }
+        }
+    }
+
+    /**
+     * Places the portals along one border between two clusters
+     * @param x the column of the first point on the near side of the border
+     * @param y the row of the first point on the near side of the border
+     * @param stepX how far along the border each point is in columns
+     * @param stepY how far along the border each point is in rows
+     * @param across the move crossing the border from the near side, the opposite move crosses it back
+     * @param points the grid point of each portal node, added to as portals are made
+     * @param crossings the pairs of portal nodes joined across a border, added to as portals are made
+     */
+    private void addPortals(int x, int y, int stepX, int stepY, int across, List<Integer> points, List<int[]> crossings) {
+        int back = (across + MOVES.length / 2) % MOVES.length;
+        int runStart = -1;
+        for (int i = 0; i <= clusterCells; i++) {
+            boolean open = false;
+            if (i < clusterCells) {
+                int near = (y + i * stepY) * side + x + i * stepX;
+                int far = near + MOVES[across][1] * side + MOVES[across][0];
+                open = (openMoves[near] & (1 << across)) != 0 || (openMoves[far] & (1 << back)) != 0;
+            }
+            if (open && runStart == -1) {
+                runStart = i;
+            } else if (!open && runStart != -1) {
+                // the run of crossings between runStart and i - 1 is one entrance
+                int[] portals = i - runStart >= LONG_ENTRANCE ? new int[]{runStart, i - 1} : new int[]{(runStart + i - 1) / 2};
+                for (int portal : portals) {
+                    int near = (y + portal * stepY) * side + x + portal * stepX;
+                    int far = near + MOVES[across][1] * side + MOVES[across][0];
+                    int nearNode = nodeFor(near, points);
+                    int farNode = nodeFor(far, points);
+                    if ((openMoves[near] & (1 << across)) != 0) {
+                        crossings.add(new int[]{nearNode, farNode});
+                    }
+                    if ((openMoves[far] & (1 << back)) != 0) {
+                        crossings.add(new int[]{farNode, nearNode});
+                    }
+                }
+                runStart = -1;
+            }
+        }
+    }
+
+    private int nodeFor(int point, List<Integer> points) {
+        if (nodeAt[point] == -1) {
+            nodeAt[point] = points.size();
+            points.add(point);
+        }
+        return nodeAt[point];
+    }
+
+    private double lng(int x) {
+        return goal.getLng() + (x - side / 2) * cellSize;
+    }
+
+    private double lat(int y) {
+        return goal.getLat() + (y - side / 2) * cellSize;
+    }
+
+    private int clusterOf(int point) {
+        return (point / side / clusterCells) * clustersPerSide + (point % side) / clusterCells;
+    }
+
+    /**
+     * Gets the position of a grid point within its own cluster
+     */
+    private int localIndex(int point) {
+        return ((point / side) % clusterCells) * clusterCells + (point % side) % clusterCells;
+    }
+
+    /**
+     * Finds the cheapest paths between one grid point and every other point in its cluster, without leaving the cluster
+     * @param source the grid point to search from
+     * @param reverse true to find the paths to the source rather than from it
+     * @param budget the budget the search spends an expansion from for every point it expands
+     * @return the cost of each point of the cluster by its local index, infinity if it cannot be reached
+     */
+    private double[] searchCluster(int source, boolean reverse, SearchBudget budget) {
+        int cluster = clusterOf(source);
+        int firstX = (cluster % clustersPerSide) * clusterCells;
+        int firstY = (cluster / clustersPerSide) * clusterCells;
+        double[] distance = new double[clusterCells * clusterCells];
+        Arrays.fill(distance, Double.POSITIVE_INFINITY);
+        boolean[] closed = new boolean[distance.length];
+        IndexedMinHeap openList = new IndexedMinHeap(distance.length);
+        distance[localIndex(source)] = 0;
+        openList.addOrDecrease(localIndex(source), 0);
+        while (!openList.isEmpty()) {
+            int current = openList.poll();
+            budget.expand();
+            closed[current] = true;
+            int x = firstX + current % clusterCells;
+            int y = firstY + current / clusterCells;
+            for (int direction = 0; direction < MOVES.length; direction++) {
+                int neighbourX = x + MOVES[direction][0];
+                int neighbourY = y + MOVES[direction][1];
+                if (neighbourX < firstX || neighbourX >= firstX + clusterCells || neighbourY < firstY || neighbourY >= firstY + clusterCells) {
+                    continue;
+                }
+                // searching towards the source, the drone flies from the neighbour to this point
+                boolean open = reverse
+                        ? (openMoves[neighbourY * side + neighbourX] & (1 << ((direction + MOVES.length / 2) % MOVES.length))) != 0
+                        : (openMoves[y * side + x] & (1 << direction)) != 0;
+                int neighbour = (neighbourY - firstY) * clusterCells + neighbourX - firstX;
+                double tentative = distance[current] + moveCost(direction);
+                if (open && !closed[neighbour] && tentative < distance[neighbour]) {
+                    distance[neighbour] = tentative;
+                    openList.addOrDecrease(neighbour, tentative);
+                }
+            }
+        }
+        return distance;
+    }
+
+    private double moveCost(int direction) {
+        return direction % 2 == 0 ? cellSize : cellSize * Math.sqrt(2);
+    }
+
+    /**
+     * Finds the grid point to start a route from, the closest one that can be flown to in a straight line from the start
+     * @param start the start of the route
+     * @return the grid point, or -1 if the start is outside the grid or cannot reach any of the points around it
+     */
+    private int entryPoint(LngLat start) {
+        double x = (start.getLng() - goal.getLng()) / cellSize + side / 2;
+        double y = (start.getLat() - goal.getLat()) / cellSize + side / 2;
+        int[][] candidates = {
+                {(int) Math.round(x), (int) Math.round(y)},
+                {(int) Math.floor(x), (int) Math.floor(y)}, {(int) Math.ceil(x), (int) Math.floor(y)},
+                {(int) Math.floor(x), (int) Math.ceil(y)}, {(int) Math.ceil(x), (int) Math.ceil(y)}
+        };
+        for (int[] candidate : candidates) {
+            if (candidate[0] >= 0 && candidate[0] < side && candidate[1] >= 0 && candidate[1] < side
+                    && isLineClear(start.getLng(), start.getLat(), lng(candidate[0]), lat(candidate[1]), noFlyZones)) {
+                return candidate[1] * side + candidate[0];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Finds a route from a start point to the goal through the hierarchy
+     * @param start the start of the route
+     * @return the waypoints of the route, starting at the start and ending at the goal, or null if the start is outside the grid
+     * or the goal cannot be reached
+     */
+    public List<LngLat> route(LngLat start) {
+        return route(start, SearchBudget.unlimited());
+    }
+
+    /**
+     * Finds a route from a start point to the goal through the hierarchy, spending from a budget
+     * @param start the start of the route
+     * @param budget the budget the searches of the clusters, the portals and the corridor all spend their expansions from
+     * @return the waypoints of the route, starting at the start and ending at the goal, or null if the start is outside the grid
+     * or the goal cannot be reached
+     * @throws SearchBudgetExceededException if the budget runs out before the route is found
+     */
+    public List<LngLat> route(LngLat start, SearchBudget budget) {
+        int startPoint = entryPoint(start);
+        if (startPoint == -1) {
+            return null;
+        }
+        int goalPoint = (side / 2) * side + side / 2;
+        int startCluster = clusterOf(startPoint);
+        int goalCluster = clusterOf(goalPoint);
+
+        // the start and goal are extra nodes, joined to the portals of their clusters by searching inside them
+        int nodeCount = nodePoint.length;
+        int startNode = nodeCount;
+        int goalNode = nodeCount + 1;
+        double[] fromStart = searchCluster(startPoint, false, budget);
+        double[] toGoal = searchCluster(goalPoint, true, budget);
+
+        double[] cost = new double[nodeCount + 2];
+        Arrays.fill(cost, Double.POSITIVE_INFINITY);
+        int[] previous = new int[nodeCount + 2];
+        Arrays.fill(previous, -1);
+        boolean[] closed = new boolean[nodeCount + 2];
+        IndexedMinHeap openList = new IndexedMinHeap(nodeCount + 2);
+        cost[startNode] = 0;
+        openList.addOrDecrease(startNode, estimate(startPoint, goalPoint));
+
+        while (!openList.isEmpty()) {
+            int current = openList.poll();
+            if (current == goalNode) {
+                break;
+            }
+            budget.expand();
+            closed[current] = true;
+            if (current == startNode) {
+                for (int node : clusterNodes[startCluster]) {
+                    relax(startNode, node, fromStart[localIndex(nodePoint[node])], cost, previous, closed, openList, goalPoint);
+                }
+                if (startCluster == goalCluster) {
+                    relax(startNode, goalNode, fromStart[localIndex(goalPoint)], cost, previous, closed, openList, goalPoint);
+                }
+                continue;
+            }
+            for (int i = edgeStart[current]; i < edgeStart[current + 1]; i++) {
+                relax(current, edgeTarget[i], edgeCost[i], cost, previous, closed, openList, goalPoint);
+            }
+            if (clusterOf(nodePoint[current]) == goalCluster) {
+                relax(current, goalNode, toGoal[localIndex(nodePoint[current])], cost, previous, closed, openList, goalPoint);
+            }
+        }
+        if (cost[goalNode] == Double.POSITIVE_INFINITY) {
+            return null;
+        }
+
+        // refine the route with a search of the grid limited to the clusters the abstract route passed through
+        int[] corridor = new int[clustersPerSide * clustersPerSide];
+        Arrays.fill(corridor, -1);
+        int corridorSize = 0;
+        corridor[startCluster] = corridorSize++;
+        if (corridor[goalCluster] == -1) {
+            corridor[goalCluster] = corridorSize++;
+        }
+        for (int node = previous[goalNode]; node != startNode; node = previous[node]) {
+            int cluster = clusterOf(nodePoint[node]);
+            if (corridor[cluster] == -1) {
+                corridor[cluster] = corridorSize++;
+            }
+        }
+        List<Integer> gridPath = searchCorridor(startPoint, goalPoint, corridor, corridorSize, budget);
+        if (gridPath == null) {
+            return null;
+        }
+
+        // pull the grid path tight, only keeping the points where the line from the last kept point becomes blocked
+        List<LngLat> waypoints = new ArrayList<>();
+        waypoints.add(start);
+        LngLat anchor = start;
+        for (int i = 0; i < gridPath.size() - 1; i++) {
+            int next = gridPath.get(i + 1);
+            if (!isLineClear(anchor.getLng(), anchor.getLat(), lng(next % side), lat(next / side), noFlyZones)) {
+                int point = gridPath.get(i);
+                anchor = new LngLat(lng(point % side), lat(point / side));
+                waypoints.add(anchor);
+            }
+        }
+        waypoints.add(goal);
+        return waypoints;
+    }
+
+    /**
+     * Lowers the cost of a node of the abstract graph if it is cheaper to reach through another node
+     */
+    private void relax(int from, int to, double edge, double[] cost, int[] previous, boolean[] closed, IndexedMinHeap openList, int goalPoint) {
+        double tentative = cost[from] + edge;
+        if (closed[to] || tentative >= cost[to]) {
+            return;
+        }
+        cost[to] = tentative;
+        previous[to] = from;
+        int point = to < nodePoint.length ? nodePoint[to] : goalPoint;
+        openList.addOrDecrease(to, tentative + estimate(point, goalPoint));
+    }
+
+    private double estimate(int point, int goalPoint) {
+        return Math.hypot(point % side - goalPoint % side, point / side - goalPoint / side) * cellSize;
+    }
+
+    /**
+     * Searches the grid from one point to another, only through the clusters of a corridor
+     * @param startPoint the grid point to search from
+     * @param goalPoint the grid point to search to
+     * @param corridor the position of each cluster in the corridor, or -1 for clusters outside it
+     * @param corridorSize the number of clusters in the corridor
+     * @param budget the budget the search spends an expansion from for every point it expands
+     * @return the grid points of the path from start to goal, or null if the corridor does not join them
+     */
+    private List<Integer> searchCorridor(int startPoint, int goalPoint, int[] corridor, int corridorSize, SearchBudget budget) {
+        int cellsPerCluster = clusterCells * clusterCells;
+        double[] cost = new double[corridorSize * cellsPerCluster];
+        Arrays.fill(cost, Double.POSITIVE_INFINITY);
+        int[] previous = new int[cost.length];
+        boolean[] closed = new boolean[cost.length];
+        IndexedMinHeap openList = new IndexedMinHeap(cost.length);
+
+        int startIndex = corridor[clusterOf(startPoint)] * cellsPerCluster + localIndex(startPoint);
+        cost[startIndex] = 0;
+        previous[startIndex] = -1;
+        openList.addOrDecrease(startIndex, estimate(startPoint, goalPoint));
+        int[] pointOf = new int[cost.length];
+        pointOf[startIndex] = startPoint;
+
+        while (!openList.isEmpty()) {
+            int current = openList.poll();
+            int point = pointOf[current];
+            if (point == goalPoint) {
+                List<Integer> path = new ArrayList<>();
+                for (int index = current; index != -1; index = previous[index]) {
+                    path.add(pointOf[index]);
+                }
+                Collections.reverse(path);
+                return path;
+            }
+            budget.expand();
+            closed[current] = true;
+            int x = point % side;
+            int y = point / side;
+            for (int direction = 0; direction < MOVES.length; direction++) {
+                if ((openMoves[point] & (1 << direction)) == 0) {
+                    continue;
+                }
+                int neighbourPoint = (y + MOVES[direction][1]) * side + x + MOVES[direction][0];
+                int slot = corridor[clusterOf(neighbourPoint)];
+                if (slot == -1) {
+                    continue;
+                }
+                int neighbour = slot * cellsPerCluster + localIndex(neighbourPoint);
+                double tentative = cost[current] + moveCost(direction);
+                if (closed[neighbour] || tentative >= cost[neighbour]) {
+                    continue;
+                }
+                cost[neighbour] = tentative;
+                previous[neighbour] = current;
+                pointOf[neighbour] = neighbourPoint;
+                openList.addOrDecrease(neighbour, tentative + estimate(neighbourPoint, goalPoint));
+            }
+        }
+        return null;
+    }
+
+    public LngLat getGoal() {
+        return goal;
+    }
+
+    public int getNodeCount() {
+        return nodePoint.length;
+    }
+
+    /**
+     * get where a portal node of the abstract graph is
+     * @param node the portal node, from 0 up to the node count
+     * @return the grid point of the portal
+     */
+    public LngLat getPortal(int node) {
+        int point = nodePoint[node];
+        return new LngLat(lng(point % side), lat(point / side));
+    }
+}
@@ -0,0 +1,231 @@
+package uk.ac.ed.inf.pizzadronz.model.PathInfo;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+import static uk.ac.ed.inf.pizzadronz.constant.SystemConstants.GOAL_FIELD_HALF_EXTENT_CELLS;
+import static uk.ac.ed.inf.pizzadronz.model.PathInfo.AStar.euclideanDistance;
+
+
+/**
+ * Represents a precomputed cost-to-go field towards a fixed goal.
+ * <p>A backward Dijkstra search is run once from the goal over a grid of cells the size of one drone step,
+ * moving in the 16 grid directions closest to the compass points and refusing any move that passes deep inside a no-fly zone.
+ * The resulting distances are used by A* as a heuristic much closer to the true cost than the euclidean distance, so a search
+ * expands far fewer nodes away from the final path.</p>
+ * <p>The grid only refuses a move that the drone could not make from anywhere in the cells at either end of it, which is one that
+ * passes further inside a zone than a cell diagonal from its edges. The zones are in effect shrunk by a cell diagonal, so a gap
+ * between zones narrower than a cell that the drone can fly through stays open to the grid, and the field never estimates more
+ * than the true cost. Zones thinner than two cell diagonals do not block the grid at all, and the field is no better than the
+ * euclidean distance around them.</p>
+ */
+public class GoalDistanceField {
+
+    // grid offsets approximating the 16 compass directions
+    private static final int[][] OFFSETS = {
+            {1, 0}, {2, 1}, {1, 1}, {1, 2}, {0, 1}, {-1, 2}, {-1, 1}, {-2, 1},
+            {-1, 0}, {-2, -1}, {-1, -1}, {-1, -2}, {0, -1}, {1, -2}, {1, -1}, {2, -1}
+    };
+
+    // worst case ratio between a path on the grid and the true shortest path, used to keep the heuristic from overestimating
+    private static final double GRID_STRETCH = 1.0 / Math.cos(Math.toRadians(26.565 / 2));
+    // the diagonal of a cell in cells, the furthest a location can be from a corner of the cell it is in
+    private static final double CELL_DIAGONAL = Math.sqrt(2);
+    // the points checked along a move are this many to a cell apart
+    private static final int SAMPLES_PER_CELL = 4;
+
+    private final LngLat goal;
+    private final double cellSize;
+    private final int size;
+    private final double minLng;
+    private final double minLat;
+    private final double[] distances;
+    // how far inside a zone a move must pass to be refused
+    private final double margin;
+
+    /**
+     * Builds the field by searching backwards from the goal
+     * @param goal the location every search is heading towards
+     * @param cellSize the size of a grid cell, which matches the drone step size of the search using the field
+     * @param noFlyZones the no-fly zones the field has to route around
+     */
+    public GoalDistanceField(LngLat goal, double cellSize, NamedRegion[] noFlyZones) {
+        this.goal = goal;
+        this.cellSize = cellSize;
+        this.size = 2 * GOAL_FIELD_HALF_EXTENT_CELLS + 1;
+        // the grid is centred on the goal so that the goal sits exactly on a cell centre
+        this.minLng = goal.getLng() - GOAL_FIELD_HALF_EXTENT_CELLS * cellSize;
+        this.minLat = goal.getLat() - GOAL_FIELD_HALF_EXTENT_CELLS * cellSize;
+        this.distances = new double[size * size];
+        Arrays.fill(distances, Double.POSITIVE_INFINITY);
+        this.margin = CELL_DIAGONAL * cellSize;
+
+        computeDistances(noFlyZones);
+    }
+
+    /**
+     * Backward Dijkstra from the goal cell over the grid
+     * @param noFlyZones the no-fly zones that block moves between cells
+     */
+    private void computeDistances(NamedRegion[] noFlyZones) {
+        PreparedRegion[] zones = new PreparedRegion[noFlyZones.length];
+        double[][] zoneEdges = new double[noFlyZones.length][];
+        for (int i = 0; i < noFlyZones.length; i++) {
+            zones[i] = new PreparedRegion(noFlyZones[i]);
+            zoneEdges[i] = edges(noFlyZones[i]);
+        }
+        PriorityQueue<double[]> openList = new PriorityQueue<>(Comparator.comparingDouble(entry -> entry[0]));
+        int goalIndex = GOAL_FIELD_HALF_EXTENT_CELLS * size + GOAL_FIELD_HALF_EXTENT_CELLS;
+        distances[goalIndex] = 0;
+        openList.add(new double[]{0, goalIndex});
+
+        while (!openList.isEmpty()) {
+            double[] entry = openList.poll();
+            int index = (int) entry[1];
+            // skip stale entries that were superseded by a cheaper route
+            if (entry[0] > distances[index]) {
+                continue;
+            }
+            int column = index % size;
+            int row = index / size;
+            LngLat current = cellCentre(column, row);
+
+            for (int[] offset : OFFSETS) {
+                int neighbourColumn = column + offset[0];
+                int neighbourRow = row + offset[1];
+                if (neighbourColumn < 0 || neighbourColumn >= size || neighbourRow < 0 || neighbourRow >= size) {
+                    continue;
+                }
+                int neighbourIndex = neighbourRow * size + neighbourColumn;
+                double moveCost = cellSize * Math.hypot(offset[0], offset[1]);
+                double tentative = entry[0] + moveCost;
+                if (tentative >= distances[neighbourIndex]) {
+                    continue;
+                }
+                // the drone flies from the neighbour to the current cell, so that is the segment which must be clear
+                LngLat neighbour = cellCentre(neighbourColumn, neighbourRow);
+                if (passesDeepInside(neighbour, current, zones, zoneEdges)) {
+                    continue;
+                }
+                distances[neighbourIndex] = tentative;
+                openList.add(new double[]{tentative, neighbourIndex});
+            }
+        }
+    }
+
+    /**
+     * Checks if a move between two cell centres passes further inside a zone than the margin from its edges.
+     * A drone anywhere in the cell at either end is within the margin of the move, so a move refused here is one the drone
+     * cannot make from anywhere in those cells. Points along the move are checked a fraction of a cell apart, and missing the
+     * deep part of a zone between two of them only leaves the move open, which can lower the estimates but never raise them
+     * @param from the centre of the cell the move starts from
+     * @param to the centre of the cell the move ends at
+     * @param zones the no-fly zones
+     * @param zoneEdges the edges of each zone, in the same order as the zones
+     * @return true if some point of the move is deep inside a zone
+     */
+    private boolean passesDeepInside(LngLat from, LngLat to, PreparedRegion[] zones, double[][] zoneEdges) {
+        double lengthInCells = euclideanDistance(from, to) / cellSize;
+        int samples = (int) Math.ceil(lengthInCells * SAMPLES_PER_CELL);
+        for (int k = 0; k <= samples; k++) {
+            double fraction = (double) k / samples;
+            double lng = from.getLng() + fraction * (to.getLng() - from.getLng());
+            double lat = from.getLat() + fraction * (to.getLat() - from.getLat());
+            for (int i = 0; i < zones.length; i++) {
+                PreparedRegion zone = zones[i];
+                // a point the margin inside a zone is at least the margin inside its bounding box
+                if (lng <= zone.getMinLng() + margin || lng >= zone.getMaxLng() - margin
+                        || lat <= zone.getMinLat() + margin || lat >= zone.getMaxLat() - margin) {
+                    continue;
+                }
+                if (zone.contains(lng, lat) && distanceToEdges(zoneEdges[i], lng, lat) > margin) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Lists the start and end of every edge of a zone, including the one wrapping back to the first vertex
+     * @param zone the zone
+     * @return the longitude and latitude of the start and end of each edge in turn
+     */
+    private static double[] edges(NamedRegion zone) {
+        LngLat[] vertices = zone.getVertices();
+        double[] edges = new double[vertices.length * 4];
+        for (int j = 0; j < vertices.length; j++) {
+            LngLat end = vertices[(j + 1) % vertices.length];
+            edges[4 * j] = vertices[j].getLng();
+            edges[4 * j + 1] = vertices[j].getLat();
+            edges[4 * j + 2] = end.getLng();
+            edges[4 * j + 3] = end.getLat();
+        }
+        return edges;
+    }
+
+    /**
+     * Finds the distance from a point to the nearest edge of a zone
+     * @param edges the start and end of each edge of the zone
+     * @return the distance to the nearest point of any edge
+     */
+    private static double distanceToEdges(double[] edges, double lng, double lat) {
+        double nearest = Double.POSITIVE_INFINITY;
+        for (int e = 0; e < edges.length; e += 4) {
+            double edgeLng = edges[e + 2] - edges[e];
+            double edgeLat = edges[e + 3] - edges[e + 1];
+            double lengthSquared = edgeLng * edgeLng + edgeLat * edgeLat;
+            double t = lengthSquared == 0 ? 0
+                    : Math.max(0, Math.min(1, ((lng - edges[e]) * edgeLng + (lat - edges[e + 1]) * edgeLat) / lengthSquared));
+            nearest = Math.min(nearest, Math.hypot(lng - (edges[e] + t * edgeLng), lat - (edges[e + 1] + t * edgeLat)));
+        }
+        return nearest;
+    }
+
+    /**
+     * Gets the centre of a grid cell
+     * @param column the column of the cell
+     * @param row the row of the cell
+     * @return the location of the centre of the cell
+     */
+    private LngLat cellCentre(int column, int row) {
+        return new LngLat(minLng + column * cellSize, minLat + row * cellSize);
+    }
+
+    /**
+     * Estimates the cost of the cheapest path from a location to the goal from the four cells around it.
+     * <p>Interpolating between the cells would blend distances across the corners of zones, so the estimate instead takes the
+     * nearest of the four cells to the goal, less the diagonal of a cell for the distance from the location to that cell, and
+     * allows for a path on the grid being longer than the true path. This is a lower bound on the cost of any path the grid can
+     * follow, and as the grid only refuses moves the drone could not make from anywhere in their cells, on the cost of any path
+     * the drone can fly too, so the estimate never overestimates. Never less than the euclidean distance, which it falls back to
+     * when the location is outside the field or no surrounding cell can reach the goal.</p>
+     * @param location the location to estimate from
+     * @return the estimated distance to the goal, never less than the euclidean distance
+     */
+    public double estimate(LngLat location) {
+        double euclidean = euclideanDistance(location, goal);
+        int column = (int) Math.floor((location.getLng() - minLng) / cellSize);
+        int row = (int) Math.floor((location.getLat() - minLat) / cellSize);
+        if (column < 0 || column >= size - 1 || row < 0 || row >= size - 1) {
+            return euclidean;
+        }
+        int index = row * size + column;
+        double nearest = Math.min(Math.min(distances[index], distances[index + 1]),
+                Math.min(distances[index + size], distances[index + size + 1]));
+        // no surrounding cell can reach the goal, in which case the field gives no useful information
+        if (nearest == Double.POSITIVE_INFINITY) {
+            return euclidean;
+        }
+        return Math.max(euclidean, (nearest - CELL_DIAGONAL * cellSize) / GRID_STRETCH);
+    }
+
+    public LngLat getGoal() {
+        return goal;
+    }
+
+    public double getCellSize() {
+        return cellSize;
+    }
+}
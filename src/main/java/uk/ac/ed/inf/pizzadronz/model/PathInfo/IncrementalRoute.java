@@ -0,0 +1,76 @@
+package uk.ac.ed.inf.pizzadronz.model.PathInfo;
+
+import uk.ac.ed.inf.pizzadronz.exception.SearchBudgetExceededException;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static uk.ac.ed.inf.pizzadronz.constant.SystemConstants.INCREMENTAL_STAGE_SEARCHES;
+
+
+/**
+ * The searches behind the path from one location, kept so the path can be repaired rather than found again when the no-fly zones change.
+ * <p>The path is found in the same large, medium and small stages as the lattice path, each by its own LifelongSearch. Each stage keeps
+ * its searches from the last few places it started from, as the lattice of a search is centred on its start. When a change moves the end
+ * of a stage, the stage after it carries on with the search it kept for the new place if it has one, so a zone that is added and then
+ * removed again takes the later stages back to searches that only need repairing. Only a stage starting somewhere it never started from
+ * before is searched from scratch, which is cheap as it only covers the last stretch to the goal.</p>
+ */
+public class IncrementalRoute {
+    private final LngLat start;
+    private final LngLat goal;
+    private final PathPlanner[] stagePlanners;
+    // the searches of each stage by where they start, the least recently used are dropped first
+    private final List<Map<LngLat, LifelongSearch>> stageSearches;
+
+    /**
+     * Creates a route that has not been searched yet
+     * @param start the start of the route, normally a restaurant
+     * @param goal the goal location
+     * @param stagePlanners the planners whose step sizes and close distances each stage uses, largest first
+     */
+    public IncrementalRoute(LngLat start, LngLat goal, PathPlanner... stagePlanners) {
+        this.start = start;
+        this.goal = goal;
+        this.stagePlanners = stagePlanners;
+        this.stageSearches = new ArrayList<>(stagePlanners.length);
+        for (int i = 0; i < stagePlanners.length; i++) {
+            stageSearches.add(new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<LngLat, LifelongSearch> eldest) {
+                    return size() > INCREMENTAL_STAGE_SEARCHES;
+                }
+            });
+        }
+    }
+
+    /**
+     * Finds the path through every stage for the current no-fly zones, repairing each search kept from the last call
+     * @param noFlyZones the no-fly zones
+     * @param budget the budget every stage spends from
+     * @return the points of every stage one after another, or null if a stage cannot reach close to the goal
+     * @throws SearchBudgetExceededException if the budget runs out before every stage is found
+     */
+    public synchronized List<LngLat> plan(NoFlyZones noFlyZones, SearchBudget budget) {
+        List<LngLat> totalPath = new ArrayList<>();
+        LngLat stageStart = start;
+        for (int i = 0; i < stagePlanners.length; i++) {
+            PathPlanner planner = stagePlanners[i];
+            LifelongSearch search = stageSearches.get(i).computeIfAbsent(stageStart,
+                    searchStart -> new LifelongSearch(searchStart, goal, planner.getStepSize(), planner.getCloseDistance()));
+            List<LngLat> stage = search.plan(noFlyZones, budget);
+            if (stage == null) {
+                return null;
+            }
+            totalPath.addAll(stage);
+            stageStart = stage.get(stage.size() - 1);
+        }
+        return totalPath;
+    }
+
+    public LngLat getStart() {
+        return start;
+    }
+}
@@ -0,0 +1,181 @@
+package uk.ac.ed.inf.pizzadronz.model.PathInfo;
+
+import java.util.Arrays;
+import java.util.function.IntToDoubleFunction;
+
+
+/**
+ * Binary min heap of node ids ordered by a double priority, with decrease-key.
+ * <p>Each node id is in the heap at most once and the heap remembers where it is, so lowering the priority of a node that is
+ * already waiting moves it up in place rather than adding a duplicate entry as a PriorityQueue would.</p>
+ */
+public class IndexedMinHeap {
+    private static final int ABSENT = -1;
+
+    private int[] heap;
+    // the position of each node id in the heap, or -1 if it is not in the heap
+    private int[] positions;
+    private double[] priorities;
+    private int size;
+
+    /**
+     * Creates an empty heap
+     * @param capacity the number of node ids to make room for, the heap grows if more are used
+     */
+    public IndexedMinHeap(int capacity) {
+        heap = new int[capacity];
+        positions = new int[capacity];
+        priorities = new double[capacity];
+        Arrays.fill(positions, ABSENT);
+    }
+
+    /**
+     * Makes sure node ids up to the given id can be stored
+     * @param id the largest node id that will be used
+     */
+    private void ensureCapacity(int id) {
+        if (id < positions.length) {
+            return;
+        }
+        int capacity = Math.max(positions.length * 2, id + 1);
+        heap = Arrays.copyOf(heap, capacity);
+        priorities = Arrays.copyOf(priorities, capacity);
+        int oldLength = positions.length;
+        positions = Arrays.copyOf(positions, capacity);
+        Arrays.fill(positions, oldLength, capacity, ABSENT);
+    }
+
+    /**
+     * Adds a node to the heap, or lowers its priority if it is already in the heap
+     * @param id the node id
+     * @param priority the priority of the node, lower comes out first
+     */
+    public void addOrDecrease(int id, double priority) {
+        ensureCapacity(id);
+        if (positions[id] == ABSENT) {
+            heap[size] = id;
+            positions[id] = size;
+            priorities[id] = priority;
+            siftUp(size++);
+        } else if (priority < priorities[id]) {
+            priorities[id] = priority;
+            siftUp(positions[id]);
+        }
+    }
+
+    /**
+     * Removes the node with the lowest priority
+     * @return the id of the node with the lowest priority
+     */
+    public int poll() {
+        int top = heap[0];
+        positions[top] = ABSENT;
+        size--;
+        if (size > 0) {
+            heap[0] = heap[size];
+            positions[heap[0]] = 0;
+            siftDown(0);
+        }
+        return top;
+    }
+
+    /**
+     * Removes a node wherever it is in the heap, so it can be added again with a higher priority
+     * @param id the node id, which does not have to be in the heap
+     */
+    public void remove(int id) {
+        if (id >= positions.length || positions[id] == ABSENT) {
+            return;
+        }
+        int index = positions[id];
+        positions[id] = ABSENT;
+        size--;
+        if (index == size) {
+            return;
+        }
+        // the last node fills the gap and moves whichever way its priority needs it to
+        int moved = heap[size];
+        heap[index] = moved;
+        positions[moved] = index;
+        siftDown(index);
+        siftUp(positions[moved]);
+    }
+
+    /**
+     * Gets the lowest priority without removing its node
+     * @return the lowest priority, or infinity if the heap is empty
+     */
+    public double peekPriority() {
+        return size == 0 ? Double.POSITIVE_INFINITY : priorities[heap[0]];
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Works out the priority of every node in the heap again and puts them back in order, for when the priorities have all changed
+     * at once. Only the nodes in the heap are touched, and putting them in order takes time linear in their number
+     * @param priority gives the new priority of a node id
+     */
+    public void reprioritise(IntToDoubleFunction priority) {
+        for (int i = 0; i < size; i++) {
+            priorities[heap[i]] = priority.applyAsDouble(heap[i]);
+        }
+        for (int i = (size >>> 1) - 1; i >= 0; i--) {
+            siftDown(i);
+        }
+    }
+
+    /**
+     * Removes every node, only touching the entries that were in use
+     */
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            positions[heap[i]] = ABSENT;
+        }
+        size = 0;
+    }
+
+    private void siftUp(int index) {
+        int id = heap[index];
+        double priority = priorities[id];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            int parentId = heap[parent];
+            if (priorities[parentId] <= priority) {
+                break;
+            }
+            heap[index] = parentId;
+            positions[parentId] = index;
+            index = parent;
+        }
+        heap[index] = id;
+        positions[id] = index;
+    }
+
+    private void siftDown(int index) {
+        int id = heap[index];
+        double priority = priorities[id];
+        int half = size >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            int right = child + 1;
+            if (right < size && priorities[heap[right]] < priorities[heap[child]]) {
+                child = right;
+            }
+            if (priorities[heap[child]] >= priority) {
+                break;
+            }
+            heap[index] = heap[child];
+            positions[heap[index]] = index;
+            index = child;
+        }
+        heap[index] = id;
+        positions[id] = index;
+    }
+}
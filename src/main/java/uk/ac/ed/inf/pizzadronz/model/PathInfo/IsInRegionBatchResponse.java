@@ -0,0 +1,45 @@
+package uk.ac.ed.inf.pizzadronz.model.PathInfo;
+
+/**
+ * Represents the result of checking a batch of points against one region.
+ * <p>The results are packed into a bitset encoded in base64. Bit j of byte k, counting from the least significant bit, is set when
+ * point 8k + j is within the region, and there are always enough bytes for every point.</p>
+ */
+public class IsInRegionBatchResponse {
+    private int count;
+    private int inside;
+    private String results;
+
+    public IsInRegionBatchResponse() {
+    }
+
+    public IsInRegionBatchResponse(int count, int inside, String results) {
+        this.count = count;
+        this.inside = inside;
+        this.results = results;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public void setCount(int count) {
+        this.count = count;
+    }
+
+    public int getInside() {
+        return inside;
+    }
+
+    public void setInside(int inside) {
+        this.inside = inside;
+    }
+
+    public String getResults() {
+        return results;
+    }
+
+    public void setResults(String results) {
+        this.results = results;
+    }
+}
@@ -2,7 +2,8 @@ package uk.ac.ed.inf.pizzadronz.model.PathInfo;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+
+import static uk.ac.ed.inf.pizzadronz.constant.JsonMappers.MAPPER;
 
 
 /** class used for testing, to allow the isInRegion method that takes JSON input to be used easily
@@ -11,7 +12,6 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 public class IsInRegionRequest {
     private LngLat position;
     private NamedRegion region;
-    private final ObjectMapper objectMapper = new ObjectMapper();
 
 
     public IsInRegionRequest() {
@@ -39,7 +39,7 @@ public class IsInRegionRequest {
      * @throws JsonProcessingException
      */
     public JsonNode toJson() throws JsonProcessingException {
-        return objectMapper.readTree(this.toString());
+        return MAPPER.readTree(this.toString());
     }
 
     @Override
@@ -0,0 +1,415 @@
+package uk.ac.ed.inf.pizzadronz.model.PathInfo;
+
+import uk.ac.ed.inf.pizzadronz.exception.SearchBudgetExceededException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static uk.ac.ed.inf.pizzadronz.constant.SystemConstants.APPLETON_TOWER;
+import static uk.ac.ed.inf.pizzadronz.constant.SystemConstants.LATTICE_QUANTA_PER_STEP;
+import static uk.ac.ed.inf.pizzadronz.model.PathInfo.AStar.euclideanDistance;
+import static uk.ac.ed.inf.pizzadronz.model.PathInfo.AStar.heuristic;
+
+
+/**
+ * Lifelong Planning A* from one fixed start to close to a goal over the move lattice of one step size.
+ * <p>Unlike PathPlanner, the search keeps its nodes, costs and open list between calls. Each node has a cost g from its last
+ * expansion and a cost rhs worked out from its neighbours, and a node whose two costs differ waits in the open list. When the
+ * no-fly zones change, only the nodes close to the zones added or removed have their rhs worked out again, and the search
+ * carries on from where it stopped, so it only expands the nodes whose cost the change actually affected.</p>
+ * <p>Every node close to the goal leads to one extra goal node, at a cost of the estimate from the node to the goal itself, so like
+ * PathPlanner the search finishes at the close node that looks best for the stage after it rather than the first one it can reach.
+ * A search is not safe to use from more than one thread at a time.</p>
+ */
+public class LifelongSearch {
+    private static final int INITIAL_CAPACITY = 1 << 10;
+    private static final int GOAL = 0;
+    private static final int START = 1;
+
+    private final LngLat start;
+    private final LngLat goal;
+    private final double stepSize;
+    private final double closeDistance;
+    private final double quantum;
+    private final double[] moveLng;
+    private final double[] moveLat;
+
+    private final LongIntHashMap nodeIds = new LongIntHashMap(INITIAL_CAPACITY);
+    private final IndexedMinHeap openList = new IndexedMinHeap(INITIAL_CAPACITY);
+    private double[] lng = new double[INITIAL_CAPACITY];
+    private double[] lat = new double[INITIAL_CAPACITY];
+    private double[] g = new double[INITIAL_CAPACITY];
+    private double[] rhs = new double[INITIAL_CAPACITY];
+    private double[] estimate = new double[INITIAL_CAPACITY];
+    // the estimates were last worked out in these rounds, a new round starts whenever the zones change
+    private int[] estimateRounds = new int[INITIAL_CAPACITY];
+    private int estimateRound;
+    // the neighbour rhs was worked out from, and the compass move from it, so the path can be read back from the goal
+    private int[] parent = new int[INITIAL_CAPACITY];
+    private byte[] parentDirection = new byte[INITIAL_CAPACITY];
+    private boolean[] nearGoal = new boolean[INITIAL_CAPACITY];
+    private int nodeCount;
+    // the nodes close enough to the goal, which are the only ones leading to the goal node
+    private int[] goalRegion = new int[16];
+    private int goalRegionSize;
+
+    // the zones the costs were last worked out for, and what the search used to check moves against them
+    private NamedRegion[] searchedZones;
+    private long searchedVersion = -1;
+    private ZoneEdgeIndex edgeIndex;
+    private BlockedMoveMap blockedMoves;
+    private GoalDistanceField field;
+
+    /**
+     * Creates a search that has not yet expanded anything
+     * @param start the start of the search, which the lattice is centred on
+     * @param goal the goal location
+     * @param stepSize the size of each move of the drone
+     * @param closeDistance the distance to the goal at which the path is considered close enough for the path to be finished
+     */
+    public LifelongSearch(LngLat start, LngLat goal, double stepSize, double closeDistance) {
+        this.start = start;
+        this.goal = goal;
+        this.stepSize = stepSize;
+        this.closeDistance = closeDistance;
+        this.quantum = stepSize / LATTICE_QUANTA_PER_STEP;
+        this.moveLng = new double[16];
+        this.moveLat = new double[16];
+        for (int i = 0; i < 16; i++) {
+            double angle = Math.toRadians(i * 22.5);
+            moveLng[i] = stepSize * Math.cos(angle);
+            moveLat[i] = stepSize * Math.sin(angle);
+        }
+
+        // the goal node sits off the lattice, so it is added without a key
+        addNode(goal.getLng(), goal.getLat());
+        addNode(start.getLng(), start.getLat());
+        nodeIds.put(key(start.getLng(), start.getLat()), START);
+        rhs[START] = 0;
+        noteIfNearGoal(START);
+        // the start is the only node whose costs differ at first, its priority is worked out again once the zones are known
+        queue(START);
+    }
+
+    /**
+     * Finds the path from the start to close to the goal for the current no-fly zones, first repairing the costs around any zones
+     * added or removed since the last call
+     * @param noFlyZones the no-fly zones
+     * @param budget the budget the search spends its expansions from
+     * @return the path from start to goal, or null if there is no path
+     * @throws SearchBudgetExceededException if the budget runs out before the search finishes, the search can carry on from where
+     * it stopped on the next call
+     */
+    public List<LngLat> plan(NoFlyZones noFlyZones, SearchBudget budget) {
+        // the zones are replaced before the version moves on, so reading the version first means the zones are at least as new
+        long version = noFlyZones.getVersion();
+        if (version != searchedVersion) {
+            NamedRegion[] zones = noFlyZones.getNoFlyZones();
+            edgeIndex = noFlyZones.getEdgeIndex();
+            blockedMoves = noFlyZones.getBlockedMoveMap(stepSize);
+            // every delivery heads to AT, so the estimates can come from the distance field built for the current no-fly zones
+            field = goal.equals(APPLETON_TOWER) ? noFlyZones.getGoalDistanceField(stepSize) : null;
+            repair(searchedZones == null ? List.of() : changedZones(searchedZones, zones));
+            searchedZones = zones;
+            searchedVersion = version;
+        }
+
+        // nodes tied with the goal node are expanded too, as a node that got dearer can tie with the goal cost it was still giving
+        while (!openList.isEmpty() && (openList.peekPriority() <= priority(GOAL) || g[GOAL] != rhs[GOAL])) {
+            budget.expand();
+            int current = openList.poll();
+            if (current == GOAL) {
+                // nothing is reached from the goal node, so its cost can simply be taken
+                g[GOAL] = rhs[GOAL];
+            } else if (g[current] > rhs[current]) {
+                // the node got cheaper, so pass its new cost on to the nodes it can move to
+                g[current] = rhs[current];
+                relaxNeighbours(current);
+            } else {
+                // the node got dearer, so anything that was reached through it has to look for another way in
+                double oldG = g[current];
+                g[current] = Double.POSITIVE_INFINITY;
+                recheckNeighbours(current, oldG);
+                queue(current);
+            }
+        }
+
+        if (g[GOAL] == Double.POSITIVE_INFINITY) {
+            return null;
+        }
+        return readPath();
+    }
+
+    /**
+     * Finds the zones that are in one set but not the other, the zone objects are replaced rather than changed so they are compared
+     * by identity
+     */
+    private static List<NamedRegion> changedZones(NamedRegion[] before, NamedRegion[] after) {
+        Map<NamedRegion, Boolean> inBefore = new IdentityHashMap<>();
+        for (NamedRegion zone : before) {
+            inBefore.put(zone, Boolean.TRUE);
+        }
+        List<NamedRegion> changed = new ArrayList<>();
+        for (NamedRegion zone : after) {
+            if (inBefore.remove(zone) == null) {
+                changed.add(zone);
+            }
+        }
+        changed.addAll(inBefore.keySet());
+        return changed;
+    }
+
+    /**
+     * Works the costs out again around zones that have been added or removed.
+     * A move can only have changed if both its ends are within a step of a changed zone, so only the nodes there are looked at,
+     * with another step to spare for positions drifting within their lattice cell:
+     * each has its rhs worked out again and passes its cost on to its neighbours, which reaches nodes that were never added
+     * because the move to them used to be blocked. The estimates changed with the zones, and with them the cost of reaching the
+     * goal node, so the goal node's rhs is worked out again and the nodes waiting in the open list are put back in order by their
+     * new priorities. Every other node has equal costs and stays out of the open list, so it is not touched
+     * @param changed the zones added or removed since the costs were last worked out
+     */
+    private void repair(List<NamedRegion> changed) {
+        estimateRound++;
+        if (!changed.isEmpty()) {
+            double[][] boxes = new double[changed.size()][];
+            for (int i = 0; i < changed.size(); i++) {
+                boxes[i] = boundingBox(changed.get(i));
+            }
+            // nodes added while repairing are already up to date, so only the ones there at the start are looked at
+            int existing = nodeCount;
+            for (int id = START; id < existing; id++) {
+                if (!isInAny(boxes, lng[id], lat[id])) {
+                    continue;
+                }
+                if (id != START) {
+                    updateRhs(id);
+                    queue(id);
+                }
+                if (g[id] < Double.POSITIVE_INFINITY) {
+                    relaxNeighbours(id);
+                }
+            }
+        }
+
+        // the moves to the goal node cost the estimates, so its rhs changed with them
+        updateRhs(GOAL);
+        queue(GOAL);
+        openList.reprioritise(this::priority);
+    }
+
+    private double[] boundingBox(NamedRegion zone) {
+        double[] box = {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        for (LngLat vertex : zone.getVertices()) {
+            box[0] = Math.min(box[0], vertex.getLng() - 2 * stepSize);
+            box[1] = Math.min(box[1], vertex.getLat() - 2 * stepSize);
+            box[2] = Math.max(box[2], vertex.getLng() + 2 * stepSize);
+            box[3] = Math.max(box[3], vertex.getLat() + 2 * stepSize);
+        }
+        return box;
+    }
+
+    private static boolean isInAny(double[][] boxes, double lngValue, double latValue) {
+        for (double[] box : boxes) {
+            if (lngValue >= box[0] && latValue >= box[1] && lngValue <= box[2] && latValue <= box[3]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Passes the cost of a node on to every node one clear move away that it makes cheaper, adding nodes it reaches for the first time
+     * @param id the node whose cost is passed on
+     */
+    private void relaxNeighbours(int id) {
+        double cost = g[id] + stepSize;
+        for (int direction = 0; direction < moveLng.length; direction++) {
+            double neighbourLng = lng[id] + moveLng[direction];
+            double neighbourLat = lat[id] + moveLat[direction];
+            long neighbourKey = key(neighbourLng, neighbourLat);
+            int neighbour = nodeIds.get(neighbourKey);
+            if (neighbour == START || (neighbour != -1 && cost >= rhs[neighbour]) || isBlocked(id, direction)) {
+                continue;
+            }
+            if (neighbour == -1) {
+                neighbour = addNode(neighbourLng, neighbourLat);
+                nodeIds.put(neighbourKey, neighbour);
+                noteIfNearGoal(neighbour);
+            }
+            rhs[neighbour] = cost;
+            parent[neighbour] = id;
+            parentDirection[neighbour] = (byte) direction;
+            queue(neighbour);
+        }
+        if (nearGoal[id] && g[id] + estimate(id) < rhs[GOAL]) {
+            rhs[GOAL] = g[id] + estimate(id);
+            parent[GOAL] = id;
+            queue(GOAL);
+        }
+    }
+
+    /**
+     * Works out rhs again for every neighbour whose rhs came from a node that has just got dearer
+     * @param id the node that got dearer
+     * @param oldG the cost the node had before
+     */
+    private void recheckNeighbours(int id, double oldG) {
+        if (oldG == Double.POSITIVE_INFINITY) {
+            return;
+        }
+        for (int direction = 0; direction < moveLng.length; direction++) {
+            int neighbour = nodeIds.get(key(lng[id] + moveLng[direction], lat[id] + moveLat[direction]));
+            if (neighbour != -1 && neighbour != START && parent[neighbour] == id) {
+                updateRhs(neighbour);
+                queue(neighbour);
+            }
+        }
+        if (parent[GOAL] == id) {
+            updateRhs(GOAL);
+            queue(GOAL);
+        }
+    }
+
+    /**
+     * Works out the rhs of a node from scratch, as the cheapest cost of a neighbour plus the move from it
+     * @param id the node, which is not the start
+     */
+    private void updateRhs(int id) {
+        rhs[id] = Double.POSITIVE_INFINITY;
+        parent[id] = -1;
+        if (id == GOAL) {
+            for (int i = 0; i < goalRegionSize; i++) {
+                int near = goalRegion[i];
+                if (g[near] + estimate(near) < rhs[GOAL]) {
+                    rhs[GOAL] = g[near] + estimate(near);
+                    parent[GOAL] = near;
+                }
+            }
+            return;
+        }
+        for (int direction = 0; direction < moveLng.length; direction++) {
+            // the neighbour the node is reached from by this move is one move back the other way
+            int neighbour = nodeIds.get(key(lng[id] - moveLng[direction], lat[id] - moveLat[direction]));
+            if (neighbour == -1 || g[neighbour] + stepSize >= rhs[id] || isBlocked(neighbour, direction)) {
+                continue;
+            }
+            rhs[id] = g[neighbour] + stepSize;
+            parent[id] = neighbour;
+            parentDirection[id] = (byte) direction;
+        }
+    }
+
+    /**
+     * Puts a node in the open list at its current priority if its two costs differ, or takes it out if they agree
+     */
+    private void queue(int id) {
+        openList.remove(id);
+        if (g[id] != rhs[id]) {
+            openList.addOrDecrease(id, priority(id));
+        }
+    }
+
+    private double priority(int id) {
+        return Math.min(g[id], rhs[id]) + estimate(id);
+    }
+
+    /**
+     * Gets the estimate from a node to the goal, working it out again if the zones have changed since it was last worked out.
+     * Most nodes are never queued again after a change, so estimates are only worked out for the nodes that need them
+     */
+    private double estimate(int id) {
+        if (id == GOAL) {
+            return 0;
+        }
+        if (estimateRounds[id] != estimateRound) {
+            estimate[id] = heuristic(new LngLat(lng[id], lat[id]), goal, field);
+            estimateRounds[id] = estimateRound;
+        }
+        return estimate[id];
+    }
+
+    private boolean isBlocked(int from, int direction) {
+        return blockedMoves.mayBeBlocked(lng[from], lat[from], direction)
+                && edgeIndex.intersects(lng[from], lat[from], lng[from] + moveLng[direction], lat[from] + moveLat[direction]);
+    }
+
+    /**
+     * Reads the path back from the goal node.
+     * A node keeps the position it was first reached at, which can be a fraction of a lattice cell away from where the path
+     * reaches it, so the path is laid out again from the start by the moves alone to keep every move exactly one step long
+     */
+    private List<LngLat> readPath() {
+        List<Integer> directions = new ArrayList<>();
+        for (int id = parent[GOAL]; id != START; id = parent[id]) {
+            directions.add((int) parentDirection[id]);
+        }
+        Collections.reverse(directions);
+
+        List<LngLat> path = new ArrayList<>(directions.size() + 1);
+        path.add(start);
+        double pathLng = start.getLng();
+        double pathLat = start.getLat();
+        for (int direction : directions) {
+            pathLng += moveLng[direction];
+            pathLat += moveLat[direction];
+            path.add(new LngLat(pathLng, pathLat));
+        }
+        return path;
+    }
+
+    private int addNode(double lngValue, double latValue) {
+        if (nodeCount == lng.length) {
+            int capacity = nodeCount * 2;
+            lng = Arrays.copyOf(lng, capacity);
+            lat = Arrays.copyOf(lat, capacity);
+            g = Arrays.copyOf(g, capacity);
+            rhs = Arrays.copyOf(rhs, capacity);
+            estimate = Arrays.copyOf(estimate, capacity);
+            estimateRounds = Arrays.copyOf(estimateRounds, capacity);
+            parent = Arrays.copyOf(parent, capacity);
+            parentDirection = Arrays.copyOf(parentDirection, capacity);
+            nearGoal = Arrays.copyOf(nearGoal, capacity);
+        }
+        int id = nodeCount++;
+        lng[id] = lngValue;
+        lat[id] = latValue;
+        g[id] = Double.POSITIVE_INFINITY;
+        rhs[id] = Double.POSITIVE_INFINITY;
+        parent[id] = -1;
+        estimateRounds[id] = -1;
+        return id;
+    }
+
+    private void noteIfNearGoal(int id) {
+        if (euclideanDistance(new LngLat(lng[id], lat[id]), goal) > closeDistance) {
+            return;
+        }
+        nearGoal[id] = true;
+        if (goalRegionSize == goalRegion.length) {
+            goalRegion = Arrays.copyOf(goalRegion, goalRegionSize * 2);
+        }
+        goalRegion[goalRegionSize++] = id;
+    }
+
+    /**
+     * Snaps a position to the lattice centred on the start, the same way SearchWorkspace does
+     */
+    private long key(double lngValue, double latValue) {
+        long column = Math.round((lngValue - start.getLng()) / quantum);
+        long row = Math.round((latValue - start.getLat()) / quantum);
+        return (column << 32) | (row & 0xFFFFFFFFL);
+    }
+
+    public LngLat getStart() {
+        return start;
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+}
@@ -0,0 +1,122 @@
+package uk.ac.ed.inf.pizzadronz.model.PathInfo;
+
+import java.util.Arrays;
+
+
+/**
+ * Open addressing hash map from long keys to int values, used to look up search nodes by their lattice key.
+ * <p>Keys and values are held in primitive arrays so nothing is boxed, and clearing the map only bumps a generation counter,
+ * so the same map can be reused for search after search without refilling its arrays.</p>
+ */
+public class LongIntHashMap {
+    private static final int MISSING = -1;
+
+    private long[] keys;
+    private int[] values;
+    // the generation each slot was written in, a slot from an older generation counts as empty
+    private int[] generations;
+    private int generation = 1;
+    private int size;
+    private int mask;
+
+    /**
+     * Creates an empty map
+     * @param capacity the number of slots to start with, rounded up to a power of two
+     */
+    public LongIntHashMap(int capacity) {
+        int slots = Integer.highestOneBit(Math.max(16, capacity - 1)) << 1;
+        allocate(slots);
+    }
+
+    private void allocate(int slots) {
+        keys = new long[slots];
+        values = new int[slots];
+        generations = new int[slots];
+        mask = slots - 1;
+    }
+
+    /**
+     * Spreads the bits of a key so that neighbouring lattice keys land in different slots
+     * @param key the key to hash
+     * @return the starting slot for the key
+     */
+    private int slot(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    /**
+     * Gets the value for a key
+     * @param key the key to look up
+     * @return the value for the key, or -1 if the key is not in the map
+     */
+    public int get(long key) {
+        int index = slot(key);
+        while (generations[index] == generation) {
+            if (keys[index] == key) {
+                return values[index];
+            }
+            index = (index + 1) & mask;
+        }
+        return MISSING;
+    }
+
+    /**
+     * Sets the value for a key, replacing any value it already had
+     * @param key the key to set
+     * @param value the value for the key, which must not be negative
+     */
+    public void put(long key, int value) {
+        // keep the table at most half full so probes stay short
+        if (2 * (size + 1) > keys.length) {
+            grow();
+        }
+        int index = slot(key);
+        while (generations[index] == generation) {
+            if (keys[index] == key) {
+                values[index] = value;
+                return;
+            }
+            index = (index + 1) & mask;
+        }
+        keys[index] = key;
+        values[index] = value;
+        generations[index] = generation;
+        size++;
+    }
+
+    /**
+     * Doubles the number of slots and puts every current entry back in
+     */
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        int[] oldGenerations = generations;
+        int oldGeneration = generation;
+        allocate(oldKeys.length * 2);
+        generation = 1;
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldGenerations[i] == oldGeneration) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    /**
+     * Removes every entry
+     */
+    public void clear() {
+        size = 0;
+        generation++;
+        if (generation == Integer.MAX_VALUE) {
+            // the counter is about to wrap, so start again from fresh slots
+            Arrays.fill(generations, 0);
+            generation = 1;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+}
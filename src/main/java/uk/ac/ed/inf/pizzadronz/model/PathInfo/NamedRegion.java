@@ -23,6 +23,7 @@ public class NamedRegion{
     public NamedRegion(String name, LngLat[] vertices) {
         this.name = name;
         this.vertices = vertices;
+        setMinMaxLngLat();
     }
 
     public Double getMaxLng() {
@@ -1,28 +1,73 @@
 package uk.ac.ed.inf.pizzadronz.model.PathInfo;
 
-import org.springframework.core.ParameterizedTypeReference;
-import org.springframework.http.HttpMethod;
-import org.springframework.http.ResponseEntity;
-import org.springframework.web.client.RestTemplate;
-import uk.ac.ed.inf.pizzadronz.constant.SystemConstants;
+import uk.ac.ed.inf.pizzadronz.exception.InvalidBodyException;
 
-import static uk.ac.ed.inf.pizzadronz.constant.SystemConstants.CENTRAL_URL;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static uk.ac.ed.inf.pizzadronz.constant.SystemConstants.APPLETON_TOWER;
+import static uk.ac.ed.inf.pizzadronz.constant.SystemConstants.BLOCKED_MOVE_CACHE_DIRECTORY;
 import static uk.ac.ed.inf.pizzadronz.constant.SystemConstants.DRONE_MOVE_DISTANCE;
+import static uk.ac.ed.inf.pizzadronz.constant.SystemConstants.DRONE_MOVE_DISTANCE_MEDIUM;
 import static uk.ac.ed.inf.pizzadronz.model.PathInfo.AStar.doSegmentsIntersect;
 
 /**
  * Represents no fly zones and central area on the map.
- * <p>Provides methods for retrieving the no fly zones and central from server.</p>
+ * <p>Provides the no fly zones and central from the reference data, replaced whenever new reference data changes them.</p>
+ * <p>Once a zone is added or removed here the zones are pinned: later reference data is ignored, so the zones changed here are
+ * never silently replaced by the ones on the server.</p>
  *
  */
 
-public class NoFlyZones {
-    private NamedRegion[] noFlyZones;
-    private NamedRegion central = setCentralRegion();
+public class NoFlyZones implements ReferenceDataService.Listener {
+    // volatile so that searches on other threads see zones added while the service is running
+    private volatile NamedRegion[] noFlyZones;
+    private volatile NamedRegion central;
+    // central checked and converted once for the central area check on every move, made the first time it is needed
+    private volatile PreparedRegion preparedCentral;
+    // distance fields towards AT for each drone step size, only valid for the current set of no-fly zones
+    private final Map<Double, GoalDistanceField> goalDistanceFields = new ConcurrentHashMap<>();
+    // bitmaps of moves that may be blocked for each drone step size, only valid for the current set of no-fly zones
+    private final Map<Double, BlockedMoveMap> blockedMoveMaps = new ConcurrentHashMap<>();
+    // where the bitmaps are stored between restarts, or null to only keep them in memory
+    private volatile Path blockedMoveDirectory = Path.of(BLOCKED_MOVE_CACHE_DIRECTORY);
+    // visibility graph towards AT, only valid for the current set of no-fly zones
+    private volatile VisibilityGraph visibilityGraph;
+    // clusters and portals towards AT for HPA*, only valid for the current set of no-fly zones
+    private volatile ClusterHierarchy clusterHierarchy;
+    // grid of zone edges for quick obstacle checks, rebuilt whenever the zones change
+    private volatile ZoneEdgeIndex edgeIndex;
+    // each zone checked and converted once for point containment checks, in the same order as the zones and rebuilt with them
+    private volatile PreparedRegion[] preparedZones;
+    // moves on every time the no-fly zones change, so anything built from older zones can tell it is out of date
+    private volatile long version;
+    // the version the zones were last at when a zone was removed, before then zones had only ever been added
+    private volatile long removalVersion;
+    // the version of the reference data the zones were last taken from, only read and written under this lock
+    private long referenceVersion = -1;
+    // set once zones are added or removed here, after which new reference data no longer replaces them, only read and written
+    // under this lock
+    private boolean changedLocally;
 
 
     public NoFlyZones() {
-        setNoFlyZones();
+        this(ReferenceDataService.startDefault());
+    }
+
+    /**
+     * Uses the no fly zones and central of a reference data service, following every snapshot it publishes until zones are
+     * added or removed here
+     * @param referenceData the service to take the zones from, which must already have been started
+     * @throws IllegalStateException if the service has not fetched its first snapshot yet
+     */
+    public NoFlyZones(ReferenceDataService referenceData) {
+        if (referenceData.getSnapshot() == null) {
+            throw new IllegalStateException("The reference data service has not been started");
+        }
+        referenceData.addListener(this);
+        referenceDataChanged(referenceData.getSnapshot());
     }
 
 
@@ -33,36 +78,48 @@ public class NoFlyZones {
 
 
     /**
-     *     Fetch no fly zones from the server and set the noFlyZones field.
-      */
-    private void setNoFlyZones() {
-        String url = SystemConstants.NO_FLY_ZONES_URL;
-
-        // Create RestTemplate instance
-        RestTemplate restTemplate = new RestTemplate();
-
-        // Fetch and map the JSON to a list of NamedRegion objects
-        ResponseEntity<NamedRegion[]> response = restTemplate.exchange(
-                url,
-                HttpMethod.GET,
-                null,
-                new ParameterizedTypeReference<NamedRegion[]>() {
-                }
-        );
-
-        // Process the response
-        if (response.getStatusCode().is2xxSuccessful()) {
-            this.noFlyZones = response.getBody();
+     * Takes the no fly zones and central from a newer snapshot, unless zones have been added or removed here. Everything built
+     * from the old zones is only thrown away if the zones or central are not the ones they were built from
+     * @param data the new snapshot
+     */
+    @Override
+    public synchronized void referenceDataChanged(ReferenceData data) {
+        if (changedLocally || data.getVersion() <= referenceVersion) {
+            return;
+        }
+        boolean first = referenceVersion < 0;
+        referenceVersion = data.getVersion();
+        if (data.getNoFlyZones() == noFlyZones && data.getCentral() == central) {
+            return;
         }
 
+        NamedRegion[] newNoFlyZones = data.getNoFlyZones() != null ? data.getNoFlyZones() : new NamedRegion[0];
+        PreparedRegion[] newPreparedZones = prepare(newNoFlyZones, 0, new PreparedRegion[0]);
+        edgeIndex = new ZoneEdgeIndex(newNoFlyZones);
+        preparedZones = newPreparedZones;
+        this.noFlyZones = newNoFlyZones;
+        central = data.getCentral();
+        preparedCentral = null;
+        if (first) {
+            return;
+        }
+        goalDistanceFields.clear();
+        blockedMoveMaps.clear();
+        visibilityGraph = null;
+        clusterHierarchy = null;
+        // the new zones may have lost some of the old ones, so routes found around them can no longer be reused
+        removalVersion = version + 1;
+        version++;
     }
 
 
     /**
-     * for testing purposes, this method allows no fly zones to be set manually
+     * for testing purposes, this method allows no fly zones to be set manually. The zones are pinned from then on, so new
+     * reference data no longer replaces them
      * @param noFlyZones the no fly zones to be set
+     * @throws InvalidBodyException if a zone is not a valid region, in which case no zone is added
       */
-    public void addNoFlyZones(NamedRegion[] noFlyZones) {
+    public synchronized void addNoFlyZones(NamedRegion[] noFlyZones) {
         NamedRegion[] newNoFlyZones = new NamedRegion[this.noFlyZones.length + noFlyZones.length];
         for (int i = 0; i < this.noFlyZones.length; i++) {
             newNoFlyZones[i] = this.noFlyZones[i];
@@ -71,41 +128,224 @@ public class NoFlyZones {
             newNoFlyZones[this.noFlyZones.length + i] = noFlyZones[i];
         }
 
+        // prepared before anything changes, so a zone that is not a valid region leaves the zones as they were
+        PreparedRegion[] newPreparedZones = prepare(newNoFlyZones, this.noFlyZones.length, preparedZones);
+        changedLocally = true;
+        edgeIndex = new ZoneEdgeIndex(newNoFlyZones);
+        preparedZones = newPreparedZones;
         this.noFlyZones = newNoFlyZones;
+        // the fields and graph were built around the old zones so must be rebuilt
+        goalDistanceFields.clear();
+        blockedMoveMaps.clear();
+        visibilityGraph = null;
+        clusterHierarchy = null;
+        version++;
     }
 
+    /**
+     * Removes every no-fly zone with a name, so routes can use the space it took up. If any is removed the zones are pinned from
+     * then on, so new reference data no longer replaces them
+     * @param name the name of the zones to remove
+     * @return true if any zone was removed
+     */
+    public synchronized boolean removeNoFlyZone(String name) {
+        NamedRegion[] remaining = Arrays.stream(this.noFlyZones)
+                .filter(zone -> !name.equals(zone.getName()))
+                .toArray(NamedRegion[]::new);
+        if (remaining.length == this.noFlyZones.length) {
+            return false;
+        }
+        changedLocally = true;
+
+        edgeIndex = new ZoneEdgeIndex(remaining);
+        preparedZones = Arrays.stream(preparedZones)
+                .filter(zone -> !name.equals(zone.getRegion().getName()))
+                .toArray(PreparedRegion[]::new);
+        this.noFlyZones = remaining;
+        goalDistanceFields.clear();
+        blockedMoveMaps.clear();
+        visibilityGraph = null;
+        clusterHierarchy = null;
+        // set before the version so that anything seeing the new version also sees that a zone went with it
+        removalVersion = version + 1;
+        version++;
+        return true;
+    }
 
     /**
-     *     get the central region from the server
-     *     @return the central region, allowing it to be set as a class parameter
-      */
-    public NamedRegion setCentralRegion() {
-        String url = CENTRAL_URL;
-
-        // Create RestTemplate instance
-        RestTemplate restTemplate = new RestTemplate();
-
-        // Fetch and map the JSON to a list of NamedRegion objects
-        ResponseEntity<NamedRegion> response = restTemplate.exchange(
-                url,
-                HttpMethod.GET,
-                null,
-                new ParameterizedTypeReference<NamedRegion>() {
+     * Get the distance field towards AT for a given drone step size, building it the first time it is needed
+     * for the current no-fly zones
+     * @param stepSize the step size of the search that will use the field
+     * @return the distance field towards AT
+     */
+    public GoalDistanceField getGoalDistanceField(double stepSize) {
+        while (true) {
+            GoalDistanceField field = goalDistanceFields.get(stepSize);
+            if (field != null) {
+                return field;
+            }
+            // the version is read before the zones, so if the zones change while the field is built the version will have moved on
+            long builtVersion = version;
+            field = new GoalDistanceField(APPLETON_TOWER, stepSize, noFlyZones);
+            synchronized (this) {
+                // only kept if no zone changed while it was built, as the zones are changed and the fields cleared under this lock
+                if (version == builtVersion) {
+                    GoalDistanceField existing = goalDistanceFields.putIfAbsent(stepSize, field);
+                    return existing != null ? existing : field;
                 }
-        );
+            }
+        }
+    }
 
-        NamedRegion central = null;
-        // Process the response
-        if (response.getStatusCode().is2xxSuccessful()) {
-            central = response.getBody();
+    /**
+     * Get the bitmap of moves that may be blocked for a given drone step size, loading or building it the first time it is needed
+     * for the current no-fly zones
+     * @param stepSize the size of each move of the drone
+     * @return the bitmap of moves that may be blocked
+     */
+    public BlockedMoveMap getBlockedMoveMap(double stepSize) {
+        while (true) {
+            BlockedMoveMap map = blockedMoveMaps.get(stepSize);
+            if (map != null) {
+                return map;
+            }
+            // read before the zones, as for the distance fields
+            long builtVersion = version;
+            map = BlockedMoveMap.forZones(noFlyZones, stepSize, blockedMoveDirectory);
+            synchronized (this) {
+                if (version == builtVersion) {
+                    BlockedMoveMap existing = blockedMoveMaps.putIfAbsent(stepSize, map);
+                    return existing != null ? existing : map;
+                }
+            }
         }
+    }
 
-        return central;
+    /**
+     * set where the bitmaps of moves that may be blocked are stored between restarts
+     * @param directory the directory to keep them in, which should only be writable by this service, or null to only keep
+     *                  them in memory
+     */
+    public void setBlockedMoveDirectory(Path directory) {
+        blockedMoveDirectory = directory;
+    }
+
+    /**
+     * Get the visibility graph towards AT, building it the first time it is needed for the current no-fly zones
+     * @return the visibility graph towards AT
+     */
+    public VisibilityGraph getVisibilityGraph() {
+        while (true) {
+            VisibilityGraph graph = visibilityGraph;
+            if (graph != null) {
+                return graph;
+            }
+            // read before the zones and central, as for the distance fields
+            long builtVersion = version;
+            graph = new VisibilityGraph(APPLETON_TOWER, preparedZones, central);
+            synchronized (this) {
+                if (version == builtVersion) {
+                    if (visibilityGraph == null) {
+                        visibilityGraph = graph;
+                    }
+                    return visibilityGraph;
+                }
+            }
+        }
     }
 
+    /**
+     * Get the cluster hierarchy towards AT, building it and its portals the first time it is needed for the current no-fly zones
+     * @return the cluster hierarchy towards AT
+     */
+    public ClusterHierarchy getClusterHierarchy() {
+        while (true) {
+            ClusterHierarchy hierarchy = clusterHierarchy;
+            if (hierarchy != null) {
+                return hierarchy;
+            }
+            // read before the hierarchy reads the zones, as for the distance fields
+            long builtVersion = version;
+            hierarchy = new ClusterHierarchy(APPLETON_TOWER, this, DRONE_MOVE_DISTANCE_MEDIUM);
+            synchronized (this) {
+                if (version == builtVersion) {
+                    if (clusterHierarchy == null) {
+                        clusterHierarchy = hierarchy;
+                    }
+                    return clusterHierarchy;
+                }
+            }
+        }
+    }
+
+
     public NamedRegion getCentral() {
         return central;
     }
 
+    /**
+     * Get central prepared for quick containment checks, preparing it the first time it is needed
+     * @return the prepared central region
+     */
+    public PreparedRegion getPreparedCentral() {
+        PreparedRegion prepared = preparedCentral;
+        if (prepared == null) {
+            prepared = new PreparedRegion(central);
+            preparedCentral = prepared;
+        }
+        return prepared;
+    }
+
+    /**
+     * Prepares the zones that are not prepared yet, reusing those that are
+     * @param zones every zone
+     * @param preparedCount how many of the first zones are already prepared
+     * @param prepared the zones already prepared
+     * @return every zone prepared, in the same order
+     * @throws InvalidBodyException if a zone is not a valid region
+     */
+    private static PreparedRegion[] prepare(NamedRegion[] zones, int preparedCount, PreparedRegion[] prepared) {
+        PreparedRegion[] all = Arrays.copyOf(prepared, zones.length);
+        for (int i = preparedCount; i < zones.length; i++) {
+            all[i] = new PreparedRegion(zones[i]);
+        }
+        return all;
+    }
+
+    /**
+     * get the no fly zones prepared for point containment checks, in the same order as getNoFlyZones
+     * @return the prepared zones
+     */
+    public PreparedRegion[] getPreparedZones() {
+        return preparedZones;
+    }
+
+    /**
+     * Checks if a point is inside any no fly zone, using the zones prepared when they last changed
+     * @param lng the longitude of the point
+     * @param lat the latitude of the point
+     * @return true if the point is inside a no fly zone
+     */
+    public boolean isInAnyZone(double lng, double lat) {
+        for (PreparedRegion zone : preparedZones) {
+            if (zone.contains(lng, lat)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public ZoneEdgeIndex getEdgeIndex() {
+        return edgeIndex;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public long getRemovalVersion() {
+        return removalVersion;
+    }
+
 
 }
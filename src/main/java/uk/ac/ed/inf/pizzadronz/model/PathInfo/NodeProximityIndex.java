@@ -0,0 +1,71 @@
+package uk.ac.ed.inf.pizzadronz.model.PathInfo;
+
+import java.util.Arrays;
+
+
+/**
+ * Grid of the nodes one search has reached, so another search can find the ones close to a position.
+ * <p>Cells are as wide as the distance being searched for and are fixed to whole multiples of it, so indexes of searches
+ * started from different places share the same cells. Each cell keeps a chain of node ids threaded through one int array.</p>
+ */
+public class NodeProximityIndex {
+    private static final int INITIAL_CAPACITY = 1 << 12;
+
+    private final double cellSize;
+    private final LongIntHashMap heads = new LongIntHashMap(INITIAL_CAPACITY);
+    private int[] next = new int[INITIAL_CAPACITY];
+
+    /**
+     * Creates an empty index
+     * @param cellSize the distance that will be searched within
+     */
+    public NodeProximityIndex(double cellSize) {
+        this.cellSize = cellSize;
+    }
+
+    private long cell(long column, long row) {
+        return (column << 32) | (row & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Adds a node where it was first reached
+     * @param id the node id
+     * @param lng the longitude of the node
+     * @param lat the latitude of the node
+     */
+    public void add(int id, double lng, double lat) {
+        if (id >= next.length) {
+            next = Arrays.copyOf(next, Math.max(next.length * 2, id + 1));
+        }
+        long cell = cell((long) Math.floor(lng / cellSize), (long) Math.floor(lat / cellSize));
+        next[id] = heads.get(cell);
+        heads.put(cell, id);
+    }
+
+    /**
+     * Finds the node within a distance of a position that is cheapest to reach in the search that owns this index
+     * @param lng the longitude of the position
+     * @param lat the latitude of the position
+     * @param distance how far from the position the node may be, no more than the cell size
+     * @param workspace the workspace of the search that owns this index
+     * @return the id of the cheapest node, or -1 if none are close enough
+     */
+    public int cheapestWithin(double lng, double lat, double distance, SearchWorkspace workspace) {
+        long column = (long) Math.floor(lng / cellSize);
+        long row = (long) Math.floor(lat / cellSize);
+        int best = -1;
+        for (long r = row - 1; r <= row + 1; r++) {
+            for (long c = column - 1; c <= column + 1; c++) {
+                for (int id = heads.get(cell(c, r)); id != -1; id = next[id]) {
+                    double dLng = workspace.getLng(id) - lng;
+                    double dLat = workspace.getLat(id) - lat;
+                    if (Math.sqrt(dLng * dLng + dLat * dLat) <= distance
+                            && (best == -1 || workspace.getGCost(id) < workspace.getGCost(best))) {
+                        best = id;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,673 @@
+package uk.ac.ed.inf.pizzadronz.model.PathInfo;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import uk.ac.ed.inf.pizzadronz.exception.SearchBudgetExceededException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static uk.ac.ed.inf.pizzadronz.constant.SystemConstants.ANYTIME_WEIGHT_STEP;
+import static uk.ac.ed.inf.pizzadronz.constant.SystemConstants.APPLETON_TOWER;
+import static uk.ac.ed.inf.pizzadronz.constant.SystemConstants.JUMP_POINT_MAX_RUN;
+import static uk.ac.ed.inf.pizzadronz.constant.SystemConstants.VISIBILITY_MARGIN;
+import static uk.ac.ed.inf.pizzadronz.model.PathInfo.AStar.euclideanDistance;
+import static uk.ac.ed.inf.pizzadronz.model.PathInfo.AStar.heuristic;
+import static uk.ac.ed.inf.pizzadronz.model.PathInfo.AStar.isObstacle;
+
+
+/**
+ * Runs A* over the compass move lattice at one resolution.
+ * <p>The step size, the distance counted as close to the goal and the offsets of the 16 compass moves are fixed when the
+ * planner is made and never change, so one planner can be shared by any number of threads searching at the same time.
+ * Everything that changes during a search is kept in the workspace of the thread running it.</p>
+ */
+public final class PathPlanner {
+    // how many nodes a weighted search expands between looks at the clock for its own deadline
+    private static final int DEADLINE_CHECK_INTERVAL = 256;
+    // the most compass points a jump point search turns by at a node in open sky
+    private static final int MAX_OPEN_SKY_TURN = 2;
+    // the eight moves of the square grid the any-angle search runs over, in steps
+    private static final int[][] GRID_MOVES = {{1, 0}, {1, 1}, {0, 1}, {-1, 1}, {-1, 0}, {-1, -1}, {0, -1}, {1, -1}};
+
+    private final double stepSize;
+    private final double closeDistance;
+    // change in longitude and latitude for each of the 16 compass moves
+    private final double[] moveLng;
+    private final double[] moveLat;
+
+    /**
+     * Creates a planner for one resolution
+     * @param stepSize the size of each move of the drone
+     * @param closeDistance the distance to the goal at which the path is considered close enough for the path to be finished
+     */
+    public PathPlanner(double stepSize, double closeDistance) {
+        this.stepSize = stepSize;
+        this.closeDistance = closeDistance;
+        this.moveLng = new double[16];
+        this.moveLat = new double[16];
+        for (int i = 0; i < 16; i++) {
+            double angle = Math.toRadians(i * 22.5);
+            moveLng[i] = stepSize * Math.cos(angle);
+            moveLat[i] = stepSize * Math.sin(angle);
+        }
+    }
+
+    /**
+     * Finds a path from the start to close to the goal
+     * @param start the start location
+     * @param goal the goal location
+     * @param noFlyZones the no-fly zones
+     * @return the path from start to goal, or null if there is no path
+     * @throws JsonProcessingException
+     */
+    public List<LngLat> plan(LngLat start, LngLat goal, NoFlyZones noFlyZones) throws JsonProcessingException {
+        return plan(start, goal, noFlyZones, SearchBudget.unlimited());
+    }
+
+    /**
+     * Finds a path from the start to close to the goal, spending from a budget
+     * @param start the start location
+     * @param goal the goal location
+     * @param noFlyZones the no-fly zones
+     * @param budget the budget the search spends its expansions from
+     * @return the path from start to goal, or null if there is no path
+     * @throws JsonProcessingException
+     * @throws SearchBudgetExceededException if the budget runs out before the search finishes
+     */
+    public List<LngLat> plan(LngLat start, LngLat goal, NoFlyZones noFlyZones, SearchBudget budget) throws JsonProcessingException {
+        return plan(start, goal, noFlyZones, 1, budget, Long.MAX_VALUE);
+    }
+
+    /**
+     * Finds a path from the start to close to the goal with weighted A*, stopping early at a deadline
+     * @param start the start location
+     * @param goal the goal location
+     * @param noFlyZones the no-fly zones
+     * @param weight how much the estimate to the goal is inflated by, a path found is no more than this many times longer than the shortest
+     * @param budget the budget the search spends its expansions from
+     * @param deadline the System.nanoTime at which to give up, which unlike the budget running out is not an error
+     * @return the path from start to goal, or null if there is no path or the deadline passed first
+     * @throws JsonProcessingException
+     */
+    private List<LngLat> plan(LngLat start, LngLat goal, NoFlyZones noFlyZones, double weight, SearchBudget budget, long deadline) throws JsonProcessingException {
+        // every delivery heads to AT, so the search can be guided by the distance field built for the current no-fly zones
+        GoalDistanceField field = goal.equals(APPLETON_TOWER) ? noFlyZones.getGoalDistanceField(stepSize) : null;
+        // moves away from every zone are known to be clear without any geometry
+        BlockedMoveMap blockedMoves = noFlyZones.getBlockedMoveMap(stepSize);
+
+        // the nodes, costs and open list live in primitive arrays reused by every search on this thread
+        SearchWorkspace workspace = SearchWorkspace.forSearch(start, stepSize);
+        IndexedMinHeap openList = workspace.getOpenList();
+
+        // Add initial node to the open list
+        int startId = workspace.add(workspace.key(start.getLng(), start.getLat()), start.getLng(), start.getLat());
+        workspace.update(startId, -1, 0, start.getLng(), start.getLat());
+        openList.addOrDecrease(startId, weight * heuristic(start, goal, field));
+
+        int expanded = 0;
+        while (!openList.isEmpty()) {
+            // only look at the clock every so often, as reading it costs more than expanding a node
+            if (expanded++ % DEADLINE_CHECK_INTERVAL == 0 && System.nanoTime() > deadline) {
+                return null;
+            }
+            // pops the node with the lowest f
+            int currentId = openList.poll();
+            LngLat current = new LngLat(workspace.getLng(currentId), workspace.getLat(currentId));
+
+            // If path gets close to AT, reconstruct the path
+            if (euclideanDistance(current, goal) <= closeDistance) {
+                List<LngLat> path = new ArrayList<>();
+                for (int id = currentId; workspace.getCameFrom(id) != -1; id = workspace.getCameFrom(id)) {
+                    path.add(new LngLat(workspace.getLng(id), workspace.getLat(id)));
+                }
+                path.add(start);
+                Collections.reverse(path);
+                return path;
+            }
+
+            // counted once the node is known not to finish the path, so a start already close to the goal needs no budget
+            budget.expand();
+            workspace.close(currentId);
+
+            // Explore neighbors
+            for (int direction = 0; direction < moveLng.length; direction++) {
+                // Calculate the neighbor coords from the precomputed move table
+                double neighbourLng = current.getLng() + moveLng[direction];
+                double neighbourLat = current.getLat() + moveLat[direction];
+
+                // Skip neighbors that are already in closed list, the lattice key makes sure a point reached by another route is the same node
+                long key = workspace.key(neighbourLng, neighbourLat);
+                int neighbourId = workspace.find(key);
+                if (neighbourId != -1 && workspace.isClosed(neighbourId)) {
+                    continue;
+                }
+
+                // update g, the cost of the cheapest path from start to the neighbour, by finding a tentative cost to the neighbour through the current node
+                double tentativeG = workspace.getGCost(currentId) + stepSize;
+                if (neighbourId != -1 && tentativeG >= workspace.getGCost(neighbourId)) {
+                    continue;
+                }
+
+                // Skip neighbors that are obstacles
+                LngLat neighbour = new LngLat(neighbourLng, neighbourLat);
+                if (isObstacle(current, neighbour, direction, blockedMoves, noFlyZones, stepSize)) {
+                    continue;
+                }
+
+                // g is lower than it was for the node, so update g and the path to the neighbour and add it to the open list
+                if (neighbourId == -1) {
+                    neighbourId = workspace.add(key, neighbourLng, neighbourLat);
+                }
+                workspace.update(neighbourId, currentId, tentativeG, neighbourLng, neighbourLat);
+                openList.addOrDecrease(neighbourId, tentativeG + weight * heuristic(neighbour, goal, field));
+            }
+        }
+
+        // No path found
+        return null;
+    }
+
+    /**
+     * Finds a path from the start to close to the goal with restarting weighted A*, improving it until a deadline.
+     * <p>The first search inflates the estimate by epsilon and always runs to the end, so there is a path to return quickly. Each
+     * search after that lowers the weight by ANYTIME_WEIGHT_STEP, down to plain A*, and keeps the shorter of the two paths, until
+     * the deadline passes. A weighted search never finds a path more than its weight times longer than the shortest path, so the
+     * lowest weight whose search finished bounds the path returned.</p>
+     * @param start the start location
+     * @param goal the goal location
+     * @param noFlyZones the no-fly zones
+     * @param epsilon the weight of the first search, at least 1
+     * @param deadline the System.nanoTime after which no more searches are started, and any search still running is abandoned
+     * @param budget the budget every search spends its expansions from, the first path has to be found within it
+     * @return the best path found and its bound, or null if there is no path
+     * @throws JsonProcessingException
+     */
+    public AnytimePath planAnytime(LngLat start, LngLat goal, NoFlyZones noFlyZones, double epsilon, long deadline,
+                                   SearchBudget budget) throws JsonProcessingException {
+        List<LngLat> best = plan(start, goal, noFlyZones, epsilon, budget, Long.MAX_VALUE);
+        if (best == null) {
+            return null;
+        }
+        double bound = epsilon;
+        while (bound > 1 && System.nanoTime() < deadline) {
+            double weight = Math.max(1, bound - ANYTIME_WEIGHT_STEP);
+            List<LngLat> path;
+            try {
+                path = plan(start, goal, noFlyZones, weight, budget, deadline);
+            } catch (SearchBudgetExceededException e) {
+                break; // the request has run out of budget, but it already has a path to return
+            }
+            if (path == null) {
+                break; // ran out of time, every search that finishes finds a path as the first one did
+            }
+            if (path.size() < best.size()) {
+                best = path;
+            }
+            bound = weight;
+        }
+        return new AnytimePath(best, bound);
+    }
+
+    /**
+     * Finds a path from the start to close to the goal by searching forwards from the start and backwards from the goal at the
+     * same time until the two searches meet.
+     * <p>The backward search runs over a lattice centred on the goal, so the two lattices never share points exactly. Instead the
+     * searches meet when a node of one is within the close distance of a node of the other, and the backward moves are then flown
+     * in reverse from the forward node, which ends the path no further from the goal than the two nodes were from each other.
+     * Every move of the backward search is checked the way the drone would fly it, from the new node back towards the goal.
+     * The search stops once no node waiting in either search could lead to a cheaper meeting than the best one found.</p>
+     * @param start the start location
+     * @param goal the goal location
+     * @param noFlyZones the no-fly zones
+     * @return the path from start to goal, or null if there is no path
+     * @throws JsonProcessingException
+     */
+    public List<LngLat> planBidirectional(LngLat start, LngLat goal, NoFlyZones noFlyZones) throws JsonProcessingException {
+        return planBidirectional(start, goal, noFlyZones, SearchBudget.unlimited());
+    }
+
+    /**
+     * Finds a path from the start to close to the goal by searching forwards and backwards, spending from a budget
+     * @param start the start location
+     * @param goal the goal location
+     * @param noFlyZones the no-fly zones
+     * @param budget the budget both searches spend their expansions from
+     * @return the path from start to goal, or null if there is no path
+     * @throws JsonProcessingException
+     */
+    public List<LngLat> planBidirectional(LngLat start, LngLat goal, NoFlyZones noFlyZones, SearchBudget budget) throws JsonProcessingException {
+        GoalDistanceField field = goal.equals(APPLETON_TOWER) ? noFlyZones.getGoalDistanceField(stepSize) : null;
+        BlockedMoveMap blockedMoves = noFlyZones.getBlockedMoveMap(stepSize);
+
+        SearchWorkspace forward = SearchWorkspace.forSearch(start, stepSize);
+        SearchWorkspace backward = SearchWorkspace.forBackwardSearch(goal, stepSize);
+        // the nodes each search has reached, so the other search can find the ones close enough to meet
+        NodeProximityIndex forwardReached = new NodeProximityIndex(closeDistance);
+        NodeProximityIndex backwardReached = new NodeProximityIndex(closeDistance);
+
+        int startId = forward.add(forward.key(start.getLng(), start.getLat()), start.getLng(), start.getLat());
+        forward.update(startId, -1, 0, start.getLng(), start.getLat());
+        forwardReached.add(startId, start.getLng(), start.getLat());
+        forward.getOpenList().addOrDecrease(startId, heuristic(start, goal, field));
+
+        int goalId = backward.add(backward.key(goal.getLng(), goal.getLat()), goal.getLng(), goal.getLat());
+        backward.update(goalId, -1, 0, goal.getLng(), goal.getLat());
+        backwardReached.add(goalId, goal.getLng(), goal.getLat());
+        backward.getOpenList().addOrDecrease(goalId, euclideanDistance(goal, start));
+
+        double bestCost = Double.POSITIVE_INFINITY;
+        int meetForward = -1;
+        int meetBackward = -1;
+        while (Math.max(forward.getOpenList().peekPriority(), backward.getOpenList().peekPriority()) < bestCost) {
+            // expand whichever search has fewer nodes waiting, so neither fans out much further than the other
+            boolean isForward = forward.getOpenList().size() <= backward.getOpenList().size();
+            SearchWorkspace workspace = isForward ? forward : backward;
+            SearchWorkspace other = isForward ? backward : forward;
+            NodeProximityIndex reached = isForward ? forwardReached : backwardReached;
+            NodeProximityIndex otherReached = isForward ? backwardReached : forwardReached;
+
+            int currentId = workspace.getOpenList().poll();
+            workspace.close(currentId);
+            LngLat current = new LngLat(workspace.getLng(currentId), workspace.getLat(currentId));
+
+            // check if the other search has reached close enough to meet this node, and keep the cheapest meeting that can be flown
+            int otherId = otherReached.cheapestWithin(current.getLng(), current.getLat(), closeDistance, other);
+            if (otherId != -1 && workspace.getGCost(currentId) + other.getGCost(otherId) < bestCost) {
+                int forwardId = isForward ? currentId : otherId;
+                int backwardId = isForward ? otherId : currentId;
+                if (isJoinClear(forward, forwardId, backward, backwardId, noFlyZones)) {
+                    bestCost = workspace.getGCost(currentId) + other.getGCost(otherId);
+                    meetForward = forwardId;
+                    meetBackward = backwardId;
+                }
+            }
+
+            budget.expand();
+            for (int direction = 0; direction < moveLng.length; direction++) {
+                double neighbourLng = current.getLng() + moveLng[direction];
+                double neighbourLat = current.getLat() + moveLat[direction];
+
+                long key = workspace.key(neighbourLng, neighbourLat);
+                int neighbourId = workspace.find(key);
+                if (neighbourId != -1 && workspace.isClosed(neighbourId)) {
+                    continue;
+                }
+                double tentativeG = workspace.getGCost(currentId) + stepSize;
+                if (neighbourId != -1 && tentativeG >= workspace.getGCost(neighbourId)) {
+                    continue;
+                }
+
+                // the backward search reaches the neighbour from the current node, but the drone flies the opposite way
+                LngLat neighbour = new LngLat(neighbourLng, neighbourLat);
+                boolean blocked = isForward
+                        ? isObstacle(current, neighbour, direction, blockedMoves, noFlyZones, stepSize)
+                        : isObstacle(neighbour, current, (direction + moveLng.length / 2) % moveLng.length, blockedMoves, noFlyZones, stepSize);
+                if (blocked) {
+                    continue;
+                }
+
+                if (neighbourId == -1) {
+                    neighbourId = workspace.add(key, neighbourLng, neighbourLat);
+                    reached.add(neighbourId, neighbourLng, neighbourLat);
+                }
+                workspace.update(neighbourId, currentId, tentativeG, neighbourLng, neighbourLat);
+                double estimate = isForward ? heuristic(neighbour, goal, field) : euclideanDistance(neighbour, start);
+                workspace.getOpenList().addOrDecrease(neighbourId, tentativeG + estimate);
+            }
+        }
+
+        if (meetForward == -1) {
+            // No path found
+            return null;
+        }
+        List<LngLat> path = new ArrayList<>();
+        for (int id = meetForward; forward.getCameFrom(id) != -1; id = forward.getCameFrom(id)) {
+            path.add(new LngLat(forward.getLng(id), forward.getLat(id)));
+        }
+        path.add(start);
+        Collections.reverse(path);
+        double offsetLng = forward.getLng(meetForward) - backward.getLng(meetBackward);
+        double offsetLat = forward.getLat(meetForward) - backward.getLat(meetBackward);
+        for (int id = backward.getCameFrom(meetBackward); id != -1; id = backward.getCameFrom(id)) {
+            path.add(new LngLat(backward.getLng(id) + offsetLng, backward.getLat(id) + offsetLat));
+        }
+        return path;
+    }
+
+    /**
+     * Finds a path from the start to close to the goal, skipping over the nodes along straight runs in open sky.
+     * <p>Moves on the lattice can be taken in any order to reach the same point, so away from the zones the plain search adds
+     * huge numbers of nodes that are only different orderings of the same moves. Here every move runs straight without adding
+     * nodes until it comes close to a zone, stops getting closer to the goal, comes close to the goal, passes the point where the
+     * goal lies along a different pair of compass moves, or reaches its longest length. In open sky, where the bitmap of blocked
+     * moves shows no move could touch a zone, a node only tries the moves within two compass points of the one it was reached by,
+     * since turning further would only retrace the run. Nodes close to a zone may have forced neighbours round its corners, so
+     * they try all 16 moves. The runs are filled back in with single moves when the path is made. A run only turns where it
+     * stops, so a path can be a little longer than the plain search's, by no more than 2% on the routes from the restaurants.</p>
+     * @param start the start location
+     * @param goal the goal location
+     * @param noFlyZones the no-fly zones
+     * @return the path from start to goal, or null if there is no path
+     * @throws JsonProcessingException
+     */
+    public List<LngLat> planJumping(LngLat start, LngLat goal, NoFlyZones noFlyZones) throws JsonProcessingException {
+        return planJumping(start, goal, noFlyZones, SearchBudget.unlimited());
+    }
+
+    /**
+     * Finds a path from the start to close to the goal with jump point search, spending from a budget
+     * @param start the start location
+     * @param goal the goal location
+     * @param noFlyZones the no-fly zones
+     * @param budget the budget the search spends its expansions from
+     * @return the path from start to goal, or null if there is no path
+     * @throws JsonProcessingException
+     */
+    public List<LngLat> planJumping(LngLat start, LngLat goal, NoFlyZones noFlyZones, SearchBudget budget) throws JsonProcessingException {
+        GoalDistanceField field = goal.equals(APPLETON_TOWER) ? noFlyZones.getGoalDistanceField(stepSize) : null;
+        BlockedMoveMap blockedMoves = noFlyZones.getBlockedMoveMap(stepSize);
+
+        SearchWorkspace workspace = SearchWorkspace.forSearch(start, stepSize);
+        IndexedMinHeap openList = workspace.getOpenList();
+
+        int startId = workspace.add(workspace.key(start.getLng(), start.getLat()), start.getLng(), start.getLat());
+        workspace.update(startId, -1, 0, start.getLng(), start.getLat());
+        openList.addOrDecrease(startId, heuristic(start, goal, field));
+
+        while (!openList.isEmpty()) {
+            int currentId = openList.poll();
+            LngLat current = new LngLat(workspace.getLng(currentId), workspace.getLat(currentId));
+
+            if (euclideanDistance(current, goal) <= closeDistance) {
+                return fillRuns(workspace, currentId, start);
+            }
+
+            budget.expand();
+            workspace.close(currentId);
+
+            // in open sky only turn by up to two compass points, everywhere else try every move
+            int parentId = workspace.getCameFrom(currentId);
+            boolean pruned = parentId != -1 && !blockedMoves.isNearZone(current.getLng(), current.getLat());
+            int incoming = pruned ? directionBetween(workspace, parentId, currentId) : 0;
+            int firstTurn = pruned ? -MAX_OPEN_SKY_TURN : 0;
+            int lastTurn = pruned ? MAX_OPEN_SKY_TURN : moveLng.length - 1;
+            double currentEstimate = heuristic(current, goal, field);
+
+            for (int turn = firstTurn; turn <= lastTurn; turn++) {
+                int direction = pruned ? Math.floorMod(incoming + turn, moveLng.length) : turn;
+
+                // run straight in the direction until the run has to stop at a new node
+                double runLng = current.getLng();
+                double runLat = current.getLat();
+                double runEstimate = currentEstimate;
+                int runSector = goalSector(runLng, runLat, goal);
+                int steps = 0;
+                while (steps < JUMP_POINT_MAX_RUN) {
+                    LngLat from = new LngLat(runLng, runLat);
+                    LngLat to = new LngLat(runLng + moveLng[direction], runLat + moveLat[direction]);
+                    if (isObstacle(from, to, direction, blockedMoves, noFlyZones, stepSize)) {
+                        break;
+                    }
+                    runLng = to.getLng();
+                    runLat = to.getLat();
+                    steps++;
+                    double estimate = heuristic(to, goal, field);
+                    if (estimate >= runEstimate || goalSector(runLng, runLat, goal) != runSector
+                            || blockedMoves.isNearZone(runLng, runLat) || euclideanDistance(to, goal) <= closeDistance) {
+                        break;
+                    }
+                    runEstimate = estimate;
+                }
+                if (steps == 0) {
+                    continue;
+                }
+
+                long key = workspace.key(runLng, runLat);
+                int neighbourId = workspace.find(key);
+                if (neighbourId != -1 && workspace.isClosed(neighbourId)) {
+                    continue;
+                }
+                double tentativeG = workspace.getGCost(currentId) + steps * stepSize;
+                if (neighbourId != -1 && tentativeG >= workspace.getGCost(neighbourId)) {
+                    continue;
+                }
+                if (neighbourId == -1) {
+                    neighbourId = workspace.add(key, runLng, runLat);
+                }
+                workspace.update(neighbourId, currentId, tentativeG, runLng, runLat);
+                openList.addOrDecrease(neighbourId, tentativeG + heuristic(new LngLat(runLng, runLat), goal, field));
+            }
+        }
+
+        // No path found
+        return null;
+    }
+
+    /**
+     * Finds a route of straight legs at any angle from the start to the goal with Lazy Theta*.
+     * <p>The search runs over a square grid of the planner's step size with eight neighbours, since path costs measured along
+     * straight lines make almost every point of the compass lattice a separate node with nearly the same cost. Every node reached
+     * is first given the parent of the node it was reached from, as if there were a straight line from it. The line is only checked
+     * when the node is expanded, and if it is blocked the node falls back to the cheapest neighbour it can be reached from with one
+     * grid move. The legs do not follow the compass, so the route has to be flown with PathRealiser.</p>
+     * @param start the start location
+     * @param goal the goal location
+     * @param noFlyZones the no-fly zones
+     * @return the waypoints of the route, starting at the start and ending at the goal, or close to it if the goal cannot be
+     * seen from there, or null if there is no route
+     */
+    public List<LngLat> planAnyAngle(LngLat start, LngLat goal, NoFlyZones noFlyZones) {
+        return planAnyAngle(start, goal, noFlyZones, SearchBudget.unlimited());
+    }
+
+    /**
+     * Finds a route of straight legs at any angle from the start to the goal with Lazy Theta*, spending from a budget
+     * @param start the start location
+     * @param goal the goal location
+     * @param noFlyZones the no-fly zones
+     * @param budget the budget the search spends its expansions from
+     * @return the waypoints of the route, or null if there is no route
+     */
+    public List<LngLat> planAnyAngle(LngLat start, LngLat goal, NoFlyZones noFlyZones, SearchBudget budget) {
+        SearchWorkspace workspace = SearchWorkspace.forSearch(start, stepSize);
+        IndexedMinHeap openList = workspace.getOpenList();
+
+        int startId = workspace.add(workspace.key(start.getLng(), start.getLat()), start.getLng(), start.getLat());
+        workspace.update(startId, -1, 0, start.getLng(), start.getLat());
+        openList.addOrDecrease(startId, euclideanDistance(start, goal));
+
+        while (!openList.isEmpty()) {
+            int currentId = openList.poll();
+            LngLat current = new LngLat(workspace.getLng(currentId), workspace.getLat(currentId));
+
+            // the line from the parent was assumed when the node was reached, check it now and repair the parent if it is blocked
+            int parentId = workspace.getCameFrom(currentId);
+            if (parentId != -1 && !isLineClear(workspace.getLng(parentId), workspace.getLat(parentId), current.getLng(), current.getLat(), noFlyZones)
+                    && !repairParent(workspace, currentId, current, noFlyZones)) {
+                workspace.close(currentId);
+                continue;
+            }
+
+            if (euclideanDistance(current, goal) <= closeDistance) {
+                List<LngLat> waypoints = new ArrayList<>();
+                if (isLineClear(current.getLng(), current.getLat(), goal.getLng(), goal.getLat(), noFlyZones)) {
+                    waypoints.add(goal);
+                }
+                for (int id = currentId; workspace.getCameFrom(id) != -1; id = workspace.getCameFrom(id)) {
+                    waypoints.add(new LngLat(workspace.getLng(id), workspace.getLat(id)));
+                }
+                waypoints.add(start);
+                Collections.reverse(waypoints);
+                return waypoints;
+            }
+
+            budget.expand();
+            workspace.close(currentId);
+
+            // assume every neighbour can be seen from this node's parent, or from this node when it is the start
+            int lineFromId = workspace.getCameFrom(currentId) == -1 ? currentId : workspace.getCameFrom(currentId);
+            for (int[] move : GRID_MOVES) {
+                double neighbourLng = current.getLng() + move[0] * stepSize;
+                double neighbourLat = current.getLat() + move[1] * stepSize;
+
+                long key = workspace.key(neighbourLng, neighbourLat);
+                int neighbourId = workspace.find(key);
+                if (neighbourId != -1 && workspace.isClosed(neighbourId)) {
+                    continue;
+                }
+                double tentativeG = workspace.getGCost(lineFromId) + Math.hypot(neighbourLng - workspace.getLng(lineFromId), neighbourLat - workspace.getLat(lineFromId));
+                if (neighbourId != -1 && tentativeG >= workspace.getGCost(neighbourId)) {
+                    continue;
+                }
+                // the single grid move has to be possible, so a blocked line can always fall back to it
+                LngLat neighbour = new LngLat(neighbourLng, neighbourLat);
+                if (noFlyZones.getEdgeIndex().intersects(current, neighbour)) {
+                    continue;
+                }
+
+                if (neighbourId == -1) {
+                    neighbourId = workspace.add(key, neighbourLng, neighbourLat);
+                }
+                workspace.update(neighbourId, lineFromId, tentativeG, neighbourLng, neighbourLat);
+                openList.addOrDecrease(neighbourId, tentativeG + euclideanDistance(neighbour, goal));
+            }
+        }
+
+        // No path found
+        return null;
+    }
+
+    /**
+     * Checks if the drone could fly a straight leg between two points without going near a no-fly zone or leaving central
+     * @return true if the leg is clear
+     */
+    static boolean isLineClear(double fromLng, double fromLat, double toLng, double toLat, NoFlyZones noFlyZones) {
+        if (!noFlyZones.getEdgeIndex().isClear(fromLng, fromLat, toLng, toLat, VISIBILITY_MARGIN)) {
+            return false;
+        }
+        PreparedRegion central = noFlyZones.getPreparedCentral();
+        return !central.contains(fromLng, fromLat) || central.contains(toLng, toLat);
+    }
+
+    /**
+     * Gives a node whose line from its parent is blocked the closed neighbour it is cheapest to reach with one grid move from
+     * @param workspace the workspace of the search
+     * @param id the node
+     * @param node the position of the node
+     * @param noFlyZones the no-fly zones
+     * @return true if the node was given a new parent, false if no closed neighbour can reach it
+     */
+    private boolean repairParent(SearchWorkspace workspace, int id, LngLat node, NoFlyZones noFlyZones) {
+        int bestParent = -1;
+        double bestG = Double.POSITIVE_INFINITY;
+        for (int[] move : GRID_MOVES) {
+            int neighbourId = workspace.find(workspace.key(node.getLng() + move[0] * stepSize, node.getLat() + move[1] * stepSize));
+            double g = neighbourId == -1 ? 0 : workspace.getGCost(neighbourId) + Math.hypot(move[0], move[1]) * stepSize;
+            if (neighbourId == -1 || !workspace.isClosed(neighbourId) || g >= bestG) {
+                continue;
+            }
+            LngLat neighbour = new LngLat(workspace.getLng(neighbourId), workspace.getLat(neighbourId));
+            if (!noFlyZones.getEdgeIndex().intersects(neighbour, node)) {
+                bestParent = neighbourId;
+                bestG = g;
+            }
+        }
+        if (bestParent == -1) {
+            return false;
+        }
+        workspace.update(id, bestParent, bestG, node.getLng(), node.getLat());
+        return true;
+    }
+
+    /**
+     * Finds which gap between two compass moves the goal lies in from a position
+     * @param lng the longitude of the position
+     * @param lat the latitude of the position
+     * @param goal the goal location
+     * @return the index of the compass move just clockwise of the bearing to the goal
+     */
+    private int goalSector(double lng, double lat, LngLat goal) {
+        double angle = Math.toDegrees(Math.atan2(goal.getLat() - lat, goal.getLng() - lng));
+        return Math.floorMod((int) Math.floor(angle / 22.5), moveLng.length);
+    }
+
+    /**
+     * Finds the compass move of the straight run from one node to another
+     * @param workspace the workspace of the search
+     * @param fromId the node the run starts at
+     * @param toId the node the run ends at
+     * @return the index of the compass move
+     */
+    private int directionBetween(SearchWorkspace workspace, int fromId, int toId) {
+        double angle = Math.toDegrees(Math.atan2(workspace.getLat(toId) - workspace.getLat(fromId), workspace.getLng(toId) - workspace.getLng(fromId)));
+        return Math.floorMod((int) Math.round(angle / 22.5), moveLng.length);
+    }
+
+    /**
+     * Makes the path to a node, filling in every single move of the straight runs between the nodes
+     * @param workspace the workspace of the search
+     * @param endId the last node of the path
+     * @param start the start location
+     * @return the path from start to the node, one move at a time
+     */
+    private List<LngLat> fillRuns(SearchWorkspace workspace, int endId, LngLat start) {
+        List<Integer> nodes = new ArrayList<>();
+        for (int id = endId; id != -1; id = workspace.getCameFrom(id)) {
+            nodes.add(id);
+        }
+        Collections.reverse(nodes);
+
+        List<LngLat> path = new ArrayList<>();
+        path.add(start);
+        for (int i = 1; i < nodes.size(); i++) {
+            int fromId = nodes.get(i - 1);
+            int toId = nodes.get(i);
+            int direction = directionBetween(workspace, fromId, toId);
+            int steps = (int) Math.round((workspace.getGCost(toId) - workspace.getGCost(fromId)) / stepSize);
+            // repeat the additions the run made, so the filled in points land exactly where the run put them
+            double lng = workspace.getLng(fromId);
+            double lat = workspace.getLat(fromId);
+            for (int step = 1; step < steps; step++) {
+                lng += moveLng[direction];
+                lat += moveLat[direction];
+                path.add(new LngLat(lng, lat));
+            }
+            path.add(new LngLat(workspace.getLng(toId), workspace.getLat(toId)));
+        }
+        return path;
+    }
+
+    /**
+     * Checks the backward half of a meeting can be flown from the forward node, since it is shifted off the positions it was searched at
+     * @param forward the forward workspace
+     * @param forwardId the forward node of the meeting
+     * @param backward the backward workspace
+     * @param backwardId the backward node of the meeting
+     * @param noFlyZones the no-fly zones
+     * @return true if none of the shifted moves cross a no-fly zone
+     * @throws JsonProcessingException
+     */
+    private boolean isJoinClear(SearchWorkspace forward, int forwardId, SearchWorkspace backward, int backwardId,
+                                NoFlyZones noFlyZones) throws JsonProcessingException {
+        double offsetLng = forward.getLng(forwardId) - backward.getLng(backwardId);
+        double offsetLat = forward.getLat(forwardId) - backward.getLat(backwardId);
+        LngLat previous = new LngLat(forward.getLng(forwardId), forward.getLat(forwardId));
+        for (int id = backward.getCameFrom(backwardId); id != -1; id = backward.getCameFrom(id)) {
+            LngLat next = new LngLat(backward.getLng(id) + offsetLng, backward.getLat(id) + offsetLat);
+            if (isObstacle(previous, next, noFlyZones, stepSize)) {
+                return false;
+            }
+            previous = next;
+        }
+        return true;
+    }
+
+    public double getStepSize() {
+        return stepSize;
+    }
+
+    public double getCloseDistance() {
+        return closeDistance;
+    }
+}
@@ -0,0 +1,137 @@
+package uk.ac.ed.inf.pizzadronz.model.PathInfo;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import uk.ac.ed.inf.pizzadronz.exception.SearchBudgetExceededException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static uk.ac.ed.inf.pizzadronz.constant.SystemConstants.DRONE_IS_CLOSE_DISTANCE_SMALL;
+import static uk.ac.ed.inf.pizzadronz.constant.SystemConstants.DRONE_MOVE_DISTANCE;
+import static uk.ac.ed.inf.pizzadronz.model.PathInfo.AStar.euclideanDistance;
+import static uk.ac.ed.inf.pizzadronz.model.PathInfo.AStar.isObstacle;
+
+
+/**
+ * Turns a route of straight legs into moves the drone can actually make.
+ * <p>Planners that work with waypoints rather than the move lattice produce legs at any angle.
+ * Each leg is flown with moves of DRONE_MOVE_DISTANCE on the 16 point compass, zigzagging between the two directions either side
+ * of the leg so the drone stays on its line. If both of those moves are blocked, the rest of the leg is found with A*.</p>
+ */
+public class PathRealiser {
+
+    private static final double[][] MOVES = new double[16][];
+
+    // finishes any leg the drone cannot fly straight along
+    private static final PathPlanner LEG_PLANNER = new PathPlanner(DRONE_MOVE_DISTANCE, DRONE_IS_CLOSE_DISTANCE_SMALL);
+
+    static {
+        for (int i = 0; i < 16; i++) {
+            double angle = Math.toRadians(i * 22.5);
+            MOVES[i] = new double[]{DRONE_MOVE_DISTANCE * Math.cos(angle), DRONE_MOVE_DISTANCE * Math.sin(angle)};
+        }
+    }
+
+    private PathRealiser() {
+    }
+
+    /**
+     * Flies a route of waypoints with legal drone moves
+     * @param waypoints the route to follow, the first waypoint is where the drone starts
+     * @param noFlyZones the no-fly zones the drone must avoid
+     * @return the positions of the drone after each move, starting with the first waypoint and finishing close to the last one
+     * @throws JsonProcessingException
+     */
+    public static List<LngLat> realise(List<LngLat> waypoints, NoFlyZones noFlyZones) throws JsonProcessingException {
+        return realise(waypoints, noFlyZones, SearchBudget.unlimited());
+    }
+
+    /**
+     * Flies a route of waypoints with legal drone moves, spending from a budget
+     * @param waypoints the route to follow, the first waypoint is where the drone starts
+     * @param noFlyZones the no-fly zones the drone must avoid
+     * @param budget the budget every move along a leg and every search finishing a leg spend from
+     * @return the positions of the drone after each move, starting with the first waypoint and finishing close to the last one
+     * @throws JsonProcessingException
+     * @throws SearchBudgetExceededException if the budget runs out before the route is flown
+     */
+    public static List<LngLat> realise(List<LngLat> waypoints, NoFlyZones noFlyZones, SearchBudget budget) throws JsonProcessingException {
+        List<LngLat> path = new ArrayList<>();
+        LngLat current = waypoints.get(0);
+        path.add(current);
+
+        for (int i = 1; i < waypoints.size(); i++) {
+            current = realiseLeg(current, waypoints.get(i), noFlyZones, path, budget);
+        }
+        return path;
+    }
+
+    /**
+     * Flies a single leg, adding each position to the path.
+     * Only the two compass directions either side of the leg are used, choosing whichever keeps the drone closest to the line of the leg,
+     * so the drone never strays more than a fraction of a move from the line the planner checked
+     * @param from where the drone currently is
+     * @param to the end of the leg
+     * @param noFlyZones the no-fly zones the drone must avoid
+     * @param path the path to add the moves to
+     * @param budget the budget each move and the search finishing the leg spend from
+     * @return the position of the drone at the end of the leg, which is close to the end of the leg
+     * @throws JsonProcessingException
+     */
+    private static LngLat realiseLeg(LngLat from, LngLat to, NoFlyZones noFlyZones, List<LngLat> path, SearchBudget budget) throws JsonProcessingException {
+        double length = euclideanDistance(from, to);
+        if (length < DRONE_IS_CLOSE_DISTANCE_SMALL) {
+            return from;
+        }
+        // unit vector along the leg
+        double legLng = (to.getLng() - from.getLng()) / length;
+        double legLat = (to.getLat() - from.getLat()) / length;
+        double bearing = Math.toDegrees(Math.atan2(legLat, legLng));
+        if (bearing < 0) {
+            bearing += 360;
+        }
+        int lower = (int) Math.floor(bearing / 22.5) % MOVES.length;
+        int[] bracket = {lower, (lower + 1) % MOVES.length};
+
+        LngLat current = from;
+        while (euclideanDistance(current, to) >= DRONE_IS_CLOSE_DISTANCE_SMALL) {
+            double offsetLng = current.getLng() - from.getLng();
+            double offsetLat = current.getLat() - from.getLat();
+            if (offsetLng * legLng + offsetLat * legLat > length) {
+                break; // gone past the end of the leg without getting close enough, so the search below finishes it
+            }
+            budget.expand();
+
+            LngLat best = null;
+            double bestError = Double.POSITIVE_INFINITY;
+            for (int move : bracket) {
+                double nextLng = offsetLng + MOVES[move][0];
+                double nextLat = offsetLat + MOVES[move][1];
+                // distance of the drone from the line of the leg after the move
+                double error = Math.abs(nextLng * legLat - nextLat * legLng);
+                LngLat candidate = new LngLat(current.getLng() + MOVES[move][0], current.getLat() + MOVES[move][1]);
+                if (error < bestError && !isObstacle(current, candidate, noFlyZones, DRONE_MOVE_DISTANCE)) {
+                    best = candidate;
+                    bestError = error;
+                }
+            }
+            if (best == null) {
+                break; // both moves along the leg are blocked
+            }
+            path.add(best);
+            current = best;
+        }
+
+        if (euclideanDistance(current, to) < DRONE_IS_CLOSE_DISTANCE_SMALL) {
+            return current;
+        }
+        // the drone could not follow the line all the way, so search for the rest of the leg instead
+        List<LngLat> rest = LEG_PLANNER.plan(current, to, noFlyZones, budget);
+        if (rest == null) {
+            return current;
+        }
+        // the first position of the search is the current position, which is already on the path
+        path.addAll(rest.subList(1, rest.size()));
+        return rest.get(rest.size() - 1);
+    }
+}
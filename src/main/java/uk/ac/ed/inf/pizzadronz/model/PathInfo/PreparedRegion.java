@@ -0,0 +1,152 @@
+package uk.ac.ed.inf.pizzadronz.model.PathInfo;
+
+import uk.ac.ed.inf.pizzadronz.exception.InvalidBodyException;
+
+import java.util.BitSet;
+
+import static uk.ac.ed.inf.pizzadronz.controller.LngLatHandling.areCollinear;
+import static uk.ac.ed.inf.pizzadronz.controller.LngLatHandling.validPosition;
+
+
+/**
+ * A region checked and converted once so that points can be tested against it quickly.
+ * <p>The region is validated in the same way as IsInRegionHelper when it is prepared, and its edges and bounding box are kept in
+ * primitive arrays. Containment counts edge crossings exactly as Path2D.contains does for the path IsInRegionHelper builds,
+ * using the non-zero winding rule, so the answer is the same without building a Path2D for every check.</p>
+ */
+public class PreparedRegion {
+    private final NamedRegion region;
+    private final double[] lngs;
+    private final double[] lats;
+    private final double minLng;
+    private final double maxLng;
+    private final double minLat;
+    private final double maxLat;
+
+    /**
+     * Validates and prepares a region
+     * @param region the region to prepare
+     * @throws InvalidBodyException if the region is not closed, has too few points or has three collinear points in a row
+     */
+    public PreparedRegion(NamedRegion region) {
+        LngLat[] vertexes = region.getVertices();
+        //checks if the region is closed
+        if (vertexes[0].getLng() != vertexes[vertexes.length - 1].getLng() || vertexes[0].getLat() != vertexes[vertexes.length - 1].getLat()) {
+            throw new InvalidBodyException("Region is not closed");
+        }
+        for (LngLat vertex : vertexes) {
+            validPosition(vertex);
+        }
+        //checks if the polygon has less than three vertexes. -1 because one of those vertexes is a repeat, back to the start
+        if (vertexes.length - 1 < 3) {
+            throw new InvalidBodyException("Two few points");
+        }
+        //checks if the points are collinear
+        for (int i = 0; i < vertexes.length - 2; i++) {
+            if (areCollinear(vertexes[i], vertexes[i + 1], vertexes[i + 2])) {
+                throw new InvalidBodyException("Collinear region");
+            }
+        }
+
+        this.region = region;
+        this.lngs = new double[vertexes.length];
+        this.lats = new double[vertexes.length];
+        double lowLng = Double.POSITIVE_INFINITY;
+        double highLng = Double.NEGATIVE_INFINITY;
+        double lowLat = Double.POSITIVE_INFINITY;
+        double highLat = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < vertexes.length; i++) {
+            lngs[i] = vertexes[i].getLng();
+            lats[i] = vertexes[i].getLat();
+            lowLng = Math.min(lowLng, lngs[i]);
+            highLng = Math.max(highLng, lngs[i]);
+            lowLat = Math.min(lowLat, lats[i]);
+            highLat = Math.max(highLat, lats[i]);
+        }
+        this.minLng = lowLng;
+        this.maxLng = highLng;
+        this.minLat = lowLat;
+        this.maxLat = highLat;
+    }
+
+    /**
+     * Checks if a position is within the region, validating the position as IsInRegionHelper does
+     * @param position the position to check
+     * @return true if the position is within the region
+     */
+    public boolean contains(LngLat position) {
+        validPosition(position);
+        return contains(position.getLng(), position.getLat());
+    }
+
+    /**
+     * Checks a batch of points against the region, validating each one
+     * @param lngs the longitudes of the points
+     * @param lats the latitudes of the points, the same length as the longitudes
+     * @return a bitset with bit i set when point i is within the region
+     */
+    public BitSet containsAll(double[] lngs, double[] lats) {
+        BitSet inside = new BitSet(lngs.length);
+        for (int i = 0; i < lngs.length; i++) {
+            validPosition(lngs[i], lats[i]);
+            if (contains(lngs[i], lats[i])) {
+                inside.set(i);
+            }
+        }
+        return inside;
+    }
+
+    /**
+     * Checks if a point is within the region
+     * @param lng the longitude of the point
+     * @param lat the latitude of the point
+     * @return true if the point is within the region
+     */
+    public boolean contains(double lng, double lat) {
+        // edges only count crossings to the right of the point that start at or below it and end above it, or the reverse,
+        // so nothing outside these bounds can have any crossings
+        if (!(lng >= minLng && lng < maxLng && lat >= minLat && lat < maxLat)) {
+            return false;
+        }
+        // the path is the first vertex followed by every vertex in turn, which ends back at the first vertex so needs no closing edge
+        int crossings = 0;
+        for (int i = 0; i < lngs.length - 1; i++) {
+            crossings += pointCrossingsForLine(lng, lat, lngs[i], lats[i], lngs[i + 1], lats[i + 1]);
+        }
+        return crossings != 0;
+    }
+
+    /**
+     * Counts how a line from (x0, y0) to (x1, y1) crosses the ray running right from a point, as Curve.pointCrossingsForLine
+     * @return +1 if the line crosses going up, -1 if going down, or 0 if it does not cross
+     */
+    private static int pointCrossingsForLine(double px, double py, double x0, double y0, double x1, double y1) {
+        if (py < y0 && py < y1) return 0;
+        if (py >= y0 && py >= y1) return 0;
+        if (px >= x0 && px >= x1) return 0;
+        if (px < x0 && px < x1) return (y0 < y1) ? 1 : -1;
+        double xintercept = x0 + (py - y0) * (x1 - x0) / (y1 - y0);
+        if (px >= xintercept) return 0;
+        return (y0 < y1) ? 1 : -1;
+    }
+
+    public NamedRegion getRegion() {
+        return region;
+    }
+
+    public double getMinLng() {
+        return minLng;
+    }
+
+    public double getMaxLng() {
+        return maxLng;
+    }
+
+    public double getMinLat() {
+        return minLat;
+    }
+
+    public double getMaxLat() {
+        return maxLat;
+    }
+}
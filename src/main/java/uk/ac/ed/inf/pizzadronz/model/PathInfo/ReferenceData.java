@@ -0,0 +1,68 @@
+package uk.ac.ed.inf.pizzadronz.model.PathInfo;
+
+/**
+ * Represents one version of the restaurants, no-fly zones and central area fetched from the server.
+ * <p>A snapshot is never changed once it is made, so everything read from one snapshot belongs together. The arrays it holds must
+ * not be changed either. Parts that did not change between two snapshots are the same objects in both, so anything built from a
+ * part can tell whether it is out of date by comparing it with the part it was built from.</p>
+ */
+public final class ReferenceData {
+    private final long version;
+    private final String contentHash;
+    private final Restaurant[] restaurants;
+    private final RestaurantCatalogue catalogue;
+    private final NamedRegion[] noFlyZones;
+    private final NamedRegion central;
+
+
+    public ReferenceData(long version, String contentHash, Restaurant[] restaurants, RestaurantCatalogue catalogue,
+                         NamedRegion[] noFlyZones, NamedRegion central) {
+        this.version = version;
+        this.contentHash = contentHash;
+        this.restaurants = restaurants;
+        this.catalogue = catalogue;
+        this.noFlyZones = noFlyZones;
+        this.central = central;
+    }
+
+    /**
+     * Makes a copy of this snapshot with other restaurants, keeping its version and everything else
+     * @param restaurants the restaurants to use instead
+     * @return the new snapshot
+     */
+    public ReferenceData withRestaurants(Restaurant[] restaurants) {
+        return new ReferenceData(version, contentHash, restaurants, new RestaurantCatalogue(restaurants), noFlyZones, central);
+    }
+
+    /**
+     * get the version of the snapshot, which goes up by one every time the content on the server changes
+     * @return the version
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * get the SHA-256 hash of the fetched content the snapshot was made from
+     * @return the hash as hex
+     */
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public Restaurant[] getRestaurants() {
+        return restaurants;
+    }
+
+    public RestaurantCatalogue getCatalogue() {
+        return catalogue;
+    }
+
+    public NamedRegion[] getNoFlyZones() {
+        return noFlyZones;
+    }
+
+    public NamedRegion getCentral() {
+        return central;
+    }
+}
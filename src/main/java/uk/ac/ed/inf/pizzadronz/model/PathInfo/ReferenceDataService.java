@@ -0,0 +1,343 @@
+package uk.ac.ed.inf.pizzadronz.model.PathInfo;
+
+import org.springframework.beans.factory.annotation.Value;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static uk.ac.ed.inf.pizzadronz.constant.JsonMappers.MAPPER;
+import static uk.ac.ed.inf.pizzadronz.constant.SystemConstants.CENTRAL_URL;
+import static uk.ac.ed.inf.pizzadronz.constant.SystemConstants.NO_FLY_ZONES_URL;
+import static uk.ac.ed.inf.pizzadronz.constant.SystemConstants.REFERENCE_DATA_REFRESH_MS;
+import static uk.ac.ed.inf.pizzadronz.constant.SystemConstants.RESTAURANT_URL;
+
+/**
+ * Fetches the restaurants, no-fly zones and central area from the server and publishes them as one immutable snapshot.
+ *
+ * <p>Making the service does not touch the network. The first snapshot is fetched by start, which Spring calls once the service
+ * is made as a bean, and it can then be refreshed in the background. Until then there is no snapshot, and the zones and
+ * restaurants cannot be made from the service. Every refresh asks for the three at once over one HTTP client, so connections to
+ * the server are reused, and sends the ETag or Last-Modified of what it already has so the server can answer that nothing
+ * changed without sending it again. A new snapshot is only published when the hash of the content changes, so the restaurants,
+ * no-fly zones and the graphs and fields built from them are only thrown away when there is something new. Snapshots are
+ * swapped in one step, so a reader sees either the old data or the new data and never a mix of the two.</p>
+ *
+ * <p>Everything made outside Spring with a no-argument constructor shares one default service, so the data is only fetched once
+ * however many handlers are made.</p>
+ */
+public class ReferenceDataService implements AutoCloseable {
+
+    /**
+     * Told about every new snapshot the service publishes
+     */
+    public interface Listener {
+        /**
+         * Called on the thread that fetched the snapshot, after it has been published
+         * @param data the new snapshot
+         */
+        void referenceDataChanged(ReferenceData data);
+    }
+
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(10);
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+    private static volatile ReferenceDataService defaultService;
+
+    // one client for every fetch, which keeps its connections to the server open between refreshes
+    private final HttpClient client = HttpClient.newBuilder()
+            .connectTimeout(CONNECT_TIMEOUT)
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .build();
+    private final Source restaurantSource;
+    private final Source noFlyZoneSource;
+    private final Source centralSource;
+    private final AtomicReference<ReferenceData> snapshot = new AtomicReference<>();
+    // held weakly so that handlers made and dropped by tests do not stay alive through the service
+    private final Set<Listener> listeners = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+    private ScheduledExecutorService scheduler;
+    private ScheduledFuture<?> refreshTask;
+
+    /**
+     * What was last fetched from one URL, and the validators to send with the next request for it
+     */
+    private static final class Source {
+        private final URI uri;
+        private String etag;
+        private String lastModified;
+        private byte[] body;
+        // the body the published snapshot was made from
+        private byte[] publishedBody;
+
+        private Source(String url) {
+            this.uri = URI.create(url);
+        }
+    }
+
+    /**
+     * Makes a service for the restaurants, no-fly zones and central area on the server, which fetches nothing until it is started
+     */
+    public ReferenceDataService() {
+        this(RESTAURANT_URL, NO_FLY_ZONES_URL, CENTRAL_URL);
+    }
+
+    /**
+     * Makes a service for the restaurants, no-fly zones and central area at the given URLs, which fetches nothing until it is started
+     * @param restaurantUrl the URL of the restaurants
+     * @param noFlyZonesUrl the URL of the no-fly zones
+     * @param centralUrl the URL of the central area
+     */
+    public ReferenceDataService(String restaurantUrl, String noFlyZonesUrl, String centralUrl) {
+        restaurantSource = new Source(restaurantUrl);
+        noFlyZoneSource = new Source(noFlyZonesUrl);
+        centralSource = new Source(centralUrl);
+    }
+
+    /**
+     * Fetches the first snapshot, unless there already is one. Listeners added before this are told about it
+     * @throws UncheckedIOException if any of the data cannot be fetched
+     */
+    public void start() {
+        if (snapshot.get() != null) {
+            return;
+        }
+        try {
+            refresh();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UncheckedIOException(new IOException("Interrupted fetching the reference data", e));
+        }
+    }
+
+    /**
+     * get the service shared by everything made outside Spring without one, started so it already has a snapshot. This is the only
+     * place the default service is fetched from, the first time it is asked for
+     * @return the default service
+     * @throws UncheckedIOException if the data cannot be fetched
+     */
+    public static ReferenceDataService startDefault() {
+        ReferenceDataService service = getDefault();
+        service.start();
+        return service;
+    }
+
+    /**
+     * get the service shared by everything made outside Spring without one, which may not have been started yet
+     * @return the default service
+     */
+    public static ReferenceDataService getDefault() {
+        ReferenceDataService service = defaultService;
+        if (service == null) {
+            synchronized (ReferenceDataService.class) {
+                service = defaultService;
+                if (service == null) {
+                    service = new ReferenceDataService();
+                    defaultService = service;
+                }
+            }
+        }
+        return service;
+    }
+
+    /**
+     * get the current snapshot, which never changes once it has been published
+     * @return the current snapshot, or null if the service has not been started
+     */
+    public ReferenceData getSnapshot() {
+        return snapshot.get();
+    }
+
+    /**
+     * Tells a listener about every snapshot published from now on. The listener is held weakly, so it is dropped once nothing
+     * else uses it
+     * @param listener the listener to tell
+     */
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * set how often the data is refreshed in the background, replacing any refresh already scheduled
+     * @param refreshMs the time between the end of one refresh and the start of the next in milliseconds, or 0 to stop refreshing
+     */
+    @Value("${pizzadronz.reference-data.refresh-ms:" + REFERENCE_DATA_REFRESH_MS + "}")
+    public synchronized void setRefreshInterval(long refreshMs) {
+        if (refreshTask != null) {
+            refreshTask.cancel(false);
+            refreshTask = null;
+        }
+        if (refreshMs <= 0) {
+            return;
+        }
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "reference-data-refresh");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        refreshTask = scheduler.scheduleWithFixedDelay(this::refreshQuietly, refreshMs, refreshMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Fetches the data again, publishing a new snapshot if its content changed
+     * @return true if a new snapshot was published
+     * @throws IOException if any of the data cannot be fetched or read, in which case the current snapshot is kept
+     * @throws InterruptedException if the thread is interrupted while waiting for the server
+     */
+    public boolean refresh() throws IOException, InterruptedException {
+        ReferenceData published;
+        synchronized (this) {
+            CompletableFuture<byte[]> restaurantBody = fetch(restaurantSource);
+            CompletableFuture<byte[]> noFlyZoneBody = fetch(noFlyZoneSource);
+            CompletableFuture<byte[]> centralBody = fetch(centralSource);
+            try {
+                CompletableFuture.allOf(restaurantBody, noFlyZoneBody, centralBody).join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                if (e.getCause() instanceof InterruptedException) {
+                    throw (InterruptedException) e.getCause();
+                }
+                throw new IOException(e.getCause());
+            }
+            String contentHash = hash(restaurantSource.body, noFlyZoneSource.body, centralSource.body);
+            ReferenceData current = snapshot.get();
+            if (current != null && current.getContentHash().equals(contentHash)) {
+                return false;
+            }
+
+            // parts whose content did not change are carried over, so nothing built from them has to be rebuilt
+            Restaurant[] restaurants;
+            RestaurantCatalogue catalogue;
+            if (current != null && Arrays.equals(restaurantSource.body, restaurantSource.publishedBody)) {
+                restaurants = current.getRestaurants();
+                catalogue = current.getCatalogue();
+            } else {
+                restaurants = MAPPER.readValue(restaurantSource.body, Restaurant[].class);
+                catalogue = new RestaurantCatalogue(restaurants);
+            }
+            NamedRegion[] noFlyZones = current != null && Arrays.equals(noFlyZoneSource.body, noFlyZoneSource.publishedBody)
+                    ? current.getNoFlyZones()
+                    : MAPPER.readValue(noFlyZoneSource.body, NamedRegion[].class);
+            NamedRegion central = current != null && Arrays.equals(centralSource.body, centralSource.publishedBody)
+                    ? current.getCentral()
+                    : MAPPER.readValue(centralSource.body, NamedRegion.class);
+
+            published = new ReferenceData(current == null ? 1 : current.getVersion() + 1, contentHash,
+                    restaurants, catalogue, noFlyZones, central);
+            snapshot.set(published);
+            restaurantSource.publishedBody = restaurantSource.body;
+            noFlyZoneSource.publishedBody = noFlyZoneSource.body;
+            centralSource.publishedBody = centralSource.body;
+        }
+
+        List<Listener> toTell;
+        synchronized (listeners) {
+            toTell = new ArrayList<>(listeners);
+        }
+        for (Listener listener : toTell) {
+            listener.referenceDataChanged(published);
+        }
+        return true;
+    }
+
+    /**
+     * Stops refreshing in the background
+     */
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+            refreshTask = null;
+        }
+    }
+
+    /**
+     * Refreshes from the scheduler, where a failure must not stop later refreshes
+     */
+    private void refreshQuietly() {
+        try {
+            refresh();
+        } catch (IOException | RuntimeException e) {
+            // the current snapshot stays in use and the next refresh tries again
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Starts a conditional GET for one URL, keeping what was fetched before if the server says it has not changed
+     * @param source the URL and what was last fetched from it
+     * @return completes with the current body once the response arrives
+     */
+    private CompletableFuture<byte[]> fetch(Source source) {
+        HttpRequest.Builder request = HttpRequest.newBuilder(source.uri)
+                .timeout(REQUEST_TIMEOUT)
+                .header("Accept", "application/json")
+                .GET();
+        if (source.body != null) {
+            if (source.etag != null) {
+                request.header("If-None-Match", source.etag);
+            }
+            if (source.lastModified != null) {
+                request.header("If-Modified-Since", source.lastModified);
+            }
+        }
+        return client.sendAsync(request.build(), HttpResponse.BodyHandlers.ofByteArray()).thenApply(response -> {
+            if (response.statusCode() == 304 && source.body != null) {
+                return source.body;
+            }
+            if (response.statusCode() < 200 || response.statusCode() >= 300) {
+                throw new CompletionException(new IOException("GET " + source.uri + " returned " + response.statusCode()));
+            }
+            source.etag = response.headers().firstValue("ETag").orElse(null);
+            source.lastModified = response.headers().firstValue("Last-Modified").orElse(null);
+            source.body = response.body();
+            return source.body;
+        });
+    }
+
+    /**
+     * Hashes the fetched bodies, each preceded by its length so moving bytes from one body to the next changes the hash
+     * @param bodies the bodies to hash
+     * @return the SHA-256 hash as hex
+     */
+    private static String hash(byte[]... bodies) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (byte[] body : bodies) {
+                digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(body.length).array());
+                digest.update(body);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform must provide SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
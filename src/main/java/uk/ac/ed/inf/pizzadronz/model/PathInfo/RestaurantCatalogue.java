@@ -0,0 +1,147 @@
+package uk.ac.ed.inf.pizzadronz.model.PathInfo;
+
+import uk.ac.ed.inf.pizzadronz.model.OrderInfo.Pizza;
+
+import java.time.DayOfWeek;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * An index of the restaurants and their menus, so an order can be validated without searching every menu.
+ * <p>It is built once from a snapshot of the restaurants and never changes, so it can be shared by every request. Looking up a
+ * pizza, a restaurant's opening days or a restaurant's price for a pizza all take the same time however many restaurants there
+ * are. The lookups give the same answers as searching the restaurants in order: a pizza belongs to the first restaurant whose
+ * menu has it, and a restaurant's name refers to the last restaurant with that name.</p>
+ */
+public final class RestaurantCatalogue {
+
+    /**
+     * Where a pizza on some menu comes from
+     */
+    public static final class MenuItem {
+        private final Restaurant restaurant;
+        private final boolean onSeveralRestaurants;
+
+        private MenuItem(Restaurant restaurant, boolean onSeveralRestaurants) {
+            this.restaurant = restaurant;
+            this.onSeveralRestaurants = onSeveralRestaurants;
+        }
+
+        /**
+         * @return the first restaurant whose menu has the pizza
+         */
+        public Restaurant getRestaurant() {
+            return restaurant;
+        }
+
+        /**
+         * @return true if restaurants with different names both have the pizza on their menu
+         */
+        public boolean isOnSeveralRestaurants() {
+            return onSeveralRestaurants;
+        }
+    }
+
+    /**
+     * The opening days and prices of the restaurant with some name
+     */
+    private static final class RestaurantEntry {
+        private final Set<DayOfWeek> openingDays;
+        private final Map<String, Integer> prices;
+
+        private RestaurantEntry(Set<DayOfWeek> openingDays, Map<String, Integer> prices) {
+            this.openingDays = openingDays;
+            this.prices = prices;
+        }
+    }
+
+    private final Map<String, MenuItem> menu;
+    private final Map<String, RestaurantEntry> restaurants;
+
+    /**
+     * Indexes a snapshot of the restaurants
+     * @param restaurantArray the restaurants, or null for none
+     */
+    public RestaurantCatalogue(Restaurant[] restaurantArray) {
+        Map<String, MenuItem> menu = new HashMap<>();
+        Map<String, RestaurantEntry> restaurants = new HashMap<>();
+        if (restaurantArray != null) {
+            for (Restaurant restaurant : restaurantArray) {
+                // opening days that are not the name of a day never match, just as when the names were compared directly
+                Set<DayOfWeek> openingDays = EnumSet.noneOf(DayOfWeek.class);
+                for (String openingDay : restaurant.getOpeningDays()) {
+                    for (DayOfWeek day : DayOfWeek.values()) {
+                        if (day.name().equals(openingDay)) {
+                            openingDays.add(day);
+                        }
+                    }
+                }
+
+                Map<String, Integer> prices = new HashMap<>();
+                for (Pizza pizza : restaurant.getMenu()) {
+                    // a restaurant's price for a pizza is the first one on its menu
+                    prices.putIfAbsent(pizza.getName(), pizza.getPriceInPence());
+
+                    MenuItem item = menu.get(pizza.getName());
+                    if (item == null) {
+                        menu.put(pizza.getName(), new MenuItem(restaurant, false));
+                    } else if (!item.onSeveralRestaurants && !item.restaurant.getName().equals(restaurant.getName())) {
+                        menu.put(pizza.getName(), new MenuItem(item.restaurant, true));
+                    }
+                }
+                restaurants.put(restaurant.getName(), new RestaurantEntry(Collections.unmodifiableSet(openingDays), Collections.unmodifiableMap(prices)));
+            }
+        }
+        this.menu = Collections.unmodifiableMap(menu);
+        this.restaurants = Collections.unmodifiableMap(restaurants);
+    }
+
+    /**
+     * Find where a pizza comes from
+     * @param pizzaName the name of the pizza
+     * @return where the pizza comes from, or null if it is on no menu
+     */
+    public MenuItem getMenuItem(String pizzaName) {
+        return pizzaName == null ? null : menu.get(pizzaName);
+    }
+
+    /**
+     * Find the restaurant a pizza comes from
+     * @param pizzaName the name of the pizza
+     * @return the first restaurant whose menu has the pizza, or null if it is on no menu
+     */
+    public Restaurant findRestaurant(String pizzaName) {
+        MenuItem item = getMenuItem(pizzaName);
+        return item == null ? null : item.restaurant;
+    }
+
+    /**
+     * Returns true if a restaurant is open on the given day
+     * @param restaurantName the name of the restaurant
+     * @param day the day to check
+     * @return true if the restaurant is open on the given day
+     */
+    public boolean isOpen(String restaurantName, DayOfWeek day) {
+        RestaurantEntry entry = restaurants.get(restaurantName);
+        return entry != null && entry.openingDays.contains(day);
+    }
+
+    /**
+     * Returns a restaurant's price for a pizza
+     * @param restaurantName the name of the restaurant
+     * @param pizzaName the name of the pizza
+     * @return the price of the pizza in pence, or -1 if it is not on the restaurant's menu
+     */
+    public int getPizzaPrice(String restaurantName, String pizzaName) {
+        RestaurantEntry entry = restaurants.get(restaurantName);
+        if (entry == null) {
+            return -1;
+        }
+        Integer price = entry.prices.get(pizzaName);
+        return price == null ? -1 : price;
+    }
+}
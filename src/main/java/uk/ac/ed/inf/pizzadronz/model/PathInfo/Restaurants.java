@@ -1,64 +1,68 @@
 package uk.ac.ed.inf.pizzadronz.model.PathInfo;
 
-import org.springframework.core.ParameterizedTypeReference;
-import org.springframework.http.HttpMethod;
-import org.springframework.http.ResponseEntity;
-import org.springframework.web.client.RestTemplate;
-import uk.ac.ed.inf.pizzadronz.constant.SystemConstants;
-
 import java.util.Arrays;
 
 
 /**
  * Represents restaurants on the map.
- * <p>Provides methods for retrieving the restaurants from server.</p>
+ * <p>Provides the restaurants from the reference data, replaced whenever new reference data is published. Once they are
+ * overridden they are pinned, and later reference data is ignored.</p>
  *
  */
 
-public class Restaurants {
-    private Restaurant[] restaurants;
+public class Restaurants implements ReferenceDataService.Listener {
+    // the restaurants and their catalogue, swapped together so a reader never sees one without the other
+    private volatile ReferenceData data;
+    // set once the restaurants are overridden, after which new reference data no longer replaces them, only read and written
+    // under this lock
+    private boolean overridden;
 
 
     public Restaurants() {
-        setRestaurants();
+        this(ReferenceDataService.startDefault());
+    }
+
+    /**
+     * Uses the restaurants of a reference data service, following every snapshot it publishes until they are overridden
+     * @param referenceData the service to take the restaurants from, which must already have been started
+     * @throws IllegalStateException if the service has not fetched its first snapshot yet
+     */
+    public Restaurants(ReferenceDataService referenceData) {
+        if (referenceData.getSnapshot() == null) {
+            throw new IllegalStateException("The reference data service has not been started");
+        }
+        referenceData.addListener(this);
+        referenceDataChanged(referenceData.getSnapshot());
     }
 
 
     public Restaurant[] getRestaurants() {
-        return restaurants;
+        return data.getRestaurants();
     }
 
     /**
-     *    Fetch restaurants from the server and set the restaurants field.
+     * get the index of the current restaurants, which does not change if the restaurants are replaced while it is being used
+     * @return the catalogue of the restaurants
      */
-    private void setRestaurants() {
-
-
-        String url = SystemConstants.RESTAURANT_URL;
-
-        // Create RestTemplate instance
-        RestTemplate restTemplate = new RestTemplate();
-
-        // Fetch and map the JSON to a list of Restaurant objects
-        ResponseEntity<Restaurant[]> response = restTemplate.exchange(
-                url,
-                HttpMethod.GET,
-                null,
-                new ParameterizedTypeReference<Restaurant[]>() {
-                }
-        );
+    public RestaurantCatalogue getCatalogue() {
+        return data.getCatalogue();
+    }
 
-        // Process the response
-        if (response.getStatusCode().is2xxSuccessful()) {
-            this.restaurants = response.getBody();
+    /**
+     * Takes the restaurants from a newer snapshot, unless they have been overridden
+     * @param newData the new snapshot
+     */
+    @Override
+    public synchronized void referenceDataChanged(ReferenceData newData) {
+        if (!overridden && (data == null || newData.getVersion() > data.getVersion())) {
+            data = newData;
         }
-
     }
 
     @Override
     public String toString() {
         return "Restaurants{" +
-                "restaurants=" + Arrays.toString(restaurants) +
+                "restaurants=" + Arrays.toString(getRestaurants()) +
                 '}';
     }
 
@@ -66,7 +70,8 @@ public class Restaurants {
      * for testing purposes, this method allows restaurants to be set manually
      * @param restaurantArray the restaurants to be set
      */
-    public void overrideRestaurants(Restaurant[] restaurantArray) {
-        restaurants = restaurantArray;
+    public synchronized void overrideRestaurants(Restaurant[] restaurantArray) {
+        overridden = true;
+        data = data.withRestaurants(restaurantArray);
     }
 }
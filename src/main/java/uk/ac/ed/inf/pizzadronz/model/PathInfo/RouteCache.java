@@ -0,0 +1,128 @@
+package uk.ac.ed.inf.pizzadronz.model.PathInfo;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import uk.ac.ed.inf.pizzadronz.constant.PlannerType;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static uk.ac.ed.inf.pizzadronz.constant.JsonMappers.PATH_WRITER;
+import static uk.ac.ed.inf.pizzadronz.model.GeoJson.GeoJsonStrings.GeoJSONPath;
+
+
+/**
+ * Caches delivery paths by restaurant location and planner.
+ * <p>A path only depends on where it starts and on the no-fly zones, so each entry records the version of the zones it was found for.
+ * When zones have only been added since an entry was stored, it is only thrown away if the path touches one of the new zones,
+ * otherwise it is kept and marked with the new version, as adding zones can only make the other paths longer. Removing a zone
+ * can make any path shorter, so once a zone has been removed every entry stored before then is found again.
+ * The cache holds a bounded number of entries and drops the least recently used one when full.</p>
+ */
+public class RouteCache {
+
+    /**
+     * Finds a path when the cache does not have one
+     */
+    @FunctionalInterface
+    public interface RouteSource {
+        LngLat[] findPath(LngLat start, PlannerType planner) throws JsonProcessingException;
+    }
+
+    private record Key(double lng, double lat, PlannerType planner) {
+    }
+
+    private final Map<Key, CachedRoute> routes;
+
+    /**
+     * Creates an empty cache
+     * @param capacity the most routes the cache will hold
+     */
+    public RouteCache(int capacity) {
+        // access order, so the eldest entry is the least recently used
+        this.routes = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, CachedRoute> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Gets the route from a location, finding and storing it if the cache does not have an up to date one
+     * @param start the start of the route, normally a restaurant
+     * @param planner the planner used to find the route
+     * @param noFlyZones the current no-fly zones
+     * @param source finds the route when it is not cached
+     * @return the route from the location
+     * @throws JsonProcessingException
+     */
+    public CachedRoute get(LngLat start, PlannerType planner, NoFlyZones noFlyZones, RouteSource source) throws JsonProcessingException {
+        Key key = new Key(start.getLng(), start.getLat(), planner);
+        // the zones are replaced before the version moves on, so reading the version first means the zones are at least as new as
+        // the version, and the route found below is searched against zones at least as new as those
+        long version = noFlyZones.getVersion();
+        long removalVersion = noFlyZones.getRemovalVersion();
+        PreparedRegion[] zones = noFlyZones.getPreparedZones();
+
+        CachedRoute cached;
+        synchronized (routes) {
+            cached = routes.get(key);
+        }
+        if (cached != null) {
+            if (cached.getZoneVersion() == version) {
+                return cached;
+            }
+            // if zones have only been added since, the new ones are at the end and the route is still fine unless it touches one
+            if (cached.getZoneVersion() < version && cached.getZoneVersion() >= removalVersion && cached.getZoneCount() <= zones.length
+                    && !cached.crossesAny(Arrays.copyOfRange(zones, cached.getZoneCount(), zones.length))) {
+                CachedRoute restamped = cached.restamp(version, zones.length);
+                synchronized (routes) {
+                    routes.put(key, restamped);
+                }
+                return restamped;
+            }
+        }
+
+        // searches run outside the lock so other locations are not held up, two threads may occasionally find the same route
+        LngLat[] path = source.findPath(start, planner);
+        CachedRoute route = new CachedRoute(path, PATH_WRITER.writeValueAsBytes(path), GeoJSONPath(path), version, zones.length);
+        synchronized (routes) {
+            routes.put(key, route);
+        }
+        return route;
+    }
+
+    /**
+     * Gets the route from a location only if the cache already has one found for the current no-fly zones
+     * @param start the start of the route, normally a restaurant
+     * @param planner the planner used to find the route
+     * @param noFlyZones the current no-fly zones
+     * @return the cached route, or null if there is none for the current zones
+     */
+    public CachedRoute getIfCurrent(LngLat start, PlannerType planner, NoFlyZones noFlyZones) {
+        CachedRoute cached;
+        synchronized (routes) {
+            cached = routes.get(new Key(start.getLng(), start.getLat(), planner));
+        }
+        if (cached == null || cached.getZoneVersion() != noFlyZones.getVersion()) {
+            return null;
+        }
+        return cached;
+    }
+
+    /**
+     * Removes every route
+     */
+    public void clear() {
+        synchronized (routes) {
+            routes.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (routes) {
+            return routes.size();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package uk.ac.ed.inf.pizzadronz.model.PathInfo;
+
+import uk.ac.ed.inf.pizzadronz.exception.SearchBudgetExceededException;
+
+
+/**
+ * Limits how much work the searches for one path may do.
+ * <p>Every search made for the path spends from the same budget, so a path found in stages cannot use more in total than one
+ * search could. Searches take the nodes they are about to expand in batches, and each time the budget checks whether it has run
+ * out of expansions, passed its deadline or been cancelled, throwing SearchBudgetExceededException if so. Only the thread searching
+ * spends from a budget, but any thread may cancel it.</p>
+ */
+public class SearchBudget {
+    // how many expansions there are between looks at the clock and for cancellation
+    private static final int CHECK_INTERVAL = 256;
+    private final long maxExpansions;
+    private final long deadline;
+    private long expansions;
+    private volatile boolean cancelled;
+
+    /**
+     * Creates a budget
+     * @param maxExpansions the most nodes the searches may expand between them
+     * @param deadline the System.nanoTime after which the searches must stop
+     */
+    public SearchBudget(long maxExpansions, long deadline) {
+        this.maxExpansions = maxExpansions;
+        this.deadline = deadline;
+    }
+
+    /**
+     * Creates a budget that never runs out, for searches that are not made on behalf of a request
+     * @return a budget with no limits
+     */
+    public static SearchBudget unlimited() {
+        return new SearchBudget(Long.MAX_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Counts one node a search is expanding and checks the budget has not run out
+     * @throws SearchBudgetExceededException if the budget has been cancelled, has run out of expansions or has passed its deadline
+     */
+    public void expand() {
+        expansions++;
+        if (expansions > maxExpansions) {
+            throw new SearchBudgetExceededException("Search expansion budget exceeded");
+        }
+        if (expansions % CHECK_INTERVAL == 1) {
+            check();
+        }
+    }
+
+    /**
+     * Checks the budget has not been cancelled or passed its deadline, for work that is not counted in expansions
+     * @throws SearchBudgetExceededException if the budget has been cancelled or has passed its deadline
+     */
+    public void check() {
+        if (cancelled) {
+            throw new SearchBudgetExceededException("Search cancelled");
+        }
+        if (deadline != Long.MAX_VALUE && System.nanoTime() > deadline) {
+            throw new SearchBudgetExceededException("Search deadline passed");
+        }
+    }
+
+    /**
+     * Stops the searches spending from this budget the next time they take from it
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public long getExpansions() {
+        return expansions;
+    }
+
+    public long getDeadline() {
+        return deadline;
+    }
+}
@@ -0,0 +1,165 @@
+package uk.ac.ed.inf.pizzadronz.model.PathInfo;
+
+import java.util.Arrays;
+
+import static uk.ac.ed.inf.pizzadronz.constant.SystemConstants.LATTICE_QUANTA_PER_STEP;
+
+
+/**
+ * Holds the state of one A* search in primitive arrays, indexed by node id.
+ * <p>Every position the search reaches is snapped to an integer lattice a small fraction of a step across and the two
+ * lattice coordinates are packed into a long, so the same point reached by moves in a different order is always the same node,
+ * however much floating point drift the two routes picked up. Each thread keeps one workspace and reuses it for every search,
+ * so a search allocates almost nothing once the arrays have grown to fit.</p>
+ */
+public class SearchWorkspace {
+    private static final int INITIAL_CAPACITY = 1 << 12;
+
+    private static final ThreadLocal<SearchWorkspace> WORKSPACE = ThreadLocal.withInitial(SearchWorkspace::new);
+    // a bidirectional search needs a second workspace for the search running backwards from the goal
+    private static final ThreadLocal<SearchWorkspace> BACKWARD_WORKSPACE = ThreadLocal.withInitial(SearchWorkspace::new);
+
+    private final LongIntHashMap nodeIds = new LongIntHashMap(INITIAL_CAPACITY);
+    private final IndexedMinHeap openList = new IndexedMinHeap(INITIAL_CAPACITY);
+    private double[] lng = new double[INITIAL_CAPACITY];
+    private double[] lat = new double[INITIAL_CAPACITY];
+    private double[] gCost = new double[INITIAL_CAPACITY];
+    private int[] cameFrom = new int[INITIAL_CAPACITY];
+    private boolean[] closed = new boolean[INITIAL_CAPACITY];
+    private int nodeCount;
+
+    private double originLng;
+    private double originLat;
+    private double quantum;
+
+    private SearchWorkspace() {
+    }
+
+    /**
+     * Gets the workspace for the current thread, cleared ready for a new search
+     * @param origin the start of the search, which the lattice is centred on
+     * @param stepSize the size of each move of the search
+     * @return the workspace for the current thread
+     */
+    public static SearchWorkspace forSearch(LngLat origin, double stepSize) {
+        SearchWorkspace workspace = WORKSPACE.get();
+        workspace.reset(origin, stepSize);
+        return workspace;
+    }
+
+    /**
+     * Gets the workspace for the backward half of a bidirectional search on the current thread, cleared ready for a new search
+     * @param origin the goal of the search, which the backward lattice is centred on
+     * @param stepSize the size of each move of the search
+     * @return the backward workspace for the current thread
+     */
+    public static SearchWorkspace forBackwardSearch(LngLat origin, double stepSize) {
+        SearchWorkspace workspace = BACKWARD_WORKSPACE.get();
+        workspace.reset(origin, stepSize);
+        return workspace;
+    }
+
+    private void reset(LngLat origin, double stepSize) {
+        nodeIds.clear();
+        openList.clear();
+        nodeCount = 0;
+        originLng = origin.getLng();
+        originLat = origin.getLat();
+        quantum = stepSize / LATTICE_QUANTA_PER_STEP;
+    }
+
+    /**
+     * Snaps a position to the lattice and packs its two coordinates into one key
+     * @param lngValue the longitude of the position
+     * @param latValue the latitude of the position
+     * @return the key of the lattice point closest to the position
+     */
+    public long key(double lngValue, double latValue) {
+        long column = Math.round((lngValue - originLng) / quantum);
+        long row = Math.round((latValue - originLat) / quantum);
+        return (column << 32) | (row & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Gets the id of the node with a key
+     * @param key the lattice key of the node
+     * @return the node id, or -1 if the search has not reached the node yet
+     */
+    public int find(long key) {
+        return nodeIds.get(key);
+    }
+
+    /**
+     * Adds a node the search has just reached
+     * @param key the lattice key of the node
+     * @param lngValue the longitude of the node
+     * @param latValue the latitude of the node
+     * @return the id of the new node
+     */
+    public int add(long key, double lngValue, double latValue) {
+        if (nodeCount == lng.length) {
+            int capacity = nodeCount * 2;
+            lng = Arrays.copyOf(lng, capacity);
+            lat = Arrays.copyOf(lat, capacity);
+            gCost = Arrays.copyOf(gCost, capacity);
+            cameFrom = Arrays.copyOf(cameFrom, capacity);
+            closed = Arrays.copyOf(closed, capacity);
+        }
+        int id = nodeCount++;
+        lng[id] = lngValue;
+        lat[id] = latValue;
+        gCost[id] = Double.POSITIVE_INFINITY;
+        cameFrom[id] = -1;
+        closed[id] = false;
+        nodeIds.put(key, id);
+        return id;
+    }
+
+    /**
+     * Records a cheaper way of reaching a node.
+     * The position is replaced too, so that the node sits exactly one move away from its new parent
+     * @param id the node id
+     * @param parent the node it is now reached from, or -1 for the start
+     * @param g the cost of reaching the node
+     * @param lngValue the longitude of the node reached from the parent
+     * @param latValue the latitude of the node reached from the parent
+     */
+    public void update(int id, int parent, double g, double lngValue, double latValue) {
+        cameFrom[id] = parent;
+        gCost[id] = g;
+        lng[id] = lngValue;
+        lat[id] = latValue;
+    }
+
+    public IndexedMinHeap getOpenList() {
+        return openList;
+    }
+
+    public double getLng(int id) {
+        return lng[id];
+    }
+
+    public double getLat(int id) {
+        return lat[id];
+    }
+
+    public double getGCost(int id) {
+        return gCost[id];
+    }
+
+    public int getCameFrom(int id) {
+        return cameFrom[id];
+    }
+
+    public boolean isClosed(int id) {
+        return closed[id];
+    }
+
+    public void close(int id) {
+        closed[id] = true;
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+}
@@ -0,0 +1,262 @@
+package uk.ac.ed.inf.pizzadronz.model.PathInfo;
+
+import uk.ac.ed.inf.pizzadronz.exception.SearchBudgetExceededException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static uk.ac.ed.inf.pizzadronz.constant.SystemConstants.VISIBILITY_CLEARANCE;
+import static uk.ac.ed.inf.pizzadronz.constant.SystemConstants.VISIBILITY_MARGIN;
+import static uk.ac.ed.inf.pizzadronz.model.PathInfo.AStar.doesPathIntersectWithAnyRegion;
+import static uk.ac.ed.inf.pizzadronz.model.PathInfo.AStar.euclideanDistance;
+
+
+/**
+ * Represents a visibility graph over the corners of the no-fly zones.
+ * <p>Nodes are the convex corners of every no-fly zone pushed slightly outwards, the corners of central and the goal.
+ * Two nodes are joined when the straight line between them does not cross a no-fly zone.
+ * A route is found by joining the start to every node it can see and running Dijkstra over the graph,
+ * which gives the shortest route as a short list of waypoints.</p>
+ */
+public class VisibilityGraph {
+    private final LngLat goal;
+    private final NamedRegion[] noFlyZones;
+    private final PreparedRegion[] preparedZones;
+    private final LngLat[] nodes;
+    // distance between each pair of nodes that can see each other, or infinity if the line between them is blocked
+    private final double[][] edges;
+
+    /**
+     * Builds the graph for a set of no-fly zones
+     * @param goal the location every route is heading towards, which becomes the last node
+     * @param preparedZones the no-fly zones to route around, prepared for containment checks
+     * @param central the central region, whose corners are added as extra nodes
+     */
+    public VisibilityGraph(LngLat goal, PreparedRegion[] preparedZones, NamedRegion central) {
+        this.goal = goal;
+        this.preparedZones = preparedZones;
+        this.noFlyZones = Arrays.stream(preparedZones).map(PreparedRegion::getRegion).toArray(NamedRegion[]::new);
+
+        List<LngLat> nodeList = new ArrayList<>();
+        for (NamedRegion noFlyZone : noFlyZones) {
+            nodeList.addAll(outwardCorners(noFlyZone));
+        }
+        if (central != null) {
+            // the last vertex repeats the first, so it is skipped
+            for (int i = 0; i < central.getVertices().length - 1; i++) {
+                nodeList.add(central.getVertices()[i]);
+            }
+        }
+        // a corner pushed out of one zone can land in another, in which case it cannot be flown to
+        nodeList.removeIf(node -> isInsideAnyZone(node));
+        nodeList.add(goal);
+        this.nodes = nodeList.toArray(new LngLat[0]);
+
+        this.edges = new double[nodes.length][nodes.length];
+        for (int i = 0; i < nodes.length; i++) {
+            Arrays.fill(edges[i], Double.POSITIVE_INFINITY);
+            edges[i][i] = 0;
+        }
+        for (int i = 0; i < nodes.length; i++) {
+            for (int j = i + 1; j < nodes.length; j++) {
+                if (isVisible(nodes[i], nodes[j])) {
+                    edges[i][j] = euclideanDistance(nodes[i], nodes[j]);
+                    edges[j][i] = edges[i][j];
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the convex corners of a region and pushes each one outwards along the bisector of its two edges,
+     * so that a route bending around the corner keeps clear of the region.
+     * Reflex corners are skipped as a shortest route never bends around them
+     * @param region the region to find the corners of
+     * @return the corners pushed outwards from the region
+     */
+    private static List<LngLat> outwardCorners(NamedRegion region) {
+        LngLat[] vertices = region.getVertices();
+        // the last vertex repeats the first
+        int count = vertices.length - 1;
+        List<LngLat> corners = new ArrayList<>();
+        if (count < 3) {
+            return corners;
+        }
+
+        // the sign of the area tells whether the vertices go anticlockwise (positive) or clockwise (negative)
+        double area = 0;
+        for (int i = 0; i < count; i++) {
+            LngLat a = vertices[i];
+            LngLat b = vertices[(i + 1) % count];
+            area += a.getLng() * b.getLat() - b.getLng() * a.getLat();
+        }
+        double orientation = Math.signum(area);
+
+        for (int i = 0; i < count; i++) {
+            LngLat previous = vertices[(i + count - 1) % count];
+            LngLat vertex = vertices[i];
+            LngLat next = vertices[(i + 1) % count];
+
+            double inLng = vertex.getLng() - previous.getLng();
+            double inLat = vertex.getLat() - previous.getLat();
+            double outLng = next.getLng() - vertex.getLng();
+            double outLat = next.getLat() - vertex.getLat();
+            double inLength = Math.hypot(inLng, inLat);
+            double outLength = Math.hypot(outLng, outLat);
+            if (inLength == 0 || outLength == 0) {
+                continue;
+            }
+
+            // a convex corner turns the same way as the polygon winds
+            double cross = inLng * outLat - inLat * outLng;
+            if (cross * orientation <= 0) {
+                continue;
+            }
+
+            // outward normals of both edges, averaged to give the bisector
+            double normalLng = orientation * (inLat / inLength + outLat / outLength);
+            double normalLat = -orientation * (inLng / inLength + outLng / outLength);
+            double normalLength = Math.hypot(normalLng, normalLat);
+            if (normalLength == 0) {
+                continue;
+            }
+            corners.add(new LngLat(vertex.getLng() + VISIBILITY_CLEARANCE * normalLng / normalLength,
+                    vertex.getLat() + VISIBILITY_CLEARANCE * normalLat / normalLength));
+        }
+        return corners;
+    }
+
+    /**
+     * Checks if a point is inside any no-fly zone, using the same containment check as the rest of the service
+     * @param point the point to check
+     * @return true if the point is inside a no-fly zone
+     */
+    private boolean isInsideAnyZone(LngLat point) {
+        for (PreparedRegion zone : preparedZones) {
+            if (zone.contains(point.getLng(), point.getLat())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks if the straight line between two points avoids every no-fly zone with some room to spare.
+     * The drone zigzags slightly either side of the line when following it, so a line that only just misses a zone cannot be flown
+     * @param from the start of the line
+     * @param to the end of the line
+     * @return true if the line is clear
+     */
+    private boolean isVisible(LngLat from, LngLat to) {
+        LngLat[] line = {from, to};
+        if (doesPathIntersectWithAnyRegion(line, noFlyZones, euclideanDistance(from, to))) {
+            return false;
+        }
+        for (NamedRegion noFlyZone : noFlyZones) {
+            LngLat[] vertices = noFlyZone.getVertices();
+            for (int i = 0; i < vertices.length - 1; i++) {
+                // the segments do not cross, so the closest they come is at one of the four endpoints
+                double gap = Math.min(Math.min(distanceToSegment(from, vertices[i], vertices[i + 1]), distanceToSegment(to, vertices[i], vertices[i + 1])),
+                        Math.min(distanceToSegment(vertices[i], from, to), distanceToSegment(vertices[i + 1], from, to)));
+                if (gap < VISIBILITY_MARGIN) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the shortest distance from a point to a line segment
+     * @param point the point to measure from
+     * @param start the start of the segment
+     * @param end the end of the segment
+     * @return the distance from the point to the closest point on the segment
+     */
+    private static double distanceToSegment(LngLat point, LngLat start, LngLat end) {
+        double segmentLng = end.getLng() - start.getLng();
+        double segmentLat = end.getLat() - start.getLat();
+        double lengthSquared = segmentLng * segmentLng + segmentLat * segmentLat;
+        double t = 0;
+        if (lengthSquared > 0) {
+            t = ((point.getLng() - start.getLng()) * segmentLng + (point.getLat() - start.getLat()) * segmentLat) / lengthSquared;
+            t = Math.max(0, Math.min(1, t));
+        }
+        return Math.hypot(point.getLng() - (start.getLng() + t * segmentLng), point.getLat() - (start.getLat() + t * segmentLat));
+    }
+
+    /**
+     * Finds the shortest route from a start point to the goal through the graph
+     * @param start the start of the route
+     * @return the waypoints of the route, starting at the start and ending at the goal, or null if the goal cannot be reached
+     */
+    public List<LngLat> route(LngLat start) {
+        return route(start, SearchBudget.unlimited());
+    }
+
+    /**
+     * Finds the shortest route from a start point to the goal through the graph, spending from a budget
+     * @param start the start of the route
+     * @param budget the budget the search spends an expansion from for every node it settles
+     * @return the waypoints of the route, starting at the start and ending at the goal, or null if the goal cannot be reached
+     * @throws SearchBudgetExceededException if the budget runs out before the search finishes
+     */
+    public List<LngLat> route(LngLat start, SearchBudget budget) {
+        int nodeCount = nodes.length;
+        // the start is an extra node which is only joined to the nodes it can see
+        double[] startEdges = new double[nodeCount];
+        for (int i = 0; i < nodeCount; i++) {
+            startEdges[i] = isVisible(start, nodes[i]) ? euclideanDistance(start, nodes[i]) : Double.POSITIVE_INFINITY;
+        }
+
+        // the graph is small and dense, so an array based Dijkstra is quicker than a priority queue
+        double[] distance = Arrays.copyOf(startEdges, nodeCount);
+        int[] previous = new int[nodeCount];
+        // -1 means the node is reached directly from the start
+        Arrays.fill(previous, -1);
+        boolean[] settled = new boolean[nodeCount];
+        int goalIndex = nodeCount - 1;
+
+        while (true) {
+            int current = -1;
+            for (int i = 0; i < nodeCount; i++) {
+                if (!settled[i] && distance[i] < Double.POSITIVE_INFINITY && (current == -1 || distance[i] < distance[current])) {
+                    current = i;
+                }
+            }
+            if (current == -1) {
+                return null; // the goal cannot be reached
+            }
+            if (current == goalIndex) {
+                break;
+            }
+            budget.expand();
+            settled[current] = true;
+            for (int i = 0; i < nodeCount; i++) {
+                double tentative = distance[current] + edges[current][i];
+                if (!settled[i] && tentative < distance[i]) {
+                    distance[i] = tentative;
+                    previous[i] = current;
+                }
+            }
+        }
+
+        List<LngLat> route = new ArrayList<>();
+        for (int node = goalIndex; node != -1; node = previous[node]) {
+            route.add(nodes[node]);
+        }
+        route.add(start);
+        Collections.reverse(route);
+        return route;
+    }
+
+    public LngLat getGoal() {
+        return goal;
+    }
+
+    public int getNodeCount() {
+        return nodes.length;
+    }
+}
@@ -0,0 +1,260 @@
+package uk.ac.ed.inf.pizzadronz.model.PathInfo;
+
+import java.util.Arrays;
+
+import static uk.ac.ed.inf.pizzadronz.constant.SystemConstants.ZONE_INDEX_CELL_SIZE;
+
+
+/**
+ * Uniform grid over the edges of a set of no-fly zones.
+ * <p>Each edge is listed in every grid cell its bounding box covers, so a short drone move only has to be tested against the
+ * few edges listed in the cells around it rather than every edge of every zone. The edges are stored in primitive arrays and the
+ * intersection test is the same orientation test as AStar.doSegmentsIntersect, so the answer is exactly the same as checking
+ * every edge.</p>
+ */
+public class ZoneEdgeIndex {
+    private final double cellSize;
+    private final double minLng;
+    private final double minLat;
+    private final int columns;
+    private final int rows;
+    // edges listed in cell c are cellEdges[cellStart[c]] up to cellEdges[cellStart[c + 1]]
+    private final int[] cellStart;
+    private final int[] cellEdges;
+    private final double[] startLng;
+    private final double[] startLat;
+    private final double[] endLng;
+    private final double[] endLat;
+
+    /**
+     * Builds the index for a set of no-fly zones
+     * @param noFlyZones the zones whose edges are indexed
+     */
+    public ZoneEdgeIndex(NamedRegion[] noFlyZones) {
+        this.cellSize = ZONE_INDEX_CELL_SIZE;
+
+        // edges are taken the same way doesPathIntersectWithRegion walks them, including the one wrapping back to the first vertex
+        int edgeCount = 0;
+        for (NamedRegion zone : noFlyZones) {
+            edgeCount += zone.getVertices().length;
+        }
+        startLng = new double[edgeCount];
+        startLat = new double[edgeCount];
+        endLng = new double[edgeCount];
+        endLat = new double[edgeCount];
+        double lowLng = Double.POSITIVE_INFINITY;
+        double lowLat = Double.POSITIVE_INFINITY;
+        double highLng = Double.NEGATIVE_INFINITY;
+        double highLat = Double.NEGATIVE_INFINITY;
+        int edge = 0;
+        for (NamedRegion zone : noFlyZones) {
+            LngLat[] vertices = zone.getVertices();
+            for (int j = 0; j < vertices.length; j++) {
+                LngLat start = vertices[j];
+                LngLat end = vertices[(j + 1) % vertices.length];
+                startLng[edge] = start.getLng();
+                startLat[edge] = start.getLat();
+                endLng[edge] = end.getLng();
+                endLat[edge] = end.getLat();
+                lowLng = Math.min(lowLng, Math.min(start.getLng(), end.getLng()));
+                lowLat = Math.min(lowLat, Math.min(start.getLat(), end.getLat()));
+                highLng = Math.max(highLng, Math.max(start.getLng(), end.getLng()));
+                highLat = Math.max(highLat, Math.max(start.getLat(), end.getLat()));
+                edge++;
+            }
+        }
+
+        if (edgeCount == 0) {
+            minLng = 0;
+            minLat = 0;
+            columns = 0;
+            rows = 0;
+            cellStart = new int[1];
+            cellEdges = new int[0];
+            return;
+        }
+        minLng = lowLng;
+        minLat = lowLat;
+        columns = (int) Math.floor((highLng - lowLng) / cellSize) + 1;
+        rows = (int) Math.floor((highLat - lowLat) / cellSize) + 1;
+
+        // count the edges in each cell, then fill them in, so the lists can be packed into one array
+        cellStart = new int[columns * rows + 1];
+        for (int i = 0; i < edgeCount; i++) {
+            forEachCell(i, cell -> cellStart[cell + 1]++);
+        }
+        for (int cell = 0; cell < columns * rows; cell++) {
+            cellStart[cell + 1] += cellStart[cell];
+        }
+        cellEdges = new int[cellStart[columns * rows]];
+        int[] filled = Arrays.copyOf(cellStart, columns * rows);
+        for (int i = 0; i < edgeCount; i++) {
+            int edgeIndex = i;
+            forEachCell(i, cell -> cellEdges[filled[cell]++] = edgeIndex);
+        }
+    }
+
+    private interface CellAction {
+        void apply(int cell);
+    }
+
+    /**
+     * Runs an action for every cell the bounding box of an edge covers
+     * @param edge the edge
+     * @param action the action to run with each cell
+     */
+    private void forEachCell(int edge, CellAction action) {
+        int firstColumn = column(Math.min(startLng[edge], endLng[edge]));
+        int lastColumn = column(Math.max(startLng[edge], endLng[edge]));
+        int firstRow = row(Math.min(startLat[edge], endLat[edge]));
+        int lastRow = row(Math.max(startLat[edge], endLat[edge]));
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                action.apply(row * columns + column);
+            }
+        }
+    }
+
+    private int column(double lng) {
+        return Math.max(0, Math.min(columns - 1, (int) Math.floor((lng - minLng) / cellSize)));
+    }
+
+    private int row(double lat) {
+        return Math.max(0, Math.min(rows - 1, (int) Math.floor((lat - minLat) / cellSize)));
+    }
+
+    /**
+     * Checks if a segment crosses or touches any no-fly zone edge
+     * @param from the start of the segment
+     * @param to the end of the segment
+     * @return true if the segment intersects an edge of any zone
+     */
+    public boolean intersects(LngLat from, LngLat to) {
+        return intersects(from.getLng(), from.getLat(), to.getLng(), to.getLat());
+    }
+
+    /**
+     * Checks if a segment crosses or touches any no-fly zone edge
+     * @param fromLng the longitude of the start of the segment
+     * @param fromLat the latitude of the start of the segment
+     * @param toLng the longitude of the end of the segment
+     * @param toLat the latitude of the end of the segment
+     * @return true if the segment intersects an edge of any zone
+     */
+    public boolean intersects(double fromLng, double fromLat, double toLng, double toLat) {
+        double lowLng = Math.min(fromLng, toLng);
+        double highLng = Math.max(fromLng, toLng);
+        double lowLat = Math.min(fromLat, toLat);
+        double highLat = Math.max(fromLat, toLat);
+        // nothing to hit outside the area covered by the grid
+        if (columns == 0 || highLng < minLng || highLat < minLat
+                || lowLng > minLng + columns * cellSize || lowLat > minLat + rows * cellSize) {
+            return false;
+        }
+
+        int lastColumn = column(highLng);
+        int lastRow = row(highLat);
+        for (int row = row(lowLat); row <= lastRow; row++) {
+            for (int column = column(lowLng); column <= lastColumn; column++) {
+                int cell = row * columns + column;
+                for (int i = cellStart[cell]; i < cellStart[cell + 1]; i++) {
+                    int edge = cellEdges[i];
+                    if (segmentsIntersect(fromLng, fromLat, toLng, toLat, startLng[edge], startLat[edge], endLng[edge], endLat[edge])) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks if a segment keeps at least a margin away from every no-fly zone edge, so a drone zigzagging along it stays clear
+     * @param fromLng the longitude of the start of the segment
+     * @param fromLat the latitude of the start of the segment
+     * @param toLng the longitude of the end of the segment
+     * @param toLat the latitude of the end of the segment
+     * @param margin the closest the segment may come to an edge
+     * @return true if the segment neither touches nor comes within the margin of any edge
+     */
+    public boolean isClear(double fromLng, double fromLat, double toLng, double toLat, double margin) {
+        double lowLng = Math.min(fromLng, toLng) - margin;
+        double highLng = Math.max(fromLng, toLng) + margin;
+        double lowLat = Math.min(fromLat, toLat) - margin;
+        double highLat = Math.max(fromLat, toLat) + margin;
+        if (columns == 0 || highLng < minLng || highLat < minLat
+                || lowLng > minLng + columns * cellSize || lowLat > minLat + rows * cellSize) {
+            return true;
+        }
+
+        int lastColumn = column(highLng);
+        int lastRow = row(highLat);
+        for (int row = row(lowLat); row <= lastRow; row++) {
+            for (int column = column(lowLng); column <= lastColumn; column++) {
+                int cell = row * columns + column;
+                for (int i = cellStart[cell]; i < cellStart[cell + 1]; i++) {
+                    int edge = cellEdges[i];
+                    if (segmentsIntersect(fromLng, fromLat, toLng, toLat, startLng[edge], startLat[edge], endLng[edge], endLat[edge])) {
+                        return false;
+                    }
+                    // the segments do not cross, so the closest they come is at one of the four endpoints
+                    double gap = Math.min(
+                            Math.min(distanceToSegment(fromLng, fromLat, startLng[edge], startLat[edge], endLng[edge], endLat[edge]),
+                                    distanceToSegment(toLng, toLat, startLng[edge], startLat[edge], endLng[edge], endLat[edge])),
+                            Math.min(distanceToSegment(startLng[edge], startLat[edge], fromLng, fromLat, toLng, toLat),
+                                    distanceToSegment(endLng[edge], endLat[edge], fromLng, fromLat, toLng, toLat)));
+                    if (gap < margin) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the shortest distance from a point to a segment, on primitive coordinates
+     */
+    private static double distanceToSegment(double px, double py, double sx, double sy, double ex, double ey) {
+        double segmentLng = ex - sx;
+        double segmentLat = ey - sy;
+        double lengthSquared = segmentLng * segmentLng + segmentLat * segmentLat;
+        double t = 0;
+        if (lengthSquared > 0) {
+            t = Math.max(0, Math.min(1, ((px - sx) * segmentLng + (py - sy) * segmentLat) / lengthSquared));
+        }
+        return Math.hypot(px - (sx + t * segmentLng), py - (sy + t * segmentLat));
+    }
+
+    /**
+     * The orientation test of AStar.doSegmentsIntersect on primitive coordinates, segment p1p2 against q1q2
+     */
+    private static boolean segmentsIntersect(double p1x, double p1y, double p2x, double p2y,
+                                             double q1x, double q1y, double q2x, double q2y) {
+        int o1 = orientation(p1x, p1y, p2x, p2y, q1x, q1y);
+        int o2 = orientation(p1x, p1y, p2x, p2y, q2x, q2y);
+        int o3 = orientation(q1x, q1y, q2x, q2y, p1x, p1y);
+        int o4 = orientation(q1x, q1y, q2x, q2y, p2x, p2y);
+
+        if (o1 != o2 && o3 != o4) {
+            return true;
+        }
+        // collinear points only count when they lie on the other segment
+        if (o1 == 0 && onSegment(p1x, p1y, q1x, q1y, p2x, p2y)) return true;
+        if (o2 == 0 && onSegment(p1x, p1y, q2x, q2y, p2x, p2y)) return true;
+        if (o3 == 0 && onSegment(q1x, q1y, p1x, p1y, q2x, q2y)) return true;
+        return o4 == 0 && onSegment(q1x, q1y, p2x, p2y, q2x, q2y);
+    }
+
+    private static int orientation(double px, double py, double qx, double qy, double rx, double ry) {
+        double val = (qy - py) * (rx - qx) - (qx - px) * (ry - qy);
+        if (val == 0) {
+            return 0;
+        }
+        return (val > 0) ? 1 : 2;
+    }
+
+    private static boolean onSegment(double px, double py, double qx, double qy, double rx, double ry) {
+        return qx <= Math.max(px, rx) && qx >= Math.min(px, rx) && qy <= Math.max(py, ry) && qy >= Math.min(py, ry);
+    }
+}
@@ -1,11 +1,17 @@
 package uk.ac.ed.inf.pizzadronz;
 
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
+import uk.ac.ed.inf.pizzadronz.constant.JsonMappers;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
 
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
@@ -18,10 +24,23 @@ class Coursework1ApplicationTests {
 	@Autowired
 	private MockMvc mockMvc;
 
+	@Autowired
+	private ObjectMapper objectMapper;
+
 	@Test
 	void contextLoads() {
 	}
 
+	/**
+	 * Test that Spring keeps its own auto-configured mapper rather than the one the service uses internally
+	 */
+	@Test
+	void testAutoConfiguredMapper() {
+		assertNotSame(JsonMappers.MAPPER, objectMapper);
+		// Boot's mapper ignores unknown properties, where a plain mapper fails on them
+		assertFalse(objectMapper.isEnabled(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES));
+	}
+
 	/**
 	 * Test the service with an endpoint that doesn't exist
 	 * @throws Exception
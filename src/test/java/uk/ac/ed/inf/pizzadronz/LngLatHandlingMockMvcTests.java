@@ -731,4 +731,39 @@ public class LngLatHandlingMockMvcTests {
 
     }
 
+    /**
+     * test isInRegionBatch with valid input, and with more longitudes than latitudes
+     * @throws Exception
+     */
+    @Test
+    void testIsInRegionBatch() throws Exception {
+        ObjectNode inputJson = objectMapper.createObjectNode();
+        ObjectNode region = inputJson.putObject("region");
+        region.put("name", "central");
+        ArrayNode vertices = region.putArray("vertices");
+        vertices.addObject().put("lng", -3.192473).put("lat", 55.946233);
+        vertices.addObject().put("lng", -3.192473).put("lat", 55.942617);
+        vertices.addObject().put("lng", -3.184319).put("lat", 55.942617);
+        vertices.addObject().put("lng", -3.184319).put("lat", 55.946233);
+        vertices.addObject().put("lng", -3.192473).put("lat", 55.946233);
+        inputJson.putArray("lng").add(-3.19).add(-3.17);
+        inputJson.putArray("lat").add(55.944).add(55.944);
+
+        mockMvc.perform(post("/isInRegionBatch")
+                        .contentType("application/json")
+                        .content(inputJson.toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.count").value(2))
+                .andExpect(jsonPath("$.inside").value(1))
+                .andReturn();
+
+        ((ArrayNode) inputJson.get("lng")).add(-3.18);
+
+        mockMvc.perform(post("/isInRegionBatch")
+                        .contentType("application/json")
+                        .content(inputJson.toString()))
+                .andExpect(status().isBadRequest())
+                .andReturn();
+    }
+
 }
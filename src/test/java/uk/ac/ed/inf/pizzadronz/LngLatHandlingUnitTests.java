@@ -6,7 +6,17 @@ import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.junit.jupiter.api.Test;
 import uk.ac.ed.inf.pizzadronz.controller.LngLatHandling;
 import uk.ac.ed.inf.pizzadronz.exception.InvalidBodyException;
+import uk.ac.ed.inf.pizzadronz.model.PathInfo.IsInRegionBatchResponse;
 import uk.ac.ed.inf.pizzadronz.model.PathInfo.LngLat;
+import uk.ac.ed.inf.pizzadronz.model.PathInfo.NamedRegion;
+import uk.ac.ed.inf.pizzadronz.model.PathInfo.PreparedRegion;
+
+import java.awt.geom.Path2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Random;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -647,4 +657,182 @@ public class LngLatHandlingUnitTests {
     }
 
 
+    /**
+     * Test that a prepared region gives the same answer as a Path2D built from the region, including points on its vertexes and edges.
+     */
+    @Test
+    void testPreparedRegion(){
+        LngLat[] vertices = {
+                new LngLat(-3.192473, 55.946233), new LngLat(-3.192473, 55.942617), new LngLat(-3.184319, 55.942617),
+                new LngLat(-3.188, 55.9445), new LngLat(-3.184319, 55.946233), new LngLat(-3.192473, 55.946233)};
+        PreparedRegion prepared = new PreparedRegion(new NamedRegion("concave", vertices));
+
+        Path2D path = new Path2D.Double();
+        path.moveTo(vertices[0].getLng(), vertices[0].getLat());
+        for (LngLat vertex : vertices) {
+            path.lineTo(vertex.getLng(), vertex.getLat());
+        }
+        path.closePath();
+
+        List<LngLat> points = new ArrayList<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 20000; i++) {
+            points.add(new LngLat(-3.194 + random.nextDouble() * 0.011, 55.941 + random.nextDouble() * 0.0065));
+        }
+        for (int i = 0; i < vertices.length - 1; i++) {
+            points.add(vertices[i]);
+            points.add(new LngLat((vertices[i].getLng() + vertices[i + 1].getLng()) / 2, (vertices[i].getLat() + vertices[i + 1].getLat()) / 2));
+        }
+        for (LngLat point : points) {
+            assertEquals(path.contains(point.getLng(), point.getLat()), prepared.contains(point), "Point " + point.getLng() + ", " + point.getLat());
+        }
+
+        LngLat[] open = Arrays.copyOf(vertices, vertices.length - 1);
+        InvalidBodyException exception = assertThrows(InvalidBodyException.class, () -> new PreparedRegion(new NamedRegion("open", open)));
+        assertEquals("Region is not closed", exception.getMessage());
+    }
+
+
+    /**
+     * Test the isInRegionBatch method gives the same answer as the isInRegion method for each point.
+     */
+    @Test
+    void testIsInRegionBatch(){
+        ObjectNode inputJson = objectMapper.createObjectNode();
+
+        ObjectNode region = inputJson.putObject("region");
+        region.put("name", "central");
+        ArrayNode vertices = region.putArray("vertices");
+        vertices.addObject().put("lng", -3.192473).put("lat", 55.946233);
+        vertices.addObject().put("lng", -3.192473).put("lat", 55.942617);
+        vertices.addObject().put("lng", -3.184319).put("lat", 55.942617);
+        vertices.addObject().put("lng", -3.184319).put("lat", 55.946233);
+        vertices.addObject().put("lng", -3.192473).put("lat", 55.946233);
+
+        ArrayNode lngs = inputJson.putArray("lng");
+        ArrayNode lats = inputJson.putArray("lat");
+        Random random = new Random(3);
+        for (int i = 0; i < 1000; i++) {
+            lngs.add(-3.194 + random.nextDouble() * 0.011);
+            lats.add(55.941 + random.nextDouble() * 0.0065);
+        }
+
+        IsInRegionBatchResponse response = lngLatHandling.isInRegionBatch(inputJson);
+        byte[] bits = Base64.getDecoder().decode(response.getResults());
+        assertEquals(1000, response.getCount());
+        assertEquals(125, bits.length);
+
+        int inside = 0;
+        for (int i = 0; i < 1000; i++) {
+            ObjectNode single = objectMapper.createObjectNode();
+            single.putObject("position").put("lng", lngs.get(i).doubleValue()).put("lat", lats.get(i).doubleValue());
+            single.set("region", region);
+            boolean expected = lngLatHandling.isInRegion(single);
+            assertEquals(expected, (bits[i / 8] & (1 << (i % 8))) != 0, "Point " + i);
+            if (expected) {
+                inside++;
+            }
+        }
+        assertEquals(inside, response.getInside());
+
+        lats.remove(0);
+        InvalidBodyException exception = assertThrows(InvalidBodyException.class, () -> lngLatHandling.isInRegionBatch(inputJson));
+        assertEquals("lng and lat must be the same length", exception.getMessage());
+    }
+
+    /**
+     * Test the distanceTo, isCloseTo and nextPosition bodies give the same answer or error when read from their tokens as when
+     * read into a tree.
+     */
+    @Test
+    void testTokenReadMatchesTreeRead() throws Exception {
+        String[] pairBodies = {
+                "{\"position1\": {\"lng\": -3.192473, \"lat\": 55.946233}, \"position2\": {\"lng\": -3.192473, \"lat\": 55.942617}}",
+                "{\"position2\": {\"lat\": 55.942617, \"lng\": -3.1925}, \"other\": [1, {\"a\": 2}], \"position1\": {\"lng\": -3.1924, \"lat\": 55.9462}}",
+                "{\"position1\": {\"lng\": 1, \"lat\": 2}, \"position2\": {\"lng\": 1, \"lat\": 2.00001}}",
+                "{\"position1\": {\"lng\": 200, \"lat\": 2}, \"position2\": {\"lng\": 1, \"lat\": -95}}",
+                "{\"position1\": {\"lng\": 1, \"lat\": 2}, \"position2\": {\"lng\": 1, \"lat\": 95}}",
+                "{\"position1\": {\"lng\": 1}, \"position2\": {\"lng\": \"a\", \"lat\": 2}}",
+                "{\"position1\": {\"lng\": 1, \"lat\": null}}",
+                "{\"position1\": {\"lng\": 1, \"lat\": 2}, \"position2\": [1, 2]}",
+                "{\"position1\": {\"lng\": 1, \"lat\": 2}, \"position2\": {\"lng\": \"1\", \"lat\": 2}}",
+                "{\"position1\": {\"lng\": 1, \"lat\": 2}, \"position2\": {\"lng\": 3, \"lat\": 4}, \"position1\": {\"lng\": 5, \"lat\": 6}}",
+                "{\"position1\": {\"lng\": 1, \"lat\": 2, \"lng\": {\"x\": 1}}, \"position2\": {\"lng\": 3, \"lat\": 4}}",
+                "{\"position1\": {\"lng\": 1, \"lat\": 2, \"alt\": 3}, \"position2\": {\"lng\": 3}}",
+                "{\"position1\": {\"lng\": 1e400, \"lat\": 2}, \"position2\": {\"lng\": 123456789012345678901234567890, \"lat\": 4}}",
+                "{}",
+                "[{\"position1\": {\"lng\": 1, \"lat\": 2}}]",
+                "7"
+        };
+        for (String body : pairBodies) {
+            assertEquals(outcome(() -> lngLatHandling.getDistanceTo(objectMapper.readTree(body))),
+                    outcome(() -> lngLatHandling.getDistanceTo(body.getBytes())), body);
+            assertEquals(outcome(() -> lngLatHandling.isCloseTo(objectMapper.readTree(body))),
+                    outcome(() -> lngLatHandling.isCloseTo(body.getBytes())), body);
+        }
+
+        String[] nextPositionBodies = {
+                "{\"start\": {\"lng\": -3.192473, \"lat\": 55.946233}, \"angle\": 45}",
+                "{\"angle\": 22.5, \"start\": {\"lat\": 55.946233, \"lng\": -3.192473}, \"position2\": {}}",
+                "{\"start\": {\"lng\": -3.192473, \"lat\": 55.946233}}",
+                "{\"start\": {\"lng\": -3.192473, \"lat\": 55.946233}, \"angle\": \"45\"}",
+                "{\"start\": {\"lng\": -3.192473, \"lat\": 55.946233}, \"angle\": null}",
+                "{\"start\": {\"lng\": -3.192473, \"lat\": 55.946233}, \"angle\": 361}",
+                "{\"start\": {\"lng\": 180, \"lat\": 55.946233}, \"angle\": 361}",
+                "{\"start\": {\"lng\": 1, \"lat\": 2, \"alt\": 3}}",
+                "{\"start\": \"here\", \"angle\": 45}",
+                "{\"angle\": 45}",
+                "[]"
+        };
+        for (String body : nextPositionBodies) {
+            assertEquals(outcome(() -> lngLatHandling.nextPosition(objectMapper.readTree(body))),
+                    outcome(() -> lngLatHandling.nextPosition(body.getBytes())), body);
+        }
+
+        String central = "{\"name\": \"central\", \"vertices\": [{\"lng\": -3.192473, \"lat\": 55.946233}, "
+                + "{\"lng\": -3.192473, \"lat\": 55.942617}, {\"lng\": -3.184319, \"lat\": 55.942617}, "
+                + "{\"lng\": -3.184319, \"lat\": 55.946233}, {\"lng\": -3.192473, \"lat\": 55.946233}]}";
+        String[] batchBodies = {
+                "{\"region\": " + central + ", \"lng\": [-3.19, -3.17], \"lat\": [55.944, 55.944]}",
+                "{\"lat\": [55.944, 55.944, 55.944], \"other\": {\"lng\": []}, \"lng\": [-3.19, -3.17, -3.185], \"region\": " + central + "}",
+                "{\"region\": " + central + ", \"lng\": [-3.19, -3.17], \"lat\": [55.944]}",
+                "{\"region\": " + central + ", \"lng\": [-3.19, \"x\"], \"lat\": [55.944, 55.944]}",
+                "{\"region\": " + central + ", \"lng\": [-3.19, [1]], \"lat\": [55.944, 55.944]}",
+                "{\"region\": " + central + ", \"lng\": -3.19, \"lat\": [55.944]}",
+                "{\"region\": " + central + ", \"lng\": [200], \"lat\": [55.944]}",
+                "{\"region\": " + central + ", \"lng\": [1], \"lat\": [2], \"lng\": [-3.19, -3.17], \"lat\": [55.944, 55.944]}",
+                "{\"region\": " + central + ", \"lat\": [55.944]}",
+                "{\"region\": null, \"lng\": [1], \"lat\": [2]}",
+                "{\"region\": {\"name\": \"empty\"}, \"lng\": \"x\"}",
+                "{\"lng\": [1], \"lat\": [2]}",
+                "[]"
+        };
+        for (String body : batchBodies) {
+            assertEquals(outcome(() -> describe(lngLatHandling.isInRegionBatch(objectMapper.readTree(body)))),
+                    outcome(() -> describe(lngLatHandling.isInRegionBatch(body.getBytes()))), body);
+        }
+
+        InvalidBodyException exception = assertThrows(InvalidBodyException.class,
+                () -> lngLatHandling.getDistanceTo("{\"position1\": {\"lng\": 1,".getBytes()));
+        assertEquals("Malformed JSON", exception.getMessage());
+    }
+
+    /**
+     * Describes a batch response by its fields, so two responses with the same answer describe the same
+     */
+    private static String describe(IsInRegionBatchResponse response) {
+        return response.getCount() + " " + response.getInside() + " " + response.getResults();
+    }
+
+    /**
+     * Describes what a call returned, or the type and message of what it threw
+     */
+    private static String outcome(java.util.concurrent.Callable<Object> call) {
+        try {
+            return String.valueOf(call.call());
+        } catch (Exception e) {
+            return e.getClass().getSimpleName() + (e instanceof InvalidBodyException ? ": " + e.getMessage() : "");
+        }
+    }
+
 }
@@ -19,6 +19,7 @@ import uk.ac.ed.inf.pizzadronz.constant.SystemConstants;
 import uk.ac.ed.inf.pizzadronz.model.OrderInfo.OrderValidationResult;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -753,7 +754,46 @@ class OrderHandlingMockMvcTests {
                     "The orderStatus in the response does not match the expected value.");
         }
     }
-}
 
+    /**
+     * test that an order with a field the service does not know is validated the same by the single, bulk and stream endpoints,
+     * which all ignore the unknown field as Spring's mapper does
+     */
+    @Test
+    void testUnknownOrderField() throws Exception {
+        ObjectNode inputJson = (ObjectNode) testOrders[0].deepCopy();
+        inputJson.put("deliveryNotes", "Leave at the door");
+        String expectedOrderValidationCode = testOrders[0].get("orderValidationCode").asText();
 
+        MvcResult single = mockMvc.perform(post("/validateOrder")
+                        .contentType("application/json")
+                        .content(inputJson.toString()))
+                .andExpect(status().isOk())
+                .andReturn();
+        assertEquals(expectedOrderValidationCode,
+                objectMapper.readTree(single.getResponse().getContentAsString()).get("orderValidationCode").asText());
 
+        ArrayNode orders = objectMapper.createArrayNode().add(inputJson);
+        MvcResult bulk = mockMvc.perform(post("/validateOrders")
+                        .contentType("application/json")
+                        .content(orders.toString()))
+                .andExpect(status().isOk())
+                .andReturn();
+        assertEquals(expectedOrderValidationCode, objectMapper.readTree(bulk.getResponse().getContentAsString())
+                .get("results").get(0).get("orderValidationCode").asText());
+
+        MvcResult started = mockMvc.perform(post("/validateOrderStream")
+                        .contentType("application/x-ndjson")
+                        .content(inputJson.toString() + "\n"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        MvcResult stream = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andReturn();
+        String[] lines = stream.getResponse().getContentAsString().trim().split("\n");
+        assertEquals(1, lines.length);
+        JsonNode streamed = objectMapper.readTree(lines[0]);
+        assertTrue(streamed.has("orderValidationCode"), "The stream gave an error instead of a result: " + lines[0]);
+        assertEquals(expectedOrderValidationCode, streamed.get("orderValidationCode").asText());
+    }
+}
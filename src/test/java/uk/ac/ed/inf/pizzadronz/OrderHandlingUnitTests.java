@@ -12,14 +12,31 @@ import org.springframework.http.HttpMethod;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.client.RestTemplate;
 import uk.ac.ed.inf.pizzadronz.constant.OrderStatus;
+import uk.ac.ed.inf.pizzadronz.constant.JsonMappers;
 import uk.ac.ed.inf.pizzadronz.constant.OrderValidationCode;
 import uk.ac.ed.inf.pizzadronz.constant.SystemConstants;
 import uk.ac.ed.inf.pizzadronz.controller.OrderHandling;
+import uk.ac.ed.inf.pizzadronz.exception.InvalidBodyException;
 import uk.ac.ed.inf.pizzadronz.model.OrderInfo.*;
+import uk.ac.ed.inf.pizzadronz.model.PathInfo.LngLat;
+import uk.ac.ed.inf.pizzadronz.model.PathInfo.Restaurant;
+import uk.ac.ed.inf.pizzadronz.model.PathInfo.RestaurantCatalogue;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.EnumMap;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
@@ -54,6 +71,144 @@ public class OrderHandlingUnitTests {
         this.testOrders = testOrders;
     }
 
+    /**
+     * test that streamed orders each get the same validation result as validating them one at a time, in the order they were sent
+     */
+    @Test
+    void testValidateOrderStream() throws IOException {
+        StringBuilder orders = new StringBuilder();
+        for (Order testOrder : testOrders) {
+            orders.append(objectMapper.writeValueAsString(testOrder)).append('\n');
+        }
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        orderHandling.validateOrderStream(new ByteArrayInputStream(orders.toString().getBytes(StandardCharsets.UTF_8))).getBody().writeTo(output);
+
+        String[] results = output.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(testOrders.length, results.length);
+        for (int i = 0; i < testOrders.length; i++) {
+            OrderValidationResult expected = orderHandling.validateOrder(testOrders[i]);
+            JsonNode result = objectMapper.readTree(results[i]);
+            assertEquals(expected.getOrderStatus().name(), result.get("orderStatus").asText());
+            assertEquals(expected.getOrderValidationCode().name(), result.get("orderValidationCode").asText());
+        }
+    }
+
+    /**
+     * test that validating orders in bulk gives each order the same result as validating it alone, and counts every code
+     */
+    @Test
+    void testValidateOrders() throws IOException {
+        ArrayNode orders = objectMapper.valueToTree(testOrders);
+        BulkValidationResult bulk = orderHandling.validateOrders(orders, null);
+
+        assertEquals(testOrders.length, bulk.getResults().size());
+        Map<OrderValidationCode, Integer> expectedCodes = new EnumMap<>(OrderValidationCode.class);
+        for (int i = 0; i < testOrders.length; i++) {
+            OrderValidationResult expected = orderHandling.validateOrder(testOrders[i]);
+            assertEquals(testOrders[i].getOrderNo(), bulk.getOrderNos().get(i));
+            assertEquals(expected.getOrderStatus(), bulk.getResults().get(i).getOrderStatus());
+            assertEquals(expected.getOrderValidationCode(), bulk.getResults().get(i).getOrderValidationCode());
+            expectedCodes.merge(expected.getOrderValidationCode(), 1, Integer::sum);
+        }
+        assertEquals(expectedCodes, bulk.getValidationCodes());
+
+        assertThrows(InvalidBodyException.class, () -> orderHandling.validateOrders(orders.get(0), null));
+        assertThrows(InvalidBodyException.class, () -> orderHandling.validateOrders(null, null));
+        assertThrows(InvalidBodyException.class, () -> orderHandling.validateOrders(null, "2024-13-01"));
+    }
+
+    /**
+     * test that an order bound straight from its bytes by the shared reader is the same as one converted from a json tree, and
+     * that both ignore a field they do not know as Spring's mapper does
+     */
+    @Test
+    void testSharedOrderReader() throws IOException {
+        for (Order testOrder : testOrders) {
+            byte[] json = objectMapper.writeValueAsBytes(testOrder);
+            Order bound = JsonMappers.ORDER_READER.readValue(json);
+            assertEquals(OrderHandling.extractOrder(objectMapper.readTree(json)), bound);
+            assertEquals(orderHandling.validateOrder(objectMapper.readTree(json)).getOrderValidationCode(),
+                    orderHandling.validateOrder(bound).getOrderValidationCode());
+
+            ObjectNode withUnknownField = (ObjectNode) objectMapper.readTree(json);
+            withUnknownField.put("deliveryNotes", "Leave at the door");
+            Order expected = JsonMappers.ORDER_READER.readValue(json);
+            assertEquals(expected, OrderHandling.extractOrder(withUnknownField));
+            assertEquals(expected, JsonMappers.ORDER_READER.readValue(objectMapper.writeValueAsBytes(withUnknownField)));
+        }
+    }
+
+    /**
+     * test that the catalogue finds pizzas, opening days and prices as searching the restaurants in order would
+     */
+    @Test
+    void testRestaurantCatalogue() {
+        Pizza margherita = new Pizza("R1: Margherita", 1000);
+        Pizza calzone = new Pizza("R1: Calzone", 1400);
+        Pizza shared = new Pizza("Shared", 900);
+        Restaurant first = new Restaurant("R1", new LngLat(-3.19, 55.945), new String[]{"MONDAY", "friday"}, new Pizza[]{margherita, calzone, shared});
+        Restaurant second = new Restaurant("R2", new LngLat(-3.18, 55.943), new String[]{"SUNDAY"}, new Pizza[]{shared, new Pizza("R1: Calzone", 1500)});
+        RestaurantCatalogue catalogue = new RestaurantCatalogue(new Restaurant[]{first, second});
+
+        assertSame(first, catalogue.findRestaurant(margherita.getName()));
+        // a pizza on more than one menu belongs to the first restaurant, but is marked as coming from several
+        assertSame(first, catalogue.findRestaurant(calzone.getName()));
+        assertTrue(catalogue.getMenuItem(calzone.getName()).isOnSeveralRestaurants());
+        assertFalse(catalogue.getMenuItem(margherita.getName()).isOnSeveralRestaurants());
+        assertNull(catalogue.getMenuItem("R3: Hawaiian"));
+        assertNull(catalogue.findRestaurant(null));
+
+        assertTrue(catalogue.isOpen("R1", DayOfWeek.MONDAY));
+        // opening days are matched exactly, so a day not in capitals is never open
+        assertFalse(catalogue.isOpen("R1", DayOfWeek.FRIDAY));
+        assertFalse(catalogue.isOpen("R3", DayOfWeek.MONDAY));
+
+        assertEquals(1400, catalogue.getPizzaPrice("R1", calzone.getName()));
+        assertEquals(1500, catalogue.getPizzaPrice("R2", calzone.getName()));
+        assertEquals(-1, catalogue.getPizzaPrice("R2", margherita.getName()));
+    }
+
+    /**
+     * test that card details and order dates are read as the regular expressions and date parsing read them, and that the
+     * Luhn checksum is only checked when asked for
+     */
+    @Test
+    void testOrderFieldValidator() {
+        assertTrue(OrderFieldValidator.isCardNumberValid("4485959141852684", true));
+        assertTrue(OrderFieldValidator.isCardNumberValid("4485959141852685", false));
+        assertFalse(OrderFieldValidator.isCardNumberValid("4485959141852685", true));
+        assertFalse(OrderFieldValidator.isCardNumberValid("448595914185268", false));
+        assertFalse(OrderFieldValidator.isCardNumberValid("448595914185268a", false));
+        assertFalse(OrderFieldValidator.isCardNumberValid(null, false));
+
+        for (String expiry : new String[]{"10/78", "1/78", "10/7"}) {
+            assertTrue(OrderFieldValidator.isExpiryFormatValid(expiry), expiry);
+        }
+        for (String expiry : new String[]{"1/7", "100/7", "10-78", "1//8", "10/7a", "", null}) {
+            assertFalse(OrderFieldValidator.isExpiryFormatValid(expiry), expiry);
+        }
+        assertEquals(-1, OrderFieldValidator.expiryMonthIndex("13/25"));
+        assertEquals(-1, OrderFieldValidator.expiryMonthIndex("00/25"));
+        assertEquals(25 * 12 + 1, OrderFieldValidator.expiryMonthIndex("2/25"));
+
+        assertTrue(OrderFieldValidator.isCvvValid("081"));
+        assertFalse(OrderFieldValidator.isCvvValid("81"));
+        assertFalse(OrderFieldValidator.isCvvValid("8a1"));
+        assertFalse(OrderFieldValidator.isCvvValid(null));
+
+        assertEquals(20240229L, OrderFieldValidator.parseOrderDate("2024-02-29"));
+        // dates not written as yyyy-mm-dd are still read as they were before
+        assertEquals(20240105L, OrderFieldValidator.parseOrderDate("2024-1-5"));
+        assertThrows(DateTimeException.class, () -> OrderFieldValidator.parseOrderDate("2023-02-29"));
+        assertThrows(NumberFormatException.class, () -> OrderFieldValidator.parseOrderDate("2024-0a-01"));
+        assertEquals(25 * 12 + 1, OrderFieldValidator.monthIndex(20250228L));
+
+        for (LocalDate date = LocalDate.of(1999, 12, 1); date.isBefore(LocalDate.of(2101, 3, 1)); date = date.plusDays(1)) {
+            long packed = date.getYear() * 10000L + date.getMonthValue() * 100 + date.getDayOfMonth();
+            assertEquals(date.getDayOfWeek(), OrderFieldValidator.dayOfWeek(packed));
+        }
+    }
+
     /**
      * test correctly converts JSON to Order object
      */
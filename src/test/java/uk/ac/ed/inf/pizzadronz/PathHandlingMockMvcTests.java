@@ -4,6 +4,7 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -20,8 +21,10 @@ import uk.ac.ed.inf.pizzadronz.model.OrderInfo.Order;
 import uk.ac.ed.inf.pizzadronz.model.PathInfo.LngLat;
 
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static uk.ac.ed.inf.pizzadronz.PathHandlingUnitTests.validatePath;
 import static uk.ac.ed.inf.pizzadronz.controller.OrderHandling.extractOrder;
@@ -122,6 +125,100 @@ public class PathHandlingMockMvcTests {
         assertTrue(validatePath(path));
     }
 
+    /**
+     * Test the anytime mode of the path handling controller with a random selection of valid orders, checking the returned path is valid
+     * and that the reported bound is no worse than epsilon, and that an epsilon below 1 returns 400
+     * @throws Exception
+     */
+    @RepeatedTest(5)
+    void testPathHandlingAnytime() throws Exception {
+        OrderStatus orderStatus = OrderStatus.INVALID;
+        int randomIndex = 0;
+        while (orderStatus == OrderStatus.INVALID) {
+            randomIndex = (int) (Math.random() * testOrders.length);
+            orderStatus = orderHandling.validateOrder(testOrders[randomIndex]).getOrderStatus();
+        }
+        JsonNode testOrder = testOrders[randomIndex];
+
+        MvcResult result = (MvcResult) mockMvc.perform(post("/calcDeliveryPath")
+                        .param("epsilon", "1.5")
+                        .param("budgetMs", "5")
+                        .contentType("application/json")
+                        .content(testOrder.toPrettyString()))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(SystemConstants.SUBOPTIMALITY_BOUND_HEADER))
+                .andReturn();
+
+        double bound = Double.parseDouble(result.getResponse().getHeader(SystemConstants.SUBOPTIMALITY_BOUND_HEADER));
+        assertTrue(bound >= 1 && bound <= 1.5);
+        LngLat[] path = new ObjectMapper().readValue(result.getResponse().getContentAsString(), LngLat[].class);
+        assertTrue(validatePath(path));
+
+        mockMvc.perform(post("/calcDeliveryPath")
+                        .param("epsilon", "0.5")
+                        .contentType("application/json")
+                        .content(testOrder.toPrettyString()))
+                .andExpect(status().isBadRequest());
+    }
+
+    /**
+     * Test that the path handling controller accepts a deadline from the client and rejects a negative one with 400
+     * @throws Exception
+     */
+    @RepeatedTest(5)
+    void testPathHandlingDeadlineHeader() throws Exception {
+        OrderStatus orderStatus = OrderStatus.INVALID;
+        int randomIndex = 0;
+        while (orderStatus == OrderStatus.INVALID) {
+            randomIndex = (int) (Math.random() * testOrders.length);
+            orderStatus = orderHandling.validateOrder(testOrders[randomIndex]).getOrderStatus();
+        }
+        JsonNode testOrder = testOrders[randomIndex];
+
+        MvcResult result = (MvcResult) mockMvc.perform(post("/calcDeliveryPath")
+                        .header(SystemConstants.DEADLINE_HEADER, "60000")
+                        .contentType("application/json")
+                        .content(testOrder.toPrettyString()))
+                .andExpect(status().isOk())
+                .andReturn();
+        LngLat[] path = new ObjectMapper().readValue(result.getResponse().getContentAsString(), LngLat[].class);
+        assertTrue(validatePath(path));
+
+        mockMvc.perform(post("/calcDeliveryPath")
+                        .header(SystemConstants.DEADLINE_HEADER, "-1")
+                        .contentType("application/json")
+                        .content(testOrder.toPrettyString()))
+                .andExpect(status().isBadRequest());
+    }
+
+    /**
+     * Test that the batch path handling controller gives a result for every test order, with a valid path for each valid order,
+     * and returns 400 when it is not given an array
+     * @throws Exception
+     */
+    @Test
+    void testPathHandlingBatch() throws Exception {
+        MvcResult result = (MvcResult) mockMvc.perform(post("/calcDeliveryPaths")
+                        .contentType("application/json")
+                        .content(objectMapper.writeValueAsString(testOrders)))
+                .andExpect(status().isOk())
+                .andReturn();
+        JsonNode results = objectMapper.readTree(result.getResponse().getContentAsString());
+        assertEquals(testOrders.length, results.size());
+        for (int i = 0; i < testOrders.length; i++) {
+            if (orderHandling.validateOrder(testOrders[i]).getOrderStatus() == OrderStatus.VALID) {
+                assertTrue(validatePath(objectMapper.treeToValue(results.get(i).get("path"), LngLat[].class)));
+            } else {
+                assertTrue(results.get(i).get("path").isNull());
+            }
+        }
+
+        mockMvc.perform(post("/calcDeliveryPaths")
+                        .contentType("application/json")
+                        .content(testOrders[0].toPrettyString()))
+                .andExpect(status().isBadRequest());
+    }
+
     /**
      * Test the path handling controller with a random selection of invalid orders to ensure they return the correct status code of 400
      * @throws Exception
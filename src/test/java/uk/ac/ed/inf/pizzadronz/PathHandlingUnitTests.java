@@ -4,6 +4,7 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpServer;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.RepeatedTest;
 import org.junit.jupiter.api.RepetitionInfo;
@@ -15,22 +16,47 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.web.client.RestTemplate;
 import uk.ac.ed.inf.pizzadronz.constant.OrderStatus;
+import uk.ac.ed.inf.pizzadronz.constant.OrderValidationCode;
+import uk.ac.ed.inf.pizzadronz.constant.PlannerType;
+import uk.ac.ed.inf.pizzadronz.controller.DailyBatch;
 import uk.ac.ed.inf.pizzadronz.controller.OrderHandling;
 import uk.ac.ed.inf.pizzadronz.controller.PathHandling;
+import uk.ac.ed.inf.pizzadronz.exception.InvalidBodyException;
+import uk.ac.ed.inf.pizzadronz.exception.PathNotFoundException;
+import uk.ac.ed.inf.pizzadronz.exception.SearchBudgetExceededException;
 import uk.ac.ed.inf.pizzadronz.model.OrderInfo.*;
 import uk.ac.ed.inf.pizzadronz.model.PathInfo.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
 import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.util.*;
-
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static uk.ac.ed.inf.pizzadronz.constant.SystemConstants.*;
 import static uk.ac.ed.inf.pizzadronz.controller.PathHandling.isInRegion;
@@ -296,6 +322,860 @@ public class PathHandlingUnitTests {
         assertTrue(validatePath(path));
     }
 
+    /**
+     * Test that the distance field towards AT never estimates less than the straight line distance, and is zero at AT
+     */
+    @Test
+    void testGoalDistanceField() {
+        GoalDistanceField field = pathHandling.getNoFlyZones().getGoalDistanceField(DRONE_MOVE_DISTANCE_MEDIUM);
+        assertEquals(0, field.estimate(APPLETON_TOWER), 1e-12);
+        for (LngLat start : FixedTestStarts()) {
+            assertTrue(field.estimate(start) >= euclideanDistance(start, APPLETON_TOWER));
+        }
+    }
+
+    /**
+     * Test that searches guided by the distance field find paths as short as searches guided by the euclidean distance, while
+     * expanding fewer nodes in total when a no-fly zone stands between the start and AT
+     */
+    @Test
+    void testGoalDistanceFieldSearch() throws IOException {
+        // a separate instance so the wall added here does not affect the other tests, thick enough for the field to see
+        NoFlyZones noFlyZones = new PathHandling().getNoFlyZones();
+        double wallLng = APPLETON_TOWER.getLng() + 0.006;
+        noFlyZones.addNoFlyZones(new NamedRegion[]{new NamedRegion("Wall", new LngLat[]{
+                new LngLat(wallLng, APPLETON_TOWER.getLat() - 0.008),
+                new LngLat(wallLng + 0.004, APPLETON_TOWER.getLat() - 0.008),
+                new LngLat(wallLng + 0.004, APPLETON_TOWER.getLat() + 0.008),
+                new LngLat(wallLng, APPLETON_TOWER.getLat() + 0.008),
+                new LngLat(wallLng, APPLETON_TOWER.getLat() - 0.008)})});
+        PathPlanner planner = new PathPlanner(DRONE_MOVE_DISTANCE_MEDIUM, DRONE_IS_CLOSE_DISTANCE_MEDIUM);
+        // a goal that is not exactly AT is searched for with the euclidean distance
+        LngLat nearlyAT = new LngLat(APPLETON_TOWER.getLng() + 1e-13, APPLETON_TOWER.getLat());
+        long fieldExpansions = 0;
+        long euclideanExpansions = 0;
+        // starts behind the wall, so every path has to go round one end of it
+        for (int i = -3; i <= 3; i++) {
+            LngLat start = new LngLat(wallLng + 0.008, APPLETON_TOWER.getLat() + i * 0.001);
+            SearchBudget fieldBudget = SearchBudget.unlimited();
+            SearchBudget euclideanBudget = SearchBudget.unlimited();
+            List<LngLat> fieldPath = planner.plan(start, APPLETON_TOWER, noFlyZones, fieldBudget);
+            List<LngLat> euclideanPath = planner.plan(start, nearlyAT, noFlyZones, euclideanBudget);
+            assertEquals(euclideanPath.size(), fieldPath.size(), "Path length from " + start);
+            fieldExpansions += fieldBudget.getExpansions();
+            euclideanExpansions += euclideanBudget.getExpansions();
+        }
+        assertTrue(fieldExpansions < euclideanExpansions, fieldExpansions + " expansions with the field, " + euclideanExpansions + " without");
+    }
+
+    /**
+     * Test that the distance field never overestimates through a gap between two zones that is narrower than a cell of the field
+     * and misses every cell centre, so a search guided by the field still finds the path through the gap, as short as the path
+     * found with the euclidean distance
+     */
+    @Test
+    void testGoalDistanceFieldNarrowGap() throws IOException {
+        // a separate instance so the zones added here do not affect the other tests
+        NoFlyZones noFlyZones = new PathHandling().getNoFlyZones();
+        double wallLng = APPLETON_TOWER.getLng() + 0.003;
+        // the gap lies between two rows of cell centres, which are a step apart from AT
+        double gapLow = APPLETON_TOWER.getLat() + 0.00015;
+        double gapHigh = APPLETON_TOWER.getLat() + 0.00075;
+        noFlyZones.addNoFlyZones(new NamedRegion[]{
+                new NamedRegion("Below the gap", new LngLat[]{
+                        new LngLat(wallLng, gapLow - 0.008), new LngLat(wallLng + 0.002, gapLow - 0.008),
+                        new LngLat(wallLng + 0.002, gapLow), new LngLat(wallLng, gapLow), new LngLat(wallLng, gapLow - 0.008)}),
+                new NamedRegion("Above the gap", new LngLat[]{
+                        new LngLat(wallLng, gapHigh), new LngLat(wallLng + 0.002, gapHigh),
+                        new LngLat(wallLng + 0.002, gapHigh + 0.008), new LngLat(wallLng, gapHigh + 0.008), new LngLat(wallLng, gapHigh)})});
+
+        GoalDistanceField field = noFlyZones.getGoalDistanceField(DRONE_MOVE_DISTANCE_MEDIUM);
+        PathPlanner planner = new PathPlanner(DRONE_MOVE_DISTANCE_MEDIUM, DRONE_IS_CLOSE_DISTANCE_MEDIUM);
+        // a goal that is not exactly AT is searched for with the euclidean distance
+        LngLat nearlyAT = new LngLat(APPLETON_TOWER.getLng() + 1e-13, APPLETON_TOWER.getLat());
+        LngLat start = new LngLat(wallLng + 0.004, (gapLow + gapHigh) / 2);
+        List<LngLat> fieldPath = planner.plan(start, APPLETON_TOWER, noFlyZones, SearchBudget.unlimited());
+        List<LngLat> euclideanPath = planner.plan(start, nearlyAT, noFlyZones, SearchBudget.unlimited());
+        assertEquals(euclideanPath.size(), fieldPath.size());
+        // the path through the gap is straight, so every point on it is estimated at no more than what is left of it
+        for (int i = 0; i < fieldPath.size(); i++) {
+            double remaining = (fieldPath.size() - 1 - i) * DRONE_MOVE_DISTANCE_MEDIUM + euclideanDistance(fieldPath.get(fieldPath.size() - 1), APPLETON_TOWER);
+            assertTrue(field.estimate(fieldPath.get(i)) <= remaining + 1e-12, "Estimate at " + fieldPath.get(i));
+        }
+    }
+
+    /**
+     * Test that the visibility graph planner gives a valid path from each of the fixed test starts
+     */
+    @Test
+    void testVisibilityGraphPlanner() throws IOException {
+        for (LngLat start : FixedTestStarts()) {
+            assertTrue(validatePath(pathHandling.getPath(start, PlannerType.VISIBILITY_GRAPH)));
+        }
+    }
+
+    /**
+     * Test that the bidirectional planner finds paths from the fixed test starts, several of which have to go round no-fly zones,
+     * that are only a little longer than the lattice paths because of the meeting tolerance, while expanding fewer nodes
+     */
+    @Test
+    void testBidirectionalPlanner() throws IOException {
+        long latticeExpansions = 0;
+        long bidirectionalExpansions = 0;
+        double latticeLength = 0;
+        double bidirectionalLength = 0;
+        for (LngLat start : FixedTestStarts()) {
+            SearchBudget latticeBudget = SearchBudget.unlimited();
+            SearchBudget bidirectionalBudget = SearchBudget.unlimited();
+            LngLat[] latticePath = pathHandling.getPath(start, PlannerType.LATTICE, latticeBudget);
+            LngLat[] bidirectionalPath = pathHandling.getPath(start, PlannerType.BIDIRECTIONAL, bidirectionalBudget);
+            assertTrue(validatePath(bidirectionalPath));
+            assertTrue(pathLength(bidirectionalPath) <= 1.1 * pathLength(latticePath), "Path length from " + start);
+            latticeExpansions += latticeBudget.getExpansions();
+            bidirectionalExpansions += bidirectionalBudget.getExpansions();
+            latticeLength += pathLength(latticePath);
+            bidirectionalLength += pathLength(bidirectionalPath);
+        }
+        assertTrue(bidirectionalLength <= 1.03 * latticeLength, bidirectionalLength + " flown searching both ways, " + latticeLength + " searching forwards");
+        assertTrue(bidirectionalExpansions < latticeExpansions,
+                bidirectionalExpansions + " expansions searching both ways, " + latticeExpansions + " searching forwards");
+    }
+
+    /**
+     * Test that the jump point planner finds paths from the fixed test starts no more than 2% longer than the lattice paths,
+     * while expanding far fewer nodes by running straight through open sky
+     */
+    @Test
+    void testJumpPointPlanner() throws IOException {
+        long latticeExpansions = 0;
+        long jumpingExpansions = 0;
+        for (LngLat start : FixedTestStarts()) {
+            SearchBudget latticeBudget = SearchBudget.unlimited();
+            SearchBudget jumpingBudget = SearchBudget.unlimited();
+            LngLat[] latticePath = pathHandling.getPath(start, PlannerType.LATTICE, latticeBudget);
+            LngLat[] jumpingPath = pathHandling.getPath(start, PlannerType.JUMP_POINT, jumpingBudget);
+            assertTrue(validatePath(jumpingPath));
+            assertTrue(pathLength(jumpingPath) <= 1.02 * pathLength(latticePath), "Path length from " + start);
+            latticeExpansions += latticeBudget.getExpansions();
+            jumpingExpansions += jumpingBudget.getExpansions();
+        }
+        assertTrue(5 * jumpingExpansions < latticeExpansions, jumpingExpansions + " expansions jumping, " + latticeExpansions + " without");
+    }
+
+    /**
+     * Test that the any-angle planner finds routes from the fixed test starts that are shorter than the lattice paths, including
+     * routes that have to turn round no-fly zones, that every leg of them keeps clear of the zones, and that they can be flown
+     */
+    @Test
+    void testAnyAnglePlanner() throws IOException {
+        NoFlyZones noFlyZones = pathHandling.getNoFlyZones();
+        PathPlanner planner = new PathPlanner(DRONE_MOVE_DISTANCE_MEDIUM, DRONE_IS_CLOSE_DISTANCE_MEDIUM);
+        int turningRoutes = 0;
+        for (LngLat start : FixedTestStarts()) {
+            LngLat[] route = planner.planAnyAngle(start, APPLETON_TOWER, noFlyZones).toArray(new LngLat[0]);
+            for (int i = 0; i < route.length - 1; i++) {
+                assertFalse(noFlyZones.getEdgeIndex().intersects(route[i], route[i + 1]), "Leg " + i + " of the route from " + start);
+                // a leg of a single grid move is where a blocked line fell back to the grid, any longer leg is a line of sight
+                if (euclideanDistance(route[i], route[i + 1]) > Math.sqrt(2) * DRONE_MOVE_DISTANCE_MEDIUM + 1e-12) {
+                    assertTrue(noFlyZones.getEdgeIndex().isClear(route[i].getLng(), route[i].getLat(), route[i + 1].getLng(), route[i + 1].getLat(), VISIBILITY_MARGIN),
+                            "Leg " + i + " of the route from " + start);
+                }
+            }
+            assertTrue(pathLength(route) < pathLength(pathHandling.getPath(start)), "Route length from " + start);
+            if (route.length > 2) {
+                turningRoutes++;
+            }
+            assertTrue(validatePath(pathHandling.getPath(start, PlannerType.ANY_ANGLE)));
+        }
+        assertTrue(turningRoutes > 0, "Some routes should have to turn round a zone");
+    }
+
+    /**
+     * Test that the hierarchy covers each of the fixed test starts and the hierarchical planner gives a valid path from them
+     */
+    @Test
+    void testHierarchicalPlanner() throws IOException {
+        for (LngLat start : FixedTestStarts()) {
+            assertNotNull(pathHandling.getNoFlyZones().getClusterHierarchy().route(start));
+            assertTrue(validatePath(pathHandling.getPath(start, PlannerType.HIERARCHICAL)));
+        }
+    }
+
+    /**
+     * Test that when a no-fly zone is added across a portal a route passes through, the hierarchy is rebuilt and the new route
+     * and the path flown along it go round the zone
+     */
+    @Test
+    void testHierarchicalPlannerAvoidsNewZone() throws IOException {
+        // a separate instance so the zone added here does not affect the other tests
+        PathHandling hierarchicalPathHandling = new PathHandling();
+        NoFlyZones noFlyZones = hierarchicalPathHandling.getNoFlyZones();
+        LngLat start = FixedTestStarts()[0];
+        ClusterHierarchy hierarchy = noFlyZones.getClusterHierarchy();
+        List<LngLat> route = hierarchy.route(start);
+
+        // the portal closest to the route, with both it and where the route passes it away from the ends so the zone over them
+        // blocks neither
+        LngLat portal = null;
+        LngLat crossing = null;
+        double closest = Double.POSITIVE_INFINITY;
+        for (int node = 0; node < hierarchy.getNodeCount(); node++) {
+            LngLat candidate = hierarchy.getPortal(node);
+            if (euclideanDistance(candidate, start) < 0.004 || euclideanDistance(candidate, APPLETON_TOWER) < 0.004) {
+                continue;
+            }
+            for (int i = 0; i < route.size() - 1; i++) {
+                LngLat nearest = nearestOnLeg(candidate, route.get(i), route.get(i + 1));
+                if (euclideanDistance(nearest, start) < 0.004 || euclideanDistance(nearest, APPLETON_TOWER) < 0.004) {
+                    continue;
+                }
+                if (euclideanDistance(candidate, nearest) < closest) {
+                    closest = euclideanDistance(candidate, nearest);
+                    portal = candidate;
+                    crossing = nearest;
+                }
+            }
+        }
+        // a zone covering both the portal and where the route passes it, so neither can be used any more
+        double margin = 0.0005;
+        double minLng = Math.min(portal.getLng(), crossing.getLng()) - margin;
+        double maxLng = Math.max(portal.getLng(), crossing.getLng()) + margin;
+        double minLat = Math.min(portal.getLat(), crossing.getLat()) - margin;
+        double maxLat = Math.max(portal.getLat(), crossing.getLat()) + margin;
+        NamedRegion[] zone = {new NamedRegion("Across the portal", new LngLat[]{
+                new LngLat(minLng, minLat), new LngLat(maxLng, minLat), new LngLat(maxLng, maxLat),
+                new LngLat(minLng, maxLat), new LngLat(minLng, minLat)})};
+        assertTrue(crossesZone(route, zone), "The zone should be across the route");
+
+        noFlyZones.addNoFlyZones(zone);
+        assertNotSame(hierarchy, noFlyZones.getClusterHierarchy());
+        List<LngLat> newRoute = noFlyZones.getClusterHierarchy().route(start);
+        assertNotNull(newRoute);
+        assertFalse(crossesZone(newRoute, zone));
+        LngLat[] path = hierarchicalPathHandling.getHierarchicalPath(start);
+        assertNotNull(path);
+        assertFalse(crossesZone(Arrays.asList(path), zone));
+    }
+
+    /**
+     * Test that the anytime planner gives a valid path from each of the fixed test starts, bounded by epsilon when it has no time to
+     * improve the path and improved down to the shortest path when it has plenty
+     */
+    @Test
+    void testAnytimePlanner() throws IOException {
+        for (LngLat start : FixedTestStarts()) {
+            AnytimePath first = pathHandling.getAnytimePath(start, 2, System.nanoTime());
+            assertEquals(2.0, first.getBound());
+            assertTrue(validatePath(first.getPath().toArray(new LngLat[0])));
+
+            AnytimePath improved = pathHandling.getAnytimePath(start, 2, System.nanoTime() + 60_000_000_000L);
+            assertEquals(1.0, improved.getBound());
+            assertTrue(validatePath(improved.getPath().toArray(new LngLat[0])));
+        }
+    }
+
+    /**
+     * Test that searches stop when their budget runs out of expansions, passes its deadline or is cancelled, and that a start
+     * with no path to AT is reported rather than crashing
+     */
+    @Test
+    void testSearchBudget() throws IOException {
+        LngLat start = FixedTestStarts()[3];
+        assertThrows(SearchBudgetExceededException.class,
+                () -> pathHandling.getPath(start, PlannerType.LATTICE, new SearchBudget(0, Long.MAX_VALUE)));
+        assertThrows(SearchBudgetExceededException.class,
+                () -> pathHandling.getPath(start, PlannerType.JUMP_POINT, new SearchBudget(Long.MAX_VALUE, System.nanoTime())));
+        SearchBudget cancelled = SearchBudget.unlimited();
+        cancelled.cancel();
+        assertThrows(SearchBudgetExceededException.class, () -> pathHandling.getPath(start, PlannerType.BIDIRECTIONAL, cancelled));
+
+        // the planners that route over waypoints spend from the budget too, both finding the route and flying it
+        for (PlannerType planner : new PlannerType[]{PlannerType.VISIBILITY_GRAPH, PlannerType.HIERARCHICAL}) {
+            assertThrows(SearchBudgetExceededException.class, () -> pathHandling.getPath(start, planner, cancelled));
+            assertThrows(SearchBudgetExceededException.class, () -> pathHandling.getPath(start, planner, new SearchBudget(0, Long.MAX_VALUE)));
+            SearchBudget spent = SearchBudget.unlimited();
+            assertArrayEquals(pathHandling.getPath(start, planner, SearchBudget.unlimited()), pathHandling.getPath(start, planner, spent));
+            assertTrue(spent.getExpansions() > 0);
+            // a budget that runs out while the legs are being flown stops the path as well
+            SearchBudget oneShort = new SearchBudget(spent.getExpansions() - 1, Long.MAX_VALUE);
+            assertThrows(SearchBudgetExceededException.class, () -> pathHandling.getPath(start, planner, oneShort));
+        }
+
+        // a start already close to Appleton Tower is a path without expanding anything, so even an empty budget is enough
+        LngLat nearlyThere = new LngLat(APPLETON_TOWER.getLng() + DRONE_IS_CLOSE_DISTANCE_SMALL / 2, APPLETON_TOWER.getLat());
+        SearchBudget empty = new SearchBudget(0, Long.MAX_VALUE);
+        assertEquals(1, pathHandling.getPath(nearlyThere, PlannerType.LATTICE, empty).length);
+        assertEquals(0, empty.getExpansions());
+
+        // a generous budget finds the same path as no budget at all
+        SearchBudget generous = new SearchBudget(SEARCH_MAX_EXPANSIONS, System.nanoTime() + 60_000_000_000L);
+        assertArrayEquals(pathHandling.getPath(start), pathHandling.getPath(start, PlannerType.LATTICE, generous));
+        assertTrue(generous.getExpansions() > 0);
+
+        // a start walled in by a no-fly zone has no path
+        PathHandling walledPathHandling = new PathHandling();
+        LngLat walledIn = new LngLat(-3.19, 55.95);
+        walledPathHandling.getNoFlyZones().addNoFlyZones(new NamedRegion[]{squareZone("Around the start", walledIn)});
+        assertThrows(PathNotFoundException.class, () -> walledPathHandling.getPath(walledIn, PlannerType.LATTICE, SearchBudget.unlimited()));
+    }
+
+    /**
+     * Test that the incremental planner repairs its path when a no-fly zone is added across it and again when the zone is removed,
+     * and that each repair is local, expanding far fewer nodes than searching the same zones from scratch
+     */
+    @Test
+    void testIncrementalPlanner() throws IOException {
+        // a separate instance so the zones added here do not affect the other tests
+        PathHandling incrementalPathHandling = new PathHandling();
+        NoFlyZones noFlyZones = incrementalPathHandling.getNoFlyZones();
+        // a long path, so a zone across the middle of it is far from both ends
+        LngLat start = FixedTestStarts()[3];
+        LngLat[] path = incrementalPathHandling.getPath(start, PlannerType.INCREMENTAL);
+        assertTrue(validatePath(path));
+        assertEquals(incrementalPathHandling.getPath(start).length, path.length);
+
+        noFlyZones.addNoFlyZones(new NamedRegion[]{squareZone("Across the path", path[path.length / 2])});
+        SearchBudget repairAdded = SearchBudget.unlimited();
+        incrementalPathHandling.getIncrementalPath(start, repairAdded);
+        SearchBudget freshAdded = SearchBudget.unlimited();
+        freshRoute(start).plan(noFlyZones, freshAdded);
+        assertTrue(repairAdded.getExpansions() * 10 < freshAdded.getExpansions(),
+                repairAdded.getExpansions() + " expansions to repair, " + freshAdded.getExpansions() + " to search again");
+        CachedRoute blocked = incrementalPathHandling.getRoute(start, PlannerType.INCREMENTAL);
+        assertFalse(Arrays.equals(path, blocked.getPath()));
+        assertTrue(validatePath(blocked.getPath()));
+        for (int i = 0; i < blocked.getPath().length - 1; i++) {
+            assertFalse(doesPathIntersectWithAnyRegion(new LngLat[]{blocked.getPath()[i], blocked.getPath()[i + 1]}, noFlyZones.getNoFlyZones(), DRONE_MOVE_DISTANCE));
+        }
+
+        assertFalse(noFlyZones.removeNoFlyZone("Not a zone"));
+        assertTrue(noFlyZones.removeNoFlyZone("Across the path"));
+        SearchBudget repairRemoved = SearchBudget.unlimited();
+        incrementalPathHandling.getIncrementalPath(start, repairRemoved);
+        SearchBudget freshRemoved = SearchBudget.unlimited();
+        freshRoute(start).plan(noFlyZones, freshRemoved);
+        assertTrue(repairRemoved.getExpansions() * 10 < freshRemoved.getExpansions(),
+                repairRemoved.getExpansions() + " expansions to repair, " + freshRemoved.getExpansions() + " to search again");
+        CachedRoute cleared = incrementalPathHandling.getRoute(start, PlannerType.INCREMENTAL);
+        assertEquals(noFlyZones.getVersion(), cleared.getZoneVersion());
+        assertTrue(validatePath(cleared.getPath()));
+        // with the zone gone the route is as short as it was before the zone was added
+        assertEquals(path.length, cleared.getPath().length);
+
+        // a zone early on this path moves the end of the first stage, so the later stages start somewhere new, and once it is
+        // removed they go back to the searches they kept from where they started before, which only need repairing
+        LngLat shortStart = FixedTestStarts()[0];
+        LngLat[] shortPath = incrementalPathHandling.getPath(shortStart, PlannerType.INCREMENTAL);
+        noFlyZones.addNoFlyZones(new NamedRegion[]{squareZone("Early on the path", shortPath[shortPath.length / 4])});
+        assertTrue(validatePath(incrementalPathHandling.getIncrementalPath(shortStart, SearchBudget.unlimited())));
+        assertTrue(noFlyZones.removeNoFlyZone("Early on the path"));
+        SearchBudget repairReturned = SearchBudget.unlimited();
+        LngLat[] returned = incrementalPathHandling.getIncrementalPath(shortStart, repairReturned);
+        SearchBudget freshReturned = SearchBudget.unlimited();
+        freshRoute(shortStart).plan(noFlyZones, freshReturned);
+        assertTrue(repairReturned.getExpansions() * 10 < freshReturned.getExpansions(),
+                repairReturned.getExpansions() + " expansions to repair, " + freshReturned.getExpansions() + " to search again");
+        assertArrayEquals(shortPath, returned);
+    }
+
+    /**
+     * Helper function that makes the searches for a route through the same stages as the incremental planner, none of which has
+     * expanded anything yet
+     * @param start the start of the route
+     * @return the route
+     */
+    private static IncrementalRoute freshRoute(LngLat start) {
+        return new IncrementalRoute(start, APPLETON_TOWER,
+                new PathPlanner(DRONE_MOVE_DISTANCE_LARGE, DRONE_IS_CLOSE_DISTANCE_LARGE),
+                new PathPlanner(DRONE_MOVE_DISTANCE_MEDIUM, DRONE_IS_CLOSE_DISTANCE_MEDIUM),
+                new PathPlanner(DRONE_MOVE_DISTANCE_SMALL, DRONE_IS_CLOSE_DISTANCE_SMALL));
+    }
+
+    /**
+     * Test that the reference data is only fetched again in full when it changed, that a new snapshot is only published when its
+     * content changed, and that the no-fly zones are only rebuilt when a new snapshot changes them
+     */
+    @Test
+    void testReferenceDataService() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        Map<String, String> bodies = new ConcurrentHashMap<>();
+        bodies.put("/restaurants", Files.readString(Paths.get("src/test/resources/restaurants20.json")));
+        bodies.put("/noFlyZones", "[]");
+        bodies.put("/centralArea", "{\"name\": \"central\", \"vertices\": [{\"lng\": -3.192473, \"lat\": 55.946233}, "
+                + "{\"lng\": -3.192473, \"lat\": 55.942617}, {\"lng\": -3.184319, \"lat\": 55.942617}, "
+                + "{\"lng\": -3.184319, \"lat\": 55.946233}, {\"lng\": -3.192473, \"lat\": 55.946233}]}");
+        AtomicInteger notModified = new AtomicInteger();
+        AtomicInteger failures = new AtomicInteger();
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            if (failures.get() > 0) {
+                failures.decrementAndGet();
+                exchange.sendResponseHeaders(500, -1);
+                exchange.close();
+                return;
+            }
+            byte[] body = bodies.get(exchange.getRequestURI().getPath()).getBytes(StandardCharsets.UTF_8);
+            String etag = "\"" + Arrays.hashCode(body) + "\"";
+            if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                notModified.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+            exchange.getResponseHeaders().add("ETag", etag);
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+        String url = "http://127.0.0.1:" + server.getAddress().getPort();
+        try (ReferenceDataService service = new ReferenceDataService(url + "/restaurants", url + "/noFlyZones", url + "/centralArea")) {
+            // nothing is fetched until the service is started, and the zones and restaurants cannot be made from it before then
+            assertNull(service.getSnapshot());
+            assertThrows(IllegalStateException.class, () -> new Restaurants(service));
+            assertThrows(IllegalStateException.class, () -> new NoFlyZones(service));
+            service.start();
+            Restaurants restaurants = new Restaurants(service);
+            NoFlyZones noFlyZones = new NoFlyZones(service);
+            ReferenceData first = service.getSnapshot();
+            assertEquals(1, first.getVersion());
+            assertEquals(0, first.getNoFlyZones().length);
+            assertEquals("central", first.getCentral().getName());
+            service.start();
+            assertSame(first, service.getSnapshot());
+            assertSame(first.getRestaurants(), restaurants.getRestaurants());
+            assertSame(first.getNoFlyZones(), noFlyZones.getNoFlyZones());
+            ZoneEdgeIndex edgeIndex = noFlyZones.getEdgeIndex();
+            long zoneVersion = noFlyZones.getVersion();
+
+            // nothing changed, so the server sends nothing and the snapshot stays
+            assertFalse(service.refresh());
+            assertEquals(3, notModified.get());
+            assertSame(first, service.getSnapshot());
+
+            // new restaurants give a new snapshot, but the zones and everything built from them are kept
+            bodies.put("/restaurants", "[]");
+            assertTrue(service.refresh());
+            ReferenceData second = service.getSnapshot();
+            assertEquals(2, second.getVersion());
+            assertEquals(0, restaurants.getRestaurants().length);
+            assertNull(restaurants.getCatalogue().getMenuItem("Pizza 1 from Restaurant 0"));
+            assertSame(first.getNoFlyZones(), second.getNoFlyZones());
+            assertSame(edgeIndex, noFlyZones.getEdgeIndex());
+            assertEquals(zoneVersion, noFlyZones.getVersion());
+
+            // content that only differs in its spacing is still new, but the same content sent again is not
+            bodies.put("/restaurants", "[ ]");
+            assertTrue(service.refresh());
+            bodies.put("/restaurants", "[ ]");
+            assertFalse(service.refresh());
+            ReferenceData third = service.getSnapshot();
+
+            // new zones are taken up and everything built from the old zones is thrown away
+            bodies.put("/noFlyZones", "[" + objectMapper.writeValueAsString(squareZone("New zone", APPLETON_TOWER)) + "]");
+            assertTrue(service.refresh());
+            assertEquals(third.getVersion() + 1, service.getSnapshot().getVersion());
+            assertEquals("New zone", noFlyZones.getNoFlyZones()[0].getName());
+            assertEquals(zoneVersion + 1, noFlyZones.getVersion());
+            assertEquals(noFlyZones.getVersion(), noFlyZones.getRemovalVersion());
+
+            // a failed fetch keeps the current snapshot
+            ReferenceData beforeFailure = service.getSnapshot();
+            failures.set(3);
+            bodies.put("/noFlyZones", "[]");
+            assertThrows(IOException.class, service::refresh);
+            assertSame(beforeFailure, service.getSnapshot());
+
+            // overridden restaurants are not replaced by later snapshots
+            Restaurant[] loadedRestaurants = objectMapper.readValue(new File("src/test/resources/restaurants20.json"), Restaurant[].class);
+            restaurants.overrideRestaurants(loadedRestaurants);
+            bodies.put("/restaurants", "[]");
+            assertTrue(service.refresh());
+            assertSame(loadedRestaurants, restaurants.getRestaurants());
+            assertEquals(0, noFlyZones.getNoFlyZones().length);
+
+            // zones added here are pinned, so later snapshots no longer replace them
+            noFlyZones.addNoFlyZones(new NamedRegion[]{squareZone("Local zone", APPLETON_TOWER)});
+            bodies.put("/noFlyZones", "[" + objectMapper.writeValueAsString(squareZone("Server zone", APPLETON_TOWER)) + "]");
+            assertTrue(service.refresh());
+            assertEquals(1, noFlyZones.getNoFlyZones().length);
+            assertEquals("Local zone", noFlyZones.getNoFlyZones()[0].getName());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    /**
+     * Test that a batch of orders gets one result per order in the order given, with orders from the same restaurant sharing one
+     * path and invalid orders getting no path
+     */
+    @Test
+    void testCalcDeliveryPaths() throws IOException {
+        ArrayNode orders = new ObjectMapper().createArrayNode();
+        orders.add(generateRandomOrder(0));
+        orders.add(generateRandomOrder(1));
+        orders.add(generateRandomOrder(0));
+        ObjectNode invalidOrder = generateRandomOrder(0);
+        ((ObjectNode) invalidOrder.get("creditCardInformation")).put("creditCardNumber", "1234");
+        orders.add(invalidOrder);
+
+        List<DeliveryPathResult> results = pathHandling.calcDeliveryPaths(orders, PlannerType.LATTICE, null);
+        assertEquals(orders.size(), results.size());
+        assertTrue(validatePath(results.get(0).getPath()));
+        assertTrue(validatePath(results.get(1).getPath()));
+        assertArrayEquals(pathHandling.calcDeliveryPath(orders.get(1)), results.get(1).getPath());
+        // the path was only found once for the two orders from the same restaurant
+        assertSame(results.get(0).getPath(), results.get(2).getPath());
+        assertEquals(OrderStatus.INVALID, results.get(3).getOrderStatus());
+        assertEquals(OrderValidationCode.CARD_NUMBER_INVALID, results.get(3).getOrderValidationCode());
+        assertNull(results.get(3).getPath());
+
+        assertThrows(InvalidBodyException.class, () -> pathHandling.calcDeliveryPaths(orders.get(0), PlannerType.LATTICE, null));
+    }
+
+    /**
+     * Test that streamed orders each get a result line in the order they were sent, with a path for valid orders only
+     */
+    @Test
+    void testCalcDeliveryPathStream() throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper();
+        ObjectNode invalidOrder = generateRandomOrder(0);
+        ((ObjectNode) invalidOrder.get("creditCardInformation")).put("creditCardNumber", "1234");
+        JsonNode[] orders = {generateRandomOrder(0), invalidOrder, generateRandomOrder(1)};
+        StringBuilder lines = new StringBuilder();
+        for (JsonNode order : orders) {
+            lines.append(objectMapper.writeValueAsString(order)).append('\n');
+        }
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        pathHandling.calcDeliveryPathStream(new ByteArrayInputStream(lines.toString().getBytes(StandardCharsets.UTF_8)), PlannerType.LATTICE)
+                .getBody().writeTo(output);
+        String[] results = output.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(orders.length, results.length);
+
+        LngLat[] path = objectMapper.treeToValue(objectMapper.readTree(results[0]).get("path"), LngLat[].class);
+        assertTrue(validatePath(path));
+        assertArrayEquals(pathHandling.calcDeliveryPath(orders[0]), path);
+        JsonNode invalidResult = objectMapper.readTree(results[1]);
+        assertEquals(OrderValidationCode.CARD_NUMBER_INVALID.name(), invalidResult.get("orderValidationCode").asText());
+        assertTrue(invalidResult.get("path").isNull());
+        assertTrue(validatePath(objectMapper.treeToValue(objectMapper.readTree(results[2]).get("path"), LngLat[].class)));
+    }
+
+    /**
+     * Test that the daily batch only delivers the orders for its date, and writes a flight path, GeoJSON feature and summary
+     * entry for each of them
+     */
+    @Test
+    void testDailyBatch() throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper();
+        ArrayNode orders = objectMapper.createArrayNode();
+        orders.add(generateRandomOrder(0));
+        orders.add(generateRandomOrder(0).put("orderNo", "092884D1"));
+        orders.add(generateRandomOrder(1).put("orderNo", "092884D2"));
+        orders.add(generateRandomOrder(0).put("orderNo", "092884D3").put("orderDate", "1975-01-01"));
+        String date = orders.get(0).get("orderDate").asText();
+        int ordersForDate = 0;
+        for (JsonNode order : orders) {
+            if (order.get("orderDate").asText().equals(date)) {
+                ordersForDate++;
+            }
+        }
+
+        Path directory = Files.createTempDirectory("daily-batch");
+        Path source = directory.resolve("orders.json");
+        objectMapper.writeValue(source.toFile(), orders);
+        DailyBatchSummary summary = new DailyBatch(pathHandling).run(source.toString(), LocalDate.parse(date), directory);
+
+        assertEquals(ordersForDate, summary.getOrderCount());
+        assertEquals(ordersForDate, summary.getValidCount());
+        assertEquals(ordersForDate, summary.getDeliveredCount());
+        JsonNode flightPaths = objectMapper.readTree(directory.resolve("flightpath-" + date + ".json").toFile());
+        assertEquals(ordersForDate, flightPaths.size());
+        for (JsonNode flightPath : flightPaths) {
+            assertTrue(validatePath(objectMapper.treeToValue(flightPath.get("path"), LngLat[].class)));
+        }
+        JsonNode geoJson = objectMapper.readTree(directory.resolve("drone-" + date + ".geojson").toFile());
+        assertEquals(ordersForDate, geoJson.get("features").size());
+        JsonNode written = objectMapper.readTree(directory.resolve("summary-" + date + ".json").toFile());
+        assertEquals(ordersForDate, written.get("validationCodes").get(OrderValidationCode.NO_ERROR.name()).asInt());
+        assertTrue(summary.getRoutingErrors().isEmpty());
+
+        // searches that run out of the batch's time are reported for each of their orders rather than only not delivered
+        PathHandling outOfTime = new PathHandling();
+        outOfTime.setBatchTimeoutMs(0);
+        DailyBatchSummary failed = new DailyBatch(outOfTime).run(source.toString(), LocalDate.parse(date), directory);
+        assertEquals(ordersForDate, failed.getValidCount());
+        assertEquals(0, failed.getDeliveredCount());
+        assertEquals(ordersForDate, failed.getRoutingErrors().size());
+        JsonNode writtenErrors = objectMapper.readTree(directory.resolve("summary-" + date + ".json").toFile()).get("routingErrors");
+        for (JsonNode order : orders) {
+            if (order.get("orderDate").asText().equals(date)) {
+                assertNotNull(failed.getRoutingErrors().get(order.get("orderNo").asText()));
+                assertTrue(writtenErrors.has(order.get("orderNo").asText()));
+            }
+        }
+    }
+
+    /**
+     * Test that paths found by many threads at once, mixing every resolution of search, are identical to the paths found one at a time
+     */
+    @Test
+    void testConcurrentPathsMatchSerialPaths() throws Exception {
+        LngLat[] starts = FixedTestStarts();
+        LngLat[][] expected = new LngLat[starts.length][];
+        for (int i = 0; i < starts.length; i++) {
+            expected[i] = pathHandling.getPath(starts[i]);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int round = 0; round < 10; round++) {
+                for (int i = 0; i < starts.length; i++) {
+                    int index = i;
+                    results.add(executor.submit(() -> Arrays.equals(expected[index], pathHandling.getPath(starts[index]))));
+                }
+            }
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Test that cached routes are reused, kept when a no-fly zone is added away from them and found again when one is added across them
+     */
+    @Test
+    void testRouteCache() throws IOException {
+        // a separate instance so the zones added here do not affect the other tests
+        PathHandling cachedPathHandling = new PathHandling();
+        LngLat start = FixedTestStarts()[0];
+        CachedRoute first = cachedPathHandling.getRoute(start, PlannerType.LATTICE);
+        assertSame(first, cachedPathHandling.getRoute(start, PlannerType.LATTICE));
+
+        // a zone far from the path leaves the route as it was
+        cachedPathHandling.getNoFlyZones().addNoFlyZones(new NamedRegion[]{squareZone("Far away", new LngLat(-3.0, 56.1))});
+        CachedRoute kept = cachedPathHandling.getRoute(start, PlannerType.LATTICE);
+        assertEquals(cachedPathHandling.getNoFlyZones().getVersion(), kept.getZoneVersion());
+        assertArrayEquals(first.getPath(), kept.getPath());
+
+        // a zone across the path means a new path has to be found around it
+        LngLat[] path = first.getPath();
+        cachedPathHandling.getNoFlyZones().addNoFlyZones(new NamedRegion[]{squareZone("Across the path", path[path.length / 2])});
+        LngLat[] rerouted = cachedPathHandling.getRoute(start, PlannerType.LATTICE).getPath();
+        assertFalse(Arrays.equals(path, rerouted));
+        assertTrue(validatePath(rerouted));
+        for (int i = 0; i < rerouted.length - 1; i++) {
+            assertFalse(doesPathIntersectWithAnyRegion(new LngLat[]{rerouted[i], rerouted[i + 1]}, cachedPathHandling.getNoFlyZones().getNoFlyZones(), DRONE_MOVE_DISTANCE));
+        }
+    }
+
+    /**
+     * Test that the edge index gives the same answer as checking every edge of every zone, for random moves around the zones
+     */
+    @Test
+    void testZoneEdgeIndex() {
+        NamedRegion[] zones = pathHandling.getNoFlyZones().getNoFlyZones();
+        ZoneEdgeIndex index = new ZoneEdgeIndex(zones);
+        Random random = new Random(1);
+        for (int i = 0; i < 100000; i++) {
+            NamedRegion zone = zones[random.nextInt(zones.length)];
+            // start somewhere in or just around a zone and move one step in a random compass direction
+            LngLat from = new LngLat(zone.getMinLng() - 0.001 + random.nextDouble() * (zone.getMaxLng() - zone.getMinLng() + 0.002),
+                    zone.getMinLat() - 0.001 + random.nextDouble() * (zone.getMaxLat() - zone.getMinLat() + 0.002));
+            double angle = Math.toRadians(22.5 * random.nextInt(16));
+            LngLat to = new LngLat(from.getLng() + DRONE_MOVE_DISTANCE * Math.cos(angle), from.getLat() + DRONE_MOVE_DISTANCE * Math.sin(angle));
+            assertEquals(doesPathIntersectWithAnyRegion(new LngLat[]{from, to}, zones, DRONE_MOVE_DISTANCE), index.intersects(from, to));
+        }
+    }
+
+    /**
+     * Test that the prepared no-fly zones follow the zones as they are added and removed, and give the same answer as preparing
+     * each zone for every point
+     */
+    @Test
+    void testPreparedZones() throws IOException {
+        // a separate instance so the zones added here do not affect the other tests
+        NoFlyZones noFlyZones = new PathHandling().getNoFlyZones();
+        LngLat centre = new LngLat(-3.19, 55.95);
+        noFlyZones.addNoFlyZones(new NamedRegion[]{squareZone("Prepared zone", centre)});
+        NamedRegion[] zones = noFlyZones.getNoFlyZones();
+        PreparedRegion[] prepared = noFlyZones.getPreparedZones();
+        assertEquals(zones.length, prepared.length);
+        for (int i = 0; i < zones.length; i++) {
+            assertSame(zones[i], prepared[i].getRegion());
+        }
+        Random random = new Random(2);
+        for (int i = 0; i < 10000; i++) {
+            double lng = centre.getLng() - 0.001 + random.nextDouble() * 0.002;
+            double lat = centre.getLat() - 0.001 + random.nextDouble() * 0.002;
+            boolean expected = false;
+            for (NamedRegion zone : zones) {
+                expected |= isInRegion(new LngLat(lng, lat), zone);
+            }
+            assertEquals(expected, noFlyZones.isInAnyZone(lng, lat));
+        }
+        assertTrue(noFlyZones.isInAnyZone(centre.getLng(), centre.getLat()));
+
+        // a zone that is not a valid region is refused and the zones stay as they were
+        NamedRegion open = new NamedRegion("Open zone", new LngLat[]{centre, new LngLat(-3.18, 55.95), new LngLat(-3.18, 55.96)});
+        assertThrows(InvalidBodyException.class, () -> noFlyZones.addNoFlyZones(new NamedRegion[]{open}));
+        assertSame(zones, noFlyZones.getNoFlyZones());
+        assertSame(prepared, noFlyZones.getPreparedZones());
+
+        assertTrue(noFlyZones.removeNoFlyZone("Prepared zone"));
+        assertEquals(zones.length - 1, noFlyZones.getPreparedZones().length);
+        assertFalse(noFlyZones.isInAnyZone(centre.getLng(), centre.getLat()));
+    }
+
+    /**
+     * Test that the bitmap of moves that may be blocked never clears a move that touches a zone, at every step size,
+     * and that a bitmap read back from its file gives the same answers
+     */
+    @Test
+    void testBlockedMoveMap() throws IOException {
+        NamedRegion[] zones = pathHandling.getNoFlyZones().getNoFlyZones();
+        ZoneEdgeIndex index = new ZoneEdgeIndex(zones);
+        Path directory = Files.createTempDirectory("blocked-moves");
+        Random random = new Random(2);
+        for (double step : new double[]{DRONE_MOVE_DISTANCE_LARGE, DRONE_MOVE_DISTANCE_MEDIUM, DRONE_MOVE_DISTANCE_SMALL}) {
+            BlockedMoveMap built = BlockedMoveMap.forZones(zones, step, directory);
+            BlockedMoveMap loaded = BlockedMoveMap.forZones(zones, step, directory);
+            assertFalse(built.isLoaded());
+            assertTrue(loaded.isLoaded());
+
+            int cleared = 0;
+            for (int i = 0; i < 100000; i++) {
+                NamedRegion zone = zones[random.nextInt(zones.length)];
+                double lng = zone.getMinLng() - 2 * step + random.nextDouble() * (zone.getMaxLng() - zone.getMinLng() + 4 * step);
+                double lat = zone.getMinLat() - 2 * step + random.nextDouble() * (zone.getMaxLat() - zone.getMinLat() + 4 * step);
+                int direction = random.nextInt(16);
+                double angle = Math.toRadians(direction * 22.5);
+                boolean mayBeBlocked = built.mayBeBlocked(lng, lat, direction);
+                assertEquals(mayBeBlocked, loaded.mayBeBlocked(lng, lat, direction));
+                if (!mayBeBlocked) {
+                    cleared++;
+                    assertFalse(index.intersects(lng, lat, lng + step * Math.cos(angle), lat + step * Math.sin(angle)));
+                }
+            }
+            assertTrue(cleared > 0, "Some moves near the zones should be known to be clear");
+        }
+
+        // a file whose bits were changed after it was written is not trusted, and is built and written again
+        double step = DRONE_MOVE_DISTANCE_MEDIUM;
+        Path file;
+        try (Stream<Path> files = Files.list(directory)) {
+            file = files.filter(path -> path.getFileName().toString().contains(Long.toHexString(Double.doubleToLongBits(step))))
+                    .findFirst().orElseThrow();
+        }
+        byte[] contents = Files.readAllBytes(file);
+        contents[contents.length - 1] ^= 1;
+        Files.write(file, contents);
+        assertFalse(BlockedMoveMap.forZones(zones, step, directory).isLoaded());
+        assertTrue(BlockedMoveMap.forZones(zones, step, directory).isLoaded());
+
+        // once the zones change the file for the old zones is kept while it was used recently, as another service sharing the
+        // directory may still have the old zones, and deleted once it has not been used for longer than the maximum age
+        NamedRegion[] moreZones = Arrays.copyOf(zones, zones.length + 1);
+        moreZones[zones.length] = squareZone("Extra", new LngLat(-3.19, 55.95));
+        assertFalse(BlockedMoveMap.forZones(moreZones, step, directory).isLoaded());
+        assertTrue(Files.exists(file));
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(4, files.count());
+        }
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() - BLOCKED_MOVE_CACHE_MAX_AGE_MS - 1));
+        NamedRegion[] otherZones = Arrays.copyOf(zones, zones.length + 1);
+        otherZones[zones.length] = squareZone("Other", new LngLat(-3.18, 55.95));
+        assertFalse(BlockedMoveMap.forZones(otherZones, step, directory).isLoaded());
+        assertFalse(Files.exists(file));
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(4, files.count());
+        }
+
+        // zones far apart would need far more bits than fit, so the cells are made larger, which still never clears a blocked move
+        NamedRegion[] farZones = {squareZone("West", new LngLat(-170, -80)), squareZone("East", new LngLat(170, 80))};
+        BlockedMoveMap coarse = BlockedMoveMap.forZones(farZones, step, null);
+        // each zone is indexed on its own, as an index of both would be as large as the bitmap at its finest
+        ZoneEdgeIndex[] farIndexes = {new ZoneEdgeIndex(new NamedRegion[]{farZones[0]}), new ZoneEdgeIndex(new NamedRegion[]{farZones[1]})};
+        for (int i = 0; i < 100000; i++) {
+            int which = random.nextInt(farZones.length);
+            NamedRegion zone = farZones[which];
+            ZoneEdgeIndex farIndex = farIndexes[which];
+            double lng = zone.getMinLng() - 2 * step + random.nextDouble() * (zone.getMaxLng() - zone.getMinLng() + 4 * step);
+            double lat = zone.getMinLat() - 2 * step + random.nextDouble() * (zone.getMaxLat() - zone.getMinLat() + 4 * step);
+            int direction = random.nextInt(16);
+            double angle = Math.toRadians(direction * 22.5);
+            if (farIndex.intersects(lng, lat, lng + step * Math.cos(angle), lat + step * Math.sin(angle))) {
+                assertTrue(coarse.mayBeBlocked(lng, lat, direction));
+            }
+        }
+        assertFalse(coarse.isNearZone(0, 0));
+    }
+
+    /**
+     * Helper function to find the point of a straight leg nearest to another point
+     * @param point the point
+     * @param from the start of the leg
+     * @param to the end of the leg
+     * @return the point of the leg nearest to the point
+     */
+    private static LngLat nearestOnLeg(LngLat point, LngLat from, LngLat to) {
+        double legLng = to.getLng() - from.getLng();
+        double legLat = to.getLat() - from.getLat();
+        double lengthSquared = legLng * legLng + legLat * legLat;
+        double along = lengthSquared == 0 ? 0
+                : Math.max(0, Math.min(1, ((point.getLng() - from.getLng()) * legLng + (point.getLat() - from.getLat()) * legLat) / lengthSquared));
+        return new LngLat(from.getLng() + along * legLng, from.getLat() + along * legLat);
+    }
+
+    /**
+     * Helper function to check if any leg of a route crosses the edge of a zone
+     * @param route the points of the route in order
+     * @param zones the zones to check against
+     * @return true if any leg crosses the edge of any of the zones
+     */
+    private static boolean crossesZone(List<LngLat> route, NamedRegion[] zones) {
+        for (int i = 0; i < route.size() - 1; i++) {
+            LngLat[] leg = {route.get(i), route.get(i + 1)};
+            if (doesPathIntersectWithAnyRegion(leg, zones, euclideanDistance(leg[0], leg[1]))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Helper function to find the length of a path
+     * @param path the points of the path in order
+     * @return the sum of the distances between each point and the next
+     */
+    private static double pathLength(LngLat[] path) {
+        double length = 0;
+        for (int i = 0; i < path.length - 1; i++) {
+            length += euclideanDistance(path[i], path[i + 1]);
+        }
+        return length;
+    }
+
+    /**
+     * Helper function to make a small square no-fly zone
+     * @param name the name of the zone
+     * @param centre the centre of the square
+     * @return the square zone
+     */
+    private static NamedRegion squareZone(String name, LngLat centre) {
+        double half = 0.0005;
+        return new NamedRegion(name, new LngLat[]{
+                new LngLat(centre.getLng() - half, centre.getLat() - half),
+                new LngLat(centre.getLng() + half, centre.getLat() - half),
+                new LngLat(centre.getLng() + half, centre.getLat() + half),
+                new LngLat(centre.getLng() - half, centre.getLat() + half),
+                new LngLat(centre.getLng() - half, centre.getLat() - half)});
+    }
+
     /**
      * Fetches the orders from the server
      */
@@ -350,8 +1230,8 @@ public class PathHandlingUnitTests {
             }
 
             // checks that once the path has entered the central region it does not leave
-            if (isInRegion(path[i], pathHandling.getNoFlyZones().getCentral())) {
-                if (!isInRegion(path[i + 1], pathHandling.getNoFlyZones().getCentral())) {
+            if (isInRegion(path[i], pathHandling.getNoFlyZones().getPreparedCentral())) {
+                if (!isInRegion(path[i + 1], pathHandling.getNoFlyZones().getPreparedCentral())) {
                     System.out.println("Path has left the central region after entering");
                     return false; // path has left the central region after entering
                 }